@@ -1,8 +1,16 @@
 package i5.las2peer.services.recommender;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
+import i5.las2peer.services.recommender.librec.intf.Recommender.Measure;
+import i5.las2peer.services.recommender.librec.main.HyperparameterSearch;
 import i5.las2peer.services.recommender.librec.main.LibRec;
 import i5.las2peer.services.recommender.librec.util.Logs;
 
@@ -29,22 +37,39 @@ public class RecommenderCLI {
 		}
 		
 		// Set parameters
-		setParameters();
+		for (Map.Entry<String, String> parameter : getParameters(options).entrySet()){
+			librec.setParameter(parameter.getKey(), parameter.getValue());
+		}
 		
 		// Read rating data from file
 		String ratingsFile = options.containsKey("--ratings-file") ? options.get("--ratings-file") : "datasets/ratings.txt";
 		String datasetType = options.containsKey("--dataset-type") ? options.get("--dataset-type") : "movielens";
-		try {
-			librec.readRatingsFromFile(ratingsFile, datasetType);
-		} catch (Exception e) {
-			Logs.error("Error reading from dataset file " + ratingsFile);
-//			Logs.error(e.getMessage());
-//			e.printStackTrace();
-			return;
+		
+		// Read rating and tag data from an up-to-date snapshot instead, if any
+		String snapshotFile = options.get("--snapshot-file");
+		String snapshotSource = snapshotFile != null ? getSnapshotSource(ratingsFile, datasetType, options.get("--tags-file")) : null;
+		boolean fromSnapshot = false;
+		if (snapshotFile != null){
+			try {
+				fromSnapshot = librec.readSnapshot(snapshotFile, snapshotSource);
+			} catch (Exception e) {
+				Logs.error("Error reading from snapshot file " + snapshotFile);
+			}
+		}
+		
+		if (!fromSnapshot){
+			try {
+				librec.readRatingsFromFile(ratingsFile, datasetType);
+			} catch (Exception e) {
+				Logs.error("Error reading from dataset file " + ratingsFile);
+//				Logs.error(e.getMessage());
+//				e.printStackTrace();
+				return;
+			}
 		}
 		
 		// Read tag data from file
-		if (options.containsKey("--tags-file")){
+		if (!fromSnapshot && options.containsKey("--tags-file")){
 			String taggingsFile = options.get("--tags-file"); 
 			try {
 				librec.readTaggingsFromFile(taggingsFile);
@@ -56,6 +81,15 @@ public class RecommenderCLI {
 			}
 		}
 		
+		// Write a snapshot of the data read from the files
+		if (snapshotFile != null && !fromSnapshot){
+			try {
+				librec.writeSnapshot(snapshotFile, snapshotSource);
+			} catch (Exception e) {
+				Logs.error("Error writing to snapshot file " + snapshotFile);
+			}
+		}
+		
 		try {
 			librec.printDatasetSpecifications();
 		} catch (Exception e) {
@@ -65,6 +99,17 @@ public class RecommenderCLI {
 			return;
 		}
 		
+		if (options.containsKey("--search")){
+			try {
+				search();
+			} catch (Exception e) {
+				Logs.error("Error during hyperparameter search");
+				Logs.error(e.getMessage());
+				e.printStackTrace();
+			}
+			return;
+		}
+		
 		try {
 			librec.evaluate();
 		} catch (Exception e) {
@@ -95,57 +140,139 @@ public class RecommenderCLI {
 	}
 	
 	/**
-	 * Sets the LibRec parameters according to the parameters from the command line
+	 * Performs a hyperparameter search. Options given as a list of values (a,b,c) or as a range (min:max) are
+	 * searched, either by evaluating all combinations (--search grid) or a number of random combinations
+	 * (--search random). The data and evaluation options are the same for all combinations.
+	 * @throws Exception on invalid search options or errors during the search
 	 */
-	private static void setParameters() {
-		librec.setParameter("evaluation.setup", "--test-view all --early-stop RMSE");
+	private static void search() throws Exception {
+		String mode = options.get("--search").toLowerCase();
+		
+		Map<String, List<String>> values = new LinkedHashMap<>();
+		for (Map.Entry<String, String> option : options.entrySet()){
+			String name = option.getKey();
+			if (name.startsWith("--search") || name.startsWith("--eval-") || name.equals("--ratings-file")
+					|| name.equals("--tags-file") || name.equals("--dataset-type") || name.equals("--rec-algo")
+					|| name.equals("--snapshot-file"))
+				continue;
+			values.put(name, new ArrayList<>(Arrays.asList(option.getValue().split(","))));
+		}
+		
+		List<Map<String, String>> combinations;
+		switch (mode){
+		case "grid":
+			for (Map.Entry<String, List<String>> option : values.entrySet()){
+				for (String value : option.getValue()){
+					if (HyperparameterSearch.isRange(value))
+						throw new Exception("Invalid input: ranges are not supported by grid search, " + option.getKey() + " " + value);
+				}
+			}
+			combinations = HyperparameterSearch.grid(values);
+			break;
+		case "random":
+			int samples = Integer.parseInt(getOption("--search-samples", "20"));
+			Random random = options.containsKey("--search-seed") ? new Random(Long.parseLong(options.get("--search-seed"))) : new Random();
+			combinations = HyperparameterSearch.random(values, samples, random);
+			break;
+		default:
+			throw new Exception("Invalid input: search mode " + mode);
+		}
+		
+		HyperparameterSearch search = new HyperparameterSearch(librec);
+		for (Map<String, String> combination : combinations){
+			Map<String, String> combinationOptions = new HashMap<>(options);
+			combinationOptions.putAll(combination);
+			search.addConfiguration(getParameters(combinationOptions));
+		}
+		
+		if (options.containsKey("--search-threads"))
+			search.setNumThreads(Integer.parseInt(options.get("--search-threads")));
+		search.setSuccessiveHalving(Integer.parseInt(getOption("--search-min-iter", "0")),
+				Integer.parseInt(getOption("--search-eta", "3")));
+		if (options.containsKey("--search-measure"))
+			search.setMeasure(Measure.valueOf(options.get("--search-measure")));
+		
+		search.run();
+	}
+	
+	/**
+	 * Describes the data files a snapshot is written from by their paths, sizes and modification times, such that a
+	 * snapshot is not used anymore once a file has changed
+	 * @param ratingsFile file containing the rating information
+	 * @param datasetType type of dataset
+	 * @param tagsFile file containing the tagging information, null if no tags are used
+	 * @return description of the data files
+	 */
+	private static String getSnapshotSource(String ratingsFile, String datasetType, String tagsFile){
+		StringBuilder source = new StringBuilder(datasetType.toLowerCase());
+		for (String file : new String[] {ratingsFile, tagsFile}){
+			if (file == null)
+				continue;
+			File f = new File(file).getAbsoluteFile();
+			source.append(';').append(f.getPath()).append(':').append(f.length()).append(':').append(f.lastModified());
+		}
+		return source.toString();
+	}
+	
+	private static String getOption(String option, String defaultValue){
+		return options.containsKey(option) ? options.get(option) : defaultValue;
+	}
+	
+	/**
+	 * Converts the options from the command line into LibRec parameters
+	 * @param options command line options
+	 * @return LibRec parameters
+	 */
+	private static Map<String, String> getParameters(Map<String, String> options) {
+		Map<String, String> parameters = new LinkedHashMap<>();
+		parameters.put("evaluation.setup", "--test-view all --early-stop RMSE");
 		
 		if(options.containsKey("--rec-tcnsvd-cbins")){
-			librec.setParameter("timeComNeighSVD++", "-beta 0.04 -bins 30 -cbins " + options.get("--rec-tcnsvd-cbins") + " -k 200");
+			parameters.put("timeComNeighSVD++", "-beta 0.04 -bins 30 -cbins " + options.get("--rec-tcnsvd-cbins") + " -k 200");
 		}
 		
 		if(options.containsKey("--cd-algo")){
-			librec.setParameter("cd.algo", options.get("--cd-algo"));
+			parameters.put("cd.algo", options.get("--cd-algo"));
 		}
 		
 		if(options.containsKey("--cd-wt-steps")){
-			librec.setParameter("cd.walktrap.steps", options.get("--cd-wt-steps"));
+			parameters.put("cd.walktrap.steps", options.get("--cd-wt-steps"));
 		}
 		
 		if(options.containsKey("--cd-dmid-iter-bound")){
-			librec.setParameter("cd.dmid.iter", options.get("--cd-dmid-iter-bound"));
+			parameters.put("cd.dmid.iter", options.get("--cd-dmid-iter-bound"));
 		}
 		
 		if(options.containsKey("--cd-dmid-prec-fact")){
-			librec.setParameter("cd.dmid.prec", options.get("--cd-dmid-prec-fact"));
+			parameters.put("cd.dmid.prec", options.get("--cd-dmid-prec-fact"));
 		}
 		
 		if(options.containsKey("--cd-dmid-prof-delta")){
-			librec.setParameter("cd.dmid.proficiency", options.get("--cd-dmid-prof-delta"));
+			parameters.put("cd.dmid.proficiency", options.get("--cd-dmid-prof-delta"));
 		}
 		
 		if(options.containsKey("--cd-max-oc")){
-			librec.setParameter("cd.max.oc", options.get("--cd-max-oc"));
+			parameters.put("cd.max.oc", options.get("--cd-max-oc"));
 		}
 		
 		if(options.containsKey("--graph-method")){
-			librec.setParameter("graph.method", options.get("--graph-method"));
+			parameters.put("graph.method", options.get("--graph-method"));
 		}
 		
 		if(options.containsKey("--graph-knn-k")){
-			librec.setParameter("graph.knn.k", options.get("--graph-knn-k"));
+			parameters.put("graph.knn.k", options.get("--graph-knn-k"));
 		}
 		
 		if(options.containsKey("--graph-knn-sim")){
-			librec.setParameter("graph.knn.sim", options.get("--graph-knn-sim"));
+			parameters.put("graph.knn.sim", options.get("--graph-knn-sim"));
 		}
 		
 		if(options.containsKey("--rec-factors")){
-			librec.setParameter("num.factors", options.get("--rec-factors"));
+			parameters.put("num.factors", options.get("--rec-factors"));
 		}
 		
 		if(options.containsKey("--rec-iters")){
-			librec.setParameter("num.max.iter", options.get("--rec-iters"));
+			parameters.put("num.max.iter", options.get("--rec-iters"));
 		}
 		
 		String lRateStr="";
@@ -165,7 +292,7 @@ public class RecommenderCLI {
 		}
 		if (setLRate){
 			lRateStr += " -decay 0.95";
-			librec.setParameter("learn.rate", lRateStr);
+			parameters.put("learn.rate", lRateStr);
 		}
 
 		String lambdaStr="";
@@ -184,7 +311,7 @@ public class RecommenderCLI {
 			}
 		}
 		if (setLambda){
-			librec.setParameter("reg.lambda", lambdaStr);
+			parameters.put("reg.lambda", lambdaStr);
 		}
 		
 		String beta="0.04";
@@ -197,48 +324,54 @@ public class RecommenderCLI {
 			bins = options.get("--rec-bins");
 		}
 		if(setTimeSVD){
-			librec.setParameter("timeSVD++", "-beta " + beta + " -bins " + bins);
+			parameters.put("timeSVD++", "-beta " + beta + " -bins " + bins);
 		}
 		
 		if(options.containsKey("--rec-wrmf-alpha")){
-			librec.setParameter("WRMF", "-alpha " + options.get("--rec-wrmf-alpha"));
+			parameters.put("WRMF", "-alpha " + options.get("--rec-wrmf-alpha"));
 		}
 		
 		if(options.containsKey("--rec-knn-sim")){
-			librec.setParameter("similarity", options.get("--rec-knn-sim"));
+			parameters.put("similarity", options.get("--rec-knn-sim"));
 		}
 		
 		if(options.containsKey("--rec-knn-shrink")){
-			librec.setParameter("num.shrinkage", options.get("--rec-knn-shrink"));
+			parameters.put("num.shrinkage", options.get("--rec-knn-shrink"));
 		}
 		
 		if(options.containsKey("--rec-knn-k")){
-			librec.setParameter("num.neighbors", options.get("--rec-knn-k"));
+			parameters.put("num.neighbors", options.get("--rec-knn-k"));
 		}
 		
 		if(options.containsKey("--eval-type")){
-			librec.setParameter("eval.type", options.get("--eval-type"));
+			parameters.put("eval.type", options.get("--eval-type"));
 		}
 		
 		if(options.containsKey("--eval-folds")){
-			librec.setParameter("eval.folds", options.get("--eval-folds"));
+			parameters.put("eval.folds", options.get("--eval-folds"));
 		}
 		
 		if(options.containsKey("--eval-train-ratio")){
-			librec.setParameter("eval.train.ratio", options.get("--eval-train-ratio"));
+			parameters.put("eval.train.ratio", options.get("--eval-train-ratio"));
 		}
 		
 		if(options.containsKey("--eval-fold-size")){
-			librec.setParameter("eval.fold.size", options.get("--eval-fold-size"));
+			parameters.put("eval.fold.size", options.get("--eval-fold-size"));
 		}
 		
 		if(options.containsKey("--eval-parallel")){
-			librec.setParameter("eval.parallel", options.get("--eval-parallel"));
+			parameters.put("eval.parallel", options.get("--eval-parallel"));
+		}
+		
+		if(options.containsKey("--eval-parallel-folds")){
+			parameters.put("eval.parallel.folds", options.get("--eval-parallel-folds"));
 		}
 		
 		if(options.containsKey("--eval-iter")){
-			librec.setParameter("eval.iter", options.get("--eval-iter"));
+			parameters.put("eval.iter", options.get("--eval-iter"));
 		}
+		
+		return parameters;
 	}
 	
 }
@@ -2,6 +2,7 @@ package i5.las2peer.services.recommender;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -21,10 +22,15 @@ import i5.las2peer.restMapper.annotations.ContentParam;
 import i5.las2peer.restMapper.annotations.Version;
 import i5.las2peer.restMapper.tools.ValidationResult;
 import i5.las2peer.restMapper.tools.XMLCheck;
+import i5.las2peer.services.recommender.librec.main.LibRec;
 import i5.las2peer.services.recommender.service.DataImporter;
 import i5.las2peer.services.recommender.service.DatabaseManager;
 import i5.las2peer.services.recommender.service.ItemDao;
+import i5.las2peer.services.recommender.service.ModelHolder;
+import i5.las2peer.services.recommender.service.RecommendationIndex;
 import i5.las2peer.services.recommender.service.RecommenderDao;
+import i5.las2peer.services.recommender.service.RecommenderJob;
+import i5.las2peer.services.recommender.service.RecommenderJobQueue;
 import i5.las2peer.services.recommender.service.UserDao;
 import i5.las2peer.services.recommender.utils.Logger;
 import io.swagger.annotations.Api;
@@ -63,6 +69,22 @@ public class RecommenderMain extends Service {
 	private String jdbcUrl;
 	private String jdbcSchema;
 	private DatabaseManager dbm;
+	
+	/*
+	 * Snapshot of the rating and tag data, read by recommender runs instead of the database tables while they are
+	 * unchanged; empty to always read the tables
+	 */
+	private String snapshotFile = "";
+	
+	/*
+	 * Model and top-N recommendations of the last completed recommender run, replaced when a run completes
+	 */
+	private static final ModelHolder liveModel = new ModelHolder();
+	
+	/*
+	 * Background execution of recommender runs, one run at a time and up to four waiting runs
+	 */
+	private static final RecommenderJobQueue jobQueue = new RecommenderJobQueue(1, 4);
 
 	public RecommenderMain() {
 		// read and set properties values
@@ -541,13 +563,21 @@ public class RecommenderMain extends Service {
 			@ApiParam(required=true) @QueryParam("itemId") String itemIdStr){
 		HttpResponse response;
 		UserDao dao = new UserDao(dbm);
+		ModelHolder.Model model = liveModel.get();
 		int userId;
 		int itemId;
 		double prediction;
 		try{
 			userId = Integer.valueOf(userIdStr);
 			itemId = Integer.valueOf(itemIdStr);
-			prediction = dao.getPrediction(userId, itemId);
+			// compute the prediction using the live model, fall back to the stored predictions if there is no model
+			// or the user or item have been added after the model was built
+			if (model != null && model.getRecommender().canPredict(userId, itemId)){
+				prediction = model.getRecommender().getPrediction(userId, itemId);
+			}
+			else{
+				prediction = dao.getPrediction(userId, itemId);
+			}
 		}
 		catch (Exception e){
 			Logger.logError(this, e);
@@ -586,13 +616,21 @@ public class RecommenderMain extends Service {
 			@ApiParam(required=false) @DefaultValue("10") @QueryParam("count") String countStr){
 		HttpResponse response;
 		UserDao dao = new UserDao(dbm);
+		ModelHolder.Model model = liveModel.get();
+		RecommendationIndex index = model != null ? model.getIndex() : null;
 		int userId;
 		int count;
 		JSONArray jsonRecommendation;
 		try{
 			userId = Integer.valueOf(userIdStr);
 			count = Integer.valueOf(countStr);
-			jsonRecommendation = dao.getRecommendations(userId, count);
+			// answer from the in-memory index, fall back to the database if it cannot answer the request
+			if (index != null && index.canServe(userId, count)){
+				jsonRecommendation = index.getRecommendations(userId, count);
+			}
+			else{
+				jsonRecommendation = dao.getRecommendations(userId, count);
+			}
 		}
 		catch (Exception e){
 			Logger.logError(this, e);
@@ -801,7 +839,8 @@ public class RecommenderMain extends Service {
 	
 	/**
 	 * Run recommender
-	 * Run the recommender algorithm and compute rating predictions.
+	 * Start a background job that runs the recommender algorithm and computes rating predictions.
+	 * The progress of the job can be retrieved using the job identifier.
 	 * 
 	 * @param recAlgo Recommender algorithm
 	 * @param cdAlgo Community detection algorithm
@@ -832,16 +871,18 @@ public class RecommenderMain extends Service {
 	 * @param recKnnSim Similarity measure to use for k-nearest neighbor recommendation algorithm
 	 * @param recKnnK Number of neighbors for k-nearest neighbor recommendation algorithm
 	 * 
-	 * @return HTTP response with status code 200 if the algorithm was successfully run and 500 for failure.
+	 * @return HTTP response with status code 202 and the job identifier if the run was started, 503 if too many
+	 * runs are waiting and 500 for invalid parameters.
 	 */
 	@POST
 	@Path("/recommender/run")
 	@Produces(MediaType.APPLICATION_JSON)
 	@ApiOperation(
 			value = "Run recommendation",
-			notes = "Run the recommendation algorithm and compute rating predictions.")
+			notes = "Start a background job that runs the recommendation algorithm and computes rating predictions.")
 	@ApiResponses(value = {
-			@ApiResponse(code = HttpURLConnection.HTTP_OK, message = "Recommender algorithm run successfully"),
+			@ApiResponse(code = HttpURLConnection.HTTP_ACCEPTED, message = "Recommender job started"),
+			@ApiResponse(code = HttpURLConnection.HTTP_UNAVAILABLE, message = "Too many recommender jobs waiting"),
 			@ApiResponse(code = HttpURLConnection.HTTP_INTERNAL_ERROR, message = "Error running the algorithm")
 	})
 	public HttpResponse runRecommender(
@@ -875,13 +916,26 @@ public class RecommenderMain extends Service {
 			@ApiParam(required=false) @QueryParam("recKnnK") @DefaultValue("50") String recKnnK
 		){
 		HttpResponse response;
-		RecommenderDao dao = new RecommenderDao(dbm);
+		RecommenderDao dao = new RecommenderDao(dbm, snapshotFile);
+		RecommenderJob job;
 		try{
-			dao.runRecommender(recAlgo, cdAlgo, cdWtSteps, graphMethod, graphKnnK, graphKnnSim,
+			LibRec librec = dao.createRecommender(recAlgo, cdAlgo, cdWtSteps, graphMethod, graphKnnK, graphKnnSim,
 					recFactors, recIters, recLearnRate, recLearnRateN, recLearnRateF,
 					recLearnRateC, recLearnRateCN, recLearnRateCF, recLearnRateMu,
 					recLambda, recLambdaB, recLambdaN, recLambdaF, recLambdaC, recLambdaCN, recLambdaCF,
 					recBeta, recBins, recTcnsvdCBins, recWrmfAlpha, recKnnSim, recKnnK);
+			job = jobQueue.submit(recAlgo, j -> {
+				RecommendationIndex index = dao.runRecommender(librec, j);
+				// publish the predictions and the model unless the job has been cancelled
+				j.commit(() -> {
+					dao.publishPredictions();
+					liveModel.publish(librec, index, j.getId());
+				});
+			});
+		}
+		catch (RejectedExecutionException e){
+			response = new HttpResponse("", HttpURLConnection.HTTP_UNAVAILABLE);
+			return response;
 		}
 		catch (Exception e){
 			Logger.logError(this, e);
@@ -889,32 +943,121 @@ public class RecommenderMain extends Service {
 			return response;
 		}
 		JSONObject json = new JSONObject();
+		json.put("jobId", job.getId());
 		json.put("recAlgo", recAlgo);
-		response = new HttpResponse(json.toJSONString(), HttpURLConnection.HTTP_OK);
+		response = new HttpResponse(json.toJSONString(), HttpURLConnection.HTTP_ACCEPTED);
 		return response;
 	}
 
-//	/**
-//	 * Retrieve status
-//	 * Retrieve the recommender system status.
-//	 * 
-//	 * @return Status of the recommender system.
-//	 */
-//	@GET
-//	@Path("/recommender/status")
-//	@Produces(MediaType.APPLICATION_JSON)
-//	@ApiOperation(
-//			value = "Retrieve status",
-//			notes = "Retrieve the recommender system status.")
-//	@ApiResponses(value = {
-//			@ApiResponse(code = HttpURLConnection.HTTP_OK, message = "Status retrieved successfully"),
-//			@ApiResponse(code = HttpURLConnection.HTTP_INTERNAL_ERROR, message = "Error retrieving the status")
-//	})
-//	public HttpResponse getRecommenderStatus(){
-//		// TODO
-//		// ... code ...
-//		 return null;
-//	}
+	/**
+	 * Retrieve status
+	 * Retrieve the status of the most recent recommender job and the job that built the model currently
+	 * used to answer requests.
+	 * 
+	 * @return Status of the recommender job, see getRecommenderJob(), with the live model's job identifier
+	 * and publishing time.
+	 */
+	@GET
+	@Path("/recommender/status")
+	@Produces(MediaType.APPLICATION_JSON)
+	@ApiOperation(
+			value = "Retrieve status",
+			notes = "Retrieve the status of the most recent recommender job.")
+	@ApiResponses(value = {
+			@ApiResponse(code = HttpURLConnection.HTTP_OK, message = "Status retrieved successfully"),
+			@ApiResponse(code = HttpURLConnection.HTTP_NOT_FOUND, message = "No recommender job has been started")
+	})
+	public HttpResponse getRecommenderStatus(){
+		RecommenderJob job = jobQueue.getLastJob();
+		if (job == null){
+			return new HttpResponse("", HttpURLConnection.HTTP_NOT_FOUND);
+		}
+		JSONObject json = job.toJSON();
+		ModelHolder.Model model = liveModel.get();
+		if (model != null){
+			json.put("liveJobId", model.getJobId());
+			json.put("livePublishTime", model.getPublishTime());
+		}
+		return new HttpResponse(json.toJSONString(), HttpURLConnection.HTTP_OK);
+	}
+
+	/**
+	 * Retrieve job status
+	 * Retrieve the status of a recommender job: its state (queued, running, finished, failed, cancelled),
+	 * the current phase (load, graph, communities, training, materialize, persist), the training iteration,
+	 * the time in milliseconds spent in each phase and the training loss after each iteration.
+	 * 
+	 * @param jobIdStr Job identifier given as path parameter.
+	 * 
+	 * @return Status of the recommender job.
+	 */
+	@GET
+	@Path("/recommender/jobs/{jobId}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@ApiOperation(
+			value = "Retrieve job status",
+			notes = "Retrieve the status of a recommender job.")
+	@ApiResponses(value = {
+			@ApiResponse(code = HttpURLConnection.HTTP_OK, message = "Status retrieved successfully"),
+			@ApiResponse(code = HttpURLConnection.HTTP_NOT_FOUND, message = "Job not found"),
+			@ApiResponse(code = HttpURLConnection.HTTP_INTERNAL_ERROR, message = "Error retrieving the status")
+	})
+	public HttpResponse getRecommenderJob(
+			@ApiParam(required=true) @PathParam("jobId") String jobIdStr){
+		RecommenderJob job;
+		try{
+			job = jobQueue.getJob(Integer.valueOf(jobIdStr));
+		}
+		catch (Exception e){
+			Logger.logError(this, e);
+			return new HttpResponse("", HttpURLConnection.HTTP_INTERNAL_ERROR);
+		}
+		if (job == null){
+			return new HttpResponse("", HttpURLConnection.HTTP_NOT_FOUND);
+		}
+		return new HttpResponse(job.toJSON().toJSONString(), HttpURLConnection.HTTP_OK);
+	}
+
+	/**
+	 * Cancel job
+	 * Cancel a queued or running recommender job. A running job stops at its next interruption check,
+	 * the predictions and recommendations of the previous run remain in use.
+	 * 
+	 * @param jobIdStr Job identifier given as path parameter.
+	 * 
+	 * @return HTTP status code 200 for success, 404 if the job does not exist and 409 if it has already ended or is
+	 * publishing its predictions.
+	 */
+	@DELETE
+	@Path("/recommender/jobs/{jobId}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@ApiOperation(
+			value = "Cancel job",
+			notes = "Cancel a queued or running recommender job.")
+	@ApiResponses(value = {
+			@ApiResponse(code = HttpURLConnection.HTTP_OK, message = "Job cancelled"),
+			@ApiResponse(code = HttpURLConnection.HTTP_NOT_FOUND, message = "Job not found"),
+			@ApiResponse(code = HttpURLConnection.HTTP_CONFLICT, message = "Job has already ended or is publishing"),
+			@ApiResponse(code = HttpURLConnection.HTTP_INTERNAL_ERROR, message = "Error cancelling the job")
+	})
+	public HttpResponse cancelRecommenderJob(
+			@ApiParam(required=true) @PathParam("jobId") String jobIdStr){
+		RecommenderJob job;
+		try{
+			job = jobQueue.getJob(Integer.valueOf(jobIdStr));
+		}
+		catch (Exception e){
+			Logger.logError(this, e);
+			return new HttpResponse("", HttpURLConnection.HTTP_INTERNAL_ERROR);
+		}
+		if (job == null){
+			return new HttpResponse("", HttpURLConnection.HTTP_NOT_FOUND);
+		}
+		if (!job.cancel()){
+			return new HttpResponse("", HttpURLConnection.HTTP_CONFLICT);
+		}
+		return new HttpResponse(job.toJSON().toJSONString(), HttpURLConnection.HTTP_OK);
+	}
 
 	
 	// //////////////////////////////////////////////////////////////////////////////////////
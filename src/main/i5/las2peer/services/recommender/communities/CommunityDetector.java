@@ -6,11 +6,7 @@ import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashBiMap;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 import i5.las2peer.services.recommender.communities.igraph.Igraph;
 import i5.las2peer.services.recommender.communities.webocd.Cover;
@@ -21,6 +17,7 @@ import i5.las2peer.services.recommender.communities.webocd.SpeakerListenerLabelP
 import i5.las2peer.services.recommender.librec.data.DenseVector;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.SparseMatrixBuilder;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 import i5.las2peer.services.recommender.librec.util.Logs;
@@ -276,8 +273,7 @@ public class CommunityDetector {
 		int numNodes = membershipsMatrix.numRows();
 		int numCommunities = membershipsMatrix.numColumns();
 		
-		Table<Integer, Integer, Double> membershipsTable = HashBasedTable.create();
-		Multimap<Integer, Integer> membershipsColMap = HashMultimap.create();
+		SparseMatrixBuilder memberships = new SparseMatrixBuilder(numNodes);
 
 		for (int node = 0; node < numNodes; node++){
 			// get community with highest membership level and store in vector
@@ -291,10 +287,9 @@ public class CommunityDetector {
 					community = e.index();
 				}
 			}
-			membershipsTable.put(node, community, 1.0);
-			membershipsColMap.put(community, node);
+			memberships.add(node, community, 1.0);
 		}
-		membershipsMatrix = new SparseMatrix(numNodes, numCommunities, membershipsTable, membershipsColMap);
+		membershipsMatrix = memberships.build(numNodes, numCommunities);
 	}
 
 	/**
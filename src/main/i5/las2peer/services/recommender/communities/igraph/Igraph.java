@@ -1,9 +1,7 @@
 package i5.las2peer.services.recommender.communities.igraph;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 import i5.las2peer.services.recommender.communities.igraph.IgraphLibrary.igraph_matrix_t;
 import i5.las2peer.services.recommender.communities.igraph.IgraphLibrary.igraph_t;
@@ -11,6 +9,7 @@ import i5.las2peer.services.recommender.communities.igraph.IgraphLibrary.igraph_
 import i5.las2peer.services.recommender.librec.data.DenseVector;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.SparseMatrixBuilder;
 
 public class Igraph {
 	
@@ -90,20 +89,18 @@ public class Igraph {
 	 */
 	public SparseMatrix getMembershipsMatrix() {
 		// fill membership information into the memberships matrix
-		Table<Integer, Integer, Double> membershipsTable = HashBasedTable.create();
-		Multimap<Integer, Integer> membershipsColMap = HashMultimap.create();
+		SparseMatrixBuilder memberships = new SparseMatrixBuilder(numUsers);
 
 		int maxCommunity = 0;
 		
 		for (int user = 0; user < numUsers; user++){
 			int community = (int) igraph.igraph_vector_e(membershipsVector, user);
-			membershipsTable.put(user,community,1.0);
-			membershipsColMap.put(community, user);
+			memberships.add(user, community, 1.0);
 			if(community > maxCommunity){
 				maxCommunity = community;
 			}
 		}
-		membershipsMatrix = new SparseMatrix(numUsers, maxCommunity+1, membershipsTable, membershipsColMap);
+		membershipsMatrix = memberships.build(numUsers, maxCommunity+1);
 		
 		return membershipsMatrix;
 	}
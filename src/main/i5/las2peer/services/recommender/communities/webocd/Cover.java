@@ -10,12 +10,9 @@ import org.la4j.matrix.Matrix;
 import org.la4j.vector.Vector;
 import org.la4j.vector.Vectors;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.SparseMatrixBuilder;
 import y.base.Node;
 
 /**
@@ -171,8 +168,7 @@ public class Cover {
 	 * with respect to the community with index j. All entries are non-negative and the matrix is row-wise normalized according to the 1-norm.
 	 */
 	public SparseMatrix getMemberships() {
-		Table<Integer, Integer, Double> membershipsTable = HashBasedTable.create();
-		Multimap<Integer, Integer> membershipsColMap = HashMultimap.create();
+		SparseMatrixBuilder membershipsBuilder = new SparseMatrixBuilder();
 		
 		int numNodes = graph.nodeCount();
 		int numCommunities = communities.size();
@@ -182,12 +178,11 @@ public class Cover {
 			for(Map.Entry<Node, Double> membership : community.getMemberships().entrySet()) {
 				int nodeIdx = membership.getKey().index();
 				double membershipValue = membership.getValue();
-				membershipsTable.put(nodeIdx, communityIdx, membershipValue);
-				membershipsColMap.put(communityIdx, nodeIdx);
+				membershipsBuilder.add(nodeIdx, communityIdx, membershipValue);
 			}
 		}
 
-		SparseMatrix memberships = new SparseMatrix(numNodes, numCommunities, membershipsTable, membershipsColMap);
+		SparseMatrix memberships = membershipsBuilder.build(numNodes, numCommunities);
 
 		return memberships;
 	}
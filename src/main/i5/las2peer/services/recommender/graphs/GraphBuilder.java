@@ -4,12 +4,10 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Table;
 
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.SparseMatrixBuilder;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.util.Logs;
 
@@ -169,18 +167,15 @@ public class GraphBuilder {
 		GreedyFiltering.kNNGraphConstruction(itemTfidfMatrix, itemKnnGraph, k, mu);
 		
 		// Convert userKnnGraph and itemKnnGraph into sparse adjacency matrices
-		Table<Integer, Integer, Double> userAdjTable = HashBasedTable.create();
-		Table<Integer, Integer, Double> itemAdjTable = HashBasedTable.create();
-		Multimap<Integer, Integer> userAdjColMap = HashMultimap.create();
-		Multimap<Integer, Integer> itemAdjColMap = HashMultimap.create();
+		SparseMatrixBuilder userAdj = new SparseMatrixBuilder(numUsers * k);
+		SparseMatrixBuilder itemAdj = new SparseMatrixBuilder(numItems * k);
 		
 		for (int u1 = 0; u1 < numUsers; u1++){
 			for (int idx = 0; idx < k*2; idx += 2){
 				int u2 = (int) userKnnGraph[u1][idx];
 				if (u2 != -1){
 					double sim = userKnnGraph[u1][idx+1];
-					userAdjTable.put(u1, u2, sim);
-					userAdjColMap.put(u2, u1);
+					userAdj.add(u1, u2, sim);
 				}
 			}
 		}
@@ -189,14 +184,13 @@ public class GraphBuilder {
 				int i2 = (int) itemKnnGraph[i1][idx];
 				if (i2 != -1){
 					double sim = itemKnnGraph[i1][idx+1];
-					itemAdjTable.put(i1, i2, sim);
-					itemAdjColMap.put(i2, i1);
+					itemAdj.add(i1, i2, sim);
 				}
 			}
 		}
 		
-		userAdjMatrix = new SparseMatrix(numUsers, numUsers, userAdjTable, userAdjColMap);
-		itemAdjMatrix = new SparseMatrix(numItems, numItems, itemAdjTable, itemAdjColMap);
+		userAdjMatrix = userAdj.build(numUsers, numUsers);
+		itemAdjMatrix = itemAdj.build(numItems, numItems);
 		
 		logAdjMatrixInfo();
 	}
@@ -205,10 +199,8 @@ public class GraphBuilder {
 	 * Construct the user and item graphs using the tag-based method
 	 */
 	private void buildGraphsFromTaggings() {
-		Table<Integer, Integer, Double> userAdjTable = HashBasedTable.create();
-		Table<Integer, Integer, Double> itemAdjTable = HashBasedTable.create();
-		Multimap<Integer, Integer> userAdjColMap = HashMultimap.create();
-		Multimap<Integer, Integer> itemAdjColMap = HashMultimap.create();
+		SparseMatrixBuilder userAdj = new SparseMatrixBuilder();
+		SparseMatrixBuilder itemAdj = new SparseMatrixBuilder();
 		
 		for (int u1 = 0; u1 < numUsers; u1++){
 			Set<Integer> tags = userTagTable.row(u1).keySet();
@@ -216,10 +208,8 @@ public class GraphBuilder {
 				Set<Integer> tagUsers = userTagTable.column(tag).keySet();
 				for (int u2 : tagUsers){
 					if (u1 < u2){
-						userAdjTable.put(u1, u2, 1.0);
-						userAdjColMap.put(u2, u1);
-						userAdjTable.put(u2, u1, 1.0);
-						userAdjColMap.put(u1, u2);
+						userAdj.add(u1, u2, 1.0);
+						userAdj.add(u2, u1, 1.0);
 					}
 				}
 			}
@@ -230,17 +220,15 @@ public class GraphBuilder {
 				Set<Integer> tagItems = itemTagTable.column(tag).keySet();
 				for (int i2 : tagItems){
 					if (i1 < i2){
-						itemAdjTable.put(i1, i2, 1.0);
-						itemAdjColMap.put(i2, i1);
-						itemAdjTable.put(i2, i1, 1.0);
-						itemAdjColMap.put(i1, i2);
+						itemAdj.add(i1, i2, 1.0);
+						itemAdj.add(i2, i1, 1.0);
 					}
 				}
 			}
 		}
 
-		userAdjMatrix = new SparseMatrix(numUsers, numUsers, userAdjTable, userAdjColMap);
-		itemAdjMatrix = new SparseMatrix(numItems, numItems, itemAdjTable, itemAdjColMap);
+		userAdjMatrix = userAdj.build(numUsers, numUsers);
+		itemAdjMatrix = itemAdj.build(numItems, numItems);
 		
 		logAdjMatrixInfo();
 	}
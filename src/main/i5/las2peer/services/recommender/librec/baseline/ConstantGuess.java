@@ -20,6 +20,7 @@ package i5.las2peer.services.recommender.librec.baseline;
 
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Baseline: predict by a constant rating
@@ -31,8 +32,8 @@ public class ConstantGuess extends Recommender {
 
 	private double constant;
 
-	public ConstantGuess(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public ConstantGuess(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		algoName = "Constant";
 		constant = (minRate + maxRate) / 2.0; // can also use given constant
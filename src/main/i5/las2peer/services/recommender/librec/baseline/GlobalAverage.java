@@ -20,6 +20,7 @@ package i5.las2peer.services.recommender.librec.baseline;
 
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Baseline: predict by average rating of all users
@@ -29,8 +30,8 @@ import i5.las2peer.services.recommender.librec.intf.Recommender;
  */
 public class GlobalAverage extends Recommender {
 
-	public GlobalAverage(SparseMatrix rm, SparseMatrix tm, int fold) {
-		super(rm, tm, fold);
+	public GlobalAverage(RecommenderContext context, SparseMatrix rm, SparseMatrix tm, int fold) {
+		super(context, rm, tm, fold);
 
 		this.algoName = "GlobalAvg";
 	}
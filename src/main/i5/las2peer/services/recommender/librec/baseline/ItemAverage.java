@@ -18,12 +18,13 @@
 
 package i5.las2peer.services.recommender.librec.baseline;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Baseline: predict by the average of target item's ratings
@@ -35,10 +36,10 @@ public class ItemAverage extends Recommender {
 
 	private Map<Integer, Double> itemMeans;
 
-	public ItemAverage(SparseMatrix rm, SparseMatrix tm, int fold) {
-		super(rm, tm, fold);
+	public ItemAverage(RecommenderContext context, SparseMatrix rm, SparseMatrix tm, int fold) {
+		super(context, rm, tm, fold);
 
-		itemMeans = new HashMap<>();
+		itemMeans = new ConcurrentHashMap<>();
 		algoName = "ItemAvg";
 	}
 
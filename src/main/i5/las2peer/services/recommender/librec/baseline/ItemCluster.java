@@ -27,6 +27,7 @@ import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 import i5.las2peer.services.recommender.librec.intf.GraphicRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Logs;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 
@@ -46,8 +47,8 @@ public class ItemCluster extends GraphicRecommender {
 	private DenseMatrix Nir;
 	private DenseVector Ni;
 
-	public ItemCluster(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public ItemCluster(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 	}
 
 	@Override
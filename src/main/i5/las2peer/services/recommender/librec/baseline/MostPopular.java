@@ -23,6 +23,7 @@ import java.util.Map;
 
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Baseline: items are weighted by the number of ratings they received.
@@ -34,8 +35,8 @@ public class MostPopular extends Recommender {
 
 	private Map<Integer, Integer> itemPops;
 
-	public MostPopular(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public MostPopular(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		// force to set as the ranking prediction method
 		isRankingPred = true;
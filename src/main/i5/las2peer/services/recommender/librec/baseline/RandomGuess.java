@@ -20,6 +20,7 @@ package i5.las2peer.services.recommender.librec.baseline;
 
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 
 /**
@@ -30,8 +31,8 @@ import i5.las2peer.services.recommender.librec.util.Randoms;
  */
 public class RandomGuess extends Recommender {
 
-	public RandomGuess(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public RandomGuess(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		setAlgoName("Random");
 	}
@@ -24,6 +24,7 @@ import java.util.Map;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Baseline: predict by the average of target user's ratings
@@ -35,8 +36,8 @@ public class UserAverage extends Recommender {
 
 	private Map<Integer, Double> userMeans;
 
-	public UserAverage(SparseMatrix rm, SparseMatrix tm, int fold) {
-		super(rm, tm, fold);
+	public UserAverage(RecommenderContext context, SparseMatrix rm, SparseMatrix tm, int fold) {
+		super(context, rm, tm, fold);
 
 		algoName = "UserAvg";
 		userMeans = new HashMap<>();
@@ -27,6 +27,7 @@ import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 import i5.las2peer.services.recommender.librec.intf.GraphicRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Logs;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 
@@ -48,8 +49,8 @@ public class UserCluster extends GraphicRecommender {
 	private DenseMatrix Nur;
 	private DenseVector Nu;
 
-	public UserCluster(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public UserCluster(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 	}
 
 	@Override
@@ -26,14 +26,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.HashBiMap;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.HashMultiset;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
-import com.google.common.collect.Table;
 
 import i5.las2peer.services.recommender.entities.Rating;
 import i5.las2peer.services.recommender.librec.util.Dates;
@@ -76,11 +70,11 @@ public class DataDAO {
 	// number of rates
 	protected int numRatings;
 
-	// user/item {raw id, inner id} map
-	protected BiMap<String, Integer> userIds, itemIds;
+	// user/item {raw id, inner id} dictionaries
+	protected IdDictionary userIds, itemIds;
 
-	// inverse views of userIds, itemIds
-	protected BiMap<Integer, String> idUsers, idItems;
+	// whether the dictionaries have been created by this DAO rather than given to it
+	private boolean isOwnIds;
 
 	// time unit may depend on data sets, e.g. in MovieLens, it is unix seconds
 	protected TimeUnit timeUnit;
@@ -95,23 +89,25 @@ public class DataDAO {
 	 *            path to data file
 	 * 
 	 * @param userIds
-	 *            user: {raw id, inner id} map
+	 *            user: {raw id, inner id} dictionary, null for a new dictionary of numeric ids
 	 * @param itemIds
-	 *            item: {raw id, inner id} map
+	 *            item: {raw id, inner id} dictionary, null for a new dictionary of numeric ids
 	 */
-	public DataDAO(String path, BiMap<String, Integer> userIds, BiMap<String, Integer> itemIds) {
+	public DataDAO(String path, IdDictionary userIds, IdDictionary itemIds) {
 		dataPath = path;
 
 		if (userIds == null)
-			this.userIds = HashBiMap.create();
+			this.userIds = new IntIdDictionary();
 		else
 			this.userIds = userIds;
 
 		if (itemIds == null)
-			this.itemIds = HashBiMap.create();
+			this.itemIds = new IntIdDictionary();
 		else
 			this.itemIds = itemIds;
 
+		isOwnIds = userIds == null && itemIds == null;
+
 		scaleDist = HashMultiset.create();
 
 		isItemAsUser = this.userIds == this.itemIds;
@@ -132,7 +128,7 @@ public class DataDAO {
 	 * Contructor for data DAO object
 	 * 
 	 */
-	public DataDAO(String path, BiMap<String, Integer> userIds) {
+	public DataDAO(String path, IdDictionary userIds) {
 		this(path, userIds, userIds);
 	}
 
@@ -178,17 +174,94 @@ public class DataDAO {
 
 		Logs.info(String.format("Dataset: %s", Strings.last(dataPath, 38)));
 
-		// Table {row-id, col-id, rate}
-		Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
-		// Table {row-id, col-id, timestamp}
-		Table<Integer, Integer, Long> timeTable = null;
-		// Map {col-id, multiple row-id}: used to fast build a rating matrix
-		Multimap<Integer, Integer> colMap = HashMultimap.create();
+		minTimestamp = Long.MAX_VALUE;
+		maxTimestamp = Long.MIN_VALUE;
+
+		// {row-id, col-id, rate} and {row-id, col-id, timestamp}
+		SparseMatrixBuilder[] entries = null;
+		String path = FileIO.getResource(dataPath);
+		if (path != null) {
+			RatingFileReader reader = new RatingFileReader(path, cols, binThold, timeUnit);
+			entries = reader.read(isHeadline(), userIds, itemIds, scaleDist);
+			if (entries != null) {
+				setHeadline(false);
+				minTimestamp = reader.getMinTimestamp();
+				maxTimestamp = reader.getMaxTimestamp();
+			} else {
+				Logs.debug("Dataset: reading the data file line by line");
+			}
+		}
+		if (entries == null) {
+			// ids that are not integers in canonical form are kept as strings
+			if (isOwnIds && userIds.size() == 0 && itemIds.size() == 0) {
+				userIds = new StringIdDictionary();
+				itemIds = new StringIdDictionary();
+			}
+			entries = readLines(cols, binThold);
+		}
+		SparseMatrixBuilder rates = entries[0], times = entries[1];
+
+		numRatings = scaleDist.size();
+		ratingScale = new ArrayList<>(scaleDist.elementSet());
+		Collections.sort(ratingScale);
+
+		int numRows = numUsers(), numCols = numItems();
+
+		// if min-rate = 0.0, shift upper a scale
+		double minRate = ratingScale.get(0).doubleValue();
+		double epsilon = minRate == 0.0 ? ratingScale.get(1).doubleValue() - minRate : 0;
+		if (epsilon > 0) {
+			// shift upper a scale
+			for (int i = 0, im = ratingScale.size(); i < im; i++) {
+				double val = ratingScale.get(i);
+				ratingScale.set(i, val + epsilon);
+			}
+		}
+
+		String dateRange = "";
+		if (cols.length >= 4)
+			dateRange = String.format(", Timestamps = {%s, %s}", Dates.toString(minTimestamp),
+					Dates.toString(maxTimestamp));
+
+		Logs.debug("With Specs: {Users, {}} = {{}, {}, {}}, Scale = {{}}{}", (isItemAsUser ? "Users, Links"
+				: "Items, Ratings"), numRows, numCols, numRatings, Strings.toString(ratingScale), dateRange);
+
+		// build rating matrix
+		rateMatrix = rates.build(numRows, numCols);
+
+		// shift the ratings of both the CRS and the CCS structure upper a scale
+		if (epsilon > 0) {
+			for (double[] data : new double[][] { rateMatrix.getData(), rateMatrix.getColumnData() })
+				for (int i = 0; i < data.length; i++)
+					data[i] += epsilon;
+		}
+
+		// the timestamps share the index structure of the ratings
+		if (times != null)
+			timeMatrix = times.build(rateMatrix);
+
+		return new SparseMatrix[] { rateMatrix, timeMatrix };
+	}
+
+	/**
+	 * Read data from the data file line by line, e.g. if the ids are not integers
+	 * 
+	 * @param cols
+	 *            the indexes of the relevant columns in the data file: {user, item, [rating, timestamp] (optional)}
+	 * @param binThold
+	 *            the threshold to binarize a rating, or a negative value to keep the original rating value
+	 * @return builders of the {user, item, rate} and the {user, item, timestamp} matrices, the latter being null if
+	 *         the file has no timestamps
+	 * @throws Exception on file I/O and number formatting errors
+	 */
+	private SparseMatrixBuilder[] readLines(int[] cols, double binThold) throws Exception {
+		// {row-id, col-id, rate}
+		SparseMatrixBuilder rates = new SparseMatrixBuilder();
+		// {row-id, col-id, timestamp}
+		SparseMatrixBuilder times = null;
 
 		BufferedReader br = FileIO.getReader(dataPath);
 		String line = null;
-		minTimestamp = Long.MAX_VALUE;
-		maxTimestamp = Long.MIN_VALUE;
 		while ((line = br.readLine()) != null) {
 			if (isHeadline()) {
 				setHeadline(false);
@@ -213,19 +286,15 @@ public class DataDAO {
 			scaleDist.add(rate);
 
 			// inner id starting from 0
-			int row = userIds.containsKey(user) ? userIds.get(user) : userIds.size();
-			userIds.put(user, row);
-
-			int col = itemIds.containsKey(item) ? itemIds.get(item) : itemIds.size();
-			itemIds.put(item, col);
+			int row = userIds.add(user);
+			int col = itemIds.add(item);
 
-			dataTable.put(row, col, rate);
-			colMap.put(col, row);
+			rates.add(row, col, rate);
 
 			// record rating's issuing time
 			if (cols.length >= 4 && data.length >= 4) {
-				if (timeTable == null)
-					timeTable = HashBasedTable.create();
+				if (times == null)
+					times = new SparseMatrixBuilder();
 
 				// convert to million-seconds
 				long mms = 0L;
@@ -242,55 +311,13 @@ public class DataDAO {
 				if (maxTimestamp < timestamp)
 					maxTimestamp = timestamp;
 
-				timeTable.put(row, col, timestamp);
+				times.add(row, col, timestamp);
 			}
 
 		}
 		br.close();
 
-		numRatings = scaleDist.size();
-		ratingScale = new ArrayList<>(scaleDist.elementSet());
-		Collections.sort(ratingScale);
-
-		int numRows = numUsers(), numCols = numItems();
-
-		// if min-rate = 0.0, shift upper a scale
-		double minRate = ratingScale.get(0).doubleValue();
-		double epsilon = minRate == 0.0 ? ratingScale.get(1).doubleValue() - minRate : 0;
-		if (epsilon > 0) {
-			// shift upper a scale
-			for (int i = 0, im = ratingScale.size(); i < im; i++) {
-				double val = ratingScale.get(i);
-				ratingScale.set(i, val + epsilon);
-			}
-			// update data table
-			for (int row = 0; row < numRows; row++) {
-				for (int col = 0; col < numCols; col++) {
-					if (dataTable.contains(row, col))
-						dataTable.put(row, col, dataTable.get(row, col) + epsilon);
-				}
-			}
-		}
-
-		String dateRange = "";
-		if (cols.length >= 4)
-			dateRange = String.format(", Timestamps = {%s, %s}", Dates.toString(minTimestamp),
-					Dates.toString(maxTimestamp));
-
-		Logs.debug("With Specs: {Users, {}} = {{}, {}, {}}, Scale = {{}}{}", (isItemAsUser ? "Users, Links"
-				: "Items, Ratings"), numRows, numCols, numRatings, Strings.toString(ratingScale), dateRange);
-
-		// build rating matrix
-		rateMatrix = new SparseMatrix(numRows, numCols, dataTable, colMap);
-
-		if (timeTable != null)
-			timeMatrix = new SparseMatrix(numRows, numCols, timeTable, colMap);
-
-		// release memory of data table
-		dataTable = null;
-		timeTable = null;
-
-		return new SparseMatrix[] { rateMatrix, timeMatrix };
+		return new SparseMatrixBuilder[] { rates, times };
 	}
 
 	/**
@@ -310,30 +337,20 @@ public class DataDAO {
 	 */
 	public SparseMatrix[] readData(List<Rating> ratingsList, List<Integer> userList,
 			List<Integer> itemList, double binThold) throws Exception {
-		// Table {row-id, col-id, rate}
-		Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
-		// Table {row-id, col-id, timestamp}
-		Table<Integer, Integer, Long> timeTable = HashBasedTable.create();
-		// Map {col-id, multiple row-id}: used to fast build a rating matrix
-		Multimap<Integer, Integer> colMap = HashMultimap.create();
+		// {row-id, col-id, rate}
+		SparseMatrixBuilder rates = new SparseMatrixBuilder(ratingsList.size());
+		// {row-id, col-id, timestamp}
+		SparseMatrixBuilder times = new SparseMatrixBuilder(ratingsList.size());
 		
 		// create inner userIds and itemIds
-		for (int user : userList){
-			String userStr = Integer.toString(user);
-			int row = userIds.containsKey(user) ? userIds.get(user) : userIds.size();
-			userIds.put(userStr, row);
-		}
-		for (int item : itemList){
-			String itemStr = Integer.toString(item);
-			int col = itemIds.containsKey(item) ? itemIds.get(item) : itemIds.size();
-			itemIds.put(itemStr, col);
-		}
+		for (int user : userList)
+			userIds.add(user);
+		for (int item : itemList)
+			itemIds.add(item);
 
 		minTimestamp = Long.MAX_VALUE;
 		maxTimestamp = Long.MIN_VALUE;
 		for (Rating rating : ratingsList) {
-			String user = Integer.toString(rating.getUserId());
-			String item = Integer.toString(rating.getItemId());
 			double rate = rating.getRating();
 			long timestamp = timeUnit.toMillis(rating.getTimestamp());
 
@@ -344,20 +361,16 @@ public class DataDAO {
 			scaleDist.add(rate);
 
 			// inner id starting from 0
-			int row = userIds.containsKey(user) ? userIds.get(user) : userIds.size();
-			userIds.put(user, row);
+			int row = userIds.add(rating.getUserId());
+			int col = itemIds.add(rating.getItemId());
 
-			int col = itemIds.containsKey(item) ? itemIds.get(item) : itemIds.size();
-			itemIds.put(item, col);
-
-			dataTable.put(row, col, rate);
-			colMap.put(col, row);
+			rates.add(row, col, rate);
 
 			if (minTimestamp > timestamp)
 				minTimestamp = timestamp;
 			if (maxTimestamp < timestamp)
 				maxTimestamp = timestamp;
-			timeTable.put(row, col, timestamp);
+			times.add(row, col, timestamp);
 		}
 
 		numRatings = scaleDist.size();
@@ -375,13 +388,6 @@ public class DataDAO {
 				double val = ratingScale.get(i);
 				ratingScale.set(i, val + epsilon);
 			}
-			// update data table
-			for (int row = 0; row < numRows; row++) {
-				for (int col = 0; col < numCols; col++) {
-					if (dataTable.contains(row, col))
-						dataTable.put(row, col, dataTable.get(row, col) + epsilon);
-				}
-			}
 		}
 
 		String dateRange = "";
@@ -392,14 +398,18 @@ public class DataDAO {
 				: "Items, Ratings"), numRows, numCols, numRatings, Strings.toString(ratingScale), dateRange);
 
 		// build rating matrix
-		rateMatrix = new SparseMatrix(numRows, numCols, dataTable, colMap);
+		rateMatrix = rates.build(numRows, numCols);
 
-		if (timeTable != null)
-			timeMatrix = new SparseMatrix(numRows, numCols, timeTable, colMap);
+		// shift the ratings of both the CRS and the CCS structure upper a scale
+		if (epsilon > 0) {
+			for (double[] data : new double[][] { rateMatrix.getData(), rateMatrix.getColumnData() })
+				for (int i = 0; i < data.length; i++)
+					data[i] += epsilon;
+		}
 
-		// release memory of data table
-		dataTable = null;
-		timeTable = null;
+		// the timestamps share the index structure of the ratings
+		if (times != null)
+			timeMatrix = times.build(rateMatrix);
 
 		return new SparseMatrix[] { rateMatrix, timeMatrix };
 	}
@@ -641,9 +651,14 @@ public class DataDAO {
 	 * @param rawId
 	 *            raw user id as String
 	 * @return inner user id as int
+	 * @throws IllegalArgumentException
+	 *             if the user is unknown
 	 */
 	public int getUserId(String rawId) {
-		return userIds.get(rawId);
+		int innerId = userIds.get(rawId);
+		if (innerId < 0)
+			throw new IllegalArgumentException("Unknown user " + rawId);
+		return innerId;
 	}
 
 	/**
@@ -652,20 +667,21 @@ public class DataDAO {
 	 * @return raw user id as String
 	 */
 	public String getUserId(int innerId) {
-
-		if (idUsers == null)
-			idUsers = userIds.inverse();
-
-		return idUsers.get(innerId);
+		return userIds.getRawId(innerId);
 	}
 
 	/**
 	 * @param rawId
 	 *            raw item id as String
 	 * @return inner item id as int
+	 * @throws IllegalArgumentException
+	 *             if the item is unknown
 	 */
 	public int getItemId(String rawId) {
-		return itemIds.get(rawId);
+		int innerId = itemIds.get(rawId);
+		if (innerId < 0)
+			throw new IllegalArgumentException("Unknown item " + rawId);
+		return innerId;
 	}
 
 	/**
@@ -674,11 +690,43 @@ public class DataDAO {
 	 * @return raw item id as String
 	 */
 	public String getItemId(int innerId) {
+		return itemIds.getRawId(innerId);
+	}
+
+	/**
+	 * @param rawId
+	 *            numeric raw user id
+	 * @return inner user id, or -1 if the user is unknown
+	 */
+	public int getInnerUserId(int rawId) {
+		return userIds.get(rawId);
+	}
+
+	/**
+	 * @param innerId
+	 *            inner user id
+	 * @return numeric raw user id
+	 */
+	public int getNumericUserId(int innerId) {
+		return userIds.getNumericRawId(innerId);
+	}
 
-		if (idItems == null)
-			idItems = itemIds.inverse();
+	/**
+	 * @param rawId
+	 *            numeric raw item id
+	 * @return inner item id, or -1 if the item is unknown
+	 */
+	public int getInnerItemId(int rawId) {
+		return itemIds.get(rawId);
+	}
 
-		return idItems.get(innerId);
+	/**
+	 * @param innerId
+	 *            inner item id
+	 * @return numeric raw item id
+	 */
+	public int getNumericItemId(int innerId) {
+		return itemIds.getNumericRawId(innerId);
 	}
 
 	/**
@@ -695,6 +743,13 @@ public class DataDAO {
 		return rateMatrix;
 	}
 
+	/**
+	 * @return the time matrix, or null if the data has no timestamps
+	 */
+	public SparseMatrix getTimeMatrix() {
+		return timeMatrix;
+	}
+
 	/**
 	 * @return whether "items" are users, useful for social reltions
 	 */
@@ -712,14 +767,14 @@ public class DataDAO {
 	/**
 	 * @return user {rawid, inner id} mappings
 	 */
-	public BiMap<String, Integer> getUserIds() {
+	public IdDictionary getUserIds() {
 		return userIds;
 	}
 
 	/**
 	 * @return item {rawid, inner id} mappings
 	 */
-	public BiMap<String, Integer> getItemIds() {
+	public IdDictionary getItemIds() {
 		return itemIds;
 	}
 
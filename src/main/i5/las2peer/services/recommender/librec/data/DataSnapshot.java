@@ -0,0 +1,560 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Table;
+
+/**
+ * Binary snapshot of a data set, i.e. the rating and time matrices and the user and item ids of a {@link DataDAO}
+ * and the user and item tag tables, such that a data set can be reloaded without parsing the rating and tag data
+ * again.
+ *
+ * A snapshot starts with a magic number, the version of the format and a source string describing the data it has
+ * been written from, e.g. the data files and their modification times; a snapshot whose source differs from the
+ * current data is outdated. The CRS and CCS arrays of the matrices and the tag timestamps are stored as contiguous
+ * columns, which are read back through memory-mapped windows of the file with bulk copies into the arrays. A time
+ * matrix sharing the index structure of the rating matrix is stored as its values only.
+ */
+public class DataSnapshot {
+
+	// "LRDS", followed by the version of the format
+	private static final int MAGIC = 0x4C524453;
+	private static final int VERSION = 3;
+
+	// maximum size of a mapped window of the file
+	private static final int WINDOW_SIZE = 1 << 30;
+
+	private final String source;
+	private final DataDAO dao;
+	private final Table<Integer, Integer, Set<Long>> userTagTable, itemTagTable;
+
+	private DataSnapshot(String source, DataDAO dao, Table<Integer, Integer, Set<Long>> userTagTable,
+			Table<Integer, Integer, Set<Long>> itemTagTable) {
+		this.source = source;
+		this.dao = dao;
+		this.userTagTable = userTagTable;
+		this.itemTagTable = itemTagTable;
+	}
+
+	/**
+	 * @return description of the data the snapshot has been written from
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return data DAO holding the rating and time matrices and the user and item ids
+	 */
+	public DataDAO getDao() {
+		return dao;
+	}
+
+	/**
+	 * @return {user, tag, timestamps} table, or null if the snapshot has no tag data
+	 */
+	public Table<Integer, Integer, Set<Long>> getUserTagTable() {
+		return userTagTable;
+	}
+
+	/**
+	 * @return {item, tag, timestamps} table, or null if the snapshot has no tag data
+	 */
+	public Table<Integer, Integer, Set<Long>> getItemTagTable() {
+		return itemTagTable;
+	}
+
+	/**
+	 * Writes a snapshot of a data set. The snapshot is written to a temporary file first, which then replaces the file
+	 * at the given path, such that an existing snapshot is never left partially written.
+	 *
+	 * @param path
+	 *            snapshot file location
+	 * @param source
+	 *            description of the data, e.g. the data files and their modification times
+	 * @param dao
+	 *            data DAO whose data has been read
+	 * @param userTagTable
+	 *            {user, tag, timestamps} table, or null if there is no tag data
+	 * @param itemTagTable
+	 *            {item, tag, timestamps} table, or null if there is no tag data
+	 * @throws Exception
+	 *             on file I/O errors
+	 */
+	public static void write(String path, String source, DataDAO dao, Table<Integer, Integer, Set<Long>> userTagTable,
+			Table<Integer, Integer, Set<Long>> itemTagTable) throws Exception {
+		Path file = Paths.get(path).toAbsolutePath();
+		Path temp = Paths.get(file + ".tmp");
+		Files.createDirectories(file.getParent());
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output out = new Output(channel);
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putString(source);
+
+			out.putString(dao.dataPath);
+			out.putString(dao.timeUnit.name());
+			out.putLong(dao.minTimestamp);
+			out.putLong(dao.maxTimestamp);
+			out.putInt(dao.numRatings);
+			out.putDoubles(toArray(dao.ratingScale));
+
+			// distinct ratings and their counts
+			out.putInt(dao.scaleDist.elementSet().size());
+			for (Multiset.Entry<Double> entry : dao.scaleDist.entrySet()) {
+				out.putDouble(entry.getElement());
+				out.putInt(entry.getCount());
+			}
+
+			out.putBoolean(dao.isItemAsUser);
+			putIds(out, dao.userIds);
+			if (!dao.isItemAsUser)
+				putIds(out, dao.itemIds);
+
+			putMatrix(out, dao.rateMatrix);
+			out.putBoolean(dao.timeMatrix != null);
+			if (dao.timeMatrix != null)
+				putMatrix(out, dao.timeMatrix, dao.rateMatrix);
+
+			out.putBoolean(userTagTable != null && itemTagTable != null);
+			if (userTagTable != null && itemTagTable != null) {
+				putTagTable(out, userTagTable);
+				putTagTable(out, itemTagTable);
+			}
+			out.flush();
+		}
+
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @param path
+	 *            snapshot file location
+	 * @return description of the data the snapshot has been written from, or null if there is no snapshot of the
+	 *         current version at the given path
+	 * @throws Exception
+	 *             on file I/O errors
+	 */
+	public static String readSource(String path) throws Exception {
+		Path file = Paths.get(path);
+		if (!Files.isRegularFile(file))
+			return null;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Input in = new Input(channel);
+			if (channel.size() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION)
+				return null;
+			return in.getString();
+		}
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #write(String, String, DataDAO, Table, Table)}
+	 *
+	 * @param path
+	 *            snapshot file location
+	 * @return snapshot
+	 * @throws Exception
+	 *             on file I/O errors and if the file is not a snapshot of the current version
+	 */
+	public static DataSnapshot read(String path) throws Exception {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			Input in = new Input(channel);
+			if (channel.size() < 8 || in.getInt() != MAGIC)
+				throw new Exception("Not a data snapshot: " + path);
+			int version = in.getInt();
+			if (version != VERSION)
+				throw new Exception("Unsupported data snapshot version " + version + ": " + path);
+			String source = in.getString();
+
+			String dataPath = in.getString();
+			TimeUnit timeUnit = TimeUnit.valueOf(in.getString());
+			long minTimestamp = in.getLong();
+			long maxTimestamp = in.getLong();
+			int numRatings = in.getInt();
+			List<Double> ratingScale = toList(in.getDoubles());
+
+			Multiset<Double> scaleDist = HashMultiset.create();
+			for (int e = 0, em = in.getInt(); e < em; e++) {
+				double rating = in.getDouble();
+				scaleDist.add(rating, in.getInt());
+			}
+
+			boolean isItemAsUser = in.getBoolean();
+			IdDictionary userIds = getIds(in);
+			IdDictionary itemIds = isItemAsUser ? userIds : getIds(in);
+
+			DataDAO dao = new DataDAO(dataPath, userIds, itemIds);
+			dao.setTimeUnit(timeUnit);
+			dao.minTimestamp = minTimestamp;
+			dao.maxTimestamp = maxTimestamp;
+			dao.numRatings = numRatings;
+			dao.ratingScale = ratingScale;
+			dao.scaleDist = scaleDist;
+			dao.rateMatrix = getMatrix(in);
+			if (in.getBoolean())
+				dao.timeMatrix = getMatrix(in, dao.rateMatrix);
+
+			Table<Integer, Integer, Set<Long>> userTagTable = null, itemTagTable = null;
+			if (in.getBoolean()) {
+				userTagTable = getTagTable(in);
+				itemTagTable = getTagTable(in);
+			}
+
+			return new DataSnapshot(source, dao, userTagTable, itemTagTable);
+		}
+	}
+
+	/**
+	 * Writes raw ids ordered by their inner ids, as an int column if the ids are numeric
+	 */
+	private static void putIds(Output out, IdDictionary ids) throws Exception {
+		int size = ids.size();
+		boolean isNumeric = ids instanceof IntIdDictionary;
+		out.putInt(size);
+		out.putBoolean(isNumeric);
+		if (isNumeric) {
+			int[] rawIds = new int[size];
+			for (int id = 0; id < size; id++)
+				rawIds[id] = ids.getNumericRawId(id);
+			out.putInts(rawIds, size);
+		} else {
+			for (int id = 0; id < size; id++)
+				out.putString(ids.getRawId(id));
+		}
+	}
+
+	private static IdDictionary getIds(Input in) throws Exception {
+		int size = in.getInt();
+		if (in.getBoolean()) {
+			IntIdDictionary ids = new IntIdDictionary(size);
+			for (int rawId : in.getInts(new int[size]))
+				ids.add(rawId);
+			return ids;
+		}
+		IdDictionary ids = new StringIdDictionary();
+		for (int id = 0; id < size; id++)
+			ids.add(in.getString());
+		return ids;
+	}
+
+	/**
+	 * Writes only the values of a matrix that shares the index structure of another matrix written before
+	 */
+	private static void putMatrix(Output out, SparseMatrix matrix, SparseMatrix index) throws Exception {
+		boolean isShared = matrix.sharesIndex(index);
+		out.putBoolean(isShared);
+		if (!isShared) {
+			putMatrix(out, matrix);
+			return;
+		}
+		int size = matrix.getData().length;
+		out.putDoubles(matrix.getData(), size);
+		out.putDoubles(matrix.getColumnData(), size);
+	}
+
+	private static void putMatrix(Output out, SparseMatrix matrix) throws Exception {
+		int numRows = matrix.numRows(), numColumns = matrix.numColumns();
+		int[] rowPtr = matrix.getRowPointers(), colPtr = matrix.getColumnPointers();
+		int size = rowPtr[numRows];
+
+		out.putInt(numRows);
+		out.putInt(numColumns);
+		out.putInt(size);
+		out.putInts(rowPtr, numRows + 1);
+		out.putInts(matrix.getColumnIndices(), size);
+		out.putDoubles(matrix.getData(), size);
+		out.putInts(colPtr, numColumns + 1);
+		out.putInts(matrix.getRowIndices(), size);
+		out.putDoubles(matrix.getColumnData(), size);
+	}
+
+	private static SparseMatrix getMatrix(Input in, SparseMatrix index) throws Exception {
+		if (!in.getBoolean())
+			return getMatrix(in);
+		int size = index.getData().length;
+		double[] rowData = in.getDoubles(new double[size]);
+		double[] colData = in.getDoubles(new double[size]);
+		return new SparseMatrix(index.numRows(), index.numColumns(), rowData, index.getRowPointers(),
+				index.getColumnIndices(), colData, index.getColumnPointers(), index.getRowIndices());
+	}
+
+	private static SparseMatrix getMatrix(Input in) throws Exception {
+		int numRows = in.getInt();
+		int numColumns = in.getInt();
+		int size = in.getInt();
+
+		int[] rowPtr = in.getInts(new int[numRows + 1]);
+		int[] colInd = in.getInts(new int[size]);
+		double[] rowData = in.getDoubles(new double[size]);
+		int[] colPtr = in.getInts(new int[numColumns + 1]);
+		int[] rowInd = in.getInts(new int[size]);
+		double[] colData = in.getDoubles(new double[size]);
+
+		return new SparseMatrix(numRows, numColumns, rowData, rowPtr, colInd, colData, colPtr, rowInd);
+	}
+
+	/**
+	 * Writes a tag table as columns of rows, tags, pointers to the timestamps of each cell and timestamps
+	 */
+	private static void putTagTable(Output out, Table<Integer, Integer, Set<Long>> table) throws Exception {
+		int size = table.size();
+		int[] rows = new int[size], tags = new int[size], ptr = new int[size + 1];
+		List<Long> timestamps = new ArrayList<>();
+		int c = 0;
+		for (Table.Cell<Integer, Integer, Set<Long>> cell : table.cellSet()) {
+			rows[c] = cell.getRowKey();
+			tags[c] = cell.getColumnKey();
+			timestamps.addAll(cell.getValue());
+			ptr[++c] = timestamps.size();
+		}
+		long[] times = new long[timestamps.size()];
+		for (int t = 0; t < times.length; t++)
+			times[t] = timestamps.get(t);
+
+		out.putInt(size);
+		out.putInts(rows, size);
+		out.putInts(tags, size);
+		out.putInts(ptr, size + 1);
+		out.putInt(times.length);
+		out.putLongs(times, times.length);
+	}
+
+	private static Table<Integer, Integer, Set<Long>> getTagTable(Input in) throws Exception {
+		int size = in.getInt();
+		int[] rows = in.getInts(new int[size]);
+		int[] tags = in.getInts(new int[size]);
+		int[] ptr = in.getInts(new int[size + 1]);
+		long[] times = in.getLongs(new long[in.getInt()]);
+
+		Table<Integer, Integer, Set<Long>> table = HashBasedTable.create();
+		for (int c = 0; c < size; c++) {
+			Set<Long> timestamps = new HashSet<>();
+			for (int t = ptr[c]; t < ptr[c + 1]; t++)
+				timestamps.add(times[t]);
+			table.put(rows[c], tags[c], timestamps);
+		}
+		return table;
+	}
+
+	private static double[] toArray(List<Double> values) {
+		double[] array = new double[values.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = values.get(i);
+		return array;
+	}
+
+	private static List<Double> toList(double[] values) {
+		List<Double> list = new ArrayList<>(values.length);
+		for (double value : values)
+			list.add(value);
+		return list;
+	}
+
+	/**
+	 * Buffered writer of the values of a snapshot to a file channel
+	 */
+	private static class Output {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putBoolean(boolean value) throws Exception {
+			ensure(1);
+			buffer.put((byte) (value ? 1 : 0));
+		}
+
+		void putInt(int value) throws Exception {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		void putLong(long value) throws Exception {
+			ensure(8);
+			buffer.putLong(value);
+		}
+
+		void putDouble(double value) throws Exception {
+			ensure(8);
+			buffer.putDouble(value);
+		}
+
+		void putString(String value) throws Exception {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			for (int off = 0; off < bytes.length;) {
+				ensure(1);
+				int n = Math.min(buffer.remaining(), bytes.length - off);
+				buffer.put(bytes, off, n);
+				off += n;
+			}
+		}
+
+		void putDoubles(double[] values) throws Exception {
+			putInt(values.length);
+			putDoubles(values, values.length);
+		}
+
+		void putInts(int[] values, int length) throws Exception {
+			for (int off = 0; off < length;) {
+				ensure(4);
+				int n = Math.min(buffer.remaining() / 4, length - off);
+				buffer.asIntBuffer().put(values, off, n);
+				buffer.position(buffer.position() + 4 * n);
+				off += n;
+			}
+		}
+
+		void putLongs(long[] values, int length) throws Exception {
+			for (int off = 0; off < length;) {
+				ensure(8);
+				int n = Math.min(buffer.remaining() / 8, length - off);
+				buffer.asLongBuffer().put(values, off, n);
+				buffer.position(buffer.position() + 8 * n);
+				off += n;
+			}
+		}
+
+		void putDoubles(double[] values, int length) throws Exception {
+			for (int off = 0; off < length;) {
+				ensure(8);
+				int n = Math.min(buffer.remaining() / 8, length - off);
+				buffer.asDoubleBuffer().put(values, off, n);
+				buffer.position(buffer.position() + 8 * n);
+				off += n;
+			}
+		}
+
+		private void ensure(int bytes) throws Exception {
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+
+		void flush() throws Exception {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Reader of the values of a snapshot through memory-mapped windows of a file channel
+	 */
+	private static class Input {
+
+		private final FileChannel channel;
+		private final long size;
+
+		// current window and its position in the file
+		private ByteBuffer window = ByteBuffer.allocate(0);
+		private long windowStart;
+
+		Input(FileChannel channel) throws Exception {
+			this.channel = channel;
+			this.size = channel.size();
+		}
+
+		boolean getBoolean() throws Exception {
+			ensure(1);
+			return window.get() != 0;
+		}
+
+		int getInt() throws Exception {
+			ensure(4);
+			return window.getInt();
+		}
+
+		long getLong() throws Exception {
+			ensure(8);
+			return window.getLong();
+		}
+
+		double getDouble() throws Exception {
+			ensure(8);
+			return window.getDouble();
+		}
+
+		String getString() throws Exception {
+			int length = getInt();
+			ensure(length);
+			byte[] bytes = new byte[length];
+			window.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		double[] getDoubles() throws Exception {
+			return getDoubles(new double[getInt()]);
+		}
+
+		int[] getInts(int[] values) throws Exception {
+			for (int off = 0; off < values.length;) {
+				ensure(4);
+				int n = Math.min(window.remaining() / 4, values.length - off);
+				window.asIntBuffer().get(values, off, n);
+				window.position(window.position() + 4 * n);
+				off += n;
+			}
+			return values;
+		}
+
+		long[] getLongs(long[] values) throws Exception {
+			for (int off = 0; off < values.length;) {
+				ensure(8);
+				int n = Math.min(window.remaining() / 8, values.length - off);
+				window.asLongBuffer().get(values, off, n);
+				window.position(window.position() + 8 * n);
+				off += n;
+			}
+			return values;
+		}
+
+		double[] getDoubles(double[] values) throws Exception {
+			for (int off = 0; off < values.length;) {
+				ensure(8);
+				int n = Math.min(window.remaining() / 8, values.length - off);
+				window.asDoubleBuffer().get(values, off, n);
+				window.position(window.position() + 8 * n);
+				off += n;
+			}
+			return values;
+		}
+
+		/**
+		 * Maps the next window of the file if the current window has less than the given number of bytes left
+		 */
+		private void ensure(int bytes) throws Exception {
+			if (window.remaining() >= bytes)
+				return;
+			long position = windowStart + window.position();
+			if (position + bytes > size)
+				throw new Exception("Unexpected end of data snapshot at position " + position);
+			windowStart = position;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+					Math.min(Math.max(WINDOW_SIZE, bytes), size - position)).order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+}
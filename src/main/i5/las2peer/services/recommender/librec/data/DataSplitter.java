@@ -19,14 +19,10 @@
 package i5.las2peer.services.recommender.librec.data;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
-
 import i5.las2peer.services.recommender.librec.util.Debug;
 import i5.las2peer.services.recommender.librec.util.FileIO;
 import i5.las2peer.services.recommender.librec.util.Lists;
@@ -46,8 +42,8 @@ public class DataSplitter {
 	// [row-id, col-id, rate]
 	private SparseMatrix rateMatrix;
 
-	// [row-id, col-id, fold-id]
-	private SparseMatrix assignMatrix;
+	// fold-id of each rating, by its position in the CRS arrays of the rate matrix
+	private int[] assignments;
 
 	// number of folds
 	private int numFold;
@@ -85,8 +81,6 @@ public class DataSplitter {
 	private void splitFolds(int kfold) {
 		assert kfold > 0;
 
-		assignMatrix = new SparseMatrix(rateMatrix);
-
 		int numRates = rateMatrix.getData().length;
 		numFold = kfold > numRates ? numRates : kfold;
 
@@ -102,17 +96,8 @@ public class DataSplitter {
 
 		Sortor.quickSort(rdm, fold, 0, numRates - 1, true);
 
-		int[] row_ptr = rateMatrix.getRowPointers();
-		int[] col_idx = rateMatrix.getColumnIndices();
-
-		int f = 0;
-		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
-			for (int idx = row_ptr[u], end = row_ptr[u + 1]; idx < end; idx++) {
-				int j = col_idx[idx];
-				// if randomly put an int 1-5 to entry (u, j), we cannot make sure equal size for each fold
-				assignMatrix.set(u, j, fold[f++]);
-			}
-		}
+		// if randomly put an int 1-5 to entry (u, j), we cannot make sure equal size for each fold
+		assignments = fold;
 	}
 
 	/**
@@ -126,25 +111,23 @@ public class DataSplitter {
 
 		assert (ratio > 0 && ratio < 1);
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
 
-			SparseVector uv = rateMatrix.row(u);
-			for (int j : uv.getIndex()) {
+			IndexView uv = rateMatrix.rowView(u);
+			for (int p = 0; p < uv.size(); p++) {
 
 				double rdm = Math.random();
 				if (rdm < ratio)
-					testMatrix.set(u, j, 0.0);
+					train.add(u, uv.get(p), uv.value(p));
 				else
-					trainMatrix.set(u, j, 0.0);
+					test.add(u, uv.get(p), uv.value(p));
 			}
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -177,8 +160,7 @@ public class DataSplitter {
 		}
 		Collections.sort(rcs);
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		int trainSize = (int) (rcs.size() * ratio);
 		for (i = 0; i < rcs.size(); i++) {
@@ -187,17 +169,16 @@ public class DataSplitter {
 			j = rc.getItem();
 
 			if (i < trainSize)
-				testMatrix.set(u, j, 0.0);
+				train.add(u, j, rateMatrix.get(u, j));
 			else
-				trainMatrix.set(u, j, 0.0);
+				test.add(u, j, rateMatrix.get(u, j));
 		}
 
 		// release memory
 		rcs = null;
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -218,8 +199,7 @@ public class DataSplitter {
 
 		assert (ratio > 0 && ratio < 1);
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int user = 0, um = rateMatrix.numRows; user < um; user++) {
 			List<Integer> unsortedItems = rateMatrix.getColumns(user);
@@ -238,15 +218,14 @@ public class DataSplitter {
 				int j = rc.getItem();
 
 				if (i < trainSize)
-					testMatrix.set(u, j, 0.0);
+					train.add(u, j, rateMatrix.get(u, j));
 				else
-					trainMatrix.set(u, j, 0.0);
+					test.add(u, j, rateMatrix.get(u, j));
 			}
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -267,8 +246,7 @@ public class DataSplitter {
 
 		assert (ratio > 0 && ratio < 1);
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int item = 0, im = rateMatrix.numColumns; item < im; item++) {
 			List<Integer> unsortedUsers = rateMatrix.getRows(item);
@@ -287,15 +265,14 @@ public class DataSplitter {
 				int j = rc.getItem();
 
 				if (i < trainSize)
-					testMatrix.set(u, j, 0.0);
+					train.add(u, j, rateMatrix.get(u, j));
 				else
-					trainMatrix.set(u, j, 0.0);
+					test.add(u, j, rateMatrix.get(u, j));
 			}
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -316,40 +293,31 @@ public class DataSplitter {
 
 		assert (trainRatio > 0 && validRatio > 0 && (trainRatio + validRatio) < 1);
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix validMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), valid = new SparseMatrixBuilder(),
+				test = new SparseMatrixBuilder();
 
 		double sum = trainRatio + validRatio;
 
 		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
 
-			SparseVector uv = rateMatrix.row(u);
-			for (int j : uv.getIndex()) {
+			IndexView uv = rateMatrix.rowView(u);
+			for (int p = 0; p < uv.size(); p++) {
 
 				double rdm = Math.random();
 				if (rdm < trainRatio) {
 					// for training
-					testMatrix.set(u, j, 0);
-					validMatrix.set(u, j, 0);
+					train.add(u, uv.get(p), uv.value(p));
 				} else if (rdm < sum) {
 					// for validation
-					trainMatrix.set(u, j, 0);
-					testMatrix.set(u, j, 0);
+					valid.add(u, uv.get(p), uv.value(p));
 				} else {
 					// for test
-					trainMatrix.set(u, j, 0);
-					validMatrix.set(u, j, 0);
+					test.add(u, uv.get(p), uv.value(p));
 				}
 			}
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(validMatrix);
-		SparseMatrix.reshape(testMatrix);
-
-		return new SparseMatrix[] { trainMatrix, validMatrix, testMatrix };
+		return new SparseMatrix[] { build(train), build(valid), build(test) };
 	}
 
 	/*
@@ -359,11 +327,7 @@ public class DataSplitter {
 	 */
 	public SparseMatrix[] getLOOByUser(boolean isByDate, SparseMatrix timestamps) throws Exception {
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-
-		// for building test matrix
-		Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
-		Multimap<Integer, Integer> colMap = HashMultimap.create();
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
 
@@ -385,17 +349,18 @@ public class DataSplitter {
 				i = rcs.get(rcs.size() - 1).getItem(); // most recent item
 			}
 
-			trainMatrix.set(u, i, 0); // remove from training
-
-			dataTable.put(u, i, rateMatrix.get(u, i));
-			colMap.put(i, u);
+			// the selected rating is used for testing, the others for training
+			IndexView uv = rateMatrix.rowView(u);
+			for (int p = 0; p < uv.size(); p++) {
+				if (uv.get(p) == i)
+					test.add(u, i, uv.value(p));
+				else
+					train.add(u, uv.get(p), uv.value(p));
+			}
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-
-		// build test matrix
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix.numRows, rateMatrix.numColumns, dataTable, colMap);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -409,11 +374,7 @@ public class DataSplitter {
 	 */
 	public SparseMatrix[] getLOOByItem(boolean isByDate, SparseMatrix timestamps) throws Exception {
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-
-		// for building test matrix
-		Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
-		Multimap<Integer, Integer> colMap = HashMultimap.create();
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int i = 0, im = rateMatrix.numColumns(); i < im; i++) {
 
@@ -435,17 +396,18 @@ public class DataSplitter {
 				u = rcs.get(rcs.size() - 1).getUser(); // most recent rating user
 			}
 
-			trainMatrix.set(u, i, 0); // remove from training
-
-			dataTable.put(u, i, rateMatrix.get(u, i));
-			colMap.put(i, u);
+			// the selected rating is used for testing, the others for training
+			IndexView iv = rateMatrix.columnView(i);
+			for (int p = 0; p < iv.size(); p++) {
+				if (iv.get(p) == u)
+					test.add(u, i, iv.value(p));
+				else
+					train.add(iv.get(p), i, iv.value(p));
+			}
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-
-		// build test matrix
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix.numRows, rateMatrix.numColumns, dataTable, colMap);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -461,12 +423,11 @@ public class DataSplitter {
 
 		assert numGiven > 0;
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
 
-			List<Integer> items = rateMatrix.getColumns(u);
+			IndexView items = rateMatrix.rowView(u);
 			int numRated = items.size();
 
 			if (numRated > numGiven) {
@@ -477,24 +438,23 @@ public class DataSplitter {
 				for (int i = 0, j = 0; j < numRated; j++) {
 					if (i < givenIndex.length && givenIndex[i] == j) {
 						// for training
-						testMatrix.set(u, items.get(j), 0.0);
+						train.add(u, items.get(j), items.value(j));
 						i++;
 					} else {
 						// for testing
-						trainMatrix.set(u, items.get(j), 0.0);
+						test.add(u, items.get(j), items.value(j));
 					}
 				}
 			} else {
 				// all ratings are used for training
-				for (int j : items)
-					testMatrix.set(u, j, 0.0);
+				for (int j = 0; j < numRated; j++)
+					train.add(u, items.get(j), items.value(j));
 			}
 
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -510,8 +470,7 @@ public class DataSplitter {
 
 		assert numGiven > 0;
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
 
@@ -529,15 +488,14 @@ public class DataSplitter {
 				int j = rc.getItem();
 
 				if (i < numGiven)
-					testMatrix.set(u, j, 0.0);
+					train.add(u, j, rateMatrix.get(u, j));
 				else
-					trainMatrix.set(u, j, 0.0);
+					test.add(u, j, rateMatrix.get(u, j));
 			}
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -553,8 +511,7 @@ public class DataSplitter {
 
 		assert numGiven > 0;
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int j = 0, jm = rateMatrix.numRows(); j < jm; j++) {
 
@@ -572,15 +529,14 @@ public class DataSplitter {
 				int u = rc.getUser();
 
 				if (i < numGiven)
-					testMatrix.set(u, j, 0.0);
+					train.add(u, j, rateMatrix.get(u, j));
 				else
-					trainMatrix.set(u, j, 0.0);
+					test.add(u, j, rateMatrix.get(u, j));
 			}
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -596,12 +552,11 @@ public class DataSplitter {
 
 		assert numGiven > 0;
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int j = 0, jm = rateMatrix.numColumns(); j < jm; j++) {
 
-			List<Integer> users = rateMatrix.getRows(j);
+			IndexView users = rateMatrix.columnView(j);
 			int numRated = users.size();
 
 			if (numRated > numGiven) {
@@ -612,24 +567,23 @@ public class DataSplitter {
 				for (int i = 0, k = 0; k < numRated; k++) {
 					if (i < givenIndex.length && givenIndex[i] == k) {
 						// for training
-						testMatrix.set(users.get(k), j, 0.0);
+						train.add(users.get(k), j, users.value(k));
 						i++;
 					} else {
 						// for testing
-						trainMatrix.set(users.get(k), j, 0.0);
+						test.add(users.get(k), j, users.value(k));
 					}
 				}
 			} else {
 				// all ratings are used for training
-				for (int u : users)
-					testMatrix.set(u, j, 0.0);
+				for (int k = 0; k < numRated; k++)
+					train.add(users.get(k), j, users.value(k));
 			}
 
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -645,26 +599,24 @@ public class DataSplitter {
 
 		assert ratio > 0 && ratio < 1;
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
 
-			List<Integer> items = rateMatrix.getColumns(u);
+			IndexView items = rateMatrix.rowView(u);
 
-			for (int j : items) {
+			for (int p = 0; p < items.size(); p++) {
 				double rand = Math.random();
 				if (rand < ratio)
-					testMatrix.set(u, j, 0.0); // for training
+					train.add(u, items.get(p), items.value(p)); // for training
 				else
-					trainMatrix.set(u, j, 0.0); // for testing
+					test.add(u, items.get(p), items.value(p)); // for testing
 			}
 
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -680,29 +632,27 @@ public class DataSplitter {
 
 		assert ratio > 0 && ratio < 1;
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		for (int i = 0, im = rateMatrix.numColumns(); i < im; i++) {
 
-			List<Integer> users = rateMatrix.getRows(i);
+			IndexView users = rateMatrix.columnView(i);
 
-			for (int u : users) {
+			for (int p = 0; p < users.size(); p++) {
 
 				double rand = Math.random();
 				if (rand < ratio)
 					// for training
-					testMatrix.set(u, i, 0.0);
+					train.add(users.get(p), i, users.value(p));
 				else
 					// for testing
-					trainMatrix.set(u, i, 0.0);
+					test.add(users.get(p), i, users.value(p));
 			}
 
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		debugInfo(trainMatrix, testMatrix, -1);
 
@@ -753,30 +703,24 @@ public class DataSplitter {
 	}
 
 	public SparseMatrix[] getDataView(String view) {
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
 
 		switch (view.toLowerCase()) {
 		case "cold-start":
 			for (int u = 0, um = rateMatrix.numRows; u < um; u++) {
-				SparseVector uv = rateMatrix.row(u);
-				if (uv.getCount() < 5) {
-					for (int i : uv.getIndex())
-						trainMatrix.set(u, i, 0.0);
-
-				} else {
-					for (int i : uv.getIndex())
-						testMatrix.set(u, i, 0.0);
-				}
+				IndexView uv = rateMatrix.rowView(u);
+				// users with less than 5 ratings are tested, the others are used for training
+				SparseMatrixBuilder entries = uv.size() < 5 ? test : train;
+				for (int p = 0; p < uv.size(); p++)
+					entries.add(u, uv.get(p), uv.value(p));
 			}
 			break;
 		default:
 			return null;
 		}
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		SparseMatrix trainMatrix = build(train);
+		SparseMatrix testMatrix = build(test);
 
 		return new SparseMatrix[] { trainMatrix, testMatrix };
 	}
@@ -789,31 +733,47 @@ public class DataSplitter {
 	 * @return Rating matrices {k-th train data, k-th test data}
 	 */
 	public SparseMatrix[] getKthFold(int k) {
-		if (k > numFold || k < 1)
+		BitSet[] entries = getKthFoldEntries(k);
+		if (entries == null)
 			return null;
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
+		SparseMatrix trainMatrix = rateMatrix.select(entries[0]);
+		SparseMatrix testMatrix = rateMatrix.select(entries[1]);
 
-		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
+		debugInfo(trainMatrix, testMatrix, k);
 
-			SparseVector items = rateMatrix.row(u);
+		return new SparseMatrix[] { trainMatrix, testMatrix };
+	}
 
-			for (int j : items.getIndex()) {
-				if (assignMatrix.get(u, j) == k)
-					trainMatrix.set(u, j, 0.0); // keep test data and remove train data
-				else
-					testMatrix.set(u, j, 0.0); // keep train data and remove test data
-			}
-		}
+	/**
+	 * Return the k-th fold as test set, making all the others as train set, without copying the ratings.
+	 * 
+	 * @param k
+	 *            The index for desired fold.
+	 * @return positions of the {k-th train data, k-th test data} in the CRS arrays of the rate matrix, to be copied
+	 *         by {@link SparseMatrix#select(BitSet)}
+	 */
+	public BitSet[] getKthFoldEntries(int k) {
+		if (k > numFold || k < 1)
+			return null;
 
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
+		int numRates = assignments.length;
+		BitSet train = new BitSet(numRates), test = new BitSet(numRates);
+		for (int pos = 0; pos < numRates; pos++) {
+			if (assignments[pos] == k)
+				test.set(pos); // test data
+			else
+				train.set(pos); // train data
+		}
 
-		debugInfo(trainMatrix, testMatrix, k);
+		return new BitSet[] { train, test };
+	}
 
-		return new SparseMatrix[] { trainMatrix, testMatrix };
+	/**
+	 * @return matrix of the entries with the dimensions of the rate matrix
+	 */
+	private SparseMatrix build(SparseMatrixBuilder entries) {
+		return entries.build(rateMatrix.numRows(), rateMatrix.numColumns());
 	}
 
 	/**
@@ -0,0 +1,122 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import java.util.Arrays;
+
+/**
+ * Day-specific parameters of users or communities, e.g. the day-specific user biases bu,t and factors pu,t of
+ * timeSVD++, with a fixed number of values for each day on which a user or community has ratings.
+ *
+ * The days of each row (user or community) are kept sorted in a CRS-like layout and numbered consecutively, such that
+ * {@link #index(int, int)} maps a row and day to the index of its values by a binary search over the days of the row.
+ * The values are stored in one double array. Stores created with {@link #DayParameters(DayParameters, int)} share the
+ * days of another store, so that the index of a row and day is the same in both.
+ */
+public class DayParameters {
+
+	// first position of the days of each row, and the days of the rows
+	private final int[] rowPtr, days;
+
+	// number of values of each day
+	private final int numColumns;
+
+	// values of the days, numColumns values per day
+	private final double[] data;
+
+	/**
+	 * Creates parameters for the days of the given row-day pairs, initialized with zeros
+	 *
+	 * @param numRows number of rows
+	 * @param numColumns number of values of each day
+	 * @param rows rows of the pairs
+	 * @param rowDays days of the pairs, may contain duplicates
+	 * @param size number of pairs
+	 */
+	public DayParameters(int numRows, int numColumns, int[] rows, int[] rowDays, int size) {
+		this.numColumns = numColumns;
+
+		// group the days by row
+		int[] ptr = new int[numRows + 1];
+		for (int i = 0; i < size; i++)
+			ptr[rows[i] + 1]++;
+		for (int r = 0; r < numRows; r++)
+			ptr[r + 1] += ptr[r];
+		int[] grouped = new int[size];
+		int[] next = Arrays.copyOf(ptr, numRows);
+		for (int i = 0; i < size; i++)
+			grouped[next[rows[i]]++] = rowDays[i];
+
+		// sort the days of each row and remove duplicates
+		rowPtr = new int[numRows + 1];
+		int n = 0;
+		for (int r = 0; r < numRows; r++) {
+			Arrays.sort(grouped, ptr[r], ptr[r + 1]);
+			for (int i = ptr[r]; i < ptr[r + 1]; i++) {
+				if (i == ptr[r] || grouped[i] != grouped[i - 1])
+					grouped[n++] = grouped[i];
+			}
+			rowPtr[r + 1] = n;
+		}
+		days = Arrays.copyOf(grouped, n);
+		data = new double[n * numColumns];
+	}
+
+	/**
+	 * Creates parameters for the same days as another store, initialized with zeros
+	 *
+	 * @param parameters store whose days are used
+	 * @param numColumns number of values of each day
+	 */
+	public DayParameters(DayParameters parameters, int numColumns) {
+		this.rowPtr = parameters.rowPtr;
+		this.days = parameters.days;
+		this.numColumns = numColumns;
+		this.data = new double[days.length * numColumns];
+	}
+
+	/**
+	 * @param row row
+	 * @param day day
+	 * @return index of the values of the day of the row, or -1 if the row has no parameters for the day
+	 */
+	public int index(int row, int day) {
+		if (row < 0 || row >= rowPtr.length - 1)
+			return -1;
+		int i = Arrays.binarySearch(days, rowPtr[row], rowPtr[row + 1], day);
+		return i >= 0 ? i : -1;
+	}
+
+	/**
+	 * @return number of days of all rows
+	 */
+	public int size() {
+		return days.length;
+	}
+
+	/**
+	 * @param index index of a day, see {@link #index(int, int)}
+	 * @param column column
+	 * @return value of the column of the day
+	 */
+	public double get(int index, int column) {
+		return data[index * numColumns + column];
+	}
+
+	/**
+	 * @param index index of a day, see {@link #index(int, int)}
+	 * @param column column
+	 * @param value value of the column of the day
+	 */
+	public void set(int index, int column, double value) {
+		data[index * numColumns + column] = value;
+	}
+
+	/**
+	 * @param index index of a day, see {@link #index(int, int)}
+	 * @param column column
+	 * @param value value added to the column of the day
+	 */
+	public void add(int index, int column, double value) {
+		data[index * numColumns + column] += value;
+	}
+
+}
@@ -20,6 +20,7 @@ package i5.las2peer.services.recommender.librec.data;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Random;
 
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
@@ -143,6 +144,48 @@ public class DenseMatrix implements Serializable {
 		init(1.0);
 	}
 
+	/**
+	 * initialize a dense matrix with Gaussian values drawn from a given generator
+	 * 
+	 * @param random
+	 *            generator of the values, or null for the generator of {@link Randoms}
+	 */
+	public void init(double mean, double sigma, Random random) {
+		if (random == null) {
+			init(mean, sigma);
+			return;
+		}
+		for (int i = 0; i < numRows; i++)
+			for (int j = 0; j < numColumns; j++)
+				data[i][j] = mean + sigma * random.nextGaussian();
+	}
+
+	/**
+	 * initialize a dense matrix with random values in (0, range) drawn from a given generator
+	 * 
+	 * @param random
+	 *            generator of the values, or null for the generator of {@link Randoms}
+	 */
+	public void init(double range, Random random) {
+		if (random == null) {
+			init(range);
+			return;
+		}
+		for (int i = 0; i < numRows; i++)
+			for (int j = 0; j < numColumns; j++)
+				data[i][j] = range * random.nextDouble();
+	}
+
+	/**
+	 * initialize a dense matrix with random values in (0, 1) drawn from a given generator
+	 * 
+	 * @param random
+	 *            generator of the values, or null for the generator of {@link Randoms}
+	 */
+	public void init(Random random) {
+		init(1.0, random);
+	}
+
 	/**
 	 * @return number of rows
 	 */
@@ -19,6 +19,7 @@
 package i5.las2peer.services.recommender.librec.data;
 
 import java.io.Serializable;
+import java.util.Random;
 
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Stats;
@@ -112,6 +113,46 @@ public class DenseVector implements Serializable {
 			data[i] = Randoms.uniform(0, range);
 	}
 
+	/**
+	 * Initialize a dense vector with Gaussian values drawn from a given generator
+	 * 
+	 * @param random
+	 *            generator of the values, or null for the generator of {@link Randoms}
+	 */
+	public void init(double mean, double sigma, Random random) {
+		if (random == null) {
+			init(mean, sigma);
+			return;
+		}
+		for (int i = 0; i < size; i++)
+			data[i] = mean + sigma * random.nextGaussian();
+	}
+
+	/**
+	 * Initialize a dense vector with uniform values in (0, range) drawn from a given generator
+	 * 
+	 * @param random
+	 *            generator of the values, or null for the generator of {@link Randoms}
+	 */
+	public void init(double range, Random random) {
+		if (random == null) {
+			init(range);
+			return;
+		}
+		for (int i = 0; i < size; i++)
+			data[i] = range * random.nextDouble();
+	}
+
+	/**
+	 * Initialize a dense vector with uniform values in (0, 1) drawn from a given generator
+	 * 
+	 * @param random
+	 *            generator of the values, or null for the generator of {@link Randoms}
+	 */
+	public void init(Random random) {
+		init(1.0, random);
+	}
+
 	/*
 	 * Get a value at entry [index]
 	 */
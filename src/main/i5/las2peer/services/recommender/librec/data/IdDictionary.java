@@ -0,0 +1,62 @@
+package i5.las2peer.services.recommender.librec.data;
+
+/**
+ * Dictionary of the raw ids of users or items, which numbers the raw ids consecutively from 0 in the order in which
+ * they are added. The numbers are the inner ids used as the rows and columns of the rating matrices.
+ *
+ * Raw ids can be given as strings, as read from text data sets, or as ints, e.g. the user and item ids of the
+ * service's database. {@link IntIdDictionary} stores numeric raw ids in primitive arrays, such that looking up an int
+ * raw id does not create a string; {@link StringIdDictionary} stores the raw ids of text data sets.
+ */
+public interface IdDictionary {
+
+	/**
+	 * @return number of raw ids
+	 */
+	int size();
+
+	/**
+	 * @param rawId
+	 *            raw id
+	 * @return inner id of the raw id, or -1 if the raw id has not been added
+	 */
+	int get(String rawId);
+
+	/**
+	 * @param rawId
+	 *            numeric raw id
+	 * @return inner id of the raw id, or -1 if the raw id has not been added
+	 */
+	int get(int rawId);
+
+	/**
+	 * @param rawId
+	 *            raw id
+	 * @return inner id of the raw id, which is the number of raw ids added before if the raw id is new
+	 */
+	int add(String rawId);
+
+	/**
+	 * @param rawId
+	 *            numeric raw id
+	 * @return inner id of the raw id, which is the number of raw ids added before if the raw id is new
+	 */
+	int add(int rawId);
+
+	/**
+	 * @param innerId
+	 *            inner id
+	 * @return raw id of the inner id, or null if there is no such inner id
+	 */
+	String getRawId(int innerId);
+
+	/**
+	 * @param innerId
+	 *            inner id
+	 * @return numeric raw id of the inner id
+	 * @throws NumberFormatException
+	 *             if the raw id is not numeric
+	 */
+	int getNumericRawId(int innerId);
+
+}
@@ -0,0 +1,83 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import java.util.Arrays;
+
+/**
+ * Read-only view of the column indices of a row or of the row indices of a column of a {@link SparseMatrix}, i.e. a
+ * window over its CRS or CCS arrays without copying them.
+ *
+ * The indices are in ascending order. The view shows the entries stored in the matrix, which are its non-zero
+ * entries unless zeros have been set without reshaping the matrix. Changes of the values of the matrix are visible
+ * in the view, changes of its structure are not.
+ */
+public final class IndexView {
+
+	private final int[] indices;
+	private final double[] values;
+	private final int from, to;
+
+	IndexView(int[] indices, double[] values, int from, int to) {
+		this.indices = indices;
+		this.values = values;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * @return number of indices
+	 */
+	public int size() {
+		return to - from;
+	}
+
+	/**
+	 * @return true if there are no indices
+	 */
+	public boolean isEmpty() {
+		return to == from;
+	}
+
+	/**
+	 * @param k
+	 *            position in the view, between 0 and size() - 1
+	 * @return index at the position
+	 */
+	public int get(int k) {
+		return indices[from + k];
+	}
+
+	/**
+	 * @param k
+	 *            position in the view, between 0 and size() - 1
+	 * @return value of the matrix entry at the position
+	 */
+	public double value(int k) {
+		return values[from + k];
+	}
+
+	/**
+	 * @param k
+	 *            position in the view, between 0 and size() - 1
+	 * @return position of the entry in the CRS arrays of a row view or in the CCS arrays of a column view
+	 */
+	public int position(int k) {
+		return from + k;
+	}
+
+	/**
+	 * @return true if the view is a window over the given index array
+	 */
+	boolean isViewOf(int[] indices) {
+		return this.indices == indices;
+	}
+
+	/**
+	 * @param index
+	 *            column index of a row view or row index of a column view
+	 * @return true if the view contains the index
+	 */
+	public boolean contains(int index) {
+		return Arrays.binarySearch(indices, from, to, index) >= 0;
+	}
+
+}
@@ -0,0 +1,144 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary of numeric raw ids, e.g. of the user and item ids of the service's database or of data sets such as
+ * MovieLens and Netflix.
+ *
+ * The raw ids are kept in an open-addressing hash table with linear probing, mapping int raw ids to inner ids without
+ * boxing, and in an array indexed by inner id. Raw ids given as strings have to be integers in canonical form, i.e.
+ * the strings {@link Integer#toString(int)} returns, such that the dictionary maps the same strings to the same inner
+ * ids as a {@link StringIdDictionary}.
+ */
+public class IntIdDictionary implements IdDictionary {
+
+	// raw ids of the slots and inner ids of the slots, -1 for empty slots
+	private int[] slots, innerIds;
+
+	// raw ids by inner id
+	private int[] rawIds;
+	private int size;
+
+	public IntIdDictionary() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity
+	 *            expected number of raw ids
+	 */
+	public IntIdDictionary(int capacity) {
+		int numSlots = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) * 2;
+		slots = new int[numSlots];
+		innerIds = new int[numSlots];
+		Arrays.fill(innerIds, -1);
+		rawIds = new int[Math.max(capacity, 8)];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int get(String rawId) {
+		long id = parse(rawId);
+		return id != Long.MIN_VALUE ? get((int) id) : -1;
+	}
+
+	@Override
+	public int get(int rawId) {
+		int mask = slots.length - 1;
+		for (int s = hash(rawId) & mask;; s = (s + 1) & mask) {
+			if (innerIds[s] == -1)
+				return -1;
+			if (slots[s] == rawId)
+				return innerIds[s];
+		}
+	}
+
+	@Override
+	public int add(String rawId) {
+		long id = parse(rawId);
+		if (id == Long.MIN_VALUE)
+			throw new IllegalArgumentException("Raw id \"" + rawId + "\" is not an integer in canonical form");
+		return add((int) id);
+	}
+
+	@Override
+	public int add(int rawId) {
+		int mask = slots.length - 1;
+		int s = hash(rawId) & mask;
+		for (; innerIds[s] != -1; s = (s + 1) & mask) {
+			if (slots[s] == rawId)
+				return innerIds[s];
+		}
+
+		slots[s] = rawId;
+		innerIds[s] = size;
+		if (size == rawIds.length)
+			rawIds = Arrays.copyOf(rawIds, size * 2);
+		rawIds[size] = rawId;
+		size++;
+
+		// keep the table at most half full
+		if (size * 2 > slots.length)
+			rehash();
+		return size - 1;
+	}
+
+	@Override
+	public String getRawId(int innerId) {
+		return innerId >= 0 && innerId < size ? Integer.toString(rawIds[innerId]) : null;
+	}
+
+	@Override
+	public int getNumericRawId(int innerId) {
+		if (innerId < 0 || innerId >= size)
+			throw new IndexOutOfBoundsException("Inner id " + innerId + " is out of range");
+		return rawIds[innerId];
+	}
+
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		innerIds = new int[slots.length];
+		Arrays.fill(innerIds, -1);
+		int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int s = hash(rawIds[id]) & mask;
+			while (innerIds[s] != -1)
+				s = (s + 1) & mask;
+			slots[s] = rawIds[id];
+			innerIds[s] = id;
+		}
+	}
+
+	private static int hash(int rawId) {
+		int h = rawId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return value of an integer in canonical form, or Long.MIN_VALUE if the string is not an integer in canonical
+	 *         form
+	 */
+	private static long parse(String rawId) {
+		int length = rawId.length();
+		boolean negative = length > 0 && rawId.charAt(0) == '-';
+		int start = negative ? 1 : 0;
+		if (length - start < 1 || length - start > 10 || (rawId.charAt(start) == '0' && (length - start > 1 || negative)))
+			return Long.MIN_VALUE;
+
+		long value = 0;
+		for (int i = start; i < length; i++) {
+			char c = rawId.charAt(i);
+			if (c < '0' || c > '9')
+				return Long.MIN_VALUE;
+			value = value * 10 + (c - '0');
+		}
+		value = negative ? -value : value;
+		return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? value : Long.MIN_VALUE;
+	}
+
+}
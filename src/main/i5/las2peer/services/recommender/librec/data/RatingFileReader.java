@@ -0,0 +1,481 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Multiset;
+
+import i5.las2peer.services.recommender.librec.util.Logs;
+import i5.las2peer.services.recommender.librec.util.Parallel;
+
+/**
+ * Reader of rating files in the layouts of {@link DataDAO#readData(int[], double)}, i.e. lines of user, item and
+ * optionally rating and timestamp columns separated by spaces, tabs or commas, as in the FilmTrust, MovieLens and
+ * Netflix data sets.
+ *
+ * The file is memory-mapped and split into chunks at line ends, which are parsed in parallel by a byte tokenizer
+ * without creating strings or boxed values. Each chunk numbers its users and items in the order of their first
+ * appearance; the chunks are then merged in file order, so that the inner ids, ratings and timestamps are the same as
+ * those of reading the file line by line.
+ *
+ * Only files whose user and item ids are non-negative integers in canonical form (e.g. "42", not "042" or "+42") are
+ * read, since the ids are added to the id dictionaries as ints. For other files, and for lines the line reader would
+ * fail on, {@link #read(boolean, IdDictionary, IdDictionary, Multiset)} returns null and the file has to be read line
+ * by line.
+ */
+class RatingFileReader {
+
+	// chunks are at least 1MB and at most 1GB, such that a chunk can be mapped into one buffer
+	private static final long MIN_CHUNK_SIZE = 1L << 20;
+	private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+	// powers of ten that are exactly representable as doubles
+	private static final double[] POWERS_OF_TEN = new double[23];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int e = 1; e < POWERS_OF_TEN.length; e++)
+			POWERS_OF_TEN[e] = POWERS_OF_TEN[e - 1] * 10;
+	}
+
+	private final String path;
+	private final int[] cols;
+	private final double binThold;
+	private final TimeUnit timeUnit;
+
+	// number of columns that have to be tokenized
+	private final int numTokens;
+
+	private long minTimestamp = Long.MAX_VALUE, maxTimestamp = Long.MIN_VALUE;
+
+	// lower bound of the chunk size, lowered to split small files into several chunks
+	private long minChunkSize = MIN_CHUNK_SIZE;
+
+	/**
+	 * @param path
+	 *            path to the data file
+	 * @param cols
+	 *            the indexes of the relevant columns in the data file: {user, item, [rating, timestamp] (optional)}
+	 * @param binThold
+	 *            the threshold to binarize a rating, or a negative value to keep the original rating value
+	 * @param timeUnit
+	 *            unit of the timestamps in the data file
+	 */
+	RatingFileReader(String path, int[] cols, double binThold, TimeUnit timeUnit) {
+		this.path = path;
+		this.cols = cols;
+		this.binThold = binThold;
+		this.timeUnit = timeUnit;
+
+		int max = 1;
+		for (int c = 0; c < Math.min(cols.length, 4); c++)
+			max = Math.max(max, cols[c]);
+		numTokens = max + 1;
+	}
+
+	/**
+	 * Reads the file, assigning inner ids to new users and items in the order of their first appearance
+	 *
+	 * @param headline
+	 *            whether the first line of the file is a headline
+	 * @param userIds
+	 *            ids of the users
+	 * @param itemIds
+	 *            ids of the items, the same dictionary as userIds if items are users
+	 * @param scaleDist
+	 *            distribution of the ratings, to which the ratings read are added
+	 * @return builders of the {user, item, rate} and the {user, item, timestamp} matrices, the latter being null if
+	 *         the file has no timestamps; or null if the file cannot be read by this reader, in which case the ids and
+	 *         the rating distribution are not modified
+	 * @throws Exception
+	 *             on file I/O errors
+	 */
+	SparseMatrixBuilder[] read(boolean headline, IdDictionary userIds, IdDictionary itemIds, Multiset<Double> scaleDist) throws Exception {
+		boolean sharedIds = userIds == itemIds;
+
+		List<Chunk> chunks = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long start = headline ? nextLine(channel, 0) : 0;
+
+			// split the file into newline-aligned ranges
+			int numThreads = Runtime.getRuntime().availableProcessors();
+			long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(minChunkSize, (size - start) / (4L * numThreads) + 1));
+			List<long[]> ranges = new ArrayList<>();
+			for (long from = start, to; from < size; from = to) {
+				to = size - from <= chunkSize ? size : nextLine(channel, from + chunkSize);
+				if (to - from > Integer.MAX_VALUE)
+					return null;
+				ranges.add(new long[] { from, to });
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, ranges.size())));
+			try {
+				List<Future<Chunk>> tasks = new ArrayList<>();
+				for (long[] range : ranges) {
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+					tasks.add(executor.submit(() -> new Chunk(sharedIds).parse(buffer)));
+				}
+				for (Future<Chunk> task : tasks) {
+					Chunk chunk = Parallel.get(task);
+					if (chunk == null)
+						return null;
+					chunks.add(chunk);
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		// merge the chunks in file order
+		int numLines = 0, numTimes = 0;
+		for (Chunk chunk : chunks) {
+			numLines += chunk.size;
+			numTimes += chunk.numTimes;
+		}
+		SparseMatrixBuilder rates = new SparseMatrixBuilder(numLines);
+		SparseMatrixBuilder times = numTimes > 0 ? new SparseMatrixBuilder(numTimes) : null;
+
+		for (Chunk chunk : chunks) {
+			for (String line : chunk.invalidLines)
+				Logs.error(String.format("Dataset: Cannot read line \"%s\"", line));
+
+			int[] rows = innerIds(chunk.users, userIds);
+			int[] columns = sharedIds ? rows : innerIds(chunk.items, itemIds);
+
+			for (int l = 0; l < chunk.size; l++)
+				rates.add(rows[chunk.userIndices[l]], columns[chunk.itemIndices[l]], chunk.rates[l]);
+
+			for (int t = 0; t < chunk.numTimes; t++) {
+				int l = chunk.timeLines[t];
+				long timestamp = chunk.timestamps[t];
+				if (minTimestamp > timestamp)
+					minTimestamp = timestamp;
+				if (maxTimestamp < timestamp)
+					maxTimestamp = timestamp;
+				times.add(rows[chunk.userIndices[l]], columns[chunk.itemIndices[l]], timestamp);
+			}
+
+			// count the distinct ratings instead of adding the ratings one by one
+			double[] sorted = Arrays.copyOf(chunk.rates, chunk.size);
+			Arrays.sort(sorted);
+			for (int from = 0, to; from < sorted.length; from = to) {
+				long bits = Double.doubleToLongBits(sorted[from]);
+				for (to = from + 1; to < sorted.length && Double.doubleToLongBits(sorted[to]) == bits; to++)
+					;
+				scaleDist.add(sorted[from], to - from);
+			}
+		}
+
+		return new SparseMatrixBuilder[] { rates, times };
+	}
+
+	/**
+	 * @param minChunkSize
+	 *            minimum size of the chunks in bytes, 1MB by default
+	 */
+	void setMinChunkSize(long minChunkSize) {
+		this.minChunkSize = Math.max(1, minChunkSize);
+	}
+
+	/**
+	 * @return minimum timestamp read in milliseconds, or Long.MAX_VALUE if the file has no timestamps
+	 */
+	long getMinTimestamp() {
+		return minTimestamp;
+	}
+
+	/**
+	 * @return maximum timestamp read in milliseconds, or Long.MIN_VALUE if the file has no timestamps
+	 */
+	long getMaxTimestamp() {
+		return maxTimestamp;
+	}
+
+	/**
+	 * Maps the ids of a chunk to inner ids, adding the ids not yet known in the order of their first appearance
+	 */
+	private static int[] innerIds(IntIdDictionary chunkIds, IdDictionary ids) {
+		int[] inner = new int[chunkIds.size()];
+		for (int i = 0; i < inner.length; i++)
+			inner[i] = ids.add(chunkIds.getNumericRawId(i));
+		return inner;
+	}
+
+	/**
+	 * @return position after the first line end at or after a position, or the size of the file if there is none
+	 */
+	private static long nextLine(FileChannel channel, long position) throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long size = channel.size();
+		boolean carriageReturn = false;
+		while (position < size) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			for (int i = 0; i < n; i++) {
+				byte b = buffer.get(i);
+				if (carriageReturn)
+					return b == '\n' ? position + i + 1 : position + i;
+				if (b == '\n')
+					return position + i + 1;
+				carriageReturn = b == '\r';
+			}
+			position += n;
+		}
+		return size;
+	}
+
+	/**
+	 * Ratings of a range of lines, with the users and items numbered in the order of their first appearance
+	 */
+	private class Chunk {
+
+		private final IntIdDictionary users, items;
+
+		// per line: index of the user and item, and the rating
+		private int[] userIndices = new int[1024], itemIndices = new int[1024];
+		private double[] rates = new double[1024];
+		private int size;
+
+		// lines with timestamps, and their timestamps in milliseconds
+		private int[] timeLines = new int[0];
+		private long[] timestamps = new long[0];
+		private int numTimes;
+
+		// lines with less than two columns
+		private final List<String> invalidLines = new ArrayList<>();
+
+		// first and last position of the tokens of the current line
+		private final int[] starts = new int[numTokens], ends = new int[numTokens];
+
+		Chunk(boolean sharedIds) {
+			users = new IntIdDictionary(1024);
+			items = sharedIds ? users : new IntIdDictionary(1024);
+		}
+
+		/**
+		 * @return this chunk, or null if a line cannot be read by this reader
+		 */
+		Chunk parse(ByteBuffer buffer) {
+			int limit = buffer.limit();
+			for (int pos = 0; pos < limit;) {
+				int start = pos;
+				while (pos < limit && buffer.get(pos) != '\n' && buffer.get(pos) != '\r')
+					pos++;
+				int end = pos;
+				if (pos < limit && buffer.get(pos++) == '\r' && pos < limit && buffer.get(pos) == '\n')
+					pos++;
+
+				try {
+					if (!parseLine(buffer, start, end))
+						return null;
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			}
+			return this;
+		}
+
+		private boolean parseLine(ByteBuffer buffer, int lineStart, int lineEnd) {
+			int start = lineStart, end = lineEnd;
+			while (start < end && (buffer.get(start) & 0xff) <= ' ')
+				start++;
+			while (end > start && (buffer.get(end - 1) & 0xff) <= ' ')
+				end--;
+
+			// split at runs of separators, dropping trailing empty tokens as String.split does
+			int count = 0;
+			for (int pos = start;;) {
+				int from = pos;
+				while (pos < end && !isSeparator(buffer.get(pos)))
+					pos++;
+				if (count < numTokens) {
+					starts[count] = from;
+					ends[count] = pos;
+				}
+				count++;
+				while (pos < end && isSeparator(buffer.get(pos)))
+					pos++;
+				if (pos == end)
+					break;
+			}
+
+			if (count < 2) {
+				byte[] bytes = new byte[lineEnd - lineStart];
+				for (int i = 0; i < bytes.length; i++)
+					bytes[i] = buffer.get(lineStart + i);
+				invalidLines.add(new String(bytes, Charset.defaultCharset()));
+				return true;
+			}
+			if (cols[0] >= count || cols[1] >= count)
+				return false;
+
+			int user = parseId(buffer, starts[cols[0]], ends[cols[0]]);
+			int item = parseId(buffer, starts[cols[1]], ends[cols[1]]);
+			if (user < 0 || item < 0)
+				return false;
+
+			double rate = 1.0;
+			if (cols.length >= 3 && count >= 3) {
+				if (cols[2] >= count)
+					return false;
+				rate = parseDouble(buffer, starts[cols[2]], ends[cols[2]]);
+			}
+
+			// binarize the rating for item recommendation task
+			if (binThold >= 0)
+				rate = rate > binThold ? 1.0 : 0.0;
+
+			if (size == rates.length) {
+				int capacity = size + (size >> 1);
+				userIndices = Arrays.copyOf(userIndices, capacity);
+				itemIndices = Arrays.copyOf(itemIndices, capacity);
+				rates = Arrays.copyOf(rates, capacity);
+			}
+			userIndices[size] = users.add(user);
+			itemIndices[size] = items.add(item);
+			rates[size] = rate;
+
+			if (cols.length >= 4 && count >= 4) {
+				if (cols[3] >= count)
+					return false;
+				if (numTimes == timestamps.length) {
+					int capacity = Math.max(1024, numTimes + (numTimes >> 1));
+					timeLines = Arrays.copyOf(timeLines, capacity);
+					timestamps = Arrays.copyOf(timestamps, capacity);
+				}
+				timeLines[numTimes] = size;
+				timestamps[numTimes] = timeUnit.toMillis(parseLong(buffer, starts[cols[3]], ends[cols[3]]));
+				numTimes++;
+			}
+
+			size++;
+			return true;
+		}
+	}
+
+	private static boolean isSeparator(byte b) {
+		return b == ' ' || b == '\t' || b == ',';
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * @return value of an id in canonical form, or -1 if the token is not a non-negative int in canonical form
+	 */
+	private static int parseId(ByteBuffer buffer, int start, int end) {
+		if (end - start < 1 || end - start > 10 || (buffer.get(start) == '0' && end - start > 1))
+			return -1;
+		long value = 0;
+		for (int pos = start; pos < end; pos++) {
+			byte b = buffer.get(pos);
+			if (!isDigit(b))
+				return -1;
+			value = value * 10 + (b - '0');
+		}
+		return value <= Integer.MAX_VALUE ? (int) value : -1;
+	}
+
+	/**
+	 * Parses a timestamp as the line reader does, i.e. as a long, or as a double cast to a long if it is not a long
+	 * (e.g. "9.7323480e+008")
+	 */
+	private static long parseLong(ByteBuffer buffer, int start, int end) {
+		int pos = start;
+		boolean negative = pos < end && buffer.get(pos) == '-';
+		if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+			pos++;
+
+		int digits = end - pos;
+		if (digits > 0 && digits <= 18) {
+			long value = 0;
+			for (; pos < end && isDigit(buffer.get(pos)); pos++)
+				value = value * 10 + (buffer.get(pos) - '0');
+			if (pos == end)
+				return negative ? -value : value;
+		} else if (digits > 18) {
+			String token = token(buffer, start, end);
+			try {
+				return Long.parseLong(token);
+			} catch (NumberFormatException e) {
+				return (long) Double.parseDouble(token);
+			}
+		}
+		return (long) parseDouble(buffer, start, end);
+	}
+
+	/**
+	 * Parses a decimal number with an optional exponent. Numbers with at most 18 significant digits whose value is
+	 * the significand multiplied or divided by an exact power of ten are computed with a single rounding, which gives
+	 * the same result as {@link Double#parseDouble(String)}; all other numbers are parsed by the latter.
+	 */
+	private static double parseDouble(ByteBuffer buffer, int start, int end) {
+		int pos = start;
+		boolean negative = pos < end && buffer.get(pos) == '-';
+		if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+			pos++;
+
+		long significand = 0;
+		int digits = 0, exponent = 0;
+		boolean any = false;
+		for (; pos < end && isDigit(buffer.get(pos)); pos++, any = true) {
+			int d = buffer.get(pos) - '0';
+			if (significand == 0 && d == 0)
+				continue;
+			if (++digits > 18)
+				return Double.parseDouble(token(buffer, start, end));
+			significand = significand * 10 + d;
+		}
+		if (pos < end && buffer.get(pos) == '.') {
+			for (pos++; pos < end && isDigit(buffer.get(pos)); pos++, any = true) {
+				int d = buffer.get(pos) - '0';
+				exponent--;
+				if (significand == 0 && d == 0)
+					continue;
+				if (++digits > 18)
+					return Double.parseDouble(token(buffer, start, end));
+				significand = significand * 10 + d;
+			}
+		}
+		if (any && pos < end && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+			pos++;
+			boolean negativeExponent = pos < end && buffer.get(pos) == '-';
+			if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+				pos++;
+			int value = 0;
+			boolean anyExponent = false;
+			for (; pos < end && isDigit(buffer.get(pos)); pos++, anyExponent = true)
+				value = Math.min(value * 10 + (buffer.get(pos) - '0'), 10000);
+			if (!anyExponent)
+				return Double.parseDouble(token(buffer, start, end));
+			exponent += negativeExponent ? -value : value;
+		}
+
+		if (!any || pos != end || significand > (1L << 53) || exponent < -22 || exponent > 22)
+			return Double.parseDouble(token(buffer, start, end));
+
+		double value = exponent >= 0 ? significand * POWERS_OF_TEN[exponent] : significand / POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+
+	private static String token(ByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = buffer.get(start + i);
+		return new String(bytes, Charset.defaultCharset());
+	}
+
+}
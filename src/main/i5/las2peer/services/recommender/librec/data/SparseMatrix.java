@@ -21,6 +21,7 @@ package i5.las2peer.services.recommender.librec.data;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -55,7 +56,8 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 	// matrix dimension
 	protected int numRows, numColumns;
 
-	// Compressed Row Storage (CRS)
+	// Compressed Row Storage (CRS); the index arrays ptr and ind may be shared with other matrices, e.g. the rating
+	// and timestamp matrices of a data set, and are therefore replaced rather than modified
 	protected double[] rowData;
 	protected int[] rowPtr, colInd;
 
@@ -63,6 +65,9 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 	protected double[] colData;
 	protected int[] colPtr, rowInd;
 
+	// views of the rows and columns, created on first use
+	private transient volatile IndexView[] rowViews, columnViews;
+
 	/*
 	 * Construct a sparse matrix with both CRS and CCS structures
 	 */
@@ -90,6 +95,23 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 		numColumns = cols;
 	}
 
+	/**
+	 * Construct a sparse matrix from its CRS and CCS structures, used by {@link SparseMatrixBuilder}
+	 */
+	SparseMatrix(int rows, int cols, double[] rowData, int[] rowPtr, int[] colInd, double[] colData, int[] colPtr,
+			int[] rowInd) {
+		numRows = rows;
+		numColumns = cols;
+
+		this.rowData = rowData;
+		this.rowPtr = rowPtr;
+		this.colInd = colInd;
+
+		this.colData = colData;
+		this.colPtr = colPtr;
+		this.rowInd = rowInd;
+	}
+
 	/**
 	 * Construct a sparse matrix from another sparse matrix
 	 * 
@@ -153,6 +175,50 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 		return tr;
 	}
 
+	/**
+	 * Copy a subset of the entries of current matrix, e.g. the training or test entries of a fold, directly from the
+	 * CRS structure without sorting the entries again
+	 * 
+	 * @param entries
+	 *            positions of the entries in the CRS arrays of current matrix
+	 * @return a new matrix of the same dimensions with the given entries
+	 */
+	public SparseMatrix select(BitSet entries) {
+		int nnz = entries.cardinality();
+		double[] data = new double[nnz];
+		int[] ptr = new int[numRows + 1];
+		int[] ind = new int[nnz];
+
+		int index = 0;
+		for (int i = 0; i < numRows; i++) {
+			for (int j = entries.nextSetBit(rowPtr[i]); j >= 0 && j < rowPtr[i + 1]; j = entries.nextSetBit(j + 1)) {
+				data[index] = rowData[j];
+				ind[index] = colInd[j];
+				index++;
+			}
+			ptr[i + 1] = index;
+		}
+
+		// CCS, visiting the rows in order so that the rows of each column are sorted
+		int[] cptr = new int[numColumns + 1];
+		for (int i = 0; i < nnz; i++)
+			cptr[ind[i] + 1]++;
+		for (int j = 0; j < numColumns; j++)
+			cptr[j + 1] += cptr[j];
+		int[] rind = new int[nnz];
+		double[] cdata = new double[nnz];
+		int[] next = Arrays.copyOf(cptr, numColumns);
+		for (int i = 0; i < numRows; i++) {
+			for (int k = ptr[i]; k < ptr[i + 1]; k++) {
+				int q = next[ind[k]]++;
+				rind[q] = i;
+				cdata[q] = data[k];
+			}
+		}
+
+		return new SparseMatrix(numRows, numColumns, data, ptr, ind, cdata, cptr, rind);
+	}
+
 	/**
 	 * @return the row pointers of CRS structure
 	 */
@@ -161,12 +227,26 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 	}
 
 	/**
-	 * @return the column indices of CCS structure
+	 * @return the column indices of CRS structure
 	 */
 	public int[] getColumnIndices() {
 		return colInd;
 	}
 
+	/**
+	 * @return the column pointers of CCS structure
+	 */
+	public int[] getColumnPointers() {
+		return colPtr;
+	}
+
+	/**
+	 * @return the row indices of CCS structure
+	 */
+	public int[] getRowIndices() {
+		return rowInd;
+	}
+
 	/**
 	 * @return the cardinary of current matrix
 	 */
@@ -278,6 +358,13 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 		return rowData;
 	}
 
+	/**
+	 * @return reference to the data of current matrix in CCS structure, i.e. ordered by column
+	 */
+	public double[] getColumnData() {
+		return colData;
+	}
+
 	/**
 	 * Set a value to entry [row, column]
 	 * 
@@ -333,6 +420,56 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 			return 0;
 	}
 
+	/**
+	 * Retrieve the value at an entry of this matrix or of a matrix sharing the index structure of this matrix, e.g. the
+	 * timestamp of a rating while iterating over the rating matrix. The value is read at the cursor of the entry if
+	 * the index is shared, and searched for otherwise.
+	 * 
+	 * @param entry
+	 *            entry of a matrix iterator
+	 * @return value at entry [entry.row(), entry.column()]
+	 */
+	public double get(MatrixEntry entry) {
+		if (entry instanceof SparseMatrixEntry) {
+			SparseMatrixEntry me = (SparseMatrixEntry) entry;
+			if (sharesIndex(me.matrix()))
+				return rowData[me.cursor];
+		}
+		return get(entry.row(), entry.column());
+	}
+
+	/**
+	 * Retrieve the value at an entry of a row view of this matrix or of a matrix sharing the index structure of this
+	 * matrix, read at the position of the entry if the index is shared and searched for otherwise. The position is
+	 * only used if the view is a window over the column indices of this matrix and the position lies within the given
+	 * row, as the column indices alone do not tell which row a window belongs to.
+	 * 
+	 * @param row
+	 *            row id
+	 * @param rowView
+	 *            view of the row
+	 * @param k
+	 *            position in the view
+	 * @return value at entry [row, rowView.get(k)]
+	 */
+	public double get(int row, IndexView rowView, int k) {
+		if (rowView.isViewOf(colInd)) {
+			int position = rowView.position(k);
+			if (position >= rowPtr[row] && position < rowPtr[row + 1])
+				return rowData[position];
+		}
+		return get(row, rowView.get(k));
+	}
+
+	/**
+	 * @param mat
+	 *            another matrix
+	 * @return true if both matrices have the same CRS and CCS index arrays, i.e. the same entries in the same positions
+	 */
+	public boolean sharesIndex(SparseMatrix mat) {
+		return mat.rowPtr == rowPtr && mat.colInd == colInd && mat.colPtr == colPtr && mat.rowInd == rowInd;
+	}
+
 	/**
 	 * get a row sparse vector of a matrix
 	 * 
@@ -379,6 +516,44 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 		return res;
 	}
 
+	/**
+	 * get a view of the columns of a row, without copying them; the same view is returned for each call
+	 * 
+	 * @param row
+	 *            row id
+	 * @return a view of the column indices and values of the row, empty if the row does not exist
+	 */
+	public IndexView rowView(int row) {
+		IndexView[] views = rowViews;
+		if (views == null) {
+			views = new IndexView[numRows + 1];
+			for (int i = 0; i < numRows; i++)
+				views[i] = new IndexView(colInd, rowData, rowPtr[i], rowPtr[i + 1]);
+			views[numRows] = new IndexView(colInd, rowData, 0, 0);
+			rowViews = views;
+		}
+		return views[row < numRows ? row : numRows];
+	}
+
+	/**
+	 * get a view of the rows of a column, without copying them; the same view is returned for each call
+	 * 
+	 * @param column
+	 *            column id
+	 * @return a view of the row indices and values of the column, empty if the column does not exist
+	 */
+	public IndexView columnView(int column) {
+		IndexView[] views = columnViews;
+		if (views == null) {
+			views = new IndexView[numColumns + 1];
+			for (int j = 0; j < numColumns; j++)
+				views[j] = new IndexView(rowInd, colData, colPtr[j], colPtr[j + 1]);
+			views[numColumns] = new IndexView(rowInd, colData, 0, 0);
+			columnViews = views;
+		}
+		return views[column < numColumns ? column : numColumns];
+	}
+
 	/**
 	 * create a row cache of a matrix in {row, row-specific vector}
 	 * 
@@ -749,6 +924,9 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 		mat.colData = res.colData;
 		mat.rowInd = res.rowInd;
 		mat.colPtr = res.colPtr;
+
+		mat.rowViews = null;
+		mat.columnViews = null;
 	}
 
 	/*
@@ -857,6 +1035,10 @@ public class SparseMatrix implements Iterable<MatrixEntry>, Serializable {
 			this.cursor = cursor;
 		}
 
+		SparseMatrix matrix() {
+			return SparseMatrix.this;
+		}
+
 		public int row() {
 			return row;
 		}
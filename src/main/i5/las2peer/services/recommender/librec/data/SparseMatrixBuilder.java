@@ -0,0 +1,209 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import java.util.Arrays;
+
+/**
+ * Builder of a {@link SparseMatrix} from (row, column, value) entries, e.g. ratings read from a file, without boxing
+ * the entries in a table.
+ *
+ * The entries are appended to growable primitive arrays. When the matrix is built, they are sorted by row and column
+ * with two counting sorts, from which the CRS and CCS structures are filled directly. As with {@code Table.put}, an
+ * entry added for a cell that already has an entry replaces its value.
+ */
+public class SparseMatrixBuilder {
+
+	// rows, columns and values of the entries in the order they have been added
+	private int[] rows, columns;
+	private double[] values;
+
+	// number of entries
+	private int size;
+
+	public SparseMatrixBuilder() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity
+	 *            expected number of entries
+	 */
+	public SparseMatrixBuilder(int capacity) {
+		capacity = Math.max(capacity, 1);
+		rows = new int[capacity];
+		columns = new int[capacity];
+		values = new double[capacity];
+	}
+
+	/**
+	 * Adds an entry, replacing the value of an entry added before for the same cell
+	 *
+	 * @param row
+	 *            row of the entry
+	 * @param column
+	 *            column of the entry
+	 * @param value
+	 *            value of the entry
+	 * @return this builder
+	 */
+	public SparseMatrixBuilder add(int row, int column, double value) {
+		if (size == rows.length) {
+			int capacity = rows.length + (rows.length >> 1) + 1;
+			rows = Arrays.copyOf(rows, capacity);
+			columns = Arrays.copyOf(columns, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		rows[size] = row;
+		columns[size] = column;
+		values[size] = value;
+		size++;
+
+		return this;
+	}
+
+	/**
+	 * @return number of entries added, including entries replaced by later entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Builds a matrix with both CRS and CCS structures from the entries added so far
+	 *
+	 * @param numRows
+	 *            number of rows
+	 * @param numColumns
+	 *            number of columns
+	 * @return sparse matrix
+	 */
+	public SparseMatrix build(int numRows, int numColumns) {
+		checkIndices(numRows, numColumns);
+
+		// order the entries by row, column and the order in which they have been added
+		int[] order = sort(rows, numRows, sort(columns, numColumns, null));
+
+		// CRS, keeping the last entry of each cell
+		int[] rowPtr = new int[numRows + 1];
+		int[] colInd = new int[size];
+		double[] rowData = new double[size];
+		int nnz = 0;
+		for (int p = 0; p < size; p++) {
+			int e = order[p];
+			if (p > 0 && rows[order[p - 1]] == rows[e] && columns[order[p - 1]] == columns[e]) {
+				rowData[nnz - 1] = values[e];
+				continue;
+			}
+			colInd[nnz] = columns[e];
+			rowData[nnz] = values[e];
+			rowPtr[rows[e] + 1]++;
+			nnz++;
+		}
+		for (int r = 0; r < numRows; r++)
+			rowPtr[r + 1] += rowPtr[r];
+		if (nnz < size) {
+			colInd = Arrays.copyOf(colInd, nnz);
+			rowData = Arrays.copyOf(rowData, nnz);
+		}
+
+		// CCS, visiting the rows in order so that the rows of each column are sorted
+		int[] colPtr = new int[numColumns + 1];
+		for (int i = 0; i < nnz; i++)
+			colPtr[colInd[i] + 1]++;
+		for (int c = 0; c < numColumns; c++)
+			colPtr[c + 1] += colPtr[c];
+		int[] rowInd = new int[nnz];
+		double[] colData = new double[nnz];
+		int[] next = Arrays.copyOf(colPtr, numColumns);
+		for (int r = 0; r < numRows; r++) {
+			for (int i = rowPtr[r]; i < rowPtr[r + 1]; i++) {
+				int q = next[colInd[i]]++;
+				rowInd[q] = r;
+				colData[q] = rowData[i];
+			}
+		}
+
+		return new SparseMatrix(numRows, numColumns, rowData, rowPtr, colInd, colData, colPtr, rowInd);
+	}
+
+	/**
+	 * Builds a matrix from the entries added so far that shares the CRS and CCS index arrays of another matrix, e.g.
+	 * the timestamps of the ratings of a rating matrix, such that both matrices hold their values at the same
+	 * positions. If the entries do not occupy exactly the cells of the other matrix, a matrix with its own index is
+	 * built instead.
+	 *
+	 * @param index
+	 *            matrix whose index structure is shared
+	 * @return sparse matrix with the dimensions of the given matrix
+	 */
+	public SparseMatrix build(SparseMatrix index) {
+		int numRows = index.numRows, numColumns = index.numColumns;
+		if (index.colPtr == null)
+			return build(numRows, numColumns);
+		checkIndices(numRows, numColumns);
+
+		int[] order = sort(rows, numRows, sort(columns, numColumns, null));
+
+		// CRS values at the positions of the cells in the given index, keeping the last entry of each cell
+		int[] rowPtr = index.rowPtr, colInd = index.colInd;
+		double[] rowData = new double[colInd.length];
+		int nnz = 0;
+		for (int p = 0; p < size; p++) {
+			int e = order[p];
+			if (p > 0 && rows[order[p - 1]] == rows[e] && columns[order[p - 1]] == columns[e]) {
+				rowData[nnz - 1] = values[e];
+				continue;
+			}
+			if (nnz == colInd.length || colInd[nnz] != columns[e] || nnz < rowPtr[rows[e]] || nnz >= rowPtr[rows[e] + 1])
+				return build(numRows, numColumns);
+			rowData[nnz++] = values[e];
+		}
+		if (nnz < colInd.length)
+			return build(numRows, numColumns);
+
+		// CCS values, visiting the rows in order as the rows of each column are sorted
+		double[] colData = new double[nnz];
+		int[] next = Arrays.copyOf(index.colPtr, numColumns);
+		for (int r = 0; r < numRows; r++) {
+			for (int i = rowPtr[r]; i < rowPtr[r + 1]; i++)
+				colData[next[colInd[i]]++] = rowData[i];
+		}
+
+		return new SparseMatrix(numRows, numColumns, rowData, rowPtr, colInd, colData, index.colPtr, index.rowInd);
+	}
+
+	private void checkIndices(int numRows, int numColumns) {
+		for (int e = 0; e < size; e++) {
+			if (rows[e] < 0 || rows[e] >= numRows)
+				throw new IllegalArgumentException("row " + rows[e] + " is not a valid row index");
+			if (columns[e] < 0 || columns[e] >= numColumns)
+				throw new IllegalArgumentException("column " + columns[e] + " is not a valid column index");
+		}
+	}
+
+	/**
+	 * Stable counting sort of entries by a key
+	 *
+	 * @param keys
+	 *            key of each entry
+	 * @param numKeys
+	 *            number of distinct keys
+	 * @param order
+	 *            entries to sort, or null for all entries in the order they have been added
+	 * @return sorted entries
+	 */
+	private int[] sort(int[] keys, int numKeys, int[] order) {
+		int[] next = new int[numKeys + 1];
+		for (int e = 0; e < size; e++)
+			next[keys[e] + 1]++;
+		for (int k = 0; k < numKeys; k++)
+			next[k + 1] += next[k];
+
+		int[] sorted = new int[size];
+		for (int p = 0; p < size; p++) {
+			int e = order != null ? order[p] : p;
+			sorted[next[keys[e]]++] = e;
+		}
+		return sorted;
+	}
+
+}
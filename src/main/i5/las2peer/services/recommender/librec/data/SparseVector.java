@@ -82,6 +82,25 @@ public class SparseVector implements Iterable<VectorEntry>, Serializable {
 				this.set(i, array[i]);
 	}
 
+	/**
+	 * Construct a sparse vector from sorted indices and their data, without copying them
+	 * 
+	 * @param capcity
+	 *            maximum size of the sparse vector
+	 * @param index
+	 *            sorted indices
+	 * @param data
+	 *            data of the indices
+	 * @param count
+	 *            number of entries
+	 */
+	SparseVector(int capcity, int[] index, double[] data, int count) {
+		this.capacity = capcity;
+		this.index = index;
+		this.data = data;
+		this.count = count;
+	}
+
 	/**
 	 * Construct a sparse vecto by deeply copying another vector
 	 * @param sv vector to copy
@@ -98,7 +117,7 @@ public class SparseVector implements Iterable<VectorEntry>, Serializable {
 	 * @return true if the vector contains the index
 	 */
 	public boolean contains(int idx) {
-		return Arrays.binarySearch(index, idx) >= 0;
+		return Arrays.binarySearch(index, 0, count, idx) >= 0;
 	}
 
 	/**
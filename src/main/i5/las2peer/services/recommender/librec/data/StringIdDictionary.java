@@ -0,0 +1,55 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+
+/**
+ * Dictionary of raw ids of any form, e.g. of text data sets whose ids are not integers, kept in a {raw id, inner id}
+ * map
+ */
+public class StringIdDictionary implements IdDictionary {
+
+	private final BiMap<String, Integer> ids = HashBiMap.create();
+
+	@Override
+	public int size() {
+		return ids.size();
+	}
+
+	@Override
+	public int get(String rawId) {
+		Integer innerId = ids.get(rawId);
+		return innerId != null ? innerId : -1;
+	}
+
+	@Override
+	public int get(int rawId) {
+		return get(Integer.toString(rawId));
+	}
+
+	@Override
+	public int add(String rawId) {
+		Integer innerId = ids.get(rawId);
+		if (innerId == null) {
+			innerId = ids.size();
+			ids.put(rawId, innerId);
+		}
+		return innerId;
+	}
+
+	@Override
+	public int add(int rawId) {
+		return add(Integer.toString(rawId));
+	}
+
+	@Override
+	public String getRawId(int innerId) {
+		return ids.inverse().get(innerId);
+	}
+
+	@Override
+	public int getNumericRawId(int innerId) {
+		return Integer.parseInt(getRawId(innerId));
+	}
+
+}
@@ -1,129 +1,216 @@
-// Copyright (C) 2014 Guibing Guo
-//
-// This file is part of LibRec.
-//
-// LibRec is free software: you can redistribute it and/or modify
-// it under the terms of the GNU General Public License as published by
-// the Free Software Foundation, either version 3 of the License, or
-// (at your option) any later version.
-//
-// LibRec is distributed in the hope that it will be useful,
-// but WITHOUT ANY WARRANTY; without even the implied warranty of
-// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
-// GNU General Public License for more details.
-//
-// You should have received a copy of the GNU General Public License
-// along with LibRec. If not, see <http://www.gnu.org/licenses/>.
-//
-
-package i5.las2peer.services.recommender.librec.data;
-
-import java.io.Serializable;
-
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
-/**
- * Data Structure, Lower Symmetric Matrix
- * 
- * @author guoguibing
- * 
- */
-public class SymmMatrix implements Serializable {
-
-	private static final long serialVersionUID = -6138247653152029007L;
-
-	// matrix dimension
-	protected int dim;
-	// matrix data
-	Table<Integer, Integer, Double> data;
-
-	/**
-	 * Construct a symmetric matrix
-	 * @param dim matrix dimension
-	 */
-	public SymmMatrix(int dim) {
-		this.dim = dim;
-		data = HashBasedTable.create(); // do not specify the size here as a sparse matrix
-	}
-
-	/**
-	 * Construct a symmetric matrix by deeply copying data from a given matrix
-	 * @param mat matrix to copy from
-	 */
-	public SymmMatrix(SymmMatrix mat) {
-		dim = mat.dim;
-		data = HashBasedTable.create(mat.data);
-	}
-
-	/**
-	 * Make a deep copy of current matrix
-	 */
-	public SymmMatrix clone() {
-		return new SymmMatrix(this);
-	}
-
-	/**
-	 * Get a value at entry (row, col)
-	 *  @param row row
-	 *  @param col column
-	 *  @return value
-	 */
-	public double get(int row, int col) {
-
-		if (data.contains(row, col))
-			return data.get(row, col);
-		else if (data.contains(col, row))
-			return data.get(col, row);
-
-		return 0.0;
-	}
-
-	/**
-	 * set a value to entry (row, col)
-	 *  @param row row
-	 *  @param col column
-	 *  @param val value
-	 */
-	public void set(int row, int col, double val) {
-		if (row >= col)
-			data.put(row, col, val);
-		else
-			data.put(col, row, val);
-	}
-
-	/**
-	 * add a value to entry (row, col)
-	 *  @param row row
-	 *  @param col column
-	 *  @param val to add
-	 */
-	public void add(int row, int col, double val) {
-		if (row >= col)
-			data.put(row, col, val + get(row, col));
-		else
-			data.put(col, row, val + get(col, row));
-	}
-
-	/**
-	 * Retrieve a complete row of similar items
-	 * @param row row
-	 * @return vector representing the row
-	 */
-	public SparseVector row(int row) {
-		SparseVector res = new SparseVector(dim);
-		for (int col = 0; col < dim; col++) {
-			double val = get(row, col);
-			if (val != 0)
-				res.set(col, val);
-		}
-
-		return res;
-	}
-
-	@Override
-	public String toString() {
-		return "Dimension: " + dim + " x " + dim + "\n" + data.toString();
-	}
-
-}
+// Copyright (C) 2014 Guibing Guo
+//
+// This file is part of LibRec.
+//
+// LibRec is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// LibRec is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+//
+
+package i5.las2peer.services.recommender.librec.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Data Structure, Lower Symmetric Matrix
+ * 
+ * The entries of each row are kept in primitive arrays sorted by column, an off-diagonal entry is stored in the rows
+ * of both of its indices. Retrieving a row takes time linear in the number of its entries, retrieving an entry
+ * takes logarithmic time. Each stored value takes 12 bytes (column and value), so an off-diagonal pair takes 24
+ * bytes, and the arrays of a row growing by doubling may reserve up to as much again until {@link #trimToSize()}.
+ * 
+ * @author guoguibing
+ * 
+ */
+public class SymmMatrix implements Serializable {
+
+	private static final long serialVersionUID = 7281469539318413622L;
+
+	// matrix dimension
+	protected int dim;
+	// columns and values of the entries of each row, sorted by column
+	private int[][] cols;
+	private double[][] vals;
+	// number of entries of each row
+	private int[] sizes;
+
+	/**
+	 * Construct a symmetric matrix
+	 * @param dim matrix dimension
+	 */
+	public SymmMatrix(int dim) {
+		this.dim = dim;
+		cols = new int[dim][];
+		vals = new double[dim][];
+		sizes = new int[dim];
+	}
+
+	/**
+	 * Construct a symmetric matrix by deeply copying data from a given matrix
+	 * @param mat matrix to copy from
+	 */
+	public SymmMatrix(SymmMatrix mat) {
+		dim = mat.dim;
+		cols = new int[dim][];
+		vals = new double[dim][];
+		sizes = Arrays.copyOf(mat.sizes, dim);
+		for (int row = 0; row < dim; row++) {
+			if (mat.cols[row] != null) {
+				cols[row] = Arrays.copyOf(mat.cols[row], sizes[row]);
+				vals[row] = Arrays.copyOf(mat.vals[row], sizes[row]);
+			}
+		}
+	}
+
+	/**
+	 * Make a deep copy of current matrix
+	 */
+	public SymmMatrix clone() {
+		return new SymmMatrix(this);
+	}
+
+	/**
+	 * Get a value at entry (row, col)
+	 *  @param row row
+	 *  @param col column
+	 *  @return value
+	 */
+	public double get(int row, int col) {
+		int i = find(row, col);
+
+		return i >= 0 ? vals[row][i] : 0.0;
+	}
+
+	/**
+	 * set a value to entry (row, col)
+	 *  @param row row
+	 *  @param col column
+	 *  @param val value
+	 */
+	public void set(int row, int col, double val) {
+		put(row, col, val);
+		if (row != col)
+			put(col, row, val);
+	}
+
+	/**
+	 * add a value to entry (row, col)
+	 *  @param row row
+	 *  @param col column
+	 *  @param val to add
+	 */
+	public void add(int row, int col, double val) {
+		set(row, col, val + get(row, col));
+	}
+
+	/**
+	 * Retrieve a complete row of similar items
+	 * @param row row
+	 * @return vector representing the row
+	 */
+	public SparseVector row(int row) {
+		int n = 0;
+		int[] index = new int[sizes[row]];
+		double[] data = new double[sizes[row]];
+		for (int i = 0; i < sizes[row]; i++) {
+			double val = vals[row][i];
+			if (val != 0) {
+				index[n] = cols[row][i];
+				data[n] = val;
+				n++;
+			}
+		}
+
+		return new SparseVector(dim, index, data, n);
+	}
+
+	/**
+	 * Release the memory reserved for entries that have not been set yet, e.g. after the matrix has been built
+	 */
+	public void trimToSize() {
+		for (int row = 0; row < dim; row++) {
+			if (cols[row] != null && cols[row].length > sizes[row]) {
+				cols[row] = Arrays.copyOf(cols[row], sizes[row]);
+				vals[row] = Arrays.copyOf(vals[row], sizes[row]);
+			}
+		}
+	}
+
+	/**
+	 * @return position of the column in the entries of the row, or (-(insertion point) - 1) if it is not stored
+	 */
+	private int find(int row, int col) {
+		if (row >= dim || cols[row] == null)
+			return -1;
+
+		return Arrays.binarySearch(cols[row], 0, sizes[row], col);
+	}
+
+	/**
+	 * Sets the entry (row, col) in the entries of the row
+	 */
+	private void put(int row, int col, double val) {
+		int i = find(row, col);
+		if (i >= 0) {
+			vals[row][i] = val;
+			return;
+		}
+
+		i = -(i + 1);
+		int size = sizes[row];
+		if (cols[row] == null) {
+			cols[row] = new int[4];
+			vals[row] = new double[4];
+		} else if (size == cols[row].length) {
+			cols[row] = Arrays.copyOf(cols[row], size * 2);
+			vals[row] = Arrays.copyOf(vals[row], size * 2);
+		}
+
+		// entries are mostly set in ascending order of the columns, so that nothing is moved
+		System.arraycopy(cols[row], i, cols[row], i + 1, size - i);
+		System.arraycopy(vals[row], i, vals[row], i + 1, size - i);
+		cols[row][i] = col;
+		vals[row][i] = val;
+		sizes[row]++;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Dimension: " + dim + " x " + dim + "\n{");
+		boolean isFirstRow = true;
+		for (int row = 0; row < dim; row++) {
+			// lower triangle: columns up to the row
+			int n = 0;
+			while (n < sizes[row] && cols[row][n] <= row)
+				n++;
+			if (n == 0)
+				continue;
+
+			if (!isFirstRow)
+				sb.append(", ");
+			isFirstRow = false;
+			sb.append(row).append("={");
+			for (int i = 0; i < n; i++) {
+				if (i > 0)
+					sb.append(", ");
+				sb.append(cols[row][i]).append("=").append(vals[row][i]);
+			}
+			sb.append("}");
+		}
+		sb.append("}");
+
+		return sb.toString();
+	}
+
+}
@@ -18,6 +18,7 @@
 
 package i5.las2peer.services.recommender.librec.data;
 
+import java.util.BitSet;
 import java.util.concurrent.TimeUnit;
 
 import i5.las2peer.services.recommender.librec.util.Logs;
@@ -97,7 +98,7 @@ public class TimeDataSplitter {
 		long minTimestamp = Long.MAX_VALUE;
 		long maxTimestamp = Long.MIN_VALUE;
 		for(MatrixEntry e : rateMatrix){
-			long timestamp = (long) timeMatrix.get(e.row(), e.column());
+			long timestamp = (long) timeMatrix.get(e);
 			if (minTimestamp > timestamp)
 				minTimestamp = timestamp;
 			if (maxTimestamp < timestamp)
@@ -138,32 +139,47 @@ public class TimeDataSplitter {
 	 * @return Rating matrices {k-th train data, k-th test data}
 	 */
 	public SparseMatrix[] getKthFold(int k) {
+		BitSet[] entries = getKthFoldEntries(k);
+		if (entries == null)
+			return null;
+
+		SparseMatrix trainMatrix = rateMatrix.select(entries[0]);
+		SparseMatrix testMatrix = rateMatrix.select(entries[1]);
+
+		debugInfo(trainMatrix, testMatrix, k);
+
+		return new SparseMatrix[] { trainMatrix, testMatrix };
+	}
+
+	/**
+	 * Return the k-th fold as test set, making all the others as train set, without copying the ratings.
+	 * 
+	 * @param k
+	 *            The index for desired fold.
+	 * @return positions of the {k-th train data, k-th test data} in the CRS arrays of the rate matrix, to be copied
+	 *         by {@link SparseMatrix#select(BitSet)}
+	 */
+	public BitSet[] getKthFoldEntries(int k) {
 		if (k > numFold || k < 1)
 			return null;
 
-		SparseMatrix trainMatrix = new SparseMatrix(rateMatrix);
-		SparseMatrix testMatrix = new SparseMatrix(rateMatrix);
-		
+		int numRates = rateMatrix.getData().length;
+		BitSet train = new BitSet(numRates), test = new BitSet(numRates);
+
 		for (int u = 0, um = rateMatrix.numRows(); u < um; u++) {
 
-			SparseVector items = rateMatrix.row(u);
+			IndexView items = rateMatrix.rowView(u);
 
-			for (int j : items.getIndex()) {
-				long ratingTime = (long) timeMatrix.get(u,  j); 
-				if (ratingTime < startTimestamp[k-1] || ratingTime > splitTimestamp[k-1])
-					trainMatrix.set(u, j, 0.0); // not in train time range, remove train data
-				if (ratingTime <= splitTimestamp[k-1] || ratingTime > endTimestamp[k-1])
-					testMatrix.set(u, j, 0.0); // not in test time range, remove test data
+			for (int p = 0; p < items.size(); p++) {
+				long ratingTime = (long) timeMatrix.get(u, items, p);
+				if (ratingTime >= startTimestamp[k-1] && ratingTime <= splitTimestamp[k-1])
+					train.set(items.position(p)); // in train time range
+				if (ratingTime > splitTimestamp[k-1] && ratingTime <= endTimestamp[k-1])
+					test.set(items.position(p)); // in test time range
 			}
 		}
-		
-		// remove zero entries
-		SparseMatrix.reshape(trainMatrix);
-		SparseMatrix.reshape(testMatrix);
-
-		debugInfo(trainMatrix, testMatrix, k);
 
-		return new SparseMatrix[] { trainMatrix, testMatrix };
+		return new BitSet[] { train, test };
 	}
 
 	/**
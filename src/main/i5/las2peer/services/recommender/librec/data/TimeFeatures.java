@@ -0,0 +1,205 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Time features of the ratings of a training matrix, i.e. the day, time bins, day of week and time deviation of each
+ * rating, computed once before learning.
+ *
+ * The features are stored in arrays aligned with the entries of the training matrix, such that the time-aware
+ * recommenders read the features of a rating at its position in the CRS arrays (see {@link IndexView#position(int)})
+ * instead of looking up its timestamp and deriving the features again on every update and prediction. The arrays are
+ * not modified after they have been computed and can be read by several threads.
+ */
+public class TimeFeatures {
+
+	/**
+	 * Time deviation of a day of a user
+	 */
+	public interface Deviation {
+		/**
+		 * @param u user
+		 * @param day day
+		 * @return time deviation of the day
+		 */
+		double dev(int u, int day);
+	}
+
+	private final SparseMatrix trainMatrix;
+
+	// day of each rating, counted from the minimum timestamp
+	private final int[] days;
+	// day of week of each rating
+	private final int[] periods;
+	// time bin and community time bin of each rating
+	private int[] bins, cbins;
+	// time deviation of each rating
+	private double[] devs;
+
+	/**
+	 * Computes the days and the days of week of the ratings
+	 *
+	 * @param trainMatrix training matrix
+	 * @param timeMatrix matrix containing the timestamps of the training ratings
+	 * @param minTimestamp timestamp of day 0
+	 */
+	public TimeFeatures(SparseMatrix trainMatrix, SparseMatrix timeMatrix, long minTimestamp) {
+		this.trainMatrix = trainMatrix;
+
+		int size = trainMatrix.getData().length;
+		days = new int[size];
+		periods = new int[size];
+		for (int u = 0, um = trainMatrix.numRows(); u < um; u++) {
+			IndexView Ru = trainMatrix.rowView(u);
+			for (int p = 0; p < Ru.size(); p++) {
+				long timestamp = (long) timeMatrix.get(u, Ru, p);
+				int pos = Ru.position(p);
+				days[pos] = days(timestamp, minTimestamp);
+				periods[pos] = dayOfWeek(timestamp);
+			}
+		}
+	}
+
+	/**
+	 * Computes the time bins of the ratings
+	 *
+	 * @param bin time bin of a day
+	 */
+	public void computeBins(IntUnaryOperator bin) {
+		bins = new int[days.length];
+		for (int pos = 0; pos < days.length; pos++)
+			bins[pos] = bin.applyAsInt(days[pos]);
+	}
+
+	/**
+	 * Computes the community time bins of the ratings
+	 *
+	 * @param cbin community time bin of a day
+	 */
+	public void computeCBins(IntUnaryOperator cbin) {
+		cbins = new int[days.length];
+		for (int pos = 0; pos < days.length; pos++)
+			cbins[pos] = cbin.applyAsInt(days[pos]);
+	}
+
+	/**
+	 * Computes the time deviations of the ratings
+	 *
+	 * @param dev time deviation of a day of a user
+	 */
+	public void computeDevs(Deviation dev) {
+		devs = new double[days.length];
+		for (int u = 0, um = trainMatrix.numRows(); u < um; u++) {
+			IndexView Ru = trainMatrix.rowView(u);
+			for (int p = 0; p < Ru.size(); p++) {
+				int pos = Ru.position(p);
+				devs[pos] = dev.dev(u, days[pos]);
+			}
+		}
+	}
+
+	/**
+	 * @return mean day of all ratings
+	 */
+	public double meanDay() {
+		double sum = 0;
+		for (int day : days)
+			sum += day;
+		return sum / days.length;
+	}
+
+	/**
+	 * @param defaultDay mean day of users without ratings
+	 * @return mean day of the ratings of each user
+	 */
+	public DenseVector userMeanDays(double defaultDay) {
+		int numUsers = trainMatrix.numRows();
+		DenseVector userMeanDays = new DenseVector(numUsers);
+		for (int u = 0; u < numUsers; u++) {
+			IndexView Ru = trainMatrix.rowView(u);
+			double sum = 0;
+			for (int p = 0; p < Ru.size(); p++)
+				sum += days[Ru.position(p)];
+			userMeanDays.set(u, Ru.size() > 0 ? sum / Ru.size() : defaultDay);
+		}
+		return userMeanDays;
+	}
+
+	/**
+	 * @param numColumns number of values of each day
+	 * @return day-specific parameters for the days of the ratings of each user
+	 */
+	public DayParameters userDayParameters(int numColumns) {
+		int[] rows = new int[days.length];
+		for (int u = 0, um = trainMatrix.numRows(); u < um; u++) {
+			IndexView Ru = trainMatrix.rowView(u);
+			for (int p = 0; p < Ru.size(); p++)
+				rows[Ru.position(p)] = u;
+		}
+		return new DayParameters(trainMatrix.numRows(), numColumns, rows, days, days.length);
+	}
+
+	/**
+	 * @param pos position of a rating in the CRS arrays of the training matrix
+	 * @return day of the rating
+	 */
+	public int day(int pos) {
+		return days[pos];
+	}
+
+	/**
+	 * @param pos position of a rating in the CRS arrays of the training matrix
+	 * @return day of week of the rating
+	 */
+	public int period(int pos) {
+		return periods[pos];
+	}
+
+	/**
+	 * @param pos position of a rating in the CRS arrays of the training matrix
+	 * @return time bin of the rating
+	 */
+	public int bin(int pos) {
+		return bins[pos];
+	}
+
+	/**
+	 * @param pos position of a rating in the CRS arrays of the training matrix
+	 * @return community time bin of the rating
+	 */
+	public int cbin(int pos) {
+		return cbins[pos];
+	}
+
+	/**
+	 * @param pos position of a rating in the CRS arrays of the training matrix
+	 * @return time deviation of the rating
+	 */
+	public double dev(int pos) {
+		return devs[pos];
+	}
+
+	/**
+	 * Return the number of days between two timestamps
+	 *
+	 * @param t1 first timestamp
+	 * @param t2 second timestamp
+	 * @return number of days
+	 */
+	public static int days(long t1, long t2) {
+		return (int) TimeUnit.MILLISECONDS.toDays(Math.abs(t1 - t2));
+	}
+
+	/**
+	 * Return the day of week of a timestamp in UTC, numbered from Saturday (0) to Friday (6)
+	 *
+	 * @param timestamp timestamp
+	 * @return day of week
+	 */
+	public static int dayOfWeek(long timestamp) {
+		// 1 January 1970 was a Thursday
+		return (int) Math.floorMod(Math.floorDiv(timestamp, TimeUnit.DAYS.toMillis(1)) + 5, 7L);
+	}
+
+}
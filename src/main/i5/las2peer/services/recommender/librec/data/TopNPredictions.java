@@ -0,0 +1,86 @@
+package i5.las2peer.services.recommender.librec.data;
+
+/**
+ * Top-N predictions of a set of users, stored in compressed row form.
+ *
+ * The predictions of the user users[u] are found at positions ptr[u] to ptr[u+1]-1 of the items and
+ * predictions arrays, ordered by descending prediction. Users are ordered by ascending identifier.
+ */
+public class TopNPredictions {
+
+	private final int n;
+	private final int[] users;
+	private final int[] ptr;
+	private final int[] items;
+	private final float[] predictions;
+
+	/**
+	 * @param n
+	 *            maximum number of predictions per user
+	 * @param users
+	 *            user identifiers in ascending order
+	 * @param ptr
+	 *            start position of each user's predictions, users.length + 1 entries
+	 * @param items
+	 *            item identifiers
+	 * @param predictions
+	 *            predictions
+	 */
+	public TopNPredictions(int n, int[] users, int[] ptr, int[] items, float[] predictions) {
+		this.n = n;
+		this.users = users;
+		this.ptr = ptr;
+		this.items = items;
+		this.predictions = predictions;
+	}
+
+	/**
+	 * @return maximum number of predictions per user
+	 */
+	public int getN() {
+		return n;
+	}
+
+	/**
+	 * @return number of users
+	 */
+	public int numUsers() {
+		return users.length;
+	}
+
+	/**
+	 * @return total number of predictions
+	 */
+	public int size() {
+		return ptr[users.length];
+	}
+
+	/**
+	 * @return user identifiers in ascending order
+	 */
+	public int[] getUsers() {
+		return users;
+	}
+
+	/**
+	 * @return row pointers into the items and predictions arrays
+	 */
+	public int[] getPointers() {
+		return ptr;
+	}
+
+	/**
+	 * @return item identifiers
+	 */
+	public int[] getItems() {
+		return items;
+	}
+
+	/**
+	 * @return predictions
+	 */
+	public float[] getPredictions() {
+		return predictions;
+	}
+
+}
@@ -27,6 +27,7 @@ import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * 
@@ -46,8 +47,8 @@ public class AR extends Recommender {
 	// confidence matrix of association rules
 	private Table<Integer, Integer, Double> A;
 
-	public AR(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public AR(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		// cannot predict ratings, but only order preferences
 		isRankingPred = true;
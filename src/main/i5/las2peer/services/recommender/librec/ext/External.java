@@ -2,6 +2,7 @@ package i5.las2peer.services.recommender.librec.ext;
 
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * <p>
@@ -21,8 +22,8 @@ import i5.las2peer.services.recommender.librec.intf.Recommender;
  */
 public class External extends Recommender {
 
-	public External(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public External(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = false; // not applicable to item recommendation
 	}
@@ -28,6 +28,7 @@ import com.google.common.collect.Table;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Lists;
 
 /**
@@ -48,8 +49,8 @@ public class Hybrid extends Recommender {
 	Map<Integer, Integer> itemDegrees = new HashMap<>();
 	double maxProb = Double.MIN_VALUE, maxHeat = Double.MIN_VALUE;
 
-	public Hybrid(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public Hybrid(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		algoName = "Hybrid (HeatS+ProbS)";
 		isRankingPred = true;
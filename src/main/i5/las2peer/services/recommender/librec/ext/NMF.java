@@ -25,6 +25,7 @@ import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -40,8 +41,8 @@ public class NMF extends IterativeRecommender {
 	protected DenseMatrix W, H;
 	protected SparseMatrix V;
 
-	public NMF(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public NMF(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		// no need to update learning rate
 		lRate = -1;
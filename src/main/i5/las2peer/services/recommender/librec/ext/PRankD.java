@@ -27,9 +27,11 @@ import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.SymmMatrix;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.ranking.RankSGD;
 import i5.las2peer.services.recommender.librec.util.Lists;
 import i5.las2peer.services.recommender.librec.util.Randoms;
+import i5.las2peer.services.recommender.librec.util.SimilarityKernel;
 
 /**
  * Neil Hurley, <strong>Personalised ranking with diversity</strong>, RecSys 2013.
@@ -53,8 +55,8 @@ public class PRankD extends RankSGD {
 	// similarity filter
 	private float alpha;
 
-	public PRankD(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public PRankD(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true;
 	}
@@ -94,12 +96,30 @@ public class PRankD extends RankSGD {
 		itemCorrs = buildCorrs(false);
 	}
 
+	/**
+	 * item similarities are computed by binary cosine similarity
+	 */
+	@Override
+	protected SimilarityKernel similarityKernel() {
+		return similarityKernel("cos-binary");
+	}
+
+	/**
+	 * override this approach to transform item similarity
+	 */
+	@Override
+	protected double correlation(SimilarityKernel kernel, boolean isUser, int i, int j) {
+		return transform(super.correlation(kernel, isUser, i, j));
+	}
+
 	/**
 	 * override this approach to transform item similarity
 	 */
 	protected double correlation(SparseVector iv, SparseVector jv) {
-		double sim = correlation(iv, jv, "cos-binary");
+		return transform(correlation(iv, jv, "cos-binary"));
+	}
 
+	private double transform(double sim) {
 		if (Double.isNaN(sim))
 			sim = 0.0;
 
@@ -22,6 +22,7 @@ import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * 
@@ -36,8 +37,8 @@ public class SlopeOne extends Recommender {
 	// matrices for item-item differences with number of occurrences/cardinary
 	private DenseMatrix devMatrix, cardMatrix;
 
-	public SlopeOne(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public SlopeOne(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 	}
 
 	@Override
@@ -18,20 +18,16 @@ import i5.las2peer.services.recommender.librec.data.UserContext;
 public class ContextRecommender extends IterativeRecommender {
 
 	// {user, user-context}
-	protected static Map<Integer, UserContext> userContexts;
+	protected Map<Integer, UserContext> userContexts;
 	// {item, item-context}
-	protected static Map<Integer, ItemContext> itemContexts;
+	protected Map<Integer, ItemContext> itemContexts;
 	// {user, item, rating-context}
-	protected static Table<Integer, Integer, RatingContext> ratingContexts;
+	protected Table<Integer, Integer, RatingContext> ratingContexts;
 
-	// initialization
-	static {
+	public ContextRecommender(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		// read context information here
 	}
-
-	public ContextRecommender(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
-	}
 	
 }
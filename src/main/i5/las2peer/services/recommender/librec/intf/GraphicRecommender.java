@@ -22,44 +22,41 @@ public class GraphicRecommender extends Recommender {
 	/**
 	 * line configer for general probabilistic graphic models
 	 */
-	protected static LineConfiger pgmOptions;
+	protected LineConfiger pgmOptions;
 
 	/**
 	 * number of topics
 	 */
-	protected static int numFactors;
+	protected int numFactors;
 
 	/**
 	 * Dirichlet hyper-parameters of user-topic distribution: typical value is 50/K
 	 */
-	protected static float initAlpha;
+	protected float initAlpha;
 
 	/**
 	 * Dirichlet hyper-parameters of topic-item distribution, typical value is 0.01
 	 */
-	protected static float initBeta;
+	protected float initBeta;
 	/**
 	 * burn-in period
 	 */
-	protected static int burnIn;
+	protected int burnIn;
 
 	/**
 	 * sample lag (if -1 only one sample taken)
 	 */
-	protected static int sampleLag;
+	protected int sampleLag;
 
 	/**
 	 * maximum number of iterations
 	 */
-	protected static int numIters;
+	protected int numIters;
 
 	/**
 	 * intervals for printing verbose information
 	 */
-	protected static int numIntervals;
-
-	// indicator of initialization of the general recommender
-	public static boolean isInitialized = false;
+	protected int numIntervals;
 
 	/*********************************** Method-specific Parameters ************************/
 
@@ -124,27 +121,23 @@ public class GraphicRecommender extends Recommender {
 	 */
 	protected double loss, lastLoss;
 
-	public GraphicRecommender(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public GraphicRecommender(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
-		if (!isInitialized) {
-			isInitialized = true;
-			
-			numFactors = cf.getInt("num.factors", 10);
-			numIters = cf.getInt("num.max.iter", 30);
+		numFactors = cf.getInt("num.factors", 10);
+		numIters = cf.getInt("num.max.iter", 30);
 
-			pgmOptions = cf.getParamOptions("pgm.setup");
-			if (pgmOptions != null) {
-				burnIn = pgmOptions.getInt("-burn-in");
-				sampleLag = pgmOptions.getInt("-sample-lag");
-				numIntervals = pgmOptions.getInt("-interval");
+		pgmOptions = cf.getParamOptions("pgm.setup");
+		if (pgmOptions != null) {
+			burnIn = pgmOptions.getInt("-burn-in");
+			sampleLag = pgmOptions.getInt("-sample-lag");
+			numIntervals = pgmOptions.getInt("-interval");
 
-				initAlpha = pgmOptions.getFloat("-alpha", 1.0f / numFactors);
-				initBeta = pgmOptions.getFloat("-beta", 1.0f / numFactors);
+			initAlpha = pgmOptions.getFloat("-alpha", 1.0f / numFactors);
+			initBeta = pgmOptions.getFloat("-beta", 1.0f / numFactors);
 
-				assert burnIn > 0;
-				assert sampleLag > 0;
-			}
+			assert burnIn > 0;
+			assert sampleLag > 0;
 		}
 	}
 
@@ -18,6 +18,18 @@
 
 package i5.las2peer.services.recommender.librec.intf;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
 import i5.las2peer.services.recommender.librec.data.Configuration;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
@@ -25,6 +37,8 @@ import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.util.FileIO;
 import i5.las2peer.services.recommender.librec.util.LineConfiger;
 import i5.las2peer.services.recommender.librec.util.Logs;
+import i5.las2peer.services.recommender.librec.util.Parallel;
+import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -36,28 +50,98 @@ import i5.las2peer.services.recommender.librec.util.Strings;
 @Configuration("factors, lRate, maxLRate, regB, regU, regI, iters, boldDriver")
 public abstract class IterativeRecommender extends Recommender {
 
-	/************************************ Static parameters for all recommenders ***********************************/
+	/**
+	 * Execution of the epochs of stochastic gradient descent, see {@link #learnSGD(RatingUpdate)}
+	 */
+	public enum SGDMode {
+		// one thread visiting the ratings in the order of the training matrix, reproducible for a given seed
+		SERIAL,
+		// several threads updating the model without locks, each visiting a share of a random permutation of the
+		// ratings
+		HOGWILD,
+		// strata of non-conflicting blocks of the ratings, each updated by several threads in an order given by the
+		// seed, reproducible for a given seed regardless of the number of threads
+		DSGD
+	}
+
+	/**
+	 * Stochastic gradient descent update of the model parameters for one training rating
+	 */
+	protected interface RatingUpdate {
+		/**
+		 * @param u user
+		 * @param j item
+		 * @param ruj rating
+		 * @return loss of the rating, including the regularization of the parameters used for the rating
+		 * @throws Exception on errors computing the prediction
+		 */
+		double update(int u, int j, double ruj) throws Exception;
+	}
+
+	/**
+	 * Stochastic gradient descent update of the model parameters for one training rating, given its position in the
+	 * training matrix, e.g. to look up features of the rating kept in arrays aligned with the training matrix
+	 */
+	protected interface EntryUpdate {
+		/**
+		 * @param u user
+		 * @param j item
+		 * @param ruj rating
+		 * @param pos position of the rating in the CRS arrays of the training matrix
+		 * @return loss of the rating, including the regularization of the parameters used for the rating
+		 * @throws Exception on errors computing the prediction
+		 */
+		double update(int u, int j, double ruj, int pos) throws Exception;
+	}
+
+	/**
+	 * Stochastic gradient descent update of the model parameters for ratings of one user that are visited one after
+	 * another
+	 */
+	protected interface UserUpdate {
+		/**
+		 * @param u user
+		 * @param items items of the ratings, in the order in which they are visited
+		 * @param ratings ratings of the items
+		 * @param positions positions of the ratings in the CRS arrays of the training matrix
+		 * @param count number of ratings
+		 * @return sum of the losses of the ratings
+		 * @throws Exception on errors computing the predictions
+		 */
+		double update(int u, int[] items, double[] ratings, int[] positions, int count) throws Exception;
+	}
+
+	// minimum number of ratings per thread of a parallel epoch
+	private static final int MIN_RATINGS_PER_THREAD = 1000;
+
+	/************************************ Learning parameters of the run *******************************************/
 	// init, maximum learning rate, momentum
-	protected static float initLRate, initLRateN, initLRateF, initLRateMu, initLRateC, initLRateCN, initLRateCF, maxLRate, momentum;
+	protected float initLRate, initLRateN, initLRateF, initLRateMu, initLRateC, initLRateCN, initLRateCF, maxLRate, momentum;
 	// line configer for regularization parameters
-	protected static LineConfiger regOptions;
+	protected LineConfiger regOptions;
 	// user, item and bias regularization
-	protected static float reg, regB, regU, regI, regN, regC, regCN, regCF;
+	protected float reg, regB, regU, regI, regN, regC, regCN, regCF;
 	// number of factors
-	protected static int numFactors;
+	protected int numFactors;
 	// number of iterations
-	protected static int numIters;
+	protected int numIters;
 
 	// whether to adjust learning rate automatically
-	protected static boolean isBoldDriver;
+	protected boolean isBoldDriver;
 	// decay of learning rate
-	protected static float decay;
+	protected float decay;
 
-	// indicator of static field initialization
-	public static boolean resetStatics = true;
-	
 	// perform evaluation on the test set after each learning iteration
-	protected static boolean isEvalIter = false;
+	protected boolean isEvalIter = false;
+
+	// execution of the epochs of stochastic gradient descent
+	protected SGDMode sgdMode = SGDMode.HOGWILD;
+	// number of user blocks and item blocks of the DSGD mode
+	protected int numBlocks;
+	// seed of the DSGD mode and of the visiting order of the Hogwild mode
+	protected long sgdSeed;
+	// generator of the initial model, seeded in the DSGD mode; null draws from the shared generator of Randoms
+	protected Random initRandom;
 
 	/************************************ Recommender-specific parameters ****************************************/
 	// factorized user-factor matrix
@@ -81,44 +165,47 @@ public abstract class IterativeRecommender extends Recommender {
 	// initial models using normal distribution
 	protected boolean initByNorm;
 
-	public IterativeRecommender(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
-
-		// initialization 
-		if (resetStatics) {
-			resetStatics = false;
-
-			LineConfiger lc = cf.getParamOptions("learn.rate");
-			if (lc != null) {
-				initLRate = Float.parseFloat(lc.getMainParam());
-				initLRateN = lc.getFloat("-n", initLRate);
-				initLRateF = lc.getFloat("-f", initLRate);
-				initLRateMu = lc.getFloat("-mu", initLRate);
-				initLRateC = lc.getFloat("-c", initLRate);
-				initLRateCN = lc.getFloat("-cn", initLRate);
-				initLRateCF = lc.getFloat("-cf", initLRate);
-				maxLRate = lc.getFloat("-max", -1);
-				isBoldDriver = lc.contains("-bold-driver");
-				decay = lc.getFloat("-decay", -1);
-				momentum = lc.getFloat("-momentum", 50);
-			}
-
-			regOptions = cf.getParamOptions("reg.lambda");
-			if (regOptions != null) {
-				reg = Float.parseFloat(regOptions.getMainParam());
-				regU = regOptions.getFloat("-u", reg);
-				regI = regOptions.getFloat("-i", reg);
-				regB = regOptions.getFloat("-b", reg);
-				regN = regOptions.getFloat("-n", reg);
-				regC = regOptions.getFloat("-c", reg);
-				regCN = regOptions.getFloat("-cn", reg);
-				regCF = regOptions.getFloat("-cf", reg);
-			}
+	public IterativeRecommender(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
+
+		// learning parameters
+		LineConfiger lc = cf.getParamOptions("learn.rate");
+		if (lc != null) {
+			initLRate = Float.parseFloat(lc.getMainParam());
+			initLRateN = lc.getFloat("-n", initLRate);
+			initLRateF = lc.getFloat("-f", initLRate);
+			initLRateMu = lc.getFloat("-mu", initLRate);
+			initLRateC = lc.getFloat("-c", initLRate);
+			initLRateCN = lc.getFloat("-cn", initLRate);
+			initLRateCF = lc.getFloat("-cf", initLRate);
+			maxLRate = lc.getFloat("-max", -1);
+			isBoldDriver = lc.contains("-bold-driver");
+			decay = lc.getFloat("-decay", -1);
+			momentum = lc.getFloat("-momentum", 50);
+			String mode = lc.getString("-sgd", "hogwild");
+			if ("serial".equalsIgnoreCase(mode))
+				sgdMode = SGDMode.SERIAL;
+			else if ("dsgd".equalsIgnoreCase(mode))
+				sgdMode = SGDMode.DSGD;
+			numBlocks = Math.max(1, lc.getInt("-blocks", 8));
+			sgdSeed = lc.getLong("-seed", 1L);
+		}
 
-			numFactors = cf.getInt("num.factors", 10);
-			numIters = cf.getInt("num.max.iter", 100);
+		regOptions = cf.getParamOptions("reg.lambda");
+		if (regOptions != null) {
+			reg = Float.parseFloat(regOptions.getMainParam());
+			regU = regOptions.getFloat("-u", reg);
+			regI = regOptions.getFloat("-i", reg);
+			regB = regOptions.getFloat("-b", reg);
+			regN = regOptions.getFloat("-n", reg);
+			regC = regOptions.getFloat("-c", reg);
+			regCN = regOptions.getFloat("-cn", reg);
+			regCF = regOptions.getFloat("-cf", reg);
 		}
 
+		numFactors = cf.getInt("num.factors", 10);
+		numIters = cf.getInt("num.max.iter", 100);
+
 		// method-specific settings
 		lRate = initLRate;
 		lRateN = initLRateN;
@@ -158,6 +245,7 @@ public abstract class IterativeRecommender extends Recommender {
 	 * 
 	 */
 	protected boolean isConverged(int iter) throws Exception {
+		reportIteration(iter, loss);
 
 		float delta_loss = (float) (last_loss - loss);
 
@@ -199,7 +287,7 @@ public abstract class IterativeRecommender extends Recommender {
 
 		if (Double.isNaN(loss) || Double.isInfinite(loss)) {
 			Logs.error("Loss = {}: current settings does not fit the recommender! Change the settings and try again!", loss);
-			System.exit(-1);
+			throw new Exception("Learning diverged: loss = " + loss);
 		}
 
 		// check if converged
@@ -217,6 +305,398 @@ public abstract class IterativeRecommender extends Recommender {
 		return converged;
 	}
 
+	/**
+	 * Learns the model by stochastic gradient descent: runs epochs over all training ratings, calling the update for
+	 * each rating, until the loss has converged or the maximum number of iterations is reached. The loss of an epoch
+	 * is half the sum of the losses returned by the updates.
+	 * 
+	 * In the Hogwild mode (Niu et al., Hogwild!: A lock-free approach to parallelizing stochastic gradient descent,
+	 * NIPS 2011), the users of an epoch are visited in a random order, and the ratings of each user in a random order.
+	 * The ratings are split into one share of whole users for each of numCPUs threads, such that the user parameters
+	 * are updated by one thread only and recently used users stay in the caches. The threads update the model at the
+	 * same time without locking, so that the updates need to be safe for concurrent use apart from lost updates of
+	 * single parameters, e.g. not insert into shared hash tables. The losses of the threads are summed up after the
+	 * epoch. The random orders are drawn from generators seeded with the seed s of option "-seed s" of learn.rate and
+	 * the epoch, such that a run with one thread visits the ratings in the same order each time. In the serial mode
+	 * (option "-sgd serial" of learn.rate), the ratings are visited in the order of the training matrix by the calling
+	 * thread, such that results are reproducible.
+	 * 
+	 * In the DSGD mode (Gemulla et al., Large-scale matrix factorization with distributed stochastic gradient
+	 * descent, KDD 2011; option "-sgd dsgd -blocks p -seed s" of learn.rate), the ratings are divided into p x p
+	 * blocks of users and items. An epoch consists of p strata, each made of p blocks that share no users and no
+	 * items, in a random order. The blocks of a stratum are updated by up to numCPUs threads if the model has
+	 * {@link #isBlockLocal() block-local updates}, otherwise one after another. The order of the strata and the
+	 * order of the ratings within each block are drawn from random generators seeded with s, and the model is
+	 * initialized with s as well, such that the learned model only depends on s and not on the number of threads.
+	 * 
+	 * @param update
+	 *            update of the model for one rating
+	 * @throws Exception
+	 *             if an update fails or learning diverges
+	 */
+	protected void learnSGD(RatingUpdate update) throws Exception {
+		learnUserSGD((u, items, ratings, positions, count) -> {
+			double userLoss = 0;
+			for (int k = 0; k < count; k++)
+				userLoss += update.update(u, items[k], ratings[k]);
+			return userLoss;
+		});
+	}
+
+	/**
+	 * Learns the model by stochastic gradient descent like {@link #learnSGD(RatingUpdate)}, passing the position of
+	 * each rating in the training matrix to the update
+	 * 
+	 * @param update
+	 *            update of the model for one rating
+	 * @throws Exception
+	 *             if an update fails or learning diverges
+	 */
+	protected void learnSGD(EntryUpdate update) throws Exception {
+		learnUserSGD((u, items, ratings, positions, count) -> {
+			double userLoss = 0;
+			for (int k = 0; k < count; k++)
+				userLoss += update.update(u, items[k], ratings[k], positions[k]);
+			return userLoss;
+		});
+	}
+
+	/**
+	 * Learns the model by stochastic gradient descent like {@link #learnSGD(RatingUpdate)}, calling the update for
+	 * ratings of one user at a time. All ratings of a user are passed at once, except in the DSGD mode, where the
+	 * ratings of a user in each block are passed separately.
+	 * 
+	 * @param update
+	 *            update of the model for ratings of one user
+	 * @throws Exception
+	 *             if an update fails or learning diverges
+	 */
+	protected void learnUserSGD(UserUpdate update) throws Exception {
+		int[] rowPtr = trainMatrix.getRowPointers(), colIdx = trainMatrix.getColumnIndices();
+		double[] data = trainMatrix.getData();
+		int size = data.length;
+
+		if (sgdMode == SGDMode.SERIAL) {
+			int[] items = new int[16], positions = new int[16];
+			double[] ratings = new double[16];
+			for (int iter = 1; iter <= numIters; iter++) {
+				loss = 0;
+				for (int u = 0; u < rowPtr.length - 1; u++) {
+					int n = rowPtr[u + 1] - rowPtr[u];
+					if (n == 0)
+						continue;
+					if (items.length < n) {
+						items = new int[n];
+						positions = new int[n];
+						ratings = new double[n];
+					}
+					System.arraycopy(colIdx, rowPtr[u], items, 0, n);
+					System.arraycopy(data, rowPtr[u], ratings, 0, n);
+					for (int k = 0; k < n; k++)
+						positions[k] = rowPtr[u] + k;
+					loss += update.update(u, items, ratings, positions, n);
+				}
+				loss *= 0.5;
+
+				if (isConverged(iter))
+					break;
+			}
+			return;
+		}
+		if (sgdMode == SGDMode.DSGD) {
+			learnStratified(update);
+			return;
+		}
+
+		// users in the random order in which they are visited, and the ratings of each user in random order
+		int[] users = new int[rowPtr.length - 1];
+		int numUsers = 0;
+		for (int u = 0; u < rowPtr.length - 1; u++) {
+			if (rowPtr[u + 1] > rowPtr[u])
+				users[numUsers++] = u;
+		}
+		int[] starts = new int[numUsers + 1], order = new int[size];
+		int numThreads = Math.max(1, Math.min(numCPUs, size / MIN_RATINGS_PER_THREAD));
+		// first user of each share
+		int[] bounds = new int[numThreads + 1];
+
+		ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+		try {
+			for (int iter = 1; iter <= numIters; iter++) {
+				Random random = new Random(sgdSeed + 31L * iter);
+				shuffle(users, 0, numUsers, random);
+				int k = 0, t = 1;
+				for (int i = 0; i < numUsers; i++) {
+					int u = users[i];
+					starts[i] = k;
+					for (int pos = rowPtr[u]; pos < rowPtr[u + 1]; pos++)
+						order[k++] = pos;
+					shuffle(order, starts[i], k, random);
+					while (t < numThreads && k >= (long) size * t / numThreads)
+						bounds[t++] = i + 1;
+				}
+				starts[numUsers] = size;
+				while (t <= numThreads)
+					bounds[t++] = numUsers;
+
+				loss = 0;
+				if (executor == null) {
+					loss = updateUsers(update, users, starts, order, colIdx, data, 0, numUsers);
+				} else {
+					List<Future<Double>> shares = new ArrayList<>();
+					for (t = 0; t < numThreads; t++) {
+						final int from = bounds[t], to = bounds[t + 1];
+						shares.add(executor.submit(() -> updateUsers(update, users, starts, order, colIdx, data, from,
+								to)));
+					}
+					for (Future<Double> share : shares)
+						loss += Parallel.get(share);
+				}
+				loss *= 0.5;
+
+				if (isConverged(iter))
+					break;
+			}
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Updates the model for the ratings of a range of users
+	 * 
+	 * @param users
+	 *            users in the order in which they are visited
+	 * @param starts
+	 *            first position in the order of the ratings of each user
+	 * @param order
+	 *            positions of the ratings in the training matrix in the order in which they are visited
+	 * @return sum of the losses of the ratings
+	 */
+	private static double updateUsers(UserUpdate update, int[] users, int[] starts, int[] order, int[] colIdx,
+			double[] data, int from, int to) throws Exception {
+		double sumLoss = 0;
+		int[] items = new int[16], positions = new int[16];
+		double[] ratings = new double[16];
+		for (int i = from; i < to; i++) {
+			int n = starts[i + 1] - starts[i];
+			if (items.length < n) {
+				items = new int[n];
+				positions = new int[n];
+				ratings = new double[n];
+			}
+			for (int k = 0; k < n; k++) {
+				int pos = order[starts[i] + k];
+				items[k] = colIdx[pos];
+				ratings[k] = data[pos];
+				positions[k] = pos;
+			}
+			sumLoss += update.update(users[i], items, ratings, positions, n);
+		}
+		return sumLoss;
+	}
+
+	/**
+	 * Learns the model in the DSGD mode, see {@link #learnSGD(RatingUpdate)}
+	 */
+	private void learnStratified(UserUpdate update) throws Exception {
+		int[] rowPtr = trainMatrix.getRowPointers(), colIdx = trainMatrix.getColumnIndices();
+		double[] data = trainMatrix.getData();
+		int p = numBlocks;
+
+		// positions of the ratings of each block, grouped by user in the order of the training matrix
+		int[] blockPtr = new int[p * p + 1];
+		for (int u = 0; u < rowPtr.length - 1; u++) {
+			for (int pos = rowPtr[u]; pos < rowPtr[u + 1]; pos++)
+				blockPtr[userBlock(u) * p + itemBlock(colIdx[pos]) + 1]++;
+		}
+		for (int b = 0; b < p * p; b++)
+			blockPtr[b + 1] += blockPtr[b];
+		int[] blockPos = new int[data.length], rows = new int[data.length];
+		int[] next = Arrays.copyOf(blockPtr, p * p);
+		for (int u = 0; u < rowPtr.length - 1; u++) {
+			for (int pos = rowPtr[u]; pos < rowPtr[u + 1]; pos++) {
+				int k = next[userBlock(u) * p + itemBlock(colIdx[pos])]++;
+				blockPos[k] = pos;
+				rows[k] = u;
+			}
+		}
+
+		int[] strata = new int[p];
+		for (int s = 0; s < p; s++)
+			strata[s] = s;
+		long[] blockSeeds = new long[p * p];
+		double[] blockLosses = new double[p];
+
+		int numThreads = isBlockLocal() ? Math.min(numCPUs, p) : 1;
+		ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+		try {
+			for (int iter = 1; iter <= numIters; iter++) {
+				Random random = new Random(sgdSeed + 31L * iter);
+				shuffle(strata, 0, p, random);
+				for (int b = 0; b < p * p; b++)
+					blockSeeds[b] = random.nextLong();
+
+				loss = 0;
+				for (int s : strata) {
+					if (executor == null) {
+						for (int r = 0; r < p; r++) {
+							int b = r * p + (r + s) % p;
+							blockLosses[r] = updateBlock(update, blockPos, rows, colIdx, data, blockPtr[b],
+									blockPtr[b + 1], blockSeeds[b]);
+						}
+					} else {
+						List<Future<Double>> blocks = new ArrayList<>();
+						for (int r = 0; r < p; r++) {
+							final int b = r * p + (r + s) % p;
+							blocks.add(executor.submit(() -> updateBlock(update, blockPos, rows, colIdx, data,
+									blockPtr[b], blockPtr[b + 1], blockSeeds[b])));
+						}
+						for (int r = 0; r < p; r++)
+							blockLosses[r] = Parallel.get(blocks.get(r));
+					}
+					finishStratum();
+
+					// sum up in a fixed order
+					for (int r = 0; r < p; r++)
+						loss += blockLosses[r];
+				}
+				loss *= 0.5;
+
+				if (isConverged(iter))
+					break;
+			}
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Updates the model for the ratings of a block, visiting its users in a random order and the ratings of each
+	 * user in a random order
+	 * 
+	 * @return sum of the losses of the ratings
+	 */
+	private static double updateBlock(UserUpdate update, int[] blockPos, int[] rows, int[] colIdx, double[] data,
+			int from, int to, long seed) throws Exception {
+		Random random = new Random(seed);
+
+		// first rating of each user of the block
+		int numUsers = 0;
+		for (int k = from; k < to; k++) {
+			if (k == from || rows[k] != rows[k - 1])
+				numUsers++;
+		}
+		int[] starts = new int[numUsers + 1];
+		numUsers = 0;
+		for (int k = from; k < to; k++) {
+			if (k == from || rows[k] != rows[k - 1])
+				starts[numUsers++] = k;
+		}
+		starts[numUsers] = to;
+		int[] users = new int[numUsers];
+		for (int i = 0; i < numUsers; i++)
+			users[i] = i;
+		shuffle(users, 0, numUsers, random);
+
+		double blockLoss = 0;
+		int[] order = new int[16], items = new int[16];
+		double[] ratings = new double[16];
+		for (int i : users) {
+			int n = starts[i + 1] - starts[i];
+			if (order.length < n) {
+				order = new int[n];
+				items = new int[n];
+				ratings = new double[n];
+			}
+			System.arraycopy(blockPos, starts[i], order, 0, n);
+			shuffle(order, 0, n, random);
+			for (int k = 0; k < n; k++) {
+				items[k] = colIdx[order[k]];
+				ratings[k] = data[order[k]];
+			}
+			blockLoss += update.update(rows[starts[i]], items, ratings, order, n);
+		}
+		return blockLoss;
+	}
+
+	/**
+	 * @return whether the update of a rating changes only the parameters of its user and of its item, and parameters
+	 *         kept for its user block during a stratum, such that the blocks of a stratum of the DSGD mode can be
+	 *         updated in parallel
+	 */
+	protected boolean isBlockLocal() {
+		return false;
+	}
+
+	/**
+	 * Called in the DSGD mode after the blocks of a stratum have been updated, e.g. to apply updates of parameters
+	 * shared by the blocks
+	 */
+	protected void finishStratum() {
+	}
+
+	/**
+	 * @return block of a user in the DSGD mode
+	 */
+	protected int userBlock(int u) {
+		return u % numBlocks;
+	}
+
+	/**
+	 * @return block of an item in the DSGD mode
+	 */
+	protected int itemBlock(int j) {
+		return j % numBlocks;
+	}
+
+	/**
+	 * Fisher-Yates shuffle of a range of an array
+	 */
+	private static void shuffle(int[] values, int from, int to, Random random) {
+		for (int i = to - 1; i > from; i--) {
+			int other = from + random.nextInt(i - from + 1);
+			int tmp = values[i];
+			values[i] = values[other];
+			values[other] = tmp;
+		}
+	}
+
+	/**
+	 * Report a finished learning iteration to the progress listener and stop learning if the thread has been
+	 * interrupted, e.g. because the recommender run has been cancelled. With eval.iter, the test data is evaluated
+	 * first, so that the listener finds the measures of the iteration in {@link #measures}, with the time of the
+	 * evaluation as {@link Measure#TestTime}.
+	 * 
+	 * @param iter
+	 *            current iteration
+	 * @param loss
+	 *            training loss, NaN if not computed
+	 * @throws InterruptedException
+	 *             if the thread has been interrupted
+	 * @throws Exception
+	 *             if the evaluation fails
+	 */
+	protected void reportIteration(int iter, double loss) throws Exception {
+		if (isEvalIter && testMatrix != null) {
+			Stopwatch sw = Stopwatch.createStarted();
+			boolean flag = isResultsOut;
+			isResultsOut = false; // to stop outputs
+			Map<Measure, Double> iterMeasures = evalAll();
+			isResultsOut = flag; // recover the flag
+			iterMeasures.put(Measure.TestTime, (double) sw.elapsed(TimeUnit.MILLISECONDS));
+			measures = iterMeasures;
+		}
+
+		if (progressListener != null)
+			progressListener.iterationFinished(iter, numIters, loss);
+
+		if (Thread.interrupted())
+			throw new InterruptedException();
+	}
+
 	/**
 	 * Update current learning rate after each epoch <br>
 	 * 
@@ -275,21 +755,38 @@ public abstract class IterativeRecommender extends Recommender {
 
 	@Override
 	protected void initModel() throws Exception {
+		// the DSGD mode is reproducible for a given seed, including the initial model; the generator is local to
+		// the model because folds and configurations are trained concurrently
+		initRandom = sgdMode == SGDMode.DSGD ? new Random(sgdSeed) : null;
 
 		P = new DenseMatrix(numUsers, numFactors);
 		Q = new DenseMatrix(numItems, numFactors);
 
 		// initialize model
 		if (initByNorm) {
-			P.init(initMean, initStd);
-			Q.init(initMean, initStd);
+			P.init(initMean, initStd, initRandom);
+			Q.init(initMean, initStd, initRandom);
 		} else {
-			P.init(); // P.init(smallValue);
-			Q.init(); // Q.init(smallValue);
+			P.init(initRandom); // P.init(smallValue);
+			Q.init(initRandom); // Q.init(smallValue);
 		}
 
 	}
 
+	/**
+	 * @return a Gaussian value of the initial model
+	 */
+	protected double initGaussian(double mean, double sigma) {
+		return initRandom == null ? Randoms.gaussian(mean, sigma) : mean + sigma * initRandom.nextGaussian();
+	}
+
+	/**
+	 * @return a uniform value in (0, 1) of the initial model
+	 */
+	protected double initUniform() {
+		return initRandom == null ? Randoms.random() : initRandom.nextDouble();
+	}
+
 	protected void saveModel() throws Exception {
 		// make a folder
 		String dirPath = FileIO.makeDirectory(tempDirPath, algoName);
@@ -0,0 +1,30 @@
+package i5.las2peer.services.recommender.librec.intf;
+
+/**
+ * Receives notifications on the progress of building a recommender model, e.g. to report the status of a
+ * recommender run. Notifications are sent from the thread building the model.
+ */
+public interface ProgressListener {
+
+	/**
+	 * Phases of a recommender run
+	 */
+	public enum Phase {
+		LOAD, GRAPH, COMMUNITIES, TRAINING, MATERIALIZE, PERSIST
+	}
+
+	/**
+	 * Called when a phase starts. A phase ends when the next phase starts.
+	 * @param phase phase that starts
+	 */
+	void phaseStarted(Phase phase);
+
+	/**
+	 * Called after each learning iteration of an iterative recommender.
+	 * @param iter iteration, starting at 1
+	 * @param maxIters maximum number of iterations
+	 * @param loss training loss after the iteration, NaN if the recommender does not compute a loss
+	 */
+	void iterationFinished(int iter, int maxIters, double loss);
+
+}
@@ -41,6 +41,8 @@ import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.SymmMatrix;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener.Phase;
+import i5.las2peer.services.recommender.librec.util.CorrelationBuilder;
 import i5.las2peer.services.recommender.librec.util.Dates;
 import i5.las2peer.services.recommender.librec.util.Debug;
 import i5.las2peer.services.recommender.librec.util.FileConfiger;
@@ -49,7 +51,8 @@ import i5.las2peer.services.recommender.librec.util.LineConfiger;
 import i5.las2peer.services.recommender.librec.util.Lists;
 import i5.las2peer.services.recommender.librec.util.Logs;
 import i5.las2peer.services.recommender.librec.util.Measures;
-import i5.las2peer.services.recommender.librec.util.Sims;
+import i5.las2peer.services.recommender.librec.util.ResultCache;
+import i5.las2peer.services.recommender.librec.util.SimilarityKernel;
 import i5.las2peer.services.recommender.librec.util.Stats;
 
 /**
@@ -60,88 +63,80 @@ import i5.las2peer.services.recommender.librec.util.Stats;
 @Configuration
 public abstract class Recommender implements Runnable {
 
-	/************************************ Static parameters for all recommenders ***********************************/
+	/************************************ Run parameters shared by all recommenders *******************************/
+	// context of the recommender run
+	protected final RecommenderContext context;
+
 	// configer
-	public static FileConfiger cf;
+	protected FileConfiger cf;
 	// matrix of rating data
-	public static SparseMatrix rateMatrix, timeMatrix;
+	protected SparseMatrix rateMatrix, timeMatrix;
 
 	// default temporary file directory
-	public static String tempDirPath;
-
-	// params used for multiple runs
-	public static Map<String, List<Float>> params = new HashMap<>();
+	protected String tempDirPath;
 
 	// Guava cache configuration
-	protected static String cacheSpec;
+	protected String cacheSpec;
 
 	// number of cpu cores used for parallelization
-	protected static int numCPUs;
+	protected int numCPUs;
 
 	// verbose
-	protected static boolean verbose = true;
+	protected boolean verbose = true;
 
 	// line configer for item ranking, evaluation
-	protected static LineConfiger rankOptions, algoOptions;
+	protected LineConfiger rankOptions, algoOptions;
 
 	// is ranking/rating prediction
-	public static boolean isRankingPred;
+	protected boolean isRankingPred;
 	// is evaluation required
-	public static boolean isEvaluate = true;
+	protected boolean isEvaluate = true;
 	// threshold to binarize ratings
-	public static float binThold;
+	protected float binThold;
 	// the ratio of validation data split from training data
-	public static float validationRatio;
+	protected float validationRatio;
 	// is diversity-based measures used
-	protected static boolean isDiverseUsed;
+	protected boolean isDiverseUsed;
 	// early-stop criteria
-	protected static Measure earlyStopMeasure = null;
+	protected Measure earlyStopMeasure = null;
 	// is save model
-	protected static boolean isSaveModel = false;
+	protected boolean isSaveModel = false;
 	// is split data by date
-	protected static boolean isSplitByDate;
+	protected boolean isSplitByDate;
 	// view of rating predictions
-	public static String view;
+	protected String view;
 
 	// rate DAO object
-	public static DataDAO rateDao;
+	protected DataDAO rateDao;
 
 	// number of users, items, ratings
-	protected static int numUsers, numItems, numRates;
+	protected int numUsers, numItems, numRates;
 	// number of recommended items
-	protected static int numRecs, numIgnore;
+	protected int numRecs, numIgnore;
 
 	// a list of rating scales
-	protected static List<Double> ratingScale;
+	protected List<Double> ratingScale;
 	// number of rating levels
-	protected static int numLevels;
+	protected int numLevels;
 	// Maximum, minimum values of rating scales
-	protected static double maxRate, minRate;
+	protected double maxRate, minRate;
 
 	// ratings' timestamps
-	public static SparseMatrix testTimeMatrix;
+	protected SparseMatrix testTimeMatrix;
 	// minimum, maximum timestamp
-	protected static long minTimestamp, maxTimestamp;
+	protected long minTimestamp, maxTimestamp;
 
 	// init mean and standard deviation
-	protected static double initMean, initStd;
+	protected double initMean, initStd;
 	// small value for initialization
-	protected static double smallValue = 0.01;
+	protected double smallValue = 0.01;
 
 	// number of nearest neighbors
-	protected static int knn;
+	protected int knn;
 	// similarity measure
-	protected static String similarityMeasure;
+	protected String similarityMeasure;
 	// number of shrinkage
-	protected static int similarityShrinkage;
-
-	/**
-	 * An indicator of initialization of static fields. This enables us to control when static fields are initialized,
-	 * while "static block" will be always initialized or executed. The latter could cause unexpected exceptions when
-	 * multiple runs (with different configuration files) are conducted sequentially, because some static settings will
-	 * not be override in such a "staic block".
-	 */
-	public static boolean resetStatics = true;
+	protected int similarityShrinkage;
 
 	/************************************ Recommender-specific parameters ****************************************/
 	// algorithm's name
@@ -156,14 +151,14 @@ public abstract class Recommender implements Runnable {
 	// user-vector cache, item-vector cache
 	protected LoadingCache<Integer, SparseVector> userCache, itemCache;
 
-	// user-items cache, item-users cache
-	protected LoadingCache<Integer, List<Integer>> userItemsCache, itemUsersCache;
-
 	// rating matrix for training, validation and test
 	protected SparseMatrix trainMatrix, validationMatrix, testMatrix;
 
 	// tables containing user and item taggins
 	public Table<Integer, Integer, Set<Long>> userTagTable, itemTagTable;
+
+	// receives progress notifications while the model is built, may be null
+	public ProgressListener progressListener;
 	
 	// upper symmetric matrix of item-item correlations
 	protected SymmMatrix corrs;
@@ -191,6 +186,8 @@ public abstract class Recommender implements Runnable {
 	/**
 	 * Constructor for Recommender
 	 * 
+	 * @param context
+	 *            context of the recommender run
 	 * @param trainMatrix
 	 *            train matrix
 	 * @param testMatrix
@@ -198,74 +195,76 @@ public abstract class Recommender implements Runnable {
 	 * @param fold
 	 *            fold number
 	 */
-	public Recommender(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+	public Recommender(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
 
 		// config recommender
-		if (cf == null || rateMatrix == null) {
+		if (context == null || context.getConfig() == null || context.getRateMatrix() == null) {
 			Logs.error("Recommender is not well configured");
 			System.exit(-1);
 		}
 
-		// static initialization (reset), only done once
-		if (resetStatics) {
-			// change the indicator
-			resetStatics = false;
-
-			ratingScale = rateDao.getRatingScale();
-			minRate = ratingScale.get(0);
-			maxRate = ratingScale.get(ratingScale.size() - 1);
-			numLevels = ratingScale.size();
-
-			numUsers = rateDao.numUsers();
-			numItems = rateDao.numItems();
-
-			// ratings' timestamps
-			minTimestamp = rateDao.getMinTimestamp();
-			maxTimestamp = rateDao.getMaxTimestamp();
-			if (testTimeMatrix == null)
-				testTimeMatrix = timeMatrix;
-
-			initMean = 0.0;
-			initStd = 0.1;
-
-			cacheSpec = cf.getString("guava.cache.spec", "maximumSize=200,expireAfterAccess=2m");
-
-			rankOptions = cf.getParamOptions("item.ranking");
-			isRankingPred = rankOptions.isMainOn();
-			isDiverseUsed = rankOptions.contains("-diverse");
-			numRecs = rankOptions.getInt("-topN", -1);
-			numIgnore = rankOptions.getInt("-ignore", -1);
-
-			LineConfiger evalOptions = cf.getParamOptions("evaluation.setup");
-			view = evalOptions.getString("--test-view", "all");
-			validationRatio = evalOptions.getFloat("-v", 0.0f);
-			isSplitByDate = evalOptions.contains("--by-date");
-
-			String earlyStop = evalOptions.getString("--early-stop");
-			if (earlyStop != null) {
-				for (Measure m : Measure.values()) {
-					if (m.name().equalsIgnoreCase(earlyStop)) {
-						earlyStopMeasure = m;
-						break;
-					}
+		this.context = context;
+		cf = context.getConfig();
+		rateDao = context.getRateDao();
+		rateMatrix = context.getRateMatrix();
+		timeMatrix = context.getTimeMatrix();
+		testTimeMatrix = context.getTestTimeMatrix();
+		binThold = context.getBinThold();
+		isEvaluate = context.isEvaluate();
+		tempDirPath = context.getTempDirPath();
+
+		ratingScale = rateDao.getRatingScale();
+		minRate = ratingScale.get(0);
+		maxRate = ratingScale.get(ratingScale.size() - 1);
+		numLevels = ratingScale.size();
+
+		numUsers = rateDao.numUsers();
+		numItems = rateDao.numItems();
+
+		// ratings' timestamps
+		minTimestamp = rateDao.getMinTimestamp();
+		maxTimestamp = rateDao.getMaxTimestamp();
+
+		initMean = 0.0;
+		initStd = 0.1;
+
+		cacheSpec = cf.getString("guava.cache.spec", "maximumSize=200,expireAfterAccess=2m");
+
+		rankOptions = cf.getParamOptions("item.ranking");
+		isRankingPred = rankOptions.isMainOn();
+		isDiverseUsed = rankOptions.contains("-diverse");
+		numRecs = rankOptions.getInt("-topN", -1);
+		numIgnore = rankOptions.getInt("-ignore", -1);
+
+		LineConfiger evalOptions = cf.getParamOptions("evaluation.setup");
+		view = evalOptions.getString("--test-view", "all");
+		validationRatio = evalOptions.getFloat("-v", 0.0f);
+		isSplitByDate = evalOptions.contains("--by-date");
+
+		String earlyStop = evalOptions.getString("--early-stop");
+		if (earlyStop != null) {
+			for (Measure m : Measure.values()) {
+				if (m.name().equalsIgnoreCase(earlyStop)) {
+					earlyStopMeasure = m;
+					break;
 				}
 			}
+		}
 
-			int numProcessors = Runtime.getRuntime().availableProcessors();
-			numCPUs = evalOptions.getInt("-cpu", numProcessors);
-
-			// output options
-			LineConfiger outputOptions = cf.getParamOptions("output.setup");
-			if (outputOptions != null) {
-				verbose = outputOptions.isOn("-verbose", true);
-				isSaveModel = outputOptions.contains("--save-model");
-			}
+		int numProcessors = Runtime.getRuntime().availableProcessors();
+		numCPUs = evalOptions.getInt("-cpu", numProcessors);
 
-			knn = cf.getInt("num.neighbors", 20);
-			similarityMeasure = cf.getString("similarity", "PCC");
-			similarityShrinkage = cf.getInt("num.shrinkage", 30);
+		// output options
+		LineConfiger outputOptions = cf.getParamOptions("output.setup");
+		if (outputOptions != null) {
+			verbose = outputOptions.isOn("-verbose", true);
+			isSaveModel = outputOptions.contains("--save-model");
 		}
 
+		knn = cf.getInt("num.neighbors", 20);
+		similarityMeasure = cf.getString("similarity", "PCC");
+		similarityShrinkage = cf.getInt("num.shrinkage", 30);
+
 		// training, validation, test data
 		if (validationRatio > 0 && validationRatio < 1) {
 			DataSplitter ds = new DataSplitter(trainMatrix);
@@ -286,7 +285,6 @@ public abstract class Recommender implements Runnable {
 		foldInfo = fold > 0 ? " fold [" + fold + "]" : "";
 
 		// whether to write out results
-		LineConfiger outputOptions = cf.getParamOptions("output.setup");
 		if (outputOptions != null) {
 			isResultsOut = outputOptions.isMainOn();
 		}
@@ -326,6 +324,7 @@ public abstract class Recommender implements Runnable {
 		
 		if (Debug.ON) {
 			// learn a recommender model
+			reportPhase(Phase.TRAINING);
 			initModel();
 			initTime = sw.elapsed(TimeUnit.MILLISECONDS);
 
@@ -333,6 +332,7 @@ public abstract class Recommender implements Runnable {
 			printAlgoConfig();
 
 			// build the model
+			reportPhase(Phase.TRAINING);
 			buildModel();
 			learnTime = sw.elapsed(TimeUnit.MILLISECONDS) - initTime;
 
@@ -392,10 +392,43 @@ public abstract class Recommender implements Runnable {
 			saveModel();
 	}
 	
+	/**
+	 * notify the progress listener, if any, that a new phase of building the model starts
+	 */
+	protected void reportPhase(Phase phase) {
+		if (progressListener != null)
+			progressListener.phaseStarted(phase);
+	}
+
+	/**
+	 * return a result computed from the given data, e.g. a graph built from the training data, which is shared with
+	 * recommenders of other runs using the same result cache; without a cache, the result is computed
+	 */
+	protected <T> T getSharedResult(Object data, String key, ResultCache.Computation<T> computation) throws Exception {
+		ResultCache resultCache = context.getResultCache();
+		return resultCache != null ? resultCache.get(data, key, computation) : computation.compute();
+	}
+
 	public double getPrediction(int u, int j) throws Exception {
 		return predict(u, j);
 	}
 
+	/**
+	 * Computes the predictions of a user for all items, e.g. to rank the items of the user. Models may override this
+	 * to share the terms of a user between the items.
+	 * 
+	 * @param u
+	 *            user id
+	 * @param predictions
+	 *            array of at least numItems elements, to which the prediction of each item j is written at index j
+	 * @throws Exception
+	 *             on errors computing a prediction
+	 */
+	public void getPredictions(int u, double[] predictions) throws Exception {
+		for (int j = 0; j < numItems; j++)
+			predictions[j] = getPrediction(u, j);
+	}
+
 	private void printAlgoConfig() {
 		String algoInfo = toString();
 
@@ -433,7 +466,7 @@ public abstract class Recommender implements Runnable {
 	/*
 	 * return the evaluation information of a recommend
 	 */
-	public static String getEvalInfo(Map<Measure, Double> measures) {
+	public String getEvalInfo(Map<Measure, Double> measures) {
 		String evalInfo = null;
 		if (isRankingPred) {
 			if (isDiverseUsed)
@@ -498,7 +531,9 @@ public abstract class Recommender implements Runnable {
 	}
 
 	/**
-	 * build user-user or item-item correlation matrix from training data
+	 * build user-user or item-item correlation matrix from training data. The correlations are computed in parallel
+	 * for the pairs of users/items with co-ratings. If configuration key "similarity.prune" is on, only the
+	 * "num.neighbors" largest correlations of each user/item are kept.
 	 * 
 	 * @param isUser
 	 *            whether it is user-user correlation matrix
@@ -510,24 +545,55 @@ public abstract class Recommender implements Runnable {
 		Logs.debug("Build {} similarity matrix ...", isUser ? "user" : "item");
 
 		int count = isUser ? numUsers : numItems;
-		SymmMatrix corrs = new SymmMatrix(count);
+		CorrelationBuilder builder = new CorrelationBuilder(trainMatrix, isUser, count);
+		builder.setNumThreads(numCPUs);
+		if (cf.isOn("similarity.prune", false))
+			builder.setNeighbors(knn);
 
-		for (int i = 0; i < count; i++) {
-			SparseVector iv = isUser ? trainMatrix.row(i) : trainMatrix.column(i);
-			if (iv.getCount() == 0)
-				continue;
-			// user/item itself exclusive
-			for (int j = i + 1; j < count; j++) {
-				SparseVector jv = isUser ? trainMatrix.row(j) : trainMatrix.column(j);
+		return builder.build(this::similarityKernel, (kernel, i, j) -> correlation(kernel, isUser, i, j));
+	}
 
-				double sim = correlation(iv, jv);
+	/**
+	 * @return kernel computing similarities using method specified by configuration key "similarity"
+	 */
+	protected SimilarityKernel similarityKernel() {
+		return similarityKernel(similarityMeasure);
+	}
 
-				if (!Double.isNaN(sim))
-					corrs.set(i, j, sim);
-			}
-		}
+	/**
+	 * @param method
+	 *            similarity method
+	 * @return kernel computing similarities for a specific method
+	 */
+	protected SimilarityKernel similarityKernel(String method) {
+		return new SimilarityKernel(SimilarityKernel.Method.parse(method), (minRate + maxRate) / 2.0,
+				similarityShrinkage);
+	}
+
+	/**
+	 * Compute the correlation between two users (rows) or items (columns) of the training matrix
+	 * 
+	 * @param kernel
+	 *            kernel computing the similarity, used by one thread only
+	 * @param isUser
+	 *            whether to compute the correlation between users or items
+	 * @param i
+	 *            user/item i
+	 * @param j
+	 *            user/item j
+	 * @return the correlation between users/items i and j; return NaN if the correlation is not computable.
+	 */
+	protected double correlation(SimilarityKernel kernel, boolean isUser, int i, int j) {
+		int[] ptr = isUser ? trainMatrix.getRowPointers() : trainMatrix.getColumnPointers();
+		int[] idx = isUser ? trainMatrix.getColumnIndices() : trainMatrix.getRowIndices();
+		double[] val = isUser ? trainMatrix.getData() : trainMatrix.getColumnData();
 
-		return corrs;
+		// users/items not contained in the training matrix have no ratings
+		int n = ptr.length - 1;
+		int iFrom = i < n ? ptr[i] : 0, iTo = i < n ? ptr[i + 1] : 0;
+		int jFrom = j < n ? ptr[j] : 0, jTo = j < n ? ptr[j + 1] : 0;
+
+		return kernel.similarity(idx, val, iFrom, iTo, idx, val, jFrom, jTo);
 	}
 
 	/**
@@ -555,52 +621,8 @@ public abstract class Recommender implements Runnable {
 	 * @return the correlation between vectors i and j; return NaN if the correlation is not computable.
 	 */
 	protected double correlation(SparseVector iv, SparseVector jv, String method) {
-
-		// compute similarity
-		List<Double> is = new ArrayList<>();
-		List<Double> js = new ArrayList<>();
-
-		for (Integer idx : jv.getIndex()) {
-			if (iv.contains(idx)) {
-				is.add(iv.get(idx));
-				js.add(jv.get(idx));
-			}
-		}
-
-		double sim = 0;
-		switch (method.toLowerCase()) {
-		case "cos":
-			// for ratings along the overlappings
-			sim = Sims.cos(is, js);
-			break;
-		case "cos-binary":
-			// for ratings along all the vectors (including one-sided 0s)
-			sim = iv.inner(jv) / (Math.sqrt(iv.inner(iv)) * Math.sqrt(jv.inner(jv)));
-			break;
-		case "msd":
-			sim = Sims.msd(is, js);
-			break;
-		case "cpc":
-			sim = Sims.cpc(is, js, (minRate + maxRate) / 2.0);
-			break;
-		case "exjaccard":
-			sim = Sims.exJaccard(is, js);
-			break;
-		case "pcc":
-		default:
-			sim = Sims.pcc(is, js);
-			break;
-		}
-
-		// shrink to account for vector size
-		if (!Double.isNaN(sim)) {
-			int n = is.size();
-			int shrinkage = cf.getInt("num.shrinkage");
-			if (shrinkage > 0)
-				sim *= n / (n + shrinkage + 0.0);
-		}
-
-		return sim;
+		return similarityKernel(method).similarity(iv.getIndex(), iv.getData(), 0, iv.getCount(), jv.getIndex(),
+				jv.getData(), 0, jv.getCount());
 	}
 
 	/*
@@ -1009,9 +1031,9 @@ public abstract class Recommender implements Runnable {
 
 		int num = 0;
 		double sum = 0.0;
+		SimilarityKernel kernel = similarityKernel();
 		for (int id = 0; id < cutoff; id++) {
 			int i = rankedItems.get(id);
-			SparseVector iv = trainMatrix.column(i);
 
 			for (int jd = id + 1; jd < cutoff; jd++) {
 				int j = rankedItems.get(jd);
@@ -1019,7 +1041,7 @@ public abstract class Recommender implements Runnable {
 				double corr = corrs.get(i, j);
 				if (corr == 0) {
 					// if not found
-					corr = correlation(iv, trainMatrix.column(j));
+					corr = correlation(kernel, false, i, j);
 					if (!Double.isNaN(corr))
 						corrs.set(i, j, corr);
 				}
@@ -0,0 +1,148 @@
+package i5.las2peer.services.recommender.librec.intf;
+
+import i5.las2peer.services.recommender.librec.data.DataDAO;
+import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.util.FileConfiger;
+import i5.las2peer.services.recommender.librec.util.Logs;
+import i5.las2peer.services.recommender.librec.util.ResultCache;
+import i5.las2peer.services.recommender.librec.util.Strings;
+
+/**
+ * Configuration and data of a recommender run, shared by all recommenders created for the run, e.g. the models
+ * of the folds of an evaluation. Recommenders only read from the context, so that one context can be used by
+ * several recommenders training at the same time, and recommenders of different runs do not affect each other.
+ *
+ * The setters are meant to be called before the first recommender is created from the context.
+ */
+public class RecommenderContext {
+
+	// configer
+	private final FileConfiger cf;
+	// rate DAO object
+	private final DataDAO rateDao;
+	// matrix of rating data and ratings' timestamps
+	private final SparseMatrix rateMatrix, timeMatrix;
+	// timestamps of the test ratings
+	private SparseMatrix testTimeMatrix;
+
+	// threshold to binarize ratings
+	private float binThold = -1;
+	// is evaluation required
+	private boolean isEvaluate = true;
+	// temporary file directory
+	private String tempDirPath = "./Results/";
+
+	// intermediate results shared with the recommenders of other runs, may be null
+	private ResultCache resultCache;
+
+	// social data, read when first used
+	private DataDAO socialDao;
+	private SparseMatrix socialMatrix;
+
+	/**
+	 * @param cf configuration of the run
+	 * @param rateDao rating data, including the mapping between outer and inner identifiers
+	 * @param rateMatrix rating matrix
+	 * @param timeMatrix matrix of the ratings' timestamps
+	 */
+	public RecommenderContext(FileConfiger cf, DataDAO rateDao, SparseMatrix rateMatrix, SparseMatrix timeMatrix) {
+		this.cf = cf;
+		this.rateDao = rateDao;
+		this.rateMatrix = rateMatrix;
+		this.timeMatrix = timeMatrix;
+		this.testTimeMatrix = timeMatrix;
+	}
+
+	public FileConfiger getConfig() {
+		return cf;
+	}
+
+	public DataDAO getRateDao() {
+		return rateDao;
+	}
+
+	public SparseMatrix getRateMatrix() {
+		return rateMatrix;
+	}
+
+	public SparseMatrix getTimeMatrix() {
+		return timeMatrix;
+	}
+
+	/**
+	 * @return timestamps of the test ratings, by default the timestamps of all ratings
+	 */
+	public SparseMatrix getTestTimeMatrix() {
+		return testTimeMatrix;
+	}
+
+	public void setTestTimeMatrix(SparseMatrix testTimeMatrix) {
+		this.testTimeMatrix = testTimeMatrix;
+	}
+
+	public float getBinThold() {
+		return binThold;
+	}
+
+	public void setBinThold(float binThold) {
+		this.binThold = binThold;
+	}
+
+	public boolean isEvaluate() {
+		return isEvaluate;
+	}
+
+	public void setEvaluate(boolean isEvaluate) {
+		this.isEvaluate = isEvaluate;
+	}
+
+	public String getTempDirPath() {
+		return tempDirPath;
+	}
+
+	public void setTempDirPath(String tempDirPath) {
+		this.tempDirPath = tempDirPath;
+	}
+
+	/**
+	 * @return cache of intermediate results shared with other runs, null if results are not shared
+	 */
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Shares intermediate results, e.g. graphs and communities, with the recommenders of other runs on the same
+	 * data using the same cache.
+	 * @param resultCache result cache, null to not share results
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * @return social data given by the dataset.social setting, read on first use
+	 * @throws Exception on file I/O errors
+	 */
+	public synchronized DataDAO getSocialDao() throws Exception {
+		if (socialDao == null) {
+			String socialPath = cf.getPath("dataset.social");
+			Logs.debug("Social dataset: {}", Strings.last(socialPath, 38));
+
+			DataDAO dao = new DataDAO(socialPath, rateDao.getUserIds());
+			socialMatrix = dao.readData()[0];
+			socialDao = dao;
+		}
+		return socialDao;
+	}
+
+	/**
+	 * @return social rate matrix, indicating a user is connecting to a number of other users
+	 * @throws Exception on file I/O errors
+	 */
+	public synchronized SparseMatrix getSocialMatrix() throws Exception {
+		getSocialDao();
+		return socialMatrix;
+	}
+
+}
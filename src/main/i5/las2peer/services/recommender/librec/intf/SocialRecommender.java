@@ -18,15 +18,12 @@
 
 package i5.las2peer.services.recommender.librec.intf;
 
-import java.util.List;
-
 import com.google.common.cache.LoadingCache;
 
 import i5.las2peer.services.recommender.librec.data.Configuration;
 import i5.las2peer.services.recommender.librec.data.DataDAO;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
-import i5.las2peer.services.recommender.librec.util.Logs;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -39,47 +36,32 @@ import i5.las2peer.services.recommender.librec.util.Strings;
 public abstract class SocialRecommender extends IterativeRecommender {
 
 	// social data dao
-	protected static DataDAO socialDao;
+	protected DataDAO socialDao;
 
 	// socialMatrix: social rate matrix, indicating a user is connecting to a number of other users
 	// trSocialMatrix: inverse social matrix, indicating a user is connected by a number of other users
-	protected static SparseMatrix socialMatrix;
+	protected SparseMatrix socialMatrix;
 
 	// social regularization
-	protected static float regS;
-
-	// indicator of static field initialization or reset
-	public static boolean resetStatics = true;
+	protected float regS;
 
 	// shared social cache for all social recommenders
 	protected LoadingCache<Integer, SparseVector> socialCache;
-	protected LoadingCache<Integer, List<Integer>> userFriendsCache;
 
-	// initialization
-	static {
-		String socialPath = cf.getPath("dataset.social");
-		Logs.debug("Social dataset: {}", Strings.last(socialPath, 38));
-
-		socialDao = new DataDAO(socialPath, rateDao.getUserIds());
+	public SocialRecommender(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
+		// social data are read once per run and shared by its recommenders
 		try {
-			socialMatrix = socialDao.readData()[0];
+			socialDao = context.getSocialDao();
+			socialMatrix = context.getSocialMatrix();
 			numUsers = socialDao.numUsers();
-
-			//socialCache = socialMatrix.rowCache(cacheSpec);
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.exit(-1);
 		}
-	}
-
-	public SocialRecommender(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
 
-		if (resetStatics) {
-			resetStatics = false;
-			regS = regOptions.getFloat("-s", reg);
-		}
+		regS = regOptions.getFloat("-s", reg);
 	}
 
 	@Override
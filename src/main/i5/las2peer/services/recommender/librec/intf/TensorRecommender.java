@@ -43,24 +43,22 @@ import i5.las2peer.services.recommender.librec.util.Strings;
 public class TensorRecommender extends IterativeRecommender {
 
 	/* for all tensors */
-	protected static SparseTensor rateTensor;
-	protected static int numDimensions, userDimension, itemDimension;
-	protected static int[] dimensions;
+	protected SparseTensor rateTensor;
+	protected int numDimensions, userDimension, itemDimension;
+	protected int[] dimensions;
 
 	/* for a specific recommender */
 	protected SparseTensor trainTensor, testTensor;
 
-	static {
+	public TensorRecommender(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) throws Exception {
+		super(context, trainMatrix, testMatrix, fold);
+
 		rateTensor = rateDao.getRateTensor();
 		numDimensions = rateTensor.numDimensions();
 		dimensions = rateTensor.dimensions();
 
 		userDimension = rateTensor.getUserDimension();
 		itemDimension = rateTensor.getItemDimension();
-	}
-
-	public TensorRecommender(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) throws Exception {
-		super(trainMatrix, testMatrix, fold);
 
 		// construct train and test data
 		trainTensor = rateTensor.clone();
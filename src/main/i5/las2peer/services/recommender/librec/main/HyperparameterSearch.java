@@ -0,0 +1,401 @@
+package i5.las2peer.services.recommender.librec.main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import i5.las2peer.services.recommender.librec.intf.ProgressListener;
+import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.Recommender.Measure;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
+import i5.las2peer.services.recommender.librec.main.LibRec.Fold;
+import i5.las2peer.services.recommender.librec.util.Logs;
+import i5.las2peer.services.recommender.librec.util.ResultCache;
+
+/**
+ * Evaluates several configurations of a recommender on the data of a LibRec instance, e.g. to tune the learning
+ * rates, regularization and graph parameters.
+ *
+ * The data is split into folds once, according to the evaluation parameters of the LibRec instance, and all
+ * configurations are evaluated on the same folds. The folds of all configurations are trained on a shared thread
+ * pool. Graphs and communities are computed once per fold for all configurations that share the graph.* and cd.*
+ * parameters.
+ *
+ * Optionally, configurations are abandoned early by successive halving: at the rungs minIters, minIters * eta,
+ * minIters * eta^2, ... iterations, a fold's training loss is compared with the losses of the same fold of the
+ * configurations that have reached the rung before. Only the best 1/eta of them continue training, so that most
+ * of the time is spent on promising configurations. Recommenders that do not report a training loss are never
+ * abandoned.
+ */
+public class HyperparameterSearch {
+
+	public enum State { FINISHED, STOPPED, FAILED }
+
+	/**
+	 * Result of evaluating one configuration
+	 */
+	public static class Result {
+
+		private final Map<String, String> parameters;
+		private State state = State.FINISHED;
+		private String error;
+		private int iterations;
+		private Map<Measure, Double> measures;
+
+		private Result(Map<String, String> parameters) {
+			this.parameters = parameters;
+		}
+
+		/**
+		 * @return parameters of the configuration
+		 */
+		public Map<String, String> getParameters() {
+			return parameters;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		/**
+		 * @return error message of a failed configuration, null otherwise
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * @return highest training iteration reached in any fold
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+
+		/**
+		 * @return evaluation measures averaged over all folds, null if the configuration has not finished
+		 */
+		public Map<Measure, Double> getMeasures() {
+			return measures;
+		}
+
+		@Override
+		public String toString() {
+			String info = parameters + " " + state.toString().toLowerCase() + " after " + iterations + " iterations";
+			if (measures != null)
+				info += ": " + Recommender.getRatingEvalInfo(measures);
+			if (error != null)
+				info += ": " + error;
+			return info;
+		}
+	}
+
+	private final LibRec librec;
+	private final List<Map<String, String>> configurations = new ArrayList<>();
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private int minIters = 0;
+	private int eta = 3;
+	private Measure measure = Measure.RMSE;
+
+	// training losses of each fold at each rung, for successive halving
+	private final Map<String, List<Double>> rungLosses = new HashMap<>();
+
+	/**
+	 * @param librec LibRec instance containing the data and the configuration shared by all configurations
+	 */
+	public HyperparameterSearch(LibRec librec) {
+		this.librec = librec;
+	}
+
+	/**
+	 * Adds a configuration to evaluate. Parameters override the configuration of the LibRec instance; evaluation
+	 * parameters (eval.*) are the same for all configurations.
+	 * @param parameters parameters of the configuration
+	 */
+	public void addConfiguration(Map<String, String> parameters) {
+		configurations.add(new LinkedHashMap<>(parameters));
+	}
+
+	/**
+	 * @param numThreads number of folds trained at the same time
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * Enables successive halving.
+	 * @param minIters iteration of the first rung, 0 to disable successive halving
+	 * @param eta reduction factor, the best 1/eta configurations continue at each rung
+	 */
+	public void setSuccessiveHalving(int minIters, int eta) {
+		this.minIters = minIters;
+		this.eta = Math.max(2, eta);
+	}
+
+	/**
+	 * @param measure measure the configurations are ranked by
+	 */
+	public void setMeasure(Measure measure) {
+		this.measure = measure;
+	}
+
+	/**
+	 * Evaluates all configurations and logs the results.
+	 * @return results ranked by the evaluation measure, followed by stopped and failed configurations
+	 * @throws Exception on errors splitting the data
+	 */
+	public List<Result> run() throws Exception {
+		Fold[] folds = librec.splitFolds(librec.createContext(new HashMap<String, String>()).getConfig());
+		ResultCache resultCache = new ResultCache();
+
+		List<Result> results = new ArrayList<>();
+		List<List<Future<Map<Measure, Double>>>> futures = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			for (Map<String, String> parameters : configurations) {
+				Result result = new Result(parameters);
+				RecommenderContext context = librec.createContext(parameters);
+				context.setResultCache(resultCache);
+
+				List<Future<Map<Measure, Double>>> configFutures = new ArrayList<>();
+				for (int f = 0; f < folds.length; f++) {
+					final int fold = f + 1;
+					final Fold foldData = folds[f];
+					configFutures.add(executor.submit(() -> {
+						Recommender model = librec.createModel(context, foldData, fold);
+						model.progressListener = new HalvingListener(result, fold);
+						model.execute();
+						return model.measures;
+					}));
+				}
+				results.add(result);
+				futures.add(configFutures);
+			}
+
+			for (int c = 0; c < results.size(); c++)
+				collect(results.get(c), futures.get(c));
+		} finally {
+			executor.shutdownNow();
+		}
+
+		List<Result> ranked = new ArrayList<>(results);
+		Collections.sort(ranked, (a, b) -> {
+			if (a.measures == null || b.measures == null)
+				return a.measures != null ? -1 : (b.measures != null ? 1 : a.state.compareTo(b.state));
+			int cmp = Double.compare(valueOf(a), valueOf(b));
+			return isLowerBetter(measure) ? cmp : -cmp;
+		});
+
+		Logs.info("Evaluated {} configurations on {} folds, {} results shared", results.size(), folds.length,
+				resultCache.size());
+		for (int r = 0; r < ranked.size(); r++)
+			Logs.info("#{} {}", r + 1, ranked.get(r));
+
+		return ranked;
+	}
+
+	private void collect(Result result, List<Future<Map<Measure, Double>>> configFutures) throws InterruptedException {
+		List<Map<Measure, Double>> foldMeasures = new ArrayList<>();
+		for (Future<Map<Measure, Double>> future : configFutures) {
+			try {
+				foldMeasures.add(future.get());
+			} catch (ExecutionException e) {
+				synchronized (result) {
+					if (result.state == State.FINISHED) {
+						Throwable cause = e.getCause();
+						result.state = cause instanceof InterruptedException ? State.STOPPED : State.FAILED;
+						if (result.state == State.FAILED)
+							result.error = cause.toString();
+					}
+				}
+				// the configuration is abandoned, there is no need to train the other folds
+				for (Future<Map<Measure, Double>> other : configFutures)
+					other.cancel(true);
+			} catch (CancellationException e) {
+				// cancelled after another fold has been stopped or failed
+			}
+		}
+		if (result.state == State.FINISHED)
+			result.measures = LibRec.averageMeasures(foldMeasures);
+	}
+
+	/**
+	 * Decides whether a fold continues training after reaching a rung.
+	 * @return true if the loss is among the best 1/eta losses of the fold at the rung so far
+	 */
+	private synchronized boolean promote(int fold, int rung, double loss) {
+		String key = fold + "/" + rung;
+		List<Double> losses = rungLosses.get(key);
+		if (losses == null) {
+			losses = new ArrayList<>();
+			rungLosses.put(key, losses);
+		}
+		losses.add(loss);
+
+		int better = 0;
+		for (double l : losses) {
+			if (l < loss)
+				better++;
+		}
+		return better < (losses.size() + eta - 1) / eta;
+	}
+
+	private boolean isRung(int iter) {
+		if (minIters <= 0 || iter < minIters)
+			return false;
+		long rung = minIters;
+		while (rung < iter)
+			rung *= eta;
+		return rung == iter;
+	}
+
+	private double valueOf(Result result) {
+		Double value = result.measures.get(measure);
+		if (value == null || Double.isNaN(value))
+			return isLowerBetter(measure) ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		return value;
+	}
+
+	private static boolean isLowerBetter(Measure measure) {
+		switch (measure) {
+		case MAE:
+		case RMSE:
+		case NMAE:
+		case rMAE:
+		case rRMSE:
+		case MPE:
+		case Perplexity:
+		case Loss:
+		case TrainTime:
+		case InitTime:
+		case LearnTime:
+		case TestTime:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Stops the training of a fold when it is not promoted at a rung, by interrupting the training thread
+	 */
+	private class HalvingListener implements ProgressListener {
+
+		private final Result result;
+		private final int fold;
+
+		HalvingListener(Result result, int fold) {
+			this.result = result;
+			this.fold = fold;
+		}
+
+		@Override
+		public void phaseStarted(Phase phase) {
+		}
+
+		@Override
+		public void iterationFinished(int iter, int maxIters, double loss) {
+			synchronized (result) {
+				result.iterations = Math.max(result.iterations, iter);
+			}
+			if (iter < maxIters && isRung(iter) && !Double.isNaN(loss) && !promote(fold, iter, loss)) {
+				Logs.debug("Stop {} fold [{}] at iteration {}: loss = {}", result.parameters, fold, iter, loss);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Creates the configurations of a grid search, i.e. all combinations of the given parameter values.
+	 * @param values values of each parameter
+	 * @return configurations
+	 */
+	public static List<Map<String, String>> grid(Map<String, List<String>> values) {
+		List<Map<String, String>> configurations = new ArrayList<>();
+		configurations.add(new LinkedHashMap<String, String>());
+		for (Map.Entry<String, List<String>> parameter : values.entrySet()) {
+			List<Map<String, String>> extended = new ArrayList<>();
+			for (Map<String, String> configuration : configurations) {
+				for (String value : parameter.getValue()) {
+					Map<String, String> c = new LinkedHashMap<>(configuration);
+					c.put(parameter.getKey(), value);
+					extended.add(c);
+				}
+			}
+			configurations = extended;
+		}
+		return configurations;
+	}
+
+	/**
+	 * Creates the configurations of a random search. Each parameter is either given as a list of values, of
+	 * which one is chosen, or as a range min:max, from which a value is sampled. Ranges of positive numbers are
+	 * sampled on a logarithmic scale, ranges of integers yield integers.
+	 * @param values values or range of each parameter
+	 * @param numSamples number of configurations
+	 * @param random random number generator
+	 * @return distinct configurations, fewer than numSamples if there are not as many combinations
+	 * @throws Exception on invalid ranges
+	 */
+	public static List<Map<String, String>> random(Map<String, List<String>> values, int numSamples, Random random)
+			throws Exception {
+		Set<Map<String, String>> configurations = new LinkedHashSet<>();
+		for (int attempt = 0; configurations.size() < numSamples && attempt < numSamples * 100; attempt++) {
+			Map<String, String> c = new LinkedHashMap<>();
+			for (Map.Entry<String, List<String>> parameter : values.entrySet()) {
+				List<String> options = parameter.getValue();
+				String option = options.get(random.nextInt(options.size()));
+				c.put(parameter.getKey(), isRange(option) ? sample(option, random) : option);
+			}
+			configurations.add(c);
+		}
+		return new ArrayList<>(configurations);
+	}
+
+	/**
+	 * @param value parameter value
+	 * @return true if the value is a range min:max
+	 */
+	public static boolean isRange(String value) {
+		return value.matches("[-+0-9.eE]+:[-+0-9.eE]+");
+	}
+
+	private static String sample(String range, Random random) throws Exception {
+		String[] bounds = range.split(":");
+		boolean isInteger = bounds[0].matches("[-+]?[0-9]+") && bounds[1].matches("[-+]?[0-9]+");
+		double min, max;
+		try {
+			min = Double.parseDouble(bounds[0]);
+			max = Double.parseDouble(bounds[1]);
+		} catch (NumberFormatException e) {
+			throw new Exception("Invalid input: range " + range);
+		}
+		if (min > max)
+			throw new Exception("Invalid input: range " + range);
+
+		double value;
+		if (min > 0)
+			value = Math.exp(Math.log(min) + random.nextDouble() * (Math.log(max) - Math.log(min)));
+		else
+			value = min + random.nextDouble() * (max - min);
+
+		// rounding and the logarithmic scale may leave the range at its ends
+		if (isInteger)
+			return Long.toString(Math.max((long) min, Math.min((long) max, Math.round(value))));
+		value = Math.max(min, Math.min(max, value));
+		return Double.toString(value);
+	}
+
+}
@@ -0,0 +1,249 @@
+package i5.las2peer.services.recommender.librec.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import i5.las2peer.services.recommender.entities.Rating;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener;
+import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.Recommender.Measure;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
+import i5.las2peer.services.recommender.librec.main.LibRec.Fold;
+import i5.las2peer.services.recommender.librec.util.Logs;
+
+/**
+ * Compares implicit-feedback recommenders, e.g. eALS and WRMF, by the training time they need to reach a target
+ * AUC.
+ *
+ * Each fold is trained once for the maximum number of iterations and its test data is evaluated after each
+ * iteration (eval.iter). The training time up to the first iteration whose AUC, averaged over the folds, reaches the
+ * target AUC is the time to target; the time of the evaluations is not counted. The folds are trained one after
+ * another, so that each model can use all threads.
+ */
+public class ImplicitBenchmark {
+
+	/**
+	 * Result of benchmarking one recommender
+	 */
+	public static class Result {
+
+		private final String algorithm;
+		private final int iterations;
+		private final double auc;
+		private final double trainTime;
+		private final boolean isReached;
+
+		private Result(String algorithm, int iterations, double auc, double trainTime, boolean isReached) {
+			this.algorithm = algorithm;
+			this.iterations = iterations;
+			this.auc = auc;
+			this.trainTime = trainTime;
+			this.isReached = isReached;
+		}
+
+		public String getAlgorithm() {
+			return algorithm;
+		}
+
+		/**
+		 * @return first iteration reaching the target, or the maximum number of iterations
+		 */
+		public int getIterations() {
+			return iterations;
+		}
+
+		/**
+		 * @return AUC after the iterations, averaged over the folds
+		 */
+		public double getAuc() {
+			return auc;
+		}
+
+		/**
+		 * @return training time of the iterations in milliseconds, averaged over the folds
+		 */
+		public double getTrainTime() {
+			return trainTime;
+		}
+
+		/**
+		 * @return whether the target AUC has been reached
+		 */
+		public boolean isReached() {
+			return isReached;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %s AUC = %.6f after %d iterations, train time = %.0f ms", algorithm,
+					isReached ? "reached" : "did not reach", auc, iterations, trainTime);
+		}
+	}
+
+	private final Map<String, String> parameters = new LinkedHashMap<>();
+	private String ratingsFile, datasetType;
+	private List<Rating> ratings;
+
+	/**
+	 * @param ratingsFile file containing the rating data
+	 * @param datasetType type of the dataset (filmtrust, movielens, netflix)
+	 */
+	public ImplicitBenchmark(String ratingsFile, String datasetType) {
+		this();
+		this.ratingsFile = ratingsFile;
+		this.datasetType = datasetType;
+	}
+
+	/**
+	 * @param ratings rating data
+	 */
+	public ImplicitBenchmark(List<Rating> ratings) {
+		this();
+		this.ratings = ratings;
+	}
+
+	private ImplicitBenchmark() {
+		parameters.put("eval.type", "cv");
+		parameters.put("eval.folds", "5");
+		parameters.put("eval.parallel", "false");
+		parameters.put("eval.iter", "on");
+		// train for exactly the given number of iterations
+		parameters.put("evaluation.setup", "--test-view all");
+	}
+
+	/**
+	 * Sets a parameter of all recommenders, overriding the defaults of the recommenders, e.g. num.factors
+	 * @param parameter parameter to set
+	 * @param value parameter value
+	 */
+	public void setParameter(String parameter, String value) {
+		parameters.put(parameter, value);
+	}
+
+	/**
+	 * Trains a recommender for the maximum number of iterations and finds the first iteration reaching the target AUC
+	 * @param algorithm recommender algorithm, as accepted by {@link LibRec#LibRec(String)}
+	 * @param targetAuc AUC to reach
+	 * @param maxIters maximum number of iterations
+	 * @return result of the first iteration reaching the target AUC, or of the maximum number of iterations
+	 * @throws Exception on file I/O errors and errors building the recommender
+	 */
+	public Result run(String algorithm, double targetAuc, int maxIters) throws Exception {
+		LibRec librec = new LibRec(algorithm);
+		for (Entry<String, String> parameter : parameters.entrySet())
+			librec.setParameter(parameter.getKey(), parameter.getValue());
+		librec.setParameter("num.max.iter", Integer.toString(maxIters));
+		if (ratings != null)
+			librec.setRatings(ratings);
+		else
+			librec.readRatingsFromFile(ratingsFile, datasetType);
+
+		RecommenderContext context = librec.createContext(new HashMap<String, String>());
+		Fold[] folds = librec.splitFolds(context.getConfig());
+		double[][] aucs = new double[folds.length][maxIters];
+		double[][] trainTimes = new double[folds.length][maxIters];
+		for (int f = 0; f < folds.length; f++) {
+			Recommender model = librec.createModel(context, folds[f], f + 1);
+			IterationListener listener = new IterationListener(model, aucs[f], trainTimes[f]);
+			model.progressListener = listener;
+			model.execute();
+			folds[f].release();
+
+			// a model that has converged early keeps its AUC for the remaining iterations
+			for (int iter = Math.max(1, listener.lastIter); iter < maxIters; iter++) {
+				aucs[f][iter] = aucs[f][iter - 1];
+				trainTimes[f][iter] = trainTimes[f][iter - 1];
+			}
+		}
+
+		Result result = null;
+		for (int iter = 1; iter <= maxIters; iter++) {
+			double auc = 0, trainTime = 0;
+			for (int f = 0; f < folds.length; f++) {
+				auc += aucs[f][iter - 1] / folds.length;
+				trainTime += trainTimes[f][iter - 1] / folds.length;
+			}
+			result = new Result(algorithm, iter, auc, trainTime, auc >= targetAuc);
+			Logs.debug("{} iter {}: AUC = {}, train time = {} ms", algorithm, iter, (float) auc, (long) trainTime);
+			if (result.isReached())
+				break;
+		}
+		return result;
+	}
+
+	/**
+	 * Records the AUC of a model after each iteration, as evaluated by the model with eval.iter, and the training
+	 * time up to the iteration without the time of the evaluations
+	 */
+	private static class IterationListener implements ProgressListener {
+
+		private final Recommender model;
+		private final double[] aucs, trainTimes;
+		private Stopwatch sw;
+		private long evalTime;
+		private int lastIter;
+
+		IterationListener(Recommender model, double[] aucs, double[] trainTimes) {
+			this.model = model;
+			this.aucs = aucs;
+			this.trainTimes = trainTimes;
+		}
+
+		@Override
+		public void phaseStarted(Phase phase) {
+			// training starts with the initialization of the model
+			if (phase == Phase.TRAINING && sw == null)
+				sw = Stopwatch.createStarted();
+		}
+
+		@Override
+		public void iterationFinished(int iter, int maxIters, double loss) {
+			if (iter > aucs.length || model.measures == null)
+				return;
+			evalTime += model.measures.get(Measure.TestTime).longValue();
+			aucs[iter - 1] = model.measures.get(Measure.AUC);
+			trainTimes[iter - 1] = sw.elapsed(TimeUnit.MILLISECONDS) - evalTime;
+			lastIter = iter;
+		}
+	}
+
+	/**
+	 * Runs the benchmark. Arguments: ratings file, dataset type, target AUC (default 0.9), maximum number of
+	 * iterations (default 30) and the algorithms to compare (default WRMF and eALS)
+	 * @param args command line arguments
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			Logs.error("Usage: ImplicitBenchmark <ratings-file> <dataset-type> [target-auc] [max-iter] [algorithm ...]");
+			return;
+		}
+		double targetAuc = args.length > 2 ? Double.parseDouble(args[2]) : 0.9;
+		int maxIters = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+		List<String> algorithms = args.length > 4 ? Arrays.asList(args).subList(4, args.length)
+				: Arrays.asList("wrmf", "eals");
+
+		ImplicitBenchmark benchmark = new ImplicitBenchmark(args[0], args[1]);
+		List<Result> results = new ArrayList<>();
+		try {
+			for (String algorithm : algorithms)
+				results.add(benchmark.run(algorithm, targetAuc, maxIters));
+		} catch (Exception e) {
+			// the exception as last argument logs its stack trace
+			Logs.error("Benchmark failed: {}", e.getMessage(), e);
+			return;
+		}
+
+		Logs.info("Time to AUC {}:", targetAuc);
+		for (Result result : results)
+			Logs.info(result.toString());
+	}
+
+}
@@ -1,12 +1,18 @@
 package i5.las2peer.services.recommender.librec.main;
 
 import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.BiMap;
@@ -21,12 +27,18 @@ import i5.las2peer.services.recommender.entities.Rating;
 import i5.las2peer.services.recommender.entities.Tagging;
 import i5.las2peer.services.recommender.librec.baseline.ItemAverage;
 import i5.las2peer.services.recommender.librec.data.DataDAO;
+import i5.las2peer.services.recommender.librec.data.DataSnapshot;
 import i5.las2peer.services.recommender.librec.data.DataSplitter;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.TagDataSplitter;
 import i5.las2peer.services.recommender.librec.data.TimeDataSplitter;
+import i5.las2peer.services.recommender.librec.data.TopNPredictions;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener.Phase;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
 import i5.las2peer.services.recommender.librec.intf.Recommender.Measure;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
+import i5.las2peer.services.recommender.librec.ranking.EALS;
 import i5.las2peer.services.recommender.librec.ranking.WRMF;
 import i5.las2peer.services.recommender.librec.rating.ComNeighSVD;
 import i5.las2peer.services.recommender.librec.rating.ComNeighSVDFast;
@@ -37,10 +49,12 @@ import i5.las2peer.services.recommender.librec.rating.TimeComNeighSVD;
 import i5.las2peer.services.recommender.librec.rating.TimeComNeighSVDFast;
 import i5.las2peer.services.recommender.librec.rating.TimeNeighSVD;
 import i5.las2peer.services.recommender.librec.rating.TimeSVD;
+import i5.las2peer.services.recommender.librec.util.BoundedHeap;
 import i5.las2peer.services.recommender.librec.util.Dates;
 import i5.las2peer.services.recommender.librec.util.FileConfiger;
 import i5.las2peer.services.recommender.librec.util.FileIO;
 import i5.las2peer.services.recommender.librec.util.Logs;
+import i5.las2peer.services.recommender.librec.util.Parallel;
 
 public class LibRec {
 	
@@ -49,16 +63,21 @@ public class LibRec {
 	private Properties configuration;
 	
 	private SparseMatrix ratingsMatrix, timeMatrix;
+	
+	// mapping between outer and inner user and item identifiers of this instance's data
+	private DataDAO rateDao;
 	private Table<Integer, Integer, Set<Long>> userTagTable, itemTagTable;
 
 	private Recommender model;
 	
 	private Map<Measure,Double> evalMeasures;
 	
+	private ProgressListener progressListener;
+	
 	public enum DatasetType { FilmTrust, MovieLens, Netflix }
 	
 	public enum Algorithm {
-		ItemAvg, ItemKNN, WRMF, SVDPlusPlus, TimeSVDPlusPlus,
+		ItemAvg, ItemKNN, WRMF, EALS, SVDPlusPlus, TimeSVDPlusPlus,
 		NeighSVDPlusPlus, TimeNeighSVDPlusPlus,
 		ComNeighSVDPlusPlus, ComNeighSVDPlusPlusFast,
 		TimeComNeighSVDPlusPlus, TimeComNeighSVDPlusPlusFast
@@ -73,7 +92,7 @@ public class LibRec {
 	
 	/**
 	 * Constructor specifying the recommender algorithm to use. Valid algorithms are
-	 * itemAvg, itemKNN, WRMF, SVD, NSVD, TNSVD, CNSVD, TCNSVD, CNSVDFast, TCNSVDFast
+	 * itemAvg, itemKNN, WRMF, eALS, SVD, NSVD, TNSVD, CNSVD, TCNSVD, CNSVDFast, TCNSVDFast
 	 * @param algorithm recommender algorithm
 	 */
 	public LibRec(String algorithm){
@@ -102,10 +121,16 @@ public class LibRec {
 			configuration.setProperty("reg.lambda", "0.015");
 			configuration.setProperty("WRMF", "-alpha 1.0");
 			break;
+		case "eals":
+			this.algorithm = Algorithm.EALS;
+			configuration.setProperty("reg.lambda", "0.01");
+			configuration.setProperty("EALS", "-alpha 0.5 -c0 512 -w 1");
+			break;
 		case "svd":
 			this.algorithm = Algorithm.SVDPlusPlus;
 			configuration.setProperty("learn.rate", "0.01 -max -1 -decay 0.95");
 			configuration.setProperty("reg.lambda", "0.1");
+			configuration.setProperty("SVD++", "-grouped");
 			break;
 		case "nsvd":
 			this.algorithm = Algorithm.NeighSVDPlusPlus;
@@ -159,6 +184,14 @@ public class LibRec {
 		configuration.setProperty(parameter, value);
 	}
 	
+	/**
+	 * Sets a listener that is notified on the progress of building the model and computing predictions
+	 * @param progressListener progress listener, null to remove the listener
+	 */
+	public void setProgressListener(ProgressListener progressListener){
+		this.progressListener = progressListener;
+	}
+	
 	/**
 	 * Sets the rating data
 	 * @param ratingsList rating data
@@ -191,8 +224,7 @@ public class LibRec {
 		ratingsMatrix = data[0];
 		timeMatrix = data[1];
 		
-		Recommender.rateDao = rateDao;
-		Recommender.binThold = binThold;
+		this.rateDao = rateDao;
 	}
 	
 	/**
@@ -200,7 +232,6 @@ public class LibRec {
 	 * @param taggings tagging data
 	 */
 	public void setTaggings(List<Tagging> taggings) {
-		DataDAO rateDao = Recommender.rateDao;
 		TimeUnit timeUnit = TimeUnit.SECONDS;
 		
 		BiMap<String, Integer> tagIds = HashBiMap.create();
@@ -211,21 +242,14 @@ public class LibRec {
 		int numTaggings = 0;
 		
 		for (Tagging tagging : taggings) {
-			String userString = Integer.toString(tagging.getUserId());
-			String itemString = Integer.toString(tagging.getItemId());
 			String tagString = tagging.getTag();
 			long timestamp = timeUnit.toMillis(tagging.getTimestamp());
 			
-			int user;
-			int item;
-			
 			// get inner user and item ids
 			// skip users and items that are not part of the ratings matrix
-			try{
-				user = rateDao.getUserId(userString);
-				item = rateDao.getItemId(itemString);
-			}
-			catch (Exception e){
+			int user = rateDao.getInnerUserId(tagging.getUserId());
+			int item = rateDao.getInnerItemId(tagging.getItemId());
+			if (user < 0 || item < 0){
 				continue;
 			}
 			
@@ -292,8 +316,7 @@ public class LibRec {
 		ratingsMatrix = data[0];
 		timeMatrix = data[1];
 		
-		Recommender.rateDao = rateDao;
-		Recommender.binThold = binThold;
+		this.rateDao = rateDao;
 	}
 	
 	/**
@@ -302,7 +325,6 @@ public class LibRec {
 	 * @throws Exception on file I/O and number formatting errors
 	 */
 	public void readTaggingsFromFile(String filePath) throws Exception {
-		DataDAO rateDao = Recommender.rateDao;
 		TimeUnit timeUnit = TimeUnit.SECONDS;
 		
 		BiMap<String, Integer> tagIds = HashBiMap.create();
@@ -376,14 +398,51 @@ public class LibRec {
 		Logs.info("Tagging data: number of tagging instances: {}, unique user tags: {}, unique item tags: {}",
 				numTaggings, numUserTags, numItemTags);
 	}
-	
+
+	/**
+	 * Reads and sets the rating and tagging data from a snapshot written by writeSnapshot(), if the snapshot exists
+	 * and has been written from the given source.
+	 * @param path snapshot file location
+	 * @param source description of the current data, e.g. the data files and their modification times
+	 * @return true if the data has been read from the snapshot, false if there is no up-to-date snapshot
+	 * @throws Exception on file I/O errors
+	 */
+	public boolean readSnapshot(String path, String source) throws Exception {
+		if (!source.equals(DataSnapshot.readSource(path))){
+			return false;
+		}
+
+		long start = System.currentTimeMillis();
+		DataSnapshot snapshot = DataSnapshot.read(path);
+
+		rateDao = snapshot.getDao();
+		ratingsMatrix = rateDao.getRateMatrix();
+		timeMatrix = rateDao.getTimeMatrix();
+		userTagTable = snapshot.getUserTagTable();
+		itemTagTable = snapshot.getItemTagTable();
+
+		Logs.info("Data snapshot: read {} ratings from {} in {} ms", ratingsMatrix.size(), path,
+				System.currentTimeMillis() - start);
+		return true;
+	}
+
+	/**
+	 * Writes the rating and tagging data to a snapshot, from which it can be read again with readSnapshot().
+	 * @param path snapshot file location
+	 * @param source description of the current data, e.g. the data files and their modification times
+	 * @throws Exception on file I/O errors
+	 */
+	public void writeSnapshot(String path, String source) throws Exception {
+		DataSnapshot.write(path, source, rateDao, userTagTable, itemTagTable);
+	}
+
 	/**
 	 * Log statistics on the dataset, e.g. numbers of users, items and ratings, ratings density, ...
 	 * @throws Exception on string formatting errors
 	 */
 	public void printDatasetSpecifications() throws Exception{
-		if(Recommender.rateDao != null){
-			Recommender.rateDao.printSpecs();
+		if(rateDao != null){
+			rateDao.printSpecs();
 		}
 	}
 	
@@ -392,16 +451,13 @@ public class LibRec {
 	 * @throws Exception on errors building the model
 	 */
 	public void buildModel() throws Exception{
-		Recommender.rateMatrix = ratingsMatrix;
-		Recommender.timeMatrix = timeMatrix;
-		Recommender.isEvaluate = false;
-		
-		// Add configuration to recommender
-		Recommender.cf = new FileConfiger(configuration);
+		RecommenderContext context = createContext(new HashMap<String, String>());
+		context.setEvaluate(false);
 		
-		model = getRecommender(ratingsMatrix, null, -1);
+		model = getRecommender(context, ratingsMatrix, null, -1);
 		model.userTagTable = userTagTable;
 		model.itemTagTable = itemTagTable;
+		model.progressListener = progressListener;
 		model.execute();
 	}
 	
@@ -414,12 +470,27 @@ public class LibRec {
 	 */
 	public double getPrediction(int user, int item) throws Exception{
 		// get the inner user and item identifiers u and i
-		int u = Recommender.rateDao.getUserId(Integer.toString(user));
-		int i = Recommender.rateDao.getItemId(Integer.toString(item));
+		int u = rateDao.getInnerUserId(user);
+		int i = rateDao.getInnerItemId(item);
+		if (u < 0 || i < 0)
+			throw new Exception("Unknown user " + user + " or item " + item);
 		// get and return rating estimation
 		return model.getPrediction(u, i);
 	}
 	
+	/**
+	 * Checks if a rating estimation can be returned for a particular user and item pair, i.e. if both the user
+	 * and the item are part of the rating data.
+	 * @param user user identifier
+	 * @param item item identifier
+	 * @return true if the user and the item are known
+	 */
+	public boolean canPredict(int user, int item){
+		return rateDao != null && model != null
+				&& rateDao.getInnerUserId(user) >= 0
+				&& rateDao.getInnerItemId(item) >= 0;
+	}
+	
 	/**
 	 * Return a table (user, item, prediction) of predictions for all user-item pairs
 	 * @return prediction table
@@ -427,98 +498,171 @@ public class LibRec {
 	 */
 	public Table<Integer,Integer,Double> getAllPredictions() throws Exception{
 		Table<Integer,Integer,Double> predictionTable = HashBasedTable.create();
-		for (Map.Entry<String, Integer> userEntry : Recommender.rateDao.getUserIds().entrySet()){
-			int outerUserId = Integer.valueOf(userEntry.getKey());
-			int innerUserId = userEntry.getValue();
-			for (Map.Entry<String, Integer> itemEntry : Recommender.rateDao.getItemIds().entrySet()){
-				int outerItemId = Integer.valueOf(itemEntry.getKey());
-				int innerItemId = itemEntry.getValue();
+		int numUsers = rateDao.numUsers(), numItems = rateDao.numItems();
+		for (int innerUserId = 0; innerUserId < numUsers; innerUserId++){
+			int outerUserId = rateDao.getNumericUserId(innerUserId);
+			for (int innerItemId = 0; innerItemId < numItems; innerItemId++){
+				int outerItemId = rateDao.getNumericItemId(innerItemId);
 				double prediction = model.getPrediction(innerUserId, innerItemId);
 				predictionTable.put(outerUserId, outerItemId, prediction);
 			}
 		}
 		return predictionTable;
 	}
-	
+
+	/**
+	 * Return the n items with the highest predictions for every user, excluding the items the user has rated.
+	 * Users are processed in parallel blocks using the number of threads given by the -cpu option of
+	 * evaluation.setup, each thread keeping a bounded heap of size n per user.
+	 * @param n number of predictions per user
+	 * @return top-n predictions using outer user and item identifiers
+	 * @throws Exception on errors computing the predictions
+	 */
+	public TopNPredictions getTopNPredictions(final int n) throws Exception{
+		if (progressListener != null)
+			progressListener.phaseStarted(Phase.MATERIALIZE);
+		
+		final int numUsers = ratingsMatrix.numRows();
+		final int numItems = ratingsMatrix.numColumns();
+		final int k = Math.min(n, numItems);
+
+		// outer identifiers of the inner user and item identifiers
+		final int[] outerUserIds = new int[numUsers];
+		for (int u = 0; u < numUsers; u++)
+			outerUserIds[u] = rateDao.getNumericUserId(u);
+		final int[] outerItemIds = new int[numItems];
+		for (int j = 0; j < numItems; j++)
+			outerItemIds[j] = rateDao.getNumericItemId(j);
+
+		// process users in order of their outer identifiers
+		Integer[] order = new Integer[numUsers];
+		for (int u = 0; u < numUsers; u++)
+			order[u] = u;
+		Arrays.sort(order, (a, b) -> Integer.compare(outerUserIds[a], outerUserIds[b]));
+
+		final int[] users = new int[numUsers];
+		final int[] counts = new int[numUsers];
+		final int[] items = new int[numUsers * k];
+		final float[] predictions = new float[numUsers * k];
+		for (int pos = 0; pos < numUsers; pos++)
+			users[pos] = outerUserIds[order[pos]];
+
+		final int[] rowPtr = ratingsMatrix.getRowPointers();
+		final int[] colInd = ratingsMatrix.getColumnIndices();
+
+		FileConfiger cf = new FileConfiger(configuration);
+		int numThreads = cf.getParamOptions("evaluation.setup").getInt("-cpu",
+				Runtime.getRuntime().availableProcessors());
+		int blockSize = Math.max(1, Math.min(256, (numUsers + numThreads - 1) / Math.max(1, numThreads)));
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		try{
+			List<Future<?>> blocks = new ArrayList<>();
+			for (int start = 0; start < numUsers; start += blockSize){
+				final int from = start;
+				final int to = Math.min(numUsers, start + blockSize);
+				blocks.add(executor.submit(() -> {
+					BoundedHeap heap = new BoundedHeap(k);
+					double[] scores = new double[numItems];
+					for (int pos = from; pos < to; pos++){
+						if (Thread.currentThread().isInterrupted())
+							throw new InterruptedException();
+						int u = order[pos];
+						model.getPredictions(u, scores);
+						// rated items are sorted by inner item identifier
+						int rated = rowPtr[u];
+						for (int j = 0; j < numItems; j++){
+							if (rated < rowPtr[u + 1] && colInd[rated] == j){
+								rated++;
+								continue;
+							}
+							heap.offer(j, scores[j]);
+						}
+						counts[pos] = heap.drain(items, predictions, pos * k);
+						for (int p = pos * k; p < pos * k + counts[pos]; p++)
+							items[p] = outerItemIds[items[p]];
+					}
+					return null;
+				}));
+			}
+			Parallel.await(blocks);
+		}
+		finally{
+			executor.shutdownNow();
+		}
+
+		// compact the rows of users with fewer than k unrated items
+		int[] ptr = new int[numUsers + 1];
+		int size = 0;
+		for (int pos = 0; pos < numUsers; pos++){
+			System.arraycopy(items, pos * k, items, size, counts[pos]);
+			System.arraycopy(predictions, pos * k, predictions, size, counts[pos]);
+			size += counts[pos];
+			ptr[pos + 1] = size;
+		}
+
+		return new TopNPredictions(n, users, ptr, Arrays.copyOf(items, size), Arrays.copyOf(predictions, size));
+	}
+
 	/**
 	 * Performs an evaluation. Splits the rating and tagging data according to the evaluation
 	 * parameters set using the setParameter() method, performs an evaluation on each subset of the data
-	 * and logs the evaluation results.
+	 * and logs the evaluation results. The folds are evaluated in parallel unless eval.parallel is false, at most
+	 * eval.parallel.folds at the same time. Each fold being evaluated holds a copy of its training and test data, so
+	 * every parallel fold adds about the memory of the rating matrix. By default, the processors are divided among the
+	 * threads of the models (-cpu of evaluation.setup), i.e. one fold at a time for models using all processors.
 	 * @throws InterruptedException on errors in one of the evaluation threads 
 	 */
 	public void evaluate() throws InterruptedException{
-		// Split data into training and testing data
-		Recommender.rateMatrix = ratingsMatrix;
-		Recommender.timeMatrix = timeMatrix;
-		Recommender.isEvaluate = true;
+		final RecommenderContext context = createContext(new HashMap<String, String>());
+		FileConfiger cf = context.getConfig();
 		
-		// Add configuration to recommender
-		FileConfiger cf = new FileConfiger(configuration);
-		Recommender.cf = cf;
-		
-		String evalType = cf.getString("eval.type", "TimeCV");
-		int folds = cf.getInt("eval.folds", 5);
 		boolean isParallel = cf.getString("eval.parallel", "true").toLowerCase().equals("false") ? false : true;
 		
-		Thread[] ts = new Thread[folds];
-		Recommender[] models = new Recommender[folds];
-		
-		switch (evalType.toLowerCase()){
-		case "cv":
-			DataSplitter ds = new DataSplitter(ratingsMatrix, folds);
-			for (int i = 0; i < folds; i++) {
-				SparseMatrix[] kthFoldMatrices = ds.getKthFold(i + 1);
-				models[i] = getRecommender(kthFoldMatrices[0], kthFoldMatrices[1], i + 1);
-			}
-			break;
-		default:
-		case "timecv":
-			double trainRatio = cf.getDouble("eval.train.ratio", 0.8);
-			double foldSize = cf.getDouble("eval.fold.size", 0.2);
-			TimeDataSplitter timeds = new TimeDataSplitter(ratingsMatrix, timeMatrix, folds, trainRatio, foldSize);
-			TagDataSplitter tagds = null;
-			if (userTagTable != null && itemTagTable != null){
-				tagds = new TagDataSplitter(userTagTable, itemTagTable, timeMatrix, folds, trainRatio, foldSize);
-			}
-			for (int i = 0; i < folds; i++) {
-				SparseMatrix[] kthFoldMatrices = timeds.getKthFold(i + 1);
-				models[i] = getRecommender(kthFoldMatrices[0], kthFoldMatrices[1], i + 1);
-				if (tagds != null){
-					models[i].userTagTable = tagds.getKthFoldUserTagTable(i + 1);
-					models[i].itemTagTable = tagds.getKthFoldItemTagTable(i + 1);
-				}
-			}
-			break;
-		}
-		
+		// Split data into training and testing data
+		final Fold[] foldData = splitFolds(cf);
+		int folds = foldData.length;
+		
+		// Each fold copies its data from the rating matrix when its model is created and drops it when the model
+		// has been evaluated, such that at most as many folds as are evaluated at the same time take memory
+		int numProcessors = Runtime.getRuntime().availableProcessors();
+		int modelThreads = Math.max(1, cf.getParamOptions("evaluation.setup").getInt("-cpu", numProcessors));
+		int defaultParallel = Math.max(1, numProcessors / modelThreads);
+		int numParallel = isParallel
+				? Math.max(1, Math.min(folds, cf.getInt("eval.parallel.folds", defaultParallel))) : 1;
+		final String[] algoInfo = new String[2];
+		final List<Map<Measure, Double>> foldMeasures = new ArrayList<>();
+		for (int i = 0; i < folds; i++)
+			foldMeasures.add(null);
+		ExecutorService executor = Executors.newFixedThreadPool(numParallel);
 		for (int i = 0; i < folds; i++) {
-			ts[i] = new Thread(models[i]);
-			ts[i].start();
-			if (!isParallel)
-				ts[i].join();
-		}
-		
-		if (isParallel){
-			for (Thread t : ts)
-				t.join();
+			final int fold = i;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					Recommender model = createModel(context, foldData[fold], fold + 1);
+					model.run();
+					foldMeasures.set(fold, model.measures);
+					if (fold == 0){
+						algoInfo[0] = model.algoName;
+						algoInfo[1] = model.toString();
+					}
+					foldData[fold].release();
+				}
+			});
 		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		String algoName = algoInfo[0];
+		String algoConfig = algoInfo[1];
 		
 		// average performance of k-fold
-		evalMeasures = new HashMap<>();
-		for (Recommender model : models) {
-			for (Entry<Measure, Double> en : model.measures.entrySet()) {
-				Measure m = en.getKey();
-				double val = evalMeasures.containsKey(m) ? evalMeasures.get(m) : 0.0;
-				evalMeasures.put(m, val + en.getValue() / folds);
-			}
-		}
+		evalMeasures = averageMeasures(foldMeasures);
 		
 		String ratingResult = Recommender.getRatingEvalInfo(evalMeasures);
 		String rankingResult = Recommender.getRankingEvalInfo(evalMeasures);
 		
-		String algoName = models[0].algoName;
-		
-		String algoConfigInfo = algoName + " configuration: " + models[0].toString();
+		String algoConfigInfo = algoName + " configuration: " + algoConfig;
 		String evalTimeInfo = algoName + " time measurements: [TrainTime,InitTime,LearnTime,TestTime] = ["
 				+ Dates.parse(evalMeasures.get(Measure.TrainTime).longValue()) + ","
 				+ Dates.parse(evalMeasures.get(Measure.InitTime).longValue()) + ","
@@ -542,30 +686,158 @@ public class LibRec {
 		return evalMeasures.get(measure);
 	}
 	
-	private Recommender getRecommender(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold){
+	/**
+	 * Training and test data of one fold of an evaluation. The fold keeps the positions of its training and test
+	 * ratings in the rating matrix and copies them into training and test matrices when they are first used, such
+	 * that the matrices of a fold only take memory while models of the fold are created and trained.
+	 */
+	static class Fold {
+		private final SparseMatrix ratingsMatrix;
+		private final BitSet trainEntries, testEntries;
+		private SparseMatrix trainMatrix, testMatrix;
+		final Table<Integer, Integer, Set<Long>> userTagTable, itemTagTable;
+		
+		Fold(SparseMatrix ratingsMatrix, BitSet[] entries, Table<Integer, Integer, Set<Long>> userTagTable,
+				Table<Integer, Integer, Set<Long>> itemTagTable){
+			this.ratingsMatrix = ratingsMatrix;
+			this.trainEntries = entries[0];
+			this.testEntries = entries[1];
+			this.userTagTable = userTagTable;
+			this.itemTagTable = itemTagTable;
+		}
+		
+		/**
+		 * @return training and test matrix of the fold, shared by all models of the fold
+		 */
+		synchronized SparseMatrix[] getMatrices(){
+			if (trainMatrix == null){
+				trainMatrix = ratingsMatrix.select(trainEntries);
+				testMatrix = ratingsMatrix.select(testEntries);
+			}
+			return new SparseMatrix[] { trainMatrix, testMatrix };
+		}
+		
+		/**
+		 * Drops the training and test matrix, which are copied again on the next use
+		 */
+		synchronized void release(){
+			trainMatrix = null;
+			testMatrix = null;
+		}
+	}
+	
+	/**
+	 * Splits the rating and tagging data into training and test data according to the evaluation parameters
+	 * @param cf configuration containing the evaluation parameters
+	 * @return data of each fold
+	 */
+	Fold[] splitFolds(FileConfiger cf){
+		String evalType = cf.getString("eval.type", "TimeCV");
+		int folds = cf.getInt("eval.folds", 5);
+		
+		Fold[] foldData = new Fold[folds];
+		switch (evalType.toLowerCase()){
+		case "cv":
+			DataSplitter ds = new DataSplitter(ratingsMatrix, folds);
+			for (int i = 0; i < folds; i++)
+				foldData[i] = new Fold(ratingsMatrix, ds.getKthFoldEntries(i + 1), null, null);
+			break;
+		default:
+		case "timecv":
+			double trainRatio = cf.getDouble("eval.train.ratio", 0.8);
+			double foldSize = cf.getDouble("eval.fold.size", 0.2);
+			TimeDataSplitter timeds = new TimeDataSplitter(ratingsMatrix, timeMatrix, folds, trainRatio, foldSize);
+			TagDataSplitter tagds = null;
+			if (userTagTable != null && itemTagTable != null){
+				tagds = new TagDataSplitter(userTagTable, itemTagTable, timeMatrix, folds, trainRatio, foldSize);
+			}
+			for (int i = 0; i < folds; i++) {
+				foldData[i] = new Fold(ratingsMatrix, timeds.getKthFoldEntries(i + 1),
+						tagds != null ? tagds.getKthFoldUserTagTable(i + 1) : null,
+						tagds != null ? tagds.getKthFoldItemTagTable(i + 1) : null);
+			}
+			break;
+		}
+		return foldData;
+	}
+	
+	/**
+	 * Creates the recommender of one fold of an evaluation
+	 * @param context context of the run
+	 * @param foldData data of the fold
+	 * @param fold fold number, starting at 1
+	 * @return recommender
+	 */
+	Recommender createModel(RecommenderContext context, Fold foldData, int fold){
+		SparseMatrix[] matrices = foldData.getMatrices();
+		Recommender model = getRecommender(context, matrices[0], matrices[1], fold);
+		if (foldData.userTagTable != null && foldData.itemTagTable != null){
+			model.userTagTable = foldData.userTagTable;
+			model.itemTagTable = foldData.itemTagTable;
+		}
+		return model;
+	}
+	
+	/**
+	 * Averages the evaluation measures of several folds
+	 * @param foldMeasures evaluation measures of each fold
+	 * @return average of each measure
+	 */
+	static Map<Measure, Double> averageMeasures(List<Map<Measure, Double>> foldMeasures){
+		Map<Measure, Double> measures = new HashMap<>();
+		for (Map<Measure, Double> fm : foldMeasures) {
+			for (Entry<Measure, Double> en : fm.entrySet()) {
+				Measure m = en.getKey();
+				double val = measures.containsKey(m) ? measures.get(m) : 0.0;
+				measures.put(m, val + en.getValue() / foldMeasures.size());
+			}
+		}
+		return measures;
+	}
+	
+	/**
+	 * Creates the context shared by the recommenders of a run, holding this instance's data and a snapshot of
+	 * its configuration. Recommenders of different runs do not share any state and may be trained at the same time.
+	 * @param parameters parameters overriding the configuration of this instance
+	 * @return context of a new run
+	 */
+	RecommenderContext createContext(Map<String, String> parameters){
+		Properties properties = (Properties) configuration.clone();
+		for (Entry<String, String> parameter : parameters.entrySet())
+			properties.setProperty(parameter.getKey(), parameter.getValue());
+		
+		RecommenderContext context = new RecommenderContext(new FileConfiger(properties), rateDao, ratingsMatrix,
+				timeMatrix);
+		context.setBinThold(-1);
+		return context;
+	}
+	
+	private Recommender getRecommender(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold){
 		switch(algorithm){
 		case ItemAvg:
-			return new ItemAverage(trainMatrix, testMatrix, fold);
+			return new ItemAverage(context, trainMatrix, testMatrix, fold);
 		case ItemKNN:
-			return new ItemKNN(trainMatrix, testMatrix, fold);
+			return new ItemKNN(context, trainMatrix, testMatrix, fold);
 		case WRMF:
-			return new WRMF(trainMatrix, testMatrix, fold);
+			return new WRMF(context, trainMatrix, testMatrix, fold);
+		case EALS:
+			return new EALS(context, trainMatrix, testMatrix, fold);
 		case SVDPlusPlus:
-			return new SVDPlusPlus(trainMatrix, testMatrix, fold);
+			return new SVDPlusPlus(context, trainMatrix, testMatrix, fold);
 		case NeighSVDPlusPlus:
-			return new NeighSVD(trainMatrix, testMatrix, fold);
+			return new NeighSVD(context, trainMatrix, testMatrix, fold);
 		case TimeSVDPlusPlus:
-			return new TimeSVD(trainMatrix, testMatrix, fold);
+			return new TimeSVD(context, trainMatrix, testMatrix, fold);
 		case TimeNeighSVDPlusPlus:
-			return new TimeNeighSVD(trainMatrix, testMatrix, fold);
+			return new TimeNeighSVD(context, trainMatrix, testMatrix, fold);
 		case ComNeighSVDPlusPlus:
-			return new ComNeighSVD(trainMatrix, testMatrix, fold);
+			return new ComNeighSVD(context, trainMatrix, testMatrix, fold);
 		case ComNeighSVDPlusPlusFast:
-			return new ComNeighSVDFast(trainMatrix, testMatrix, fold);
+			return new ComNeighSVDFast(context, trainMatrix, testMatrix, fold);
 		case TimeComNeighSVDPlusPlus:
-			return new TimeComNeighSVD(trainMatrix, testMatrix, fold);
+			return new TimeComNeighSVD(context, trainMatrix, testMatrix, fold);
 		case TimeComNeighSVDPlusPlusFast:
-			return new TimeComNeighSVDFast(trainMatrix, testMatrix, fold);
+			return new TimeComNeighSVDFast(context, trainMatrix, testMatrix, fold);
 		default:
 			break;
 		}
@@ -51,10 +51,9 @@ import i5.las2peer.services.recommender.librec.ext.NMF;
 import i5.las2peer.services.recommender.librec.ext.PD;
 import i5.las2peer.services.recommender.librec.ext.PRankD;
 import i5.las2peer.services.recommender.librec.ext.SlopeOne;
-import i5.las2peer.services.recommender.librec.intf.GraphicRecommender;
-import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
 import i5.las2peer.services.recommender.librec.intf.Recommender.Measure;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.ranking.BHfree;
 import i5.las2peer.services.recommender.librec.ranking.BPR;
 import i5.las2peer.services.recommender.librec.ranking.BUCM;
@@ -128,6 +127,11 @@ public class LibRecDemo {
 	// rating, timestamp matrix
 	protected SparseMatrix rateMatrix, timeMatrix;
 
+	// output directory of the current configuration
+	protected String outputDirPath;
+	// context of the recommenders of the current configuration
+	protected RecommenderContext context;
+
 	/**
 	 * run the LibRec library
 	 * @param args command line arguments
@@ -192,14 +196,14 @@ public class LibRecDemo {
 		rateMatrix = data[0];
 		timeMatrix = data[1];
 
-		Recommender.rateMatrix = rateMatrix;
-		Recommender.timeMatrix = timeMatrix;
-		Recommender.rateDao = rateDao;
-		Recommender.binThold = binThold;
+		// context shared by the recommenders of this configuration
+		context = new RecommenderContext(cf, rateDao, rateMatrix, timeMatrix);
+		context.setBinThold(binThold);
+		context.setTempDirPath(outputDirPath);
 	}
 
 	/**
-	 * reset general (and static) settings
+	 * reset general settings
 	 * @param configFile string representing the file to read the configuration from
 	 * @throws Exception on file I/O errors
 	 */
@@ -208,14 +212,6 @@ public class LibRecDemo {
 		// a new configer
 		cf = new FileConfiger(configFile);
 
-		// seeding the general recommender
-		Recommender.cf = cf;
-
-		// reset recommenders' static properties 
-		Recommender.resetStatics = true;
-		IterativeRecommender.resetStatics = true;
-		GraphicRecommender.resetStatics = true;
-
 		// LibRec outputs
 		outputOptions = cf.getParamOptions("output.setup");
 		if (outputOptions != null) {
@@ -223,7 +219,7 @@ public class LibRecDemo {
 		}
 
 		// make output directory
-		Recommender.tempDirPath = FileIO.makeDirectory(tempDirPath);
+		outputDirPath = FileIO.makeDirectory(tempDirPath);
 
 		// initialize random seed 
 		LineConfiger evalOptions = cf.getParamOptions("evaluation.setup");
@@ -449,7 +445,7 @@ public class LibRecDemo {
 
 			SparseMatrix[] testData = testDao.readData(columns, binThold);
 			data = new SparseMatrix[] { rateMatrix, testData[0] };
-			Recommender.testTimeMatrix = testData[1];
+			context.setTestTimeMatrix(testData[1]);
 			break;
 		case "given-n":
 			N = evalOptions.getInt("-N", 20);
@@ -630,7 +626,7 @@ public class LibRecDemo {
 	 */
 	private void printEvalInfo(Recommender algo, Map<Measure, Double> ms) throws Exception {
 
-		String result = Recommender.getEvalInfo(ms);
+		String result = algo.getEvalInfo(ms);
 		// we add quota symbol to indicate the textual format of time 
 		String time = String.format("'%s','%s'", Dates.parse(ms.get(Measure.TrainTime).longValue()),
 				Dates.parse(ms.get(Measure.TestTime).longValue()));
@@ -724,114 +720,114 @@ public class LibRecDemo {
 
 		/* baselines */
 		case "globalavg":
-			return new GlobalAverage(trainMatrix, testMatrix, fold);
+			return new GlobalAverage(context, trainMatrix, testMatrix, fold);
 		case "useravg":
-			return new UserAverage(trainMatrix, testMatrix, fold);
+			return new UserAverage(context, trainMatrix, testMatrix, fold);
 		case "itemavg":
-			return new ItemAverage(trainMatrix, testMatrix, fold);
+			return new ItemAverage(context, trainMatrix, testMatrix, fold);
 		case "usercluster":
-			return new UserCluster(trainMatrix, testMatrix, fold);
+			return new UserCluster(context, trainMatrix, testMatrix, fold);
 		case "itemcluster":
-			return new ItemCluster(trainMatrix, testMatrix, fold);
+			return new ItemCluster(context, trainMatrix, testMatrix, fold);
 		case "random":
-			return new RandomGuess(trainMatrix, testMatrix, fold);
+			return new RandomGuess(context, trainMatrix, testMatrix, fold);
 		case "constant":
-			return new ConstantGuess(trainMatrix, testMatrix, fold);
+			return new ConstantGuess(context, trainMatrix, testMatrix, fold);
 		case "mostpop":
-			return new MostPopular(trainMatrix, testMatrix, fold);
+			return new MostPopular(context, trainMatrix, testMatrix, fold);
 
 			/* rating prediction */
 		case "userknn":
-			return new UserKNN(trainMatrix, testMatrix, fold);
+			return new UserKNN(context, trainMatrix, testMatrix, fold);
 		case "itemknn":
-			return new ItemKNN(trainMatrix, testMatrix, fold);
+			return new ItemKNN(context, trainMatrix, testMatrix, fold);
 		case "itembigram":
-			return new ItemBigram(trainMatrix, testMatrix, fold);
+			return new ItemBigram(context, trainMatrix, testMatrix, fold);
 		case "regsvd":
-			return new PMF(trainMatrix, testMatrix, fold);
+			return new PMF(context, trainMatrix, testMatrix, fold);
 		case "rfrec":
-			return new RfRec(trainMatrix, testMatrix, fold);
+			return new RfRec(context, trainMatrix, testMatrix, fold);
 		case "biasedmf":
-			return new BiasedMF(trainMatrix, testMatrix, fold);
+			return new BiasedMF(context, trainMatrix, testMatrix, fold);
 		case "gplsa":
-			return new GPLSA(trainMatrix, testMatrix, fold);
+			return new GPLSA(context, trainMatrix, testMatrix, fold);
 		case "svd++":
-			return new SVDPlusPlus(trainMatrix, testMatrix, fold);
+			return new SVDPlusPlus(context, trainMatrix, testMatrix, fold);
 		case "timesvd++":
-			return new TimeSVD(trainMatrix, testMatrix, fold);
+			return new TimeSVD(context, trainMatrix, testMatrix, fold);
 		case "pmf":
-			return new PMF(trainMatrix, testMatrix, fold);
+			return new PMF(context, trainMatrix, testMatrix, fold);
 		case "bpmf":
-			return new BPMF(trainMatrix, testMatrix, fold);
+			return new BPMF(context, trainMatrix, testMatrix, fold);
 		case "socialmf":
-			return new SocialMF(trainMatrix, testMatrix, fold);
+			return new SocialMF(context, trainMatrix, testMatrix, fold);
 		case "trustmf":
-			return new TrustMF(trainMatrix, testMatrix, fold);
+			return new TrustMF(context, trainMatrix, testMatrix, fold);
 		case "sorec":
-			return new SoRec(trainMatrix, testMatrix, fold);
+			return new SoRec(context, trainMatrix, testMatrix, fold);
 		case "soreg":
-			return new SoReg(trainMatrix, testMatrix, fold);
+			return new SoReg(context, trainMatrix, testMatrix, fold);
 		case "rste":
-			return new RSTE(trainMatrix, testMatrix, fold);
+			return new RSTE(context, trainMatrix, testMatrix, fold);
 		case "trustsvd":
-			return new TrustSVD(trainMatrix, testMatrix, fold);
+			return new TrustSVD(context, trainMatrix, testMatrix, fold);
 		case "urp":
-			return new URP(trainMatrix, testMatrix, fold);
+			return new URP(context, trainMatrix, testMatrix, fold);
 		case "ldcc":
-			return new LDCC(trainMatrix, testMatrix, fold);
+			return new LDCC(context, trainMatrix, testMatrix, fold);
 		case "cptf":
-			return new CPTF(trainMatrix, testMatrix, fold);
+			return new CPTF(context, trainMatrix, testMatrix, fold);
 
 			/* item ranking */
 		case "climf":
-			return new CLiMF(trainMatrix, testMatrix, fold);
+			return new CLiMF(context, trainMatrix, testMatrix, fold);
 		case "fismrmse":
-			return new FISMrmse(trainMatrix, testMatrix, fold);
+			return new FISMrmse(context, trainMatrix, testMatrix, fold);
 		case "fism":
 		case "fismauc":
-			return new FISMauc(trainMatrix, testMatrix, fold);
+			return new FISMauc(context, trainMatrix, testMatrix, fold);
 		case "lrmf":
-			return new LRMF(trainMatrix, testMatrix, fold);
+			return new LRMF(context, trainMatrix, testMatrix, fold);
 		case "rankals":
-			return new RankALS(trainMatrix, testMatrix, fold);
+			return new RankALS(context, trainMatrix, testMatrix, fold);
 		case "ranksgd":
-			return new RankSGD(trainMatrix, testMatrix, fold);
+			return new RankSGD(context, trainMatrix, testMatrix, fold);
 		case "wrmf":
-			return new WRMF(trainMatrix, testMatrix, fold);
+			return new WRMF(context, trainMatrix, testMatrix, fold);
 		case "bpr":
-			return new BPR(trainMatrix, testMatrix, fold);
+			return new BPR(context, trainMatrix, testMatrix, fold);
 		case "wbpr":
-			return new WBPR(trainMatrix, testMatrix, fold);
+			return new WBPR(context, trainMatrix, testMatrix, fold);
 		case "gbpr":
-			return new GBPR(trainMatrix, testMatrix, fold);
+			return new GBPR(context, trainMatrix, testMatrix, fold);
 		case "sbpr":
-			return new SBPR(trainMatrix, testMatrix, fold);
+			return new SBPR(context, trainMatrix, testMatrix, fold);
 		case "slim":
-			return new SLIM(trainMatrix, testMatrix, fold);
+			return new SLIM(context, trainMatrix, testMatrix, fold);
 		case "lda":
-			return new LDA(trainMatrix, testMatrix, fold);
+			return new LDA(context, trainMatrix, testMatrix, fold);
 
 			/* extension */
 		case "nmf":
-			return new NMF(trainMatrix, testMatrix, fold);
+			return new NMF(context, trainMatrix, testMatrix, fold);
 		case "hybrid":
-			return new Hybrid(trainMatrix, testMatrix, fold);
+			return new Hybrid(context, trainMatrix, testMatrix, fold);
 		case "slopeone":
-			return new SlopeOne(trainMatrix, testMatrix, fold);
+			return new SlopeOne(context, trainMatrix, testMatrix, fold);
 		case "pd":
-			return new PD(trainMatrix, testMatrix, fold);
+			return new PD(context, trainMatrix, testMatrix, fold);
 		case "ar":
-			return new AR(trainMatrix, testMatrix, fold);
+			return new AR(context, trainMatrix, testMatrix, fold);
 		case "prankd":
-			return new PRankD(trainMatrix, testMatrix, fold);
+			return new PRankD(context, trainMatrix, testMatrix, fold);
 		case "external":
-			return new External(trainMatrix, testMatrix, fold);
+			return new External(context, trainMatrix, testMatrix, fold);
 
 			/* both tasks */
 		case "bucm":
-			return new BUCM(trainMatrix, testMatrix, fold);
+			return new BUCM(context, trainMatrix, testMatrix, fold);
 		case "bhfree":
-			return new BHfree(trainMatrix, testMatrix, fold);
+			return new BHfree(context, trainMatrix, testMatrix, fold);
 
 		default:
 			throw new Exception("No recommender is specified!");
@@ -27,6 +27,7 @@ import i5.las2peer.services.recommender.librec.data.DenseVector;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Lists;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Stats;
@@ -44,15 +45,15 @@ import i5.las2peer.services.recommender.librec.util.Strings;
  */
 public class AoBPR extends IterativeRecommender {
 
-	private static int loopNumber;
-	private static int lamda_Item;
+	private int loopNumber;
+	private int lamda_Item;
 
 	private double[] var;
 	private int[][] factorRanking;
 	private double[] RankingPro;
 
-	public AoBPR(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public AoBPR(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true;
 		initByNorm = false;
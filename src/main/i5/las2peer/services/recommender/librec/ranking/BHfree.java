@@ -27,6 +27,7 @@ import i5.las2peer.services.recommender.librec.data.DenseVector;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.GraphicRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -55,8 +56,8 @@ public class BHfree extends GraphicRecommender {
 	private DenseMatrix Puk, Pkl, PukSum, PklSum;
 	private double[][][] Pklr, Pkli, PklrSum, PkliSum;
 
-	public BHfree(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public BHfree(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 	}
 
 	@Override
@@ -21,6 +21,7 @@ package i5.las2peer.services.recommender.librec.ranking;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
@@ -33,8 +34,8 @@ import i5.las2peer.services.recommender.librec.util.Strings;
  */
 public class BPR extends IterativeRecommender {
 
-	public BPR(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public BPR(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true;
 		initByNorm = false;
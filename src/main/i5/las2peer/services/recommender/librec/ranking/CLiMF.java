@@ -26,6 +26,7 @@ import java.util.Map;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Shi et al., <strong>Climf: learning to maximize reciprocal rank with collaborative less-is-more filtering.</strong>,
@@ -36,8 +37,8 @@ import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
  */
 public class CLiMF extends IterativeRecommender {
 
-	public CLiMF(SparseMatrix rm, SparseMatrix tm, int fold) {
-		super(rm, tm, fold);
+	public CLiMF(RecommenderContext context, SparseMatrix rm, SparseMatrix tm, int fold) {
+		super(context, rm, tm, fold);
 	}
 
 	@Override
@@ -21,6 +21,7 @@ package i5.las2peer.services.recommender.librec.ranking;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.TensorEntry;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.intf.TensorRecommender;
 
 /**
@@ -36,8 +37,8 @@ public class CPTF extends TensorRecommender {
 	// dimension-feature matrices
 	private DenseMatrix[] M;
 
-	public CPTF(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) throws Exception {
-		super(trainMatrix, testMatrix, fold);
+	public CPTF(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) throws Exception {
+		super(context, trainMatrix, testMatrix, fold);
 	}
 
 	@Override
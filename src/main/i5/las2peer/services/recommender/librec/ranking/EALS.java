@@ -0,0 +1,285 @@
+package i5.las2peer.services.recommender.librec.ranking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import i5.las2peer.services.recommender.librec.data.Configuration;
+import i5.las2peer.services.recommender.librec.data.DenseMatrix;
+import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
+import i5.las2peer.services.recommender.librec.util.Parallel;
+import i5.las2peer.services.recommender.librec.util.Strings;
+
+/**
+ * <h3>eALS: element-wise Alternating Least Squares.</h3>
+ * This implementation refers to the method proposed by He et al., Fast Matrix Factorization for Online
+ * Recommendation with Implicit Feedback, SIGIR 2016.
+ *
+ * Like WRMF, all missing entries are treated as negative feedback, but with a weight c_i that depends on the
+ * popularity of the item: c_i = c0 * f_i^alpha / sum_j f_j^alpha, where f_i is the number of ratings of item i.
+ * Observed entries have the target 1 and the weight w. Instead of solving a k x k system per user (item), the
+ * factors are updated one coordinate at a time, using the predictions of the observed entries, which are kept up
+ * to date, and the caches Sq = sum_i c_i q_i q_i^T and Sp = P^T P for the missing entries. An iteration costs
+ * O((|R| + numUsers + numItems) * k + (numUsers + numItems) * k^2) instead of O(|R| * k^2 + (numUsers + numItems)
+ * * k^3).
+ *
+ * The users (items) of a half-step are updated in parallel, each task working on the predictions of its own users
+ * (items).
+ */
+@Configuration("binThold, alpha, c0, w, factors, regU, regI, numIters")
+public class EALS extends IterativeRecommender {
+	// number of users/items updated by a task
+	private static final int ROWS_PER_TASK = 256;
+
+	// exponent of the item popularity, overall weight of the missing entries and weight of the observed entries
+	private float alpha, c0, w;
+	// weights of the missing entries of each item
+	private double[] confidence;
+	// predictions of the observed entries, in the order of the CRS structure of the training matrix
+	private double[] predictions;
+	// positions in the CRS structure of the entries of the CCS structure
+	private int[] ccsToCrs;
+
+	public EALS(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
+
+		isRankingPred = true; // item recommendation
+
+		alpha = algoOptions.getFloat("-alpha", 0.5f);
+		c0 = algoOptions.getFloat("-c0", 512f);
+		w = algoOptions.getFloat("-w", 1f);
+	}
+
+	@Override
+	protected void initModel() throws Exception {
+		super.initModel();
+
+		int[] rowPtr = trainMatrix.getRowPointers(), colIdx = trainMatrix.getColumnIndices();
+		int[] colPtr = trainMatrix.getColumnPointers();
+		double[] data = trainMatrix.getData(), columnData = trainMatrix.getColumnData();
+
+		// popularity-aware weights of the missing entries
+		confidence = new double[numItems];
+		double sum = 0;
+		for (int i = 0; i < numItems && i < colPtr.length - 1; i++) {
+			int count = 0;
+			for (int pos = colPtr[i]; pos < colPtr[i + 1]; pos++) {
+				if (columnData[pos] != 0)
+					count++;
+			}
+			confidence[i] = Math.pow(count, alpha);
+			sum += confidence[i];
+		}
+		for (int i = 0; i < numItems; i++)
+			confidence[i] = sum > 0 ? c0 * confidence[i] / sum : 0;
+
+		// map the entries of each column to the rows, the row indices of each column are in ascending order
+		ccsToCrs = new int[data.length];
+		int[] next = new int[colPtr.length];
+		for (int u = 0; u < rowPtr.length - 1; u++) {
+			for (int pos = rowPtr[u]; pos < rowPtr[u + 1]; pos++) {
+				int i = colIdx[pos];
+				ccsToCrs[colPtr[i] + next[i]++] = pos;
+			}
+		}
+
+		predictions = new double[data.length];
+		for (int u = 0; u < rowPtr.length - 1; u++) {
+			for (int pos = rowPtr[u]; pos < rowPtr[u + 1]; pos++)
+				predictions[pos] = DenseMatrix.rowMult(P, u, Q, colIdx[pos]);
+		}
+	}
+
+	@Override
+	protected void buildModel() throws Exception {
+		double[][] users = Parallel.rows(P), items = Parallel.rows(Q);
+		int[] rowPtr = trainMatrix.getRowPointers(), colIdx = trainMatrix.getColumnIndices();
+		int[] colPtr = trainMatrix.getColumnPointers(), rowIdx = trainMatrix.getRowIndices();
+		double[] data = trainMatrix.getData(), columnData = trainMatrix.getColumnData();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numCPUs));
+		try {
+			// Sq, the weighted Gram matrix of the item factors
+			double[] itemGram = Parallel.gram(items, confidence, numFactors, executor);
+			for (int iter = 1; iter <= numIters; iter++) {
+
+				// Step 1: update user factors
+				final double[] sq = itemGram;
+				List<Future<?>> tasks = new ArrayList<>();
+				for (int start = 0; start < users.length; start += ROWS_PER_TASK) {
+					final int from = start;
+					final int to = Math.min(users.length, start + ROWS_PER_TASK);
+					tasks.add(executor.submit(() -> {
+						for (int u = from; u < to; u++) {
+							if (u < rowPtr.length - 1)
+								updateUser(users[u], items, sq, colIdx, data, rowPtr[u], rowPtr[u + 1]);
+							else
+								updateUser(users[u], items, sq, colIdx, data, 0, 0);
+						}
+						return null;
+					}));
+				}
+				Parallel.await(tasks);
+
+				// Step 2: update item factors
+				double[] userGram = Parallel.gram(users, null, numFactors, executor);
+				tasks.clear();
+				for (int start = 0; start < items.length; start += ROWS_PER_TASK) {
+					final int from = start;
+					final int to = Math.min(items.length, start + ROWS_PER_TASK);
+					tasks.add(executor.submit(() -> {
+						for (int i = from; i < to; i++) {
+							if (i < colPtr.length - 1)
+								updateItem(items[i], confidence[i], users, userGram, rowIdx, columnData, colPtr[i],
+										colPtr[i + 1]);
+							else
+								updateItem(items[i], confidence[i], users, userGram, rowIdx, columnData, 0, 0);
+						}
+						return null;
+					}));
+				}
+				Parallel.await(tasks);
+
+				itemGram = Parallel.gram(items, confidence, numFactors, executor);
+				loss = loss(users, items, itemGram, rowPtr, colIdx, data);
+
+				if (isConverged(iter))
+					break;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Updates the factors of a user coordinate by coordinate, along with the predictions of its ratings
+	 *
+	 * @param p factors of the user
+	 * @param items item factors
+	 * @param itemGram Sq
+	 * @param colIdx items of the ratings
+	 * @param data rating values, ratings of 0 are ignored
+	 * @param begin position of the first rating of the user
+	 * @param end position after the last rating of the user
+	 */
+	private void updateUser(double[] p, double[][] items, double[] itemGram, int[] colIdx, double[] data, int begin,
+			int end) {
+		int k = numFactors;
+		for (int f = 0; f < k; f++) {
+			double numer = 0, denom = 0;
+			for (int pos = begin; pos < end; pos++) {
+				if (data[pos] == 0)
+					continue;
+				int i = colIdx[pos];
+				double qif = items[i][f];
+				// prediction without the contribution of factor f
+				double rest = predictions[pos] - p[f] * qif;
+				numer += (w - (w - confidence[i]) * rest) * qif;
+				denom += (w - confidence[i]) * qif * qif;
+			}
+			for (int g = 0; g < k; g++) {
+				if (g != f)
+					numer -= p[g] * itemGram[g * k + f];
+			}
+			denom += itemGram[f * k + f] + regU;
+
+			double old = p[f];
+			p[f] = numer / denom;
+			double delta = p[f] - old;
+			for (int pos = begin; pos < end; pos++)
+				predictions[pos] += delta * items[colIdx[pos]][f];
+		}
+	}
+
+	/**
+	 * Updates the factors of an item coordinate by coordinate, along with the predictions of its ratings
+	 *
+	 * @param q factors of the item
+	 * @param c weight of the missing entries of the item
+	 * @param users user factors
+	 * @param userGram Sp
+	 * @param rowIdx users of the ratings
+	 * @param data rating values in the order of the CCS structure, ratings of 0 are ignored
+	 * @param begin position of the first rating of the item
+	 * @param end position after the last rating of the item
+	 */
+	private void updateItem(double[] q, double c, double[][] users, double[] userGram, int[] rowIdx,
+			double[] data, int begin, int end) {
+		int k = numFactors;
+		for (int f = 0; f < k; f++) {
+			double numer = 0, denom = 0;
+			for (int pos = begin; pos < end; pos++) {
+				if (data[pos] == 0)
+					continue;
+				double puf = users[rowIdx[pos]][f];
+				double rest = predictions[ccsToCrs[pos]] - q[f] * puf;
+				numer += (w - (w - c) * rest) * puf;
+				denom += (w - c) * puf * puf;
+			}
+			double cached = 0;
+			for (int g = 0; g < k; g++) {
+				if (g != f)
+					cached += q[g] * userGram[g * k + f];
+			}
+			numer -= c * cached;
+			denom += c * userGram[f * k + f] + regI;
+
+			double old = q[f];
+			q[f] = numer / denom;
+			double delta = q[f] - old;
+			for (int pos = begin; pos < end; pos++)
+				predictions[ccsToCrs[pos]] += delta * users[rowIdx[pos]][f];
+		}
+	}
+
+	/**
+	 * @return sum over the observed entries of w (1 - r_ui)^2, plus the sum over the missing entries of c_i r_ui^2,
+	 *         plus the regularization
+	 */
+	private double loss(double[][] users, double[][] items, double[] itemGram, int[] rowPtr, int[] colIdx,
+			double[] data) {
+		int k = numFactors;
+		double sum = 0;
+		for (int u = 0; u < users.length; u++) {
+			double[] p = users[u];
+			// sum over all items of c_i r_ui^2, the observed entries are subtracted below
+			for (int f = 0; f < k; f++) {
+				double s = 0;
+				for (int g = 0; g < k; g++)
+					s += itemGram[f * k + g] * p[g];
+				sum += p[f] * s;
+				sum += regU * p[f] * p[f];
+			}
+			if (u >= rowPtr.length - 1)
+				continue;
+			for (int pos = rowPtr[u]; pos < rowPtr[u + 1]; pos++) {
+				if (data[pos] == 0)
+					continue;
+				double pred = predictions[pos];
+				double err = 1 - pred;
+				sum += w * err * err - confidence[colIdx[pos]] * pred * pred;
+			}
+		}
+		for (double[] q : items) {
+			for (int f = 0; f < k; f++)
+				sum += regI * q[f] * q[f];
+		}
+		return sum;
+	}
+
+	@Override
+	protected void postModel() throws Exception {
+		predictions = null;
+		ccsToCrs = null;
+	}
+
+	@Override
+	public String toString() {
+		return Strings.toString(new Object[] { binThold, alpha, c0, w, numFactors, regU, regI, numIters }, ",");
+	}
+
+}
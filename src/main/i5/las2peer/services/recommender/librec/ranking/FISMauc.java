@@ -24,10 +24,12 @@ import java.util.List;
 import i5.las2peer.services.recommender.librec.data.Configuration;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
@@ -43,8 +45,8 @@ public class FISMauc extends IterativeRecommender {
 	private int rho;
 	private float alpha;
 
-	public FISMauc(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public FISMauc(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true;
 	}
@@ -62,8 +64,6 @@ public class FISMauc extends IterativeRecommender {
 		algoOptions = cf.getParamOptions("FISM");
 		rho = algoOptions.getInt("-rho");
 		alpha = algoOptions.getFloat("-alpha");
-
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
 	}
 
 	@Override
@@ -181,8 +181,9 @@ public class FISMauc extends IterativeRecommender {
 		double sum = 0;
 		int count = 0;
 
-		List<Integer> items = userItemsCache.get(u);
-		for (int j : items) {
+		IndexView items = trainMatrix.rowView(u);
+		for (int p = 0; p < items.size(); p++) {
+			int j = items.get(p);
 			// for test, i and j will be always unequal as j is unrated
 			if (i != j) {
 				sum += DenseMatrix.rowMult(P, j, Q, i);
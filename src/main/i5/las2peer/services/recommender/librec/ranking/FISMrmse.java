@@ -26,10 +26,12 @@ import com.google.common.collect.Table.Cell;
 import i5.las2peer.services.recommender.librec.data.Configuration;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
@@ -45,8 +47,8 @@ public class FISMrmse extends IterativeRecommender {
 	private float rho, alpha;
 	private int nnz;
 
-	public FISMrmse(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public FISMrmse(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true;
 	}
@@ -67,8 +69,6 @@ public class FISMrmse extends IterativeRecommender {
 		algoOptions = cf.getParamOptions("FISM");
 		rho = algoOptions.getFloat("-rho");
 		alpha = algoOptions.getFloat("-alpha");
-
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
 	}
 
 	@Override
@@ -199,8 +199,9 @@ public class FISMrmse extends IterativeRecommender {
 		double sum = 0;
 		int count = 0;
 
-		List<Integer> items = userItemsCache.get(u);
-		for (int i : items) {
+		IndexView items = trainMatrix.rowView(u);
+		for (int p = 0; p < items.size(); p++) {
+			int i = items.get(p);
 			// for test, i and j will be always unequal as j is unrated
 			if (i != j) {
 				sum += DenseMatrix.rowMult(P, i, Q, j);
@@ -23,7 +23,9 @@ import java.util.List;
 
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.intf.SocialRecommender;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
@@ -40,8 +42,8 @@ public class GBPR extends SocialRecommender {
 	private float rho;
 	private int gLen;
 
-	public GBPR(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public GBPR(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true;
 		initByNorm = false;
@@ -58,8 +60,6 @@ public class GBPR extends SocialRecommender {
 		rho = algoOptions.getFloat("-rho");
 		gLen = algoOptions.getInt("-gSize");
 
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-		itemUsersCache = trainMatrix.columnRowsCache(cacheSpec);
 	}
 
 	@Override
@@ -78,25 +78,26 @@ public class GBPR extends SocialRecommender {
 				int u = 0, i = 0, j = 0;
 
 				// u
-				List<Integer> ratedItems = null; // row u
+				IndexView ratedItems = null; // row u
 				do {
 					u = Randoms.uniform(trainMatrix.numRows());
-					ratedItems = userItemsCache.get(u);
+					ratedItems = trainMatrix.rowView(u);
 				} while (ratedItems.size() == 0);
 
 				// i
-				i = Randoms.random(ratedItems);
+				i = ratedItems.get(Randoms.uniform(ratedItems.size()));
 
 				// g
-				List<Integer> ws = itemUsersCache.get(i); // column i
+				IndexView ws = trainMatrix.columnView(i); // column i
 				List<Integer> g = new ArrayList<>();
 				if (ws.size() <= gLen) {
-					g.addAll(ws);
+					for (int p = 0; p < ws.size(); p++)
+						g.add(ws.get(p));
 				} else {
 
 					g.add(u); // u in G
 					while (g.size() < gLen) {
-						Integer w = Randoms.random(ws);
+						int w = ws.get(Randoms.uniform(ws.size()));
 						if (!g.contains(w))
 							g.add(w);
 					}
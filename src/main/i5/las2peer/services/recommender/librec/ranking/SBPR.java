@@ -25,9 +25,11 @@ import java.util.Map;
 
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.intf.SocialRecommender;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
@@ -47,8 +49,8 @@ public class SBPR extends SocialRecommender {
 
 	private Map<Integer, List<Integer>> SP;
 
-	public SBPR(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public SBPR(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true;
 		initByNorm = false;
@@ -62,13 +64,11 @@ public class SBPR extends SocialRecommender {
 		itemBias = new DenseVector(numItems);
 		itemBias.init();
 
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-
 		// find items rated by trusted neighbors only
 		SP = new HashMap<>();
 
 		for (int u = 0, um = trainMatrix.numRows(); u < um; u++) {
-			List<Integer> uRatedItems = userItemsCache.get(u);
+			IndexView uRatedItems = trainMatrix.rowView(u);
 			if (uRatedItems.size() == 0)
 				continue; // no rated items
 
@@ -79,8 +79,9 @@ public class SBPR extends SocialRecommender {
 				if (v >= um) // friend v
 					continue;
 
-				List<Integer> vRatedItems = userItemsCache.get(v);
-				for (int j : vRatedItems) {
+				IndexView vRatedItems = trainMatrix.rowView(v);
+				for (int p = 0; p < vRatedItems.size(); p++) {
+					int j = vRatedItems.get(p);
 					// v's rated items
 					if (!uRatedItems.contains(j) && !items.contains(j)) // if not rated by user u and not already added to item list
 						items.add(j);
@@ -109,14 +110,14 @@ public class SBPR extends SocialRecommender {
 				int u = 0, i = 0, j = 0;
 
 				// u
-				List<Integer> ratedItems = null;
+				IndexView ratedItems = null;
 				do {
 					u = Randoms.uniform(trainMatrix.numRows());
-					ratedItems = userItemsCache.get(u);
+					ratedItems = trainMatrix.rowView(u);
 				} while (ratedItems.size() == 0);
 
 				// i
-				i = Randoms.random(ratedItems);
+				i = ratedItems.get(Randoms.uniform(ratedItems.size()));
 
 				double xui = predict(u, i);
 
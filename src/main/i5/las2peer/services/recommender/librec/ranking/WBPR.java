@@ -29,8 +29,10 @@ import com.google.common.cache.LoadingCache;
 
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Lists;
 import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
@@ -47,8 +49,8 @@ public class WBPR extends IterativeRecommender {
 	private List<Entry<Integer, Double>> sortedItemPops;
 	private LoadingCache<Integer, List<Entry<Integer, Double>>> cacheItemProbs;
 
-	public WBPR(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public WBPR(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true;
 		initByNorm = false;
@@ -61,8 +63,6 @@ public class WBPR extends IterativeRecommender {
 		itemBias = new DenseVector(numItems);
 		itemBias.init(smallValue);
 
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-
 		// pre-compute and sort by item's popularity
 		sortedItemPops = new ArrayList<>();
 		for (int i = 0; i < numItems; i++) {
@@ -77,7 +77,7 @@ public class WBPR extends IterativeRecommender {
 			public List<Entry<Integer, Double>> load(Integer u) throws Exception {
 				List<Entry<Integer, Double>> itemProbs = new ArrayList<>();
 
-				List<Integer> ratedItems = userItemsCache.get(u);
+				IndexView ratedItems = trainMatrix.rowView(u);
 
 				// filter candidate items
 				double sum = 0;
@@ -112,17 +112,17 @@ public class WBPR extends IterativeRecommender {
 
 				// randomly draw (u, i, j)
 				int u = 0, i = 0, j = 0;
-				List<Integer> ratedItems = null;
+				IndexView ratedItems = null;
 				List<Entry<Integer, Double>> itemProbs = null;
 
 				while (true) {
 					u = Randoms.uniform(numUsers);
-					ratedItems = userItemsCache.get(u);
+					ratedItems = trainMatrix.rowView(u);
 
 					if (ratedItems.size() == 0)
 						continue;
 
-					i = Randoms.random(ratedItems);
+					i = ratedItems.get(Randoms.uniform(ratedItems.size()));
 
 					// sample j by popularity (probability)
 					itemProbs = cacheItemProbs.get(u);
@@ -3,10 +3,15 @@ package i5.las2peer.services.recommender.librec.ranking;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import i5.las2peer.services.recommender.librec.data.*;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Logs;
+import i5.las2peer.services.recommender.librec.util.Parallel;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -19,21 +24,32 @@ import i5.las2peer.services.recommender.librec.util.Strings;
  * implicit feedback datasets, ICDM 2008.</li>
  * </ul>
  *
+ * The user and item factors are updated in parallel. The shared part YtY (XtX) of the normal equations is computed
+ * once per half-step, so that the system of a user (item) only accumulates over its ratings. The systems are solved
+ * by a Cholesky decomposition, or by a few steps of conjugate gradient starting from the current factors (option
+ * -cg), as proposed by Takacs et al., Applications of the conjugate gradient method for implicit feedback
+ * collaborative filtering, RecSys 2011.
+ *
  * @author wkq
  */
-@Configuration("binThold, alpha, factors, regU, regI, numIters")
+@Configuration("binThold, alpha, factors, regU, regI, numIters, cg")
 public class WRMF extends IterativeRecommender {
+	// number of users/items solved by a task
+	private static final int ROWS_PER_TASK = 256;
+
 	private float alpha;
+	// number of conjugate gradient steps, 0 to use the Cholesky decomposition
+	private int cgSteps;
 	private SparseMatrix CuiI;// C_{ui} = alpha * r_{ui} C_{ui}-1
 	private SparseMatrix Pui;// P_{ui} = 1 if r_{ui}>0 or P_{ui} = 0
-	private List<List<Integer>> userItemList, itemUserList;
 
-	public WRMF(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public WRMF(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		isRankingPred = true; // item recommendation
 
 		alpha = algoOptions.getFloat("-alpha");
+		cgSteps = algoOptions.getInt("-cg", 0);
 		// checkBinary();
 	}
 
@@ -51,7 +67,7 @@ public class WRMF extends IterativeRecommender {
 			Q.init(); // Q.init(smallValue);
 		}
 
-		// predefined CuiI and Pui
+		// predefined CuiI and Pui, sharing the structure of the training matrix
 		CuiI = new SparseMatrix(trainMatrix);
 		Pui = new SparseMatrix(trainMatrix);
 		for (MatrixEntry me : trainMatrix) {
@@ -61,119 +77,237 @@ public class WRMF extends IterativeRecommender {
 			// CuiI.set(u, i, Math.log(1.0 + Math.pow(10, alpha) * me.get()));
 			Pui.set(u, i, 1.0d);
 		}
-
-		this.userItemList = new ArrayList<>();
-		this.itemUserList = new ArrayList<>();
-
-		for (int u = 0; u < numUsers; u++) {
-			userItemList.add(trainMatrix.getColumns(u));
-		}
-		for (int i = 0; i < numItems; i++) {
-			itemUserList.add(trainMatrix.getRows(i));
-		}
 	}
 
 	@Override
 	protected void buildModel() throws Exception {
 		// To be consistent with the symbols in the paper
-		DenseMatrix X = P, Y = Q;
-		SparseMatrix IuMatrix = DiagMatrix.eye(numFactors).scale(regU);
-		SparseMatrix IiMatrix = DiagMatrix.eye(numFactors).scale(regI);
-		for (int iter = 1; iter <= numIters; iter++) {
-
-			// Step 1: update user factors;
-			DenseMatrix Yt = Y.transpose();
-			DenseMatrix YtY = Yt.mult(Y);
-			for (int u = 0; u < numUsers; u++) {
-				if (verbose && (u + 1) % numUsers == 0)
-					Logs.info("{}{} runs at iteration = {}, user = {}/{} {}", algoName, foldInfo, iter, u + 1,
+		double[][] X = Parallel.rows(P), Y = Parallel.rows(Q);
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numCPUs));
+		ThreadLocal<Solver> solvers = ThreadLocal.withInitial(() -> new Solver(numFactors));
+		try {
+			for (int iter = 1; iter <= numIters; iter++) {
+
+				// Step 1: update user factors;
+				solve(X, Y, trainMatrix.getRowPointers(), trainMatrix.getColumnIndices(), trainMatrix.getData(),
+						CuiI.getData(), Pui.getData(), regU, executor, solvers);
+				if (verbose)
+					Logs.info("{}{} runs at iteration = {}, user = {}/{} {}", algoName, foldInfo, iter, numUsers,
 							numUsers, new Date());
 
-				DenseMatrix YtCuI = new DenseMatrix(numFactors, numItems);
-				for (int i : userItemList.get(u)) {
-					for (int k = 0; k < numFactors; k++) {
-						YtCuI.set(k, i, Y.get(i, k) * CuiI.get(u, i));
-					}
-				}
+				// Step 2: update item factors;
+				solve(Y, X, trainMatrix.getColumnPointers(), trainMatrix.getRowIndices(),
+						trainMatrix.getColumnData(), CuiI.getColumnData(), Pui.getColumnData(), regI, executor,
+						solvers);
+				if (verbose)
+					Logs.info("{}{} runs at iteration = {}, item = {}/{} {}", algoName, foldInfo, iter, numItems,
+							numItems, new Date());
 
-				// YtY + Yt * (Cu - I) * Y
-				DenseMatrix YtCuY = new DenseMatrix(numFactors, numFactors);
-				for (int k = 0; k < numFactors; k++) {
-					for (int f = 0; f < numFactors; f++) {
-						double value = 0.0;
-						for (int i : userItemList.get(u)) {
-							value += YtCuI.get(k, i) * Y.get(i, f);
-						}
-						YtCuY.set(k, f, value);
-					}
-				}
-				YtCuY = YtCuY.add(YtY);
-				// (YtCuY + lambda * I)^-1
-				// lambda * I can be pre-difined because every time is the same.
-				DenseMatrix Wu = (YtCuY.add(IuMatrix)).inv();
-				// Yt * (Cu - I) * Pu + Yt * Pu
-				DenseVector YtCuPu = new DenseVector(numFactors);
-				for (int f = 0; f < numFactors; f++) {
-					for (int i : userItemList.get(u)) {
-						YtCuPu.add(f, Pui.get(u, i) * (YtCuI.get(f, i) + Yt.get(f, i)));
-					}
+				// the loss is not computed during learning
+				reportIteration(iter, Double.NaN);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Updates the factors of all users (items) given the factors of the items (users)
+	 *
+	 * @param solved factors to update
+	 * @param fixed factors of the other side
+	 * @param ptr pointers to the ratings of each user (item)
+	 * @param idx items (users) of the ratings
+	 * @param ratings rating values, ratings of 0 are ignored
+	 * @param conf confidence C_{ui} - 1 of the ratings
+	 * @param pref preference P_{ui} of the ratings
+	 * @param reg regularization
+	 */
+	private void solve(double[][] solved, double[][] fixed, int[] ptr, int[] idx, double[] ratings, double[] conf,
+			double[] pref, double reg, ExecutorService executor, ThreadLocal<Solver> solvers) throws Exception {
+		// YtY, shared by all users
+		double[] gram = Parallel.gram(fixed, null, numFactors, executor);
+
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int start = 0; start < solved.length; start += ROWS_PER_TASK) {
+			final int from = start;
+			final int to = Math.min(solved.length, start + ROWS_PER_TASK);
+			tasks.add(executor.submit(() -> {
+				Solver solver = solvers.get();
+				for (int u = from; u < to; u++) {
+					int begin = u < ptr.length - 1 ? ptr[u] : 0;
+					int end = u < ptr.length - 1 ? ptr[u + 1] : 0;
+					solver.solve(solved[u], fixed, gram, idx, ratings, conf, pref, begin, end, reg, cgSteps);
 				}
+				return null;
+			}));
+		}
+		Parallel.await(tasks);
+	}
+
+	/**
+	 * Solves the normal equations (YtY + Yt (Cu - I) Y + reg I) xu = Yt Cu pu of one user (item) at a time, reusing
+	 * its buffers for all of them. Each thread uses its own solver.
+	 */
+	private static class Solver {
+
+		private final int k;
+		// system matrix (lower triangle, overwritten by its Cholesky factor) and right-hand side
+		private final double[] a, b;
+		// conjugate gradient vectors
+		private final double[] r, p, ap;
 
-				DenseVector xu = Wu.mult(YtCuPu);
-				// udpate user factors
-				X.setRow(u, xu);
+		Solver(int k) {
+			this.k = k;
+			a = new double[k * k];
+			b = new double[k];
+			r = new double[k];
+			p = new double[k];
+			ap = new double[k];
+		}
+
+		void solve(double[] x, double[][] fixed, double[] gram, int[] idx, double[] ratings, double[] conf,
+				double[] pref, int begin, int end, double reg, int cgSteps) {
+			// Yt * (Cu - I) * Pu + Yt * Pu
+			for (int f = 0; f < k; f++)
+				b[f] = 0;
+			for (int pos = begin; pos < end; pos++) {
+				if (ratings[pos] == 0)
+					continue;
+				double[] y = fixed[idx[pos]];
+				double w = pref[pos] * (conf[pos] + 1);
+				for (int f = 0; f < k; f++)
+					b[f] += w * y[f];
 			}
 
-			// Step 2: update item factors;
-			DenseMatrix Xt = X.transpose();
-			DenseMatrix XtX = Xt.mult(X);
-			for (int i = 0; i < numItems; i++) {
-				if (verbose && (i + 1) % numItems == 0)
-					Logs.info("{}{} runs at iteration = {}, item = {}/{} {}", algoName, foldInfo, iter, i + 1,
-							numItems, new Date());
+			if (cgSteps > 0 || !cholesky(fixed, gram, idx, ratings, conf, begin, end, reg))
+				conjugateGradient(x, fixed, gram, idx, ratings, conf, begin, end, reg, cgSteps > 0 ? cgSteps : k);
+			else
+				substitute(x);
+		}
 
-				DenseMatrix XtCiI = new DenseMatrix(numFactors, numUsers);
-				// actually XtCiI is a sparse matrix
-				// Xt * (Ci-I)
-				for (int u : itemUserList.get(i)) {
-					for (int k = 0; k < numFactors; k++) {
-						XtCiI.set(k, u, X.get(u, k) * CuiI.get(u, i));
-					}
+		/**
+		 * Builds YtY + Yt (Cu - I) Y + reg I and decomposes it into L Lt
+		 * @return false if the matrix is not positive definite
+		 */
+		private boolean cholesky(double[][] fixed, double[] gram, int[] idx, double[] ratings, double[] conf,
+				int begin, int end, double reg) {
+			System.arraycopy(gram, 0, a, 0, k * k);
+			for (int f = 0; f < k; f++)
+				a[f * k + f] += reg;
+			for (int pos = begin; pos < end; pos++) {
+				if (ratings[pos] == 0)
+					continue;
+				double[] y = fixed[idx[pos]];
+				double c = conf[pos];
+				for (int f = 0; f < k; f++) {
+					double cy = c * y[f];
+					for (int g = 0; g <= f; g++)
+						a[f * k + g] += cy * y[g];
 				}
-				// XtX + Xt * (Ci - I) * X
-				DenseMatrix XtCiX = new DenseMatrix(numFactors, numFactors);
-				for (int k = 0; k < numFactors; k++) {
-					for (int f = 0; f < numFactors; f++) {
-						double value = 0.0;
-						for (int u : itemUserList.get(i)) {
-							value += XtCiI.get(k, u) * X.get(u, f);
-						}
-						XtCiX.set(k, f, value);
-					}
+			}
+
+			for (int j = 0; j < k; j++) {
+				double d = a[j * k + j];
+				for (int q = 0; q < j; q++)
+					d -= a[j * k + q] * a[j * k + q];
+				if (!(d > 0))
+					return false;
+				d = Math.sqrt(d);
+				a[j * k + j] = d;
+				for (int i = j + 1; i < k; i++) {
+					double s = a[i * k + j];
+					for (int q = 0; q < j; q++)
+						s -= a[i * k + q] * a[j * k + q];
+					a[i * k + j] = s / d;
 				}
-				XtCiX = XtCiX.add(XtX);
-
-				// (XtCuX + lambda * I)^-1
-				// lambda * I can be pre-difined because every time is the same.
-				DenseMatrix Wi = (XtCiX.add(IiMatrix)).inv();
-				// Xt * (Ci - I) * Pu + Xt * Pu
-				DenseVector XtCiPu = new DenseVector(numFactors);
-				for (int f = 0; f < numFactors; f++) {
-					for (int u : itemUserList.get(i)) {
-						XtCiPu.add(f, Pui.get(u, i) * (XtCiI.get(f, u) + Xt.get(f, u)));
-					}
+			}
+			return true;
+		}
+
+		/**
+		 * Solves L Lt x = b by forward and back substitution
+		 */
+		private void substitute(double[] x) {
+			for (int i = 0; i < k; i++) {
+				double s = b[i];
+				for (int q = 0; q < i; q++)
+					s -= a[i * k + q] * x[q];
+				x[i] = s / a[i * k + i];
+			}
+			for (int i = k - 1; i >= 0; i--) {
+				double s = x[i];
+				for (int q = i + 1; q < k; q++)
+					s -= a[q * k + i] * x[q];
+				x[i] = s / a[i * k + i];
+			}
+		}
+
+		/**
+		 * Improves x by conjugate gradient steps, computing the products with the system matrix from YtY and the
+		 * ratings without building the matrix
+		 */
+		private void conjugateGradient(double[] x, double[][] fixed, double[] gram, int[] idx, double[] ratings,
+				double[] conf, int begin, int end, double reg, int steps) {
+			multiply(x, fixed, gram, idx, ratings, conf, begin, end, reg);
+			double rr = 0;
+			for (int f = 0; f < k; f++) {
+				r[f] = b[f] - ap[f];
+				p[f] = r[f];
+				rr += r[f] * r[f];
+			}
+
+			for (int step = 0; step < steps && rr > 0; step++) {
+				multiply(p, fixed, gram, idx, ratings, conf, begin, end, reg);
+				double pap = 0;
+				for (int f = 0; f < k; f++)
+					pap += p[f] * ap[f];
+				if (!(pap > 0))
+					break;
+
+				double alpha = rr / pap;
+				double rrNew = 0;
+				for (int f = 0; f < k; f++) {
+					x[f] += alpha * p[f];
+					r[f] -= alpha * ap[f];
+					rrNew += r[f] * r[f];
 				}
+				double beta = rrNew / rr;
+				for (int f = 0; f < k; f++)
+					p[f] = r[f] + beta * p[f];
+				rr = rrNew;
+			}
+		}
 
-				DenseVector yi = Wi.mult(XtCiPu);
-				// udpate item factors
-				Y.setRow(i, yi);
+		/**
+		 * ap = (YtY + Yt (Cu - I) Y + reg I) v
+		 */
+		private void multiply(double[] v, double[][] fixed, double[] gram, int[] idx, double[] ratings,
+				double[] conf, int begin, int end, double reg) {
+			for (int f = 0; f < k; f++) {
+				double s = reg * v[f];
+				for (int g = 0; g < k; g++)
+					s += gram[f * k + g] * v[g];
+				ap[f] = s;
+			}
+			for (int pos = begin; pos < end; pos++) {
+				if (ratings[pos] == 0)
+					continue;
+				double[] y = fixed[idx[pos]];
+				double yv = 0;
+				for (int f = 0; f < k; f++)
+					yv += y[f] * v[f];
+				double c = conf[pos] * yv;
+				for (int f = 0; f < k; f++)
+					ap[f] += c * y[f];
 			}
 		}
 	}
 
 	@Override
 	public String toString() {
-		return Strings.toString(new Object[] { binThold, alpha, numFactors, regU, regI, numIters }, ",");
+		return Strings.toString(new Object[] { binThold, alpha, numFactors, regU, regI, numIters, cgSteps }, ",");
 	}
 
 }
@@ -20,9 +20,9 @@ package i5.las2peer.services.recommender.librec.rating;
 
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
-import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Biased Matrix Factorization Models. <br>
@@ -35,8 +35,8 @@ import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
  */
 public class BiasedMF extends IterativeRecommender {
 
-	public BiasedMF(SparseMatrix rm, SparseMatrix tm, int fold) {
-		super(rm, tm, fold);
+	public BiasedMF(RecommenderContext context, SparseMatrix rm, SparseMatrix tm, int fold) {
+		super(context, rm, tm, fold);
 	}
 
 	protected void initModel() throws Exception {
@@ -47,61 +47,60 @@ public class BiasedMF extends IterativeRecommender {
 		itemBias = new DenseVector(numItems);
 
 		// initialize user bias
-		userBias.init(initMean, initStd);
-		itemBias.init(initMean, initStd);
+		userBias.init(initMean, initStd, initRandom);
+		itemBias.init(initMean, initStd, initRandom);
 	}
 
 	@Override
 	protected void buildModel() throws Exception {
+		learnSGD(this::updateRating);
+	}
 
-		for (int iter = 1; iter <= numIters; iter++) {
-
-			loss = 0;
-			for (MatrixEntry me : trainMatrix) {
-
-				int u = me.row(); // user
-				int j = me.column(); // item
-				double ruj = me.get();
-
-				double pred = predict(u, j, false);
-				double euj = ruj - pred;
-
-				loss += euj * euj;
+	/**
+	 * Updates the model parameters for one training rating
+	 * 
+	 * @return loss of the rating
+	 */
+	protected double updateRating(int u, int j, double ruj) throws Exception {
+		double loss = 0;
 
-				// update factors
-				double bu = userBias.get(u);
-				double sgd = euj - regB * bu;
-				userBias.add(u, lRate * sgd);
+		double pred = predict(u, j, false);
+		double euj = ruj - pred;
 
-				loss += regB * bu * bu;
+		loss += euj * euj;
 
-				double bj = itemBias.get(j);
-				sgd = euj - regB * bj;
-				itemBias.add(j, lRate * sgd);
+		// update factors
+		double bu = userBias.get(u);
+		double sgd = euj - regB * bu;
+		userBias.add(u, lRate * sgd);
 
-				loss += regB * bj * bj;
+		loss += regB * bu * bu;
 
-				for (int f = 0; f < numFactors; f++) {
-					double puf = P.get(u, f);
-					double qjf = Q.get(j, f);
+		double bj = itemBias.get(j);
+		sgd = euj - regB * bj;
+		itemBias.add(j, lRate * sgd);
 
-					double delta_u = euj * qjf - regU * puf;
-					double delta_j = euj * puf - regI * qjf;
+		loss += regB * bj * bj;
 
-					P.add(u, f, lRate * delta_u);
-					Q.add(j, f, lRate * delta_j);
+		for (int f = 0; f < numFactors; f++) {
+			double puf = P.get(u, f);
+			double qjf = Q.get(j, f);
 
-					loss += regU * puf * puf + regI * qjf * qjf;
-				}
+			double delta_u = euj * qjf - regU * puf;
+			double delta_j = euj * puf - regI * qjf;
 
-			}
-			loss *= 0.5;
+			P.add(u, f, lRate * delta_u);
+			Q.add(j, f, lRate * delta_j);
 
-			if (isConverged(iter))
-				break;
+			loss += regU * puf * puf + regI * qjf * qjf;
+		}
 
-		}// end of training
+		return loss;
+	}
 
+	@Override
+	protected boolean isBlockLocal() {
+		return true;
 	}
 
 	protected double predict(int u, int j) throws Exception {
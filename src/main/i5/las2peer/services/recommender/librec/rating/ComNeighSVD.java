@@ -18,10 +18,6 @@
 
 package i5.las2peer.services.recommender.librec.rating;
 
-import java.util.List;
-
-import com.google.common.cache.LoadingCache;
-
 import i5.las2peer.services.recommender.communities.CommunityDetector;
 import i5.las2peer.services.recommender.communities.CommunityDetector.CommunityDetectionAlgorithm;
 import i5.las2peer.services.recommender.graphs.GraphBuilder;
@@ -30,8 +26,10 @@ import i5.las2peer.services.recommender.graphs.GraphBuilder.SimilarityMeasure;
 import i5.las2peer.services.recommender.librec.data.Configuration;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
-import i5.las2peer.services.recommender.librec.data.MatrixEntry;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener.Phase;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Communities;
 import i5.las2peer.services.recommender.librec.util.Logs;
 import i5.las2peer.services.recommender.librec.util.Strings;
@@ -76,10 +74,8 @@ public class ComNeighSVD extends BiasedMF {
 	protected SparseMatrix userCommunitiesRatingsMatrix;  // Average ratings given by each user's communities (numUsers x numItems)
 	protected SparseMatrix itemCommunityNeighborsMatrix;
 	
-	protected LoadingCache<Integer, List<Integer>> userCommunitiesCache, itemCommunitiesCache, userCommunitiesItemsCache;
-	
-	public ComNeighSVD(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public ComNeighSVD(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		setAlgoName("ComNeighSVD++");
 		
@@ -130,49 +126,39 @@ public class ComNeighSVD extends BiasedMF {
 		super.initModel();
 		
 		Y = new DenseMatrix(numItems, numFactors);
-		Y.init(initMean, initStd);
+		Y.init(initMean, initStd, initRandom);
 
 		Z = new DenseMatrix(numItems, numFactors);
-		Z.init(initMean, initStd);
+		Z.init(initMean, initStd, initRandom);
 
 		W = new DenseMatrix(numItems, numItems);
-		W.init(initMean, initStd);
+		W.init(initMean, initStd, initRandom);
 
 		C = new DenseMatrix(numItems, numItems);
-		C.init(initMean, initStd);
-		
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-		itemUsersCache = trainMatrix.columnRowsCache(cacheSpec);
+		C.init(initMean, initStd, initRandom);
 		
 		D = new DenseMatrix(numItems, numItems);
-		D.init(initMean, initStd);
+		D.init(initMean, initStd, initRandom);
 
 		// build the user and item graphs
+		reportPhase(Phase.GRAPH);
 		Logs.info("{}{} build user and item graphs ...", new Object[] { algoName, foldInfo });
-		GraphBuilder gb = new GraphBuilder();
-		gb.setMethod(graphMethod);
-		gb.setRatingData(trainMatrix);
-		gb.setTaggingData(userTagTable, itemTagTable);
-		gb.setK(knn);
-		gb.setSimilarityMeasure(sim);
-		gb.buildGraphs();
-		SparseMatrix userMatrix = gb.getUserAdjacencyMatrix();
-		SparseMatrix itemMatrix = gb.getItemAdjacencyMatrix();
-		gb = null;
+		SparseMatrix[] graphs = getSharedResult(trainMatrix, "graphs " + graphMethod + " " + sim + " " + knn, () -> {
+			GraphBuilder gb = new GraphBuilder();
+			gb.setMethod(graphMethod);
+			gb.setRatingData(trainMatrix);
+			gb.setTaggingData(userTagTable, itemTagTable);
+			gb.setK(knn);
+			gb.setSimilarityMeasure(sim);
+			gb.buildGraphs();
+			return new SparseMatrix[] { gb.getUserAdjacencyMatrix(), gb.getItemAdjacencyMatrix() };
+		});
 		
 		// detect communities
+		reportPhase(Phase.COMMUNITIES);
 		Logs.info("{}{} detect communities ...", new Object[] { algoName, foldInfo });
-		CommunityDetector cd = new CommunityDetector();
-		cd.setAlgorithm(cdAlgo);
-		if (cdAlgo == CommunityDetectionAlgorithm.WALKTRAP)
-			cd.setWalktrapParameters(wtSteps);
-		cd.setGraph(userMatrix);
-		cd.detectCommunities();
-		userMemberships = cd.getMemberships();
-		
-		cd.setGraph(itemMatrix);
-		cd.detectCommunities();
-		itemMemberships = cd.getMemberships();
+		userMemberships = detectCommunities(graphs[0]).getMemberships();
+		itemMemberships = detectCommunities(graphs[1]).getMemberships();
 		
 		if (maxOC > 0){
 			Logs.info("{}{} reduce community memberships to max. {} communities per user/item ...", new Object[] { algoName, foldInfo, maxOC });
@@ -180,190 +166,213 @@ public class ComNeighSVD extends BiasedMF {
 			itemMemberships = Communities.limitOverlappingCommunities(itemMemberships, maxOC);
 		}
 		
-		userCommunitiesCache = userMemberships.rowColumnsCache(cacheSpec);
-		itemCommunitiesCache = itemMemberships.rowColumnsCache(cacheSpec);
-		
-		userMatrix = null;
-		itemMatrix = null;
-		cd = null;
-		
 		numUserCommunities = userMemberships.numColumns();
 		numItemCommunities = itemMemberships.numColumns(); 
 		
 		logCommunityInfo();
 		
 		userComBias = new DenseVector(numUserCommunities);
-		userComBias.init(initMean, initStd);
+		userComBias.init(initMean, initStd, initRandom);
 		
 		itemComBias = new DenseVector(numItemCommunities);
-		itemComBias.init(initMean, initStd);
+		itemComBias.init(initMean, initStd, initRandom);
 
 		Logs.info("{}{} compute community ratings per user ...", new Object[] { algoName, foldInfo });
 		userCommunitiesRatingsMatrix = Communities.userCommunitiesRatings(userMemberships, trainMatrix, communitiesItemsK);
-		userCommunitiesItemsCache = userCommunitiesRatingsMatrix.rowColumnsCache(cacheSpec);
 		
 		Ocu = new DenseMatrix(numUserCommunities, numFactors);
-		Ocu.init(initMean, initStd);
+		Ocu.init(initMean, initStd, initRandom);
 
 		Oci = new DenseMatrix(numItemCommunities, numFactors);
-		Oci.init(initMean, initStd);
+		Oci.init(initMean, initStd, initRandom);
+	}
+
+	/**
+	 * detect the communities of a user or item graph, sharing the result with other runs using the same graph
+	 */
+	private CommunityDetector detectCommunities(SparseMatrix graph) throws Exception {
+		return getSharedResult(graph, "communities " + cdAlgo + " " + wtSteps + " overlapping=true", () -> {
+			CommunityDetector cd = new CommunityDetector();
+			cd.setAlgorithm(cdAlgo);
+			if (cdAlgo == CommunityDetectionAlgorithm.WALKTRAP)
+				cd.setWalktrapParameters(wtSteps);
+			cd.setGraph(graph);
+			cd.detectCommunities();
+			return cd;
+		});
 	}
 
 	@Override
 	protected void buildModel() throws Exception {
 		Logs.info("{}{} learn model parameters ...", new Object[] { algoName, foldInfo });
-		for (int iter = 1; iter <= numIters; iter++) {
-			loss = 0;
-			for (MatrixEntry me : trainMatrix) {
-				int u = me.row(); // user
-				int j = me.column(); // item
-				double ruj = me.get();
-
-				double pred = predict(u, j);
-				double euj = ruj - pred;
-
-				loss += euj * euj;
-
-				List<Integer> items = userItemsCache.get(u);
-				List<Integer> userCommunities = userCommunitiesCache.get(u);
-				List<Integer> itemCommunities = itemCommunitiesCache.get(j);
-				List<Integer> userCommunitiesItems = userCommunitiesItemsCache.get(u);  // items that have been rated by u's community co-members
-
-				double w = Math.sqrt(items.size());
-				double cw = Math.sqrt(userCommunitiesItems.size());
-
-				// update baseline parameters
-				double bu = userBias.get(u);
-				double sgd = euj - regB * bu;
-				userBias.add(u, lRate * sgd);
-
-				loss += regB * bu * bu;
-
-				double bj = itemBias.get(j);
-				sgd = euj - regB * bj;
-				itemBias.add(j, lRate * sgd);
-
-				loss += regB * bj * bj;
-				
-				for (int cu : userCommunities){
-					double bc = userComBias.get(cu);
-					sgd = euj * userMemberships.get(u, cu) - regC * bc;
-					userComBias.add(cu, lRateC * sgd);
-					loss += regC * bc * bc;
-				}
-				for (int ci : itemCommunities){
-					double bc = itemComBias.get(ci);
-					sgd = euj * itemMemberships.get(j, ci) - regC * bc;
-					itemComBias.add(ci, lRateC * sgd);
-					loss += regC * bc * bc;
-				}
-				
-				// update neighborhood model parameters
-				for (int k : items){	// to reduce complexity we can reduce the list of items to the nearest neighbors of item k
-					double ruk = trainMatrix.get(u, k);
-					double buk = bias(u,k, userCommunities, itemCommunitiesCache.get(k));
-					double wjk = W.get(j, k);
-					sgd = euj * (ruk - buk) / w - regN * wjk;
-					W.add(j, k, lRateN * sgd);
-					loss += regN * wjk * wjk;
-					
-					double cjk = C.get(j, k);
-					sgd = euj / w - regN * cjk;
-					C.add(j, k, lRateN * sgd);
-					loss += regN * cjk * cjk;
-				}
-				for (int k : userCommunitiesItems){
-					double djk = D.get(j, k);
-					sgd = euj / cw - regCN * djk;
-					D.add(j, k , lRateCN * sgd);
-					loss += regCN * djk * djk;
-				}
-				
-				// update factor model parameters
-				double[] sum_ys = new double[numFactors];
-				for (int f = 0; f < numFactors; f++) {
-					double sum_f = 0;
-					for (int k : items)
-						sum_f += Y.get(k, f);
-					sum_ys[f] = w > 0 ? sum_f / w : sum_f;
-				}
-
-				double[] sum_zs = new double[numFactors];
-				for (int f = 0; f < numFactors; f++) {
-					double sum_f = 0;
-					for (int k : userCommunitiesItems)
-						sum_f += Z.get(k, f);
-					sum_zs[f] = cw > 0 ? sum_f / cw : sum_f;
-				}
-				
-				double[] sum_ocus = new double[numFactors];
-				for (int f = 0; f < numFactors; f++) {
-					for (int c : userCommunities)
-						sum_ocus[f] += Ocu.get(c, f) * userMemberships.get(u, c);
-				}
-				
-				double[] sum_ocis = new double[numFactors];
-				for (int f = 0; f < numFactors; f++) {
-					for (int c : itemCommunities)
-						sum_ocis[f] += Oci.get(c, f) * itemMemberships.get(j, c);
-				}
-				
-				for (int f = 0; f < numFactors; f++) {
-					double puf = P.get(u, f);
-					double qjf = Q.get(j, f);
-
-					double sgd_puf = euj * (qjf + sum_ocis[f]) - regU * puf;
-					double sgd_qjf = euj * (puf + sum_ocus[f] + sum_ys[f] + sum_zs[f]) - regI * qjf;
-
-					P.add(u, f, lRate * sgd_puf);
-					Q.add(j, f, lRate * sgd_qjf);
-
-					loss += regU * puf * puf + regI * qjf * qjf;
-
-					for (int k : items) {
-						double ykf = Y.get(k, f);
-						double delta_y = euj * (qjf + sum_ocis[f]) / w - regU * ykf;
-						Y.add(k, f, lRate * delta_y);
-						loss += regU * ykf * ykf;
-					}
-					
-					for (int k : userCommunitiesItems){
-						double zkf = Z.get(k, f);
-						double delta_z = euj * (qjf + sum_ocis[f]) / cw - regCF * zkf;
-						Z.add(k, f, lRateCF * delta_z);
-						loss += regCF * zkf * zkf;
-					}
-					
-					for (int c : userCommunities){
-						double ocuf = Ocu.get(c, f);
-						double delta_ocu = euj * userMemberships.get(u, c) * (qjf + sum_ocis[f]) - regCF * ocuf;
-						Ocu.add(c, f, lRateCF * delta_ocu);
-						loss += regCF * ocuf * ocuf;
-					}
-					
-					for (int c : itemCommunities){
-						double ocif = Oci.get(c, f);
-						double delta_oci = euj * itemMemberships.get(j, c) * (puf + sum_ocus[f] + sum_ys[f] + sum_zs[f]) - regCF * ocif;
-						Oci.add(c, f, lRateCF * delta_oci);
-						loss += regCF * ocif * ocif;
-					}
-				}
+		learnSGD(this::updateRating);
+	}
+
+	@Override
+	protected double updateRating(int u, int j, double ruj) throws Exception {
+		double loss = 0;
+
+		double pred = predict(u, j);
+		double euj = ruj - pred;
+
+		loss += euj * euj;
+
+		IndexView items = trainMatrix.rowView(u);
+		IndexView userCommunities = userMemberships.rowView(u);
+		IndexView itemCommunities = itemMemberships.rowView(j);
+		IndexView userCommunitiesItems = userCommunitiesRatingsMatrix.rowView(u);  // items that have been rated by u's community co-members
+
+		double w = Math.sqrt(items.size());
+		double cw = Math.sqrt(userCommunitiesItems.size());
+
+		// update baseline parameters
+		double bu = userBias.get(u);
+		double sgd = euj - regB * bu;
+		userBias.add(u, lRate * sgd);
+
+		loss += regB * bu * bu;
+
+		double bj = itemBias.get(j);
+		sgd = euj - regB * bj;
+		itemBias.add(j, lRate * sgd);
+
+		loss += regB * bj * bj;
+		
+		for (int p = 0; p < userCommunities.size(); p++) {
+			int cu = userCommunities.get(p);
+			double bc = userComBias.get(cu);
+			sgd = euj * userCommunities.value(p) - regC * bc;
+			userComBias.add(cu, lRateC * sgd);
+			loss += regC * bc * bc;
+		}
+		for (int p = 0; p < itemCommunities.size(); p++) {
+			int ci = itemCommunities.get(p);
+			double bc = itemComBias.get(ci);
+			sgd = euj * itemCommunities.value(p) - regC * bc;
+			itemComBias.add(ci, lRateC * sgd);
+			loss += regC * bc * bc;
+		}
+		
+		// update neighborhood model parameters
+		for (int p = 0; p < items.size(); p++) {	// to reduce complexity we can reduce the list of items to the nearest neighbors of item k
+			int k = items.get(p);
+			double ruk = items.value(p);
+			double buk = bias(u,k, userCommunities, itemMemberships.rowView(k));
+			double wjk = W.get(j, k);
+			sgd = euj * (ruk - buk) / w - regN * wjk;
+			W.add(j, k, lRateN * sgd);
+			loss += regN * wjk * wjk;
+			
+			double cjk = C.get(j, k);
+			sgd = euj / w - regN * cjk;
+			C.add(j, k, lRateN * sgd);
+			loss += regN * cjk * cjk;
+		}
+		for (int p = 0; p < userCommunitiesItems.size(); p++) {
+			int k = userCommunitiesItems.get(p);
+			double djk = D.get(j, k);
+			sgd = euj / cw - regCN * djk;
+			D.add(j, k , lRateCN * sgd);
+			loss += regCN * djk * djk;
+		}
+		
+		// update factor model parameters
+		double[] sum_ys = new double[numFactors];
+		for (int f = 0; f < numFactors; f++) {
+			double sum_f = 0;
+			for (int p = 0; p < items.size(); p++) {
+				int k = items.get(p);
+				sum_f += Y.get(k, f);
 			}
+			sum_ys[f] = w > 0 ? sum_f / w : sum_f;
+		}
+
+		double[] sum_zs = new double[numFactors];
+		for (int f = 0; f < numFactors; f++) {
+			double sum_f = 0;
+			for (int p = 0; p < userCommunitiesItems.size(); p++) {
+				int k = userCommunitiesItems.get(p);
+				sum_f += Z.get(k, f);
+			}
+			sum_zs[f] = cw > 0 ? sum_f / cw : sum_f;
+		}
+		
+		double[] sum_ocus = new double[numFactors];
+		for (int f = 0; f < numFactors; f++) {
+			for (int p = 0; p < userCommunities.size(); p++) {
+				int c = userCommunities.get(p);
+				sum_ocus[f] += Ocu.get(c, f) * userCommunities.value(p);
+			}
+		}
+		
+		double[] sum_ocis = new double[numFactors];
+		for (int f = 0; f < numFactors; f++) {
+			for (int p = 0; p < itemCommunities.size(); p++) {
+				int c = itemCommunities.get(p);
+				sum_ocis[f] += Oci.get(c, f) * itemCommunities.value(p);
+			}
+		}
+		
+		for (int f = 0; f < numFactors; f++) {
+			double puf = P.get(u, f);
+			double qjf = Q.get(j, f);
 
-			loss *= 0.5;
+			double sgd_puf = euj * (qjf + sum_ocis[f]) - regU * puf;
+			double sgd_qjf = euj * (puf + sum_ocus[f] + sum_ys[f] + sum_zs[f]) - regI * qjf;
+
+			P.add(u, f, lRate * sgd_puf);
+			Q.add(j, f, lRate * sgd_qjf);
+
+			loss += regU * puf * puf + regI * qjf * qjf;
+
+			for (int p = 0; p < items.size(); p++) {
+				int k = items.get(p);
+				double ykf = Y.get(k, f);
+				double delta_y = euj * (qjf + sum_ocis[f]) / w - regU * ykf;
+				Y.add(k, f, lRate * delta_y);
+				loss += regU * ykf * ykf;
+			}
+			
+			for (int p = 0; p < userCommunitiesItems.size(); p++) {
+				int k = userCommunitiesItems.get(p);
+				double zkf = Z.get(k, f);
+				double delta_z = euj * (qjf + sum_ocis[f]) / cw - regCF * zkf;
+				Z.add(k, f, lRateCF * delta_z);
+				loss += regCF * zkf * zkf;
+			}
+			
+			for (int p = 0; p < userCommunities.size(); p++) {
+				int c = userCommunities.get(p);
+				double ocuf = Ocu.get(c, f);
+				double delta_ocu = euj * userCommunities.value(p) * (qjf + sum_ocis[f]) - regCF * ocuf;
+				Ocu.add(c, f, lRateCF * delta_ocu);
+				loss += regCF * ocuf * ocuf;
+			}
 			
-			if (isConverged(iter))
-				break;
-		}// end of training
+			for (int p = 0; p < itemCommunities.size(); p++) {
+				int c = itemCommunities.get(p);
+				double ocif = Oci.get(c, f);
+				double delta_oci = euj * itemCommunities.value(p) * (puf + sum_ocus[f] + sum_ys[f] + sum_zs[f]) - regCF * ocif;
+				Oci.add(c, f, lRateCF * delta_oci);
+				loss += regCF * ocif * ocif;
+			}
+		}
 
+		return loss;
+	}
+
+	@Override
+	protected boolean isBlockLocal() {
+		// the update of a rating changes the parameters of all items rated by the user
+		return false;
 	}
 
 	@Override
 	protected double predict(int u, int j) throws Exception {
-		List<Integer> items = userItemsCache.get(u);
-		List<Integer> userCommunities = userCommunitiesCache.get(u);
-		List<Integer> itemCommunities = itemCommunitiesCache.get(j);
-		List<Integer> userCommunitiesItems = userCommunitiesItemsCache.get(u);  // items that have been rated by u's community co-members
+		IndexView items = trainMatrix.rowView(u);
+		IndexView userCommunities = userMemberships.rowView(u);
+		IndexView itemCommunities = itemMemberships.rowView(j);
+		IndexView userCommunitiesItems = userCommunitiesRatingsMatrix.rowView(u);  // items that have been rated by u's community co-members
 
 		double w = Math.sqrt(items.size());
 		double cw = Math.sqrt(userCommunitiesItems.size());  // used for normalizing over the user's communities
@@ -372,14 +381,16 @@ public class ComNeighSVD extends BiasedMF {
 		double pred = bias(u, j, userCommunities, itemCommunities);
 		
 		// neighborhood model prediction
-		for (int k : items){
-			double buk = bias(u,k, userCommunities, itemCommunitiesCache.get(k));
-			double ruk = trainMatrix.get(u, k);
+		for (int p = 0; p < items.size(); p++) {
+			int k = items.get(p);
+			double buk = bias(u,k, userCommunities, itemMemberships.rowView(k));
+			double ruk = items.value(p);
 			double wjk = W.get(j, k);
 			double cjk = C.get(j, k);
 			pred += ((ruk - buk) * wjk + cjk) / w;
 		}
-		for (int k : userCommunitiesItems){
+		for (int p = 0; p < userCommunitiesItems.size(); p++) {
+			int k = userCommunitiesItems.get(p);
 			double djk = D.get(j, k);
 			pred += djk / cw;
 		}
@@ -387,31 +398,39 @@ public class ComNeighSVD extends BiasedMF {
 		// factor model prediction
 		DenseVector userFactor = P.row(u);
 		DenseVector itemFactor = Q.row(j);
-		for (int k : items)
+		for (int p = 0; p < items.size(); p++) {
+			int k = items.get(p);
 			userFactor.add(Y.row(k).scale(1.0/w));
-		for (int k : userCommunitiesItems)
+		}
+		for (int p = 0; p < userCommunitiesItems.size(); p++) {
+			int k = userCommunitiesItems.get(p);
 			userFactor.add(Z.row(k).scale(1.0/cw));
-		for (int c : userCommunities){
-			userFactor.add(Ocu.row(c).scale(userMemberships.get(u, c)));
 		}
-		for (int c : itemCommunities){
-			itemFactor.add(Oci.row(c).scale(itemMemberships.get(j, c)));
+		for (int p = 0; p < userCommunities.size(); p++) {
+			int c = userCommunities.get(p);
+			userFactor.add(Ocu.row(c).scale(userCommunities.value(p)));
+		}
+		for (int p = 0; p < itemCommunities.size(); p++) {
+			int c = itemCommunities.get(p);
+			itemFactor.add(Oci.row(c).scale(itemCommunities.value(p)));
 		}
 		pred += itemFactor.inner(userFactor);
 		
 		return pred;
 	}
 
-	private double bias(int u, int j, List<Integer> userCommunities, List<Integer> itemCommunities){
+	private double bias(int u, int j, IndexView userCommunities, IndexView itemCommunities){
 		double bias = globalMean + userBias.get(u) + itemBias.get(j);
-		for (int cu : userCommunities){
+		for (int p = 0; p < userCommunities.size(); p++) {
+			int cu = userCommunities.get(p);
 			double bc = userComBias.get(cu);
-			double muc = userMemberships.get(u, cu);  // community membership weight
+			double muc = userCommunities.value(p);  // community membership weight
 			bias += bc * muc;
 		}
-		for (int ci : itemCommunities){
+		for (int p = 0; p < itemCommunities.size(); p++) {
+			int ci = itemCommunities.get(p);
 			double bc = itemComBias.get(ci);
-			double mic = itemMemberships.get(j, ci);  // community membership weight
+			double mic = itemCommunities.value(p);  // community membership weight
 			bias += bc * mic;
 		}
 		return bias;
@@ -18,8 +18,6 @@
 
 package i5.las2peer.services.recommender.librec.rating;
 
-import java.util.List;
-
 import i5.las2peer.services.recommender.communities.CommunityDetector;
 import i5.las2peer.services.recommender.communities.CommunityDetector.CommunityDetectionAlgorithm;
 import i5.las2peer.services.recommender.graphs.GraphBuilder;
@@ -28,8 +26,10 @@ import i5.las2peer.services.recommender.graphs.GraphBuilder.SimilarityMeasure;
 import i5.las2peer.services.recommender.librec.data.Configuration;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
-import i5.las2peer.services.recommender.librec.data.MatrixEntry;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener.Phase;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Logs;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
@@ -66,8 +66,8 @@ public class ComNeighSVDFast extends BiasedMF {
 	// User/item community membership map
 	private DenseVector userMembershipsVector, itemMembershipsVector;
 	
-	public ComNeighSVDFast(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public ComNeighSVDFast(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		setAlgoName("ComNeighSVD++Fast");
 		
@@ -116,161 +116,168 @@ public class ComNeighSVDFast extends BiasedMF {
 		super.initModel();
 		
 		// build the user and item graphs
+		reportPhase(Phase.GRAPH);
 		Logs.info("{}{} build user and item graphs ...", new Object[] { algoName, foldInfo });
-		GraphBuilder gb = new GraphBuilder();
-		gb.setMethod(graphMethod);
-		gb.setRatingData(trainMatrix);
-		gb.setTaggingData(userTagTable, itemTagTable);
-		gb.setK(knn);
-		gb.setSimilarityMeasure(sim);
-		gb.buildGraphs();
-		SparseMatrix userMatrix = gb.getUserAdjacencyMatrix();
-		SparseMatrix itemMatrix = gb.getItemAdjacencyMatrix();
-		gb = null;
+		SparseMatrix[] graphs = getSharedResult(trainMatrix, "graphs " + graphMethod + " " + sim + " " + knn, () -> {
+			GraphBuilder gb = new GraphBuilder();
+			gb.setMethod(graphMethod);
+			gb.setRatingData(trainMatrix);
+			gb.setTaggingData(userTagTable, itemTagTable);
+			gb.setK(knn);
+			gb.setSimilarityMeasure(sim);
+			gb.buildGraphs();
+			return new SparseMatrix[] { gb.getUserAdjacencyMatrix(), gb.getItemAdjacencyMatrix() };
+		});
 		
 		// detect communities
+		reportPhase(Phase.COMMUNITIES);
 		Logs.info("{}{} detect communities ...", new Object[] { algoName, foldInfo });
-		CommunityDetector cd = new CommunityDetector();
-		cd.setAlgorithm(cdAlgo);
-		if (cdAlgo == CommunityDetectionAlgorithm.WALKTRAP)
-			cd.setWalktrapParameters(wtSteps);
-		
-		cd.setGraph(userMatrix);
-		cd.detectCommunities();
+		CommunityDetector cd = detectCommunities(graphs[0]);
 		userMembershipsVector = cd.getMembershipsVector();
 		numUserCommunities = cd.getNumCommunities();
 		
-		cd.setGraph(itemMatrix);
-		cd.detectCommunities();
+		cd = detectCommunities(graphs[1]);
 		itemMembershipsVector = cd.getMembershipsVector();
 		numItemCommunities = cd.getNumCommunities();
-		
-		userMatrix = null;
-		itemMatrix = null;
-		cd = null;
 
 		logCommunityInfo();
 		
 		Y = new DenseMatrix(numItemCommunities, numFactors);
-		Y.init(initMean, initStd);
+		Y.init(initMean, initStd, initRandom);
 
 		W = new DenseMatrix(numItems, numItemCommunities);
-		W.init(initMean, initStd);
+		W.init(initMean, initStd, initRandom);
 
 		C = new DenseMatrix(numItems, numItemCommunities);
-		C.init(initMean, initStd);
-		
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
+		C.init(initMean, initStd, initRandom);
 		
 		BCu = new DenseVector(numUserCommunities);
-		BCu.init(initMean, initStd);
+		BCu.init(initMean, initStd, initRandom);
 		
 		BCi = new DenseVector(numItemCommunities);
-		BCi.init(initMean, initStd);
+		BCi.init(initMean, initStd, initRandom);
 
 		Ocu = new DenseMatrix(numUserCommunities, numFactors);
-		Ocu.init(initMean, initStd);
+		Ocu.init(initMean, initStd, initRandom);
 
 		Oci = new DenseMatrix(numItemCommunities, numFactors);
-		Oci.init(initMean, initStd);
+		Oci.init(initMean, initStd, initRandom);
+	}
+
+	/**
+	 * detect the communities of a user or item graph, sharing the result with other runs using the same graph
+	 */
+	private CommunityDetector detectCommunities(SparseMatrix graph) throws Exception {
+		return getSharedResult(graph, "communities " + cdAlgo + " " + wtSteps + " overlapping=true", () -> {
+			CommunityDetector cd = new CommunityDetector();
+			cd.setAlgorithm(cdAlgo);
+			if (cdAlgo == CommunityDetectionAlgorithm.WALKTRAP)
+				cd.setWalktrapParameters(wtSteps);
+			cd.setGraph(graph);
+			cd.detectCommunities();
+			return cd;
+		});
 	}
 
 	@Override
 	protected void buildModel() throws Exception {
 		// iteratively learn the model parameters
 		Logs.info("{}{} learn model parameters ...", new Object[] { algoName, foldInfo });
-		for (int iter = 1; iter <= numIters; iter++) {
-			loss = 0;
-			for (MatrixEntry me : trainMatrix) {
-				int u = me.row(); // user
-				int i = me.column(); // item
-				double rui = me.get();
-				
-				int cu = (int) userMembershipsVector.get(u);
-				int ci = (int) itemMembershipsVector.get(i);
+		learnSGD(this::updateRating);
+	}
 
-				double pred = predict(u, i);
-				double eui = rui - pred;
+	@Override
+	protected double updateRating(int u, int i, double rui) throws Exception {
+		double loss = 0;
 
-				loss += eui * eui;
+		int cu = (int) userMembershipsVector.get(u);
+		int ci = (int) itemMembershipsVector.get(i);
+
+		double pred = predict(u, i);
+		double eui = rui - pred;
 
-				List<Integer> Iu = userItemsCache.get(u);
+		loss += eui * eui;
 
-				double wi = Math.sqrt(Iu.size());
-				
-				double sgd;
-				
-				// update baseline parameters
-				double bcu = BCu.get(cu);
-				sgd = eui - regC * bcu;
-				BCu.add(cu, lRateC * sgd);
-				loss += regC * bcu * bcu;
+		IndexView Iu = trainMatrix.rowView(u);
 
-				double bci = BCi.get(ci);
-				sgd = eui - regC * bci;
-				BCi.add(ci, lRateC * sgd);
-				loss += regC * bci * bci;
+		double wi = Math.sqrt(Iu.size());
+		
+		double sgd;
+		
+		// update baseline parameters
+		double bcu = BCu.get(cu);
+		sgd = eui - regC * bcu;
+		BCu.add(cu, lRateC * sgd);
+		loss += regC * bcu * bcu;
 
-				// update neighborhood model parameters
-				for (int j : Iu){
-					double ruj = trainMatrix.get(u, j);
-					double buj = bias(u, j);
-					int cj = (int) itemMembershipsVector.get(j);
+		double bci = BCi.get(ci);
+		sgd = eui - regC * bci;
+		BCi.add(ci, lRateC * sgd);
+		loss += regC * bci * bci;
 
-					double wic = W.get(i, cj);
-					sgd = eui * (ruj - buj) / wi - regCN * wic;
-					W.add(i, cj, lRateCN * sgd);
-					loss += regCN * wic * wic;
-					
-					double cic = C.get(i, cj);
-					sgd = eui / wi - regCN * cic;
-					C.add(i, cj, lRateCN * sgd);
-					loss += regCN * cic * cic;
-				}
-				
-				// update factor model parameters
-				double[] sum_ys = new double[numFactors];
-				for (int k = 0; k < numFactors; k++) {
-					for (int j : Iu){
-						int cj = (int) itemMembershipsVector.get(j);
-						double yck = Y.get(cj, k);
-						sum_ys[k] += yck;
-					}
-				}
-				
-				for (int k = 0; k < numFactors; k++){
-					double ocuk = Ocu.get(cu, k);
-					double ocik = Oci.get(ci, k);
-					
-					sgd = eui * ocik - regCF * ocuk;
-					Ocu.add(cu, k, lRateCF * sgd);
-					loss += regCF * ocuk * ocuk;
-					
-					sgd = eui * (ocuk + sum_ys[k] / wi) - regCF * ocik;
-					Oci.add(ci, k, lRateCF * sgd);
-					loss += regCF * ocik * ocik;
-					
-					for (int j : Iu) {
-						int cj = (int) itemMembershipsVector.get(j);
-						double ycjk = Y.get(cj, k);
-						sgd = eui * ocik / wi - regCF * ycjk;
-						Y.add(cj, k, lRateCF * sgd);
-						loss += regCF * ycjk * ycjk;
-					}
-				}
-			}
+		// update neighborhood model parameters
+		for (int p = 0; p < Iu.size(); p++) {
+			int j = Iu.get(p);
+			double ruj = Iu.value(p);
+			double buj = bias(u, j);
+			int cj = (int) itemMembershipsVector.get(j);
 
-			loss *= 0.5;
+			double wic = W.get(i, cj);
+			sgd = eui * (ruj - buj) / wi - regCN * wic;
+			W.add(i, cj, lRateCN * sgd);
+			loss += regCN * wic * wic;
 			
-			if (isConverged(iter))
-				break;
-		}// end of training
+			double cic = C.get(i, cj);
+			sgd = eui / wi - regCN * cic;
+			C.add(i, cj, lRateCN * sgd);
+			loss += regCN * cic * cic;
+		}
+		
+		// update factor model parameters
+		double[] sum_ys = new double[numFactors];
+		for (int k = 0; k < numFactors; k++) {
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
+				int cj = (int) itemMembershipsVector.get(j);
+				double yck = Y.get(cj, k);
+				sum_ys[k] += yck;
+			}
+		}
+		
+		for (int k = 0; k < numFactors; k++){
+			double ocuk = Ocu.get(cu, k);
+			double ocik = Oci.get(ci, k);
+			
+			sgd = eui * ocik - regCF * ocuk;
+			Ocu.add(cu, k, lRateCF * sgd);
+			loss += regCF * ocuk * ocuk;
+			
+			sgd = eui * (ocuk + sum_ys[k] / wi) - regCF * ocik;
+			Oci.add(ci, k, lRateCF * sgd);
+			loss += regCF * ocik * ocik;
+			
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
+				int cj = (int) itemMembershipsVector.get(j);
+				double ycjk = Y.get(cj, k);
+				sgd = eui * ocik / wi - regCF * ycjk;
+				Y.add(cj, k, lRateCF * sgd);
+				loss += regCF * ycjk * ycjk;
+			}
+		}
+
+		return loss;
+	}
 
+	@Override
+	protected boolean isBlockLocal() {
+		// the update of a rating changes the parameters of all items rated by the user
+		return false;
 	}
 
 	@Override
 	protected double predict(int u, int i) throws Exception {
-		List<Integer> Iu = userItemsCache.get(u);
+		IndexView Iu = trainMatrix.rowView(u);
 		
 		int cu = (int) userMembershipsVector.get(u);
 		int ci = (int) itemMembershipsVector.get(i);
@@ -281,8 +288,9 @@ public class ComNeighSVDFast extends BiasedMF {
 		double pred = bias(u, i);
 		
 		// neighborhood model prediction
-		for (int j : Iu){
-			double ruj = trainMatrix.get(u, j);
+		for (int p = 0; p < Iu.size(); p++) {
+			int j = Iu.get(p);
+			double ruj = Iu.value(p);
 			double buj = bias(u, j);
 			int cj = (int) itemMembershipsVector.get(j);
 			double wic = W.get(i, cj);
@@ -294,7 +302,8 @@ public class ComNeighSVDFast extends BiasedMF {
 		DenseVector itemFactor = Oci.row(ci);
 		
 		DenseVector userFactor = Ocu.row(cu);
-		for (int j : Iu){
+		for (int p = 0; p < Iu.size(); p++) {
+			int j = Iu.get(p);
 			int cj = (int) itemMembershipsVector.get(j);
 			DenseVector ycj = Y.row(cj).scale(1.0 / wi);
 			userFactor.add(ycj);
@@ -7,7 +7,7 @@ import i5.las2peer.services.recommender.librec.data.DenseVector;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
-import i5.las2peer.services.recommender.librec.intf.Recommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.KernelSmoothing;
 import i5.las2peer.services.recommender.librec.util.Logs;
 
@@ -24,21 +24,21 @@ import i5.las2peer.services.recommender.librec.util.Logs;
 
 public class LLORMA extends IterativeRecommender {
 
-	private static int localNumFactors;
-	private static int localNumIters;
-	private static int multiThreadCount;
-	protected static float localRegU, localRegI;
+	private int localNumFactors;
+	private int localNumIters;
+	private int multiThreadCount;
+	protected float localRegU, localRegI;
 
 	private float localLRate;
 	private SparseMatrix predictMatrix;
-	private static int modelMax;
+	private int modelMax;
 
-	private static SparseMatrix testIndexMatrix;// test index matrix for predict
+	private SparseMatrix testIndexMatrix;// test index matrix for predict
 
 	private SparseMatrix cumPrediction, cumWeight;
 
-	public LLORMA(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public LLORMA(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 		algoOptions = cf.getParamOptions("LLORMA");
 		localNumFactors = algoOptions.getInt("-lnf", 20);
 		multiThreadCount = algoOptions.getInt("-mtc", 4);
@@ -191,7 +191,7 @@ public class LLORMA extends IterativeRecommender {
 
 					if (completeModelCount % 5 == 0) {
 						Logs.debug("{}{} iter {}:[MAE,RMSE,NMAE,rMAE,rRMSE,MPE] {}", algoName, foldInfo,
-								completeModelCount, "[" + Recommender.getEvalInfo(evalRatings()) + "]");
+								completeModelCount, "[" + getEvalInfo(evalRatings()) + "]");
 					}
 					nextRunningSlot = waitingThreadPointer;
 					waitingThreadPointer = (waitingThreadPointer + 1) % multiThreadCount;
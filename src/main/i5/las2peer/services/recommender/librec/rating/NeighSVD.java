@@ -18,12 +18,11 @@
 
 package i5.las2peer.services.recommender.librec.rating;
 
-import java.util.List;
-
 import i5.las2peer.services.recommender.librec.data.Configuration;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
-import i5.las2peer.services.recommender.librec.data.MatrixEntry;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -39,8 +38,8 @@ public class NeighSVD extends BiasedMF {
 	protected DenseMatrix Y;
 	protected DenseMatrix W,C; // weighting factors for neighborhood model
 
-	public NeighSVD(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public NeighSVD(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		setAlgoName("NeighSVD++");
 	}
@@ -50,111 +49,103 @@ public class NeighSVD extends BiasedMF {
 		super.initModel();
 
 		Y = new DenseMatrix(numItems, numFactors);
-		Y.init(initMean, initStd);
+		Y.init(initMean, initStd, initRandom);
 
 		W = new DenseMatrix(numItems, numItems);
-		W.init(initMean, initStd);
+		W.init(initMean, initStd, initRandom);
 
 		C = new DenseMatrix(numItems, numItems);
-		C.init(initMean, initStd);
-
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
+		C.init(initMean, initStd, initRandom);
 	}
 
 	@Override
-	protected void buildModel() throws Exception {
-
-		for (int iter = 1; iter <= numIters; iter++) {
-
-			loss = 0;
-			for (MatrixEntry me : trainMatrix) {
-
-				int u = me.row(); // user
-				int j = me.column(); // item
-				double ruj = me.get();
+	protected double updateRating(int u, int j, double ruj) throws Exception {
+		double loss = 0;
 
-				double pred = predict(u, j);
-				double euj = ruj - pred;
+		double pred = predict(u, j);
+		double euj = ruj - pred;
 
-				loss += euj * euj;
+		loss += euj * euj;
 
-				List<Integer> items = userItemsCache.get(u);
-				double w = Math.sqrt(items.size());
-
-				// update baseline parameters
-				double bu = userBias.get(u);
-				double sgd = euj - regB * bu;
-				userBias.add(u, lRate * sgd);
+		IndexView items = trainMatrix.rowView(u);
+		double w = Math.sqrt(items.size());
 
-				loss += regB * bu * bu;
+		// update baseline parameters
+		double bu = userBias.get(u);
+		double sgd = euj - regB * bu;
+		userBias.add(u, lRate * sgd);
 
-				double bj = itemBias.get(j);
-				sgd = euj - regB * bj;
-				itemBias.add(j, lRate * sgd);
+		loss += regB * bu * bu;
 
-				loss += regB * bj * bj;
+		double bj = itemBias.get(j);
+		sgd = euj - regB * bj;
+		itemBias.add(j, lRate * sgd);
 
-				// update neighborhood model parameters
-				for (int k : items){	// to reduce complexity we can reduce the list of items to the nearest neighbors of item k
-					double ruk = trainMatrix.get(u, k);
-					double buk = globalMean + userBias.get(u) + itemBias.get(k);
-					
-					double wjk = W.get(j, k);
-					sgd = euj * (ruk - buk) / w - regN * wjk;
-					W.add(j, k, lRateN * sgd);
-					loss += regN * wjk * wjk;
-					
-					double cjk = C.get(j, k);
-					sgd = euj / w - regN * cjk;
-					C.add(j, k, lRateN * sgd);
-					loss += regN * cjk * cjk;
-				}
-				
-				// update factor model parameters
-				double[] sum_ys = new double[numFactors];
-				for (int f = 0; f < numFactors; f++) {
-					double sum_f = 0;
-					for (int k : items)
-						sum_f += Y.get(k, f);
+		loss += regB * bj * bj;
 
-					sum_ys[f] = w > 0 ? sum_f / w : sum_f;
-				}
+		// update neighborhood model parameters
+		for (int p = 0; p < items.size(); p++) {	// to reduce complexity we can reduce the list of items to the nearest neighbors of item k
+			int k = items.get(p);
+			double ruk = items.value(p);
+			double buk = globalMean + userBias.get(u) + itemBias.get(k);
+			
+			double wjk = W.get(j, k);
+			sgd = euj * (ruk - buk) / w - regN * wjk;
+			W.add(j, k, lRateN * sgd);
+			loss += regN * wjk * wjk;
+			
+			double cjk = C.get(j, k);
+			sgd = euj / w - regN * cjk;
+			C.add(j, k, lRateN * sgd);
+			loss += regN * cjk * cjk;
+		}
+		
+		// update factor model parameters
+		double[] sum_ys = new double[numFactors];
+		for (int f = 0; f < numFactors; f++) {
+			double sum_f = 0;
+			for (int p = 0; p < items.size(); p++) {
+				int k = items.get(p);
+				sum_f += Y.get(k, f);
+			}
 
-				for (int f = 0; f < numFactors; f++) {
-					double puf = P.get(u, f);
-					double qjf = Q.get(j, f);
+			sum_ys[f] = w > 0 ? sum_f / w : sum_f;
+		}
 
-					double sgd_u = euj * qjf - regU * puf;
-					double sgd_j = euj * (puf + sum_ys[f]) - regI * qjf;
+		for (int f = 0; f < numFactors; f++) {
+			double puf = P.get(u, f);
+			double qjf = Q.get(j, f);
 
-					P.add(u, f, lRateF * sgd_u);
-					Q.add(j, f, lRateF * sgd_j);
+			double sgd_u = euj * qjf - regU * puf;
+			double sgd_j = euj * (puf + sum_ys[f]) - regI * qjf;
 
-					loss += regU * puf * puf + regI * qjf * qjf;
+			P.add(u, f, lRateF * sgd_u);
+			Q.add(j, f, lRateF * sgd_j);
 
-					for (int k : items) {
-						double ykf = Y.get(k, f);
-						double delta_y = euj * qjf / w - regU * ykf;
-						Y.add(k, f, lRateF * delta_y);
+			loss += regU * puf * puf + regI * qjf * qjf;
 
-						loss += regU * ykf * ykf;
-					}
-				}
+			for (int p = 0; p < items.size(); p++) {
+				int k = items.get(p);
+				double ykf = Y.get(k, f);
+				double delta_y = euj * qjf / w - regU * ykf;
+				Y.add(k, f, lRateF * delta_y);
 
+				loss += regU * ykf * ykf;
 			}
+		}
 
-			loss *= 0.5;
-
-			if (isConverged(iter))
-				break;
-
-		}// end of training
+		return loss;
+	}
 
+	@Override
+	protected boolean isBlockLocal() {
+		// the update of a rating changes the parameters of all items rated by the user
+		return false;
 	}
 
 	@Override
 	protected double predict(int u, int j) throws Exception {
-		List<Integer> items = userItemsCache.get(u);
+		IndexView items = trainMatrix.rowView(u);
 		double w = Math.sqrt(items.size());
 		double buj = globalMean + userBias.get(u) + itemBias.get(j);
 		
@@ -162,17 +153,20 @@ public class NeighSVD extends BiasedMF {
 		double pred = buj + DenseMatrix.rowMult(P, u, Q, j);
 		
 		// neighborhood model prediction
-		for (int k : items){
+		for (int p = 0; p < items.size(); p++) {
+			int k = items.get(p);
 			double buk = globalMean + userBias.get(u) + itemBias.get(k);
-			double ruk = trainMatrix.get(u, k);
+			double ruk = items.value(p);
 			double wjk = W.get(j, k);
 			double cjk = C.get(j, k);
 			pred += ((ruk - buk) * wjk + cjk) / w;
 		}
 		
 		// factor model prediction
-		for (int k : items)
+		for (int p = 0; p < items.size(); p++) {
+			int k = items.get(p);
 			pred += DenseMatrix.rowMult(Y, k, Q, j) / w;
+		}
 
 		return pred;
 	}
@@ -21,6 +21,7 @@ package i5.las2peer.services.recommender.librec.rating;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * <ul>
@@ -34,8 +35,8 @@ import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
  */
 public class PMF extends IterativeRecommender {
 
-	public PMF(SparseMatrix rm, SparseMatrix tm, int fold) {
-		super(rm, tm, fold);
+	public PMF(RecommenderContext context, SparseMatrix rm, SparseMatrix tm, int fold) {
+		super(context, rm, tm, fold);
 	}
 
 	@Override
@@ -22,6 +22,7 @@ import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.intf.SocialRecommender;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
@@ -39,8 +40,8 @@ public class RSTE extends SocialRecommender {
 
 	private float alpha;
 
-	public RSTE(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public RSTE(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		initByNorm = false;
 		alpha = algoOptions.getFloat("-alpha");
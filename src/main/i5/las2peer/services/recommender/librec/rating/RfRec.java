@@ -23,6 +23,7 @@ import i5.las2peer.services.recommender.librec.data.DenseVector;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Gedikli et al., <strong>RF-Rec: Fast and Accurate Computation of Recommendations based on Rating
@@ -62,8 +63,8 @@ public class RfRec extends IterativeRecommender {
 	/** Item weights learned by the gradient solver. */
 	private DenseVector itemWeights;
 
-	public RfRec(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public RfRec(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 	}
 
 	@Override
@@ -18,12 +18,10 @@
 
 package i5.las2peer.services.recommender.librec.rating;
 
-import java.util.List;
-
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
-import i5.las2peer.services.recommender.librec.data.MatrixEntry;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
-import i5.las2peer.services.recommender.librec.util.Logs;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 
 /**
  * Yehuda Koren, <strong>Factorization Meets the Neighborhood: a Multifaceted Collaborative Filtering Model.</strong>,
@@ -36,10 +34,20 @@ public class SVDPlusPlus extends BiasedMF {
 
 	protected DenseMatrix Y;
 
-	public SVDPlusPlus(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	// updates of the implicit factors by each user block of a stratum in the DSGD mode
+	private DenseMatrix[] blockUpdates;
+
+	// whether to update the model for all ratings of a user at once
+	private boolean isGrouped;
+	// implicit feedback of each user after training, i.e. the normalized sum of the implicit factors of the rated items
+	private DenseMatrix userImplicit;
+
+	public SVDPlusPlus(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		setAlgoName("SVD++");
+
+		isGrouped = algoOptions != null && algoOptions.contains("-grouped");
 	}
 
 	@Override
@@ -47,94 +55,210 @@ public class SVDPlusPlus extends BiasedMF {
 		super.initModel();
 
 		Y = new DenseMatrix(numItems, numFactors);
-		Y.init(initMean, initStd);
+		Y.init(initMean, initStd, initRandom);
 
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
+		if (sgdMode == SGDMode.DSGD) {
+			blockUpdates = new DenseMatrix[numBlocks];
+			for (int b = 0; b < numBlocks; b++)
+				blockUpdates[b] = new DenseMatrix(numItems, numFactors);
+		}
 	}
 
 	@Override
 	protected void buildModel() throws Exception {
+		userImplicit = null;
+
+		if (isGrouped)
+			learnUserSGD(this::updateUser);
+		else
+			learnSGD(this::updateRating);
+
+		// predictions only need the implicit feedback of the users, which no longer changes
+		DenseMatrix implicit = new DenseMatrix(numUsers, numFactors);
+		for (int u = 0; u < numUsers; u++) {
+			double[] sum_ys = implicitFeedback(trainMatrix.rowView(u));
+			for (int f = 0; f < numFactors; f++)
+				implicit.set(u, f, sum_ys[f]);
+		}
+		userImplicit = implicit;
+	}
 
-		for (int iter = 1; iter <= numIters; iter++) {
+	/**
+	 * @return sum of the implicit factors of the items rated by a user, divided by the square root of their number
+	 */
+	private double[] implicitFeedback(IndexView items) {
+		double w = Math.sqrt(items.size());
 
-			loss = 0;
-			for (MatrixEntry me : trainMatrix) {
+		double[] sum_ys = new double[numFactors];
+		for (int f = 0; f < numFactors; f++) {
+			double sum_f = 0;
+			for (int p = 0; p < items.size(); p++) {
+				int k = items.get(p);
+				sum_f += Y.get(k, f);
+			}
 
-				int u = me.row(); // user
-				int j = me.column(); // item
-				double ruj = me.get();
+			sum_ys[f] = w > 0 ? sum_f / w : sum_f;
+		}
+		return sum_ys;
+	}
 
-				double pred = predict(u, j);
-				double euj = ruj - pred;
+	/**
+	 * Updates the model parameters for the ratings of one user. The implicit feedback of the user is computed once
+	 * for all ratings, and the update of the implicit factors is accumulated over the ratings and applied at the end.
+	 * 
+	 * @return sum of the losses of the ratings
+	 */
+	protected double updateUser(int u, int[] ratedItems, double[] ratings, int[] positions, int count) throws Exception {
+		double loss = 0;
 
-				loss += euj * euj;
+		IndexView items = trainMatrix.rowView(u);
+		double w = Math.sqrt(items.size());
+		double[] sum_ys = implicitFeedback(items);
 
-				List<Integer> items = userItemsCache.get(u);
-				double w = Math.sqrt(items.size());
+		// gradient of the implicit factors, without regularization
+		double[] sum_grads = new double[numFactors];
 
-				// update factors
-				double bu = userBias.get(u);
-				double sgd = euj - regB * bu;
-				userBias.add(u, lRate * sgd);
+		for (int r = 0; r < count; r++) {
+			int j = ratedItems[r];
 
-				loss += regB * bu * bu;
+			double pred = globalMean + userBias.get(u) + itemBias.get(j);
+			for (int f = 0; f < numFactors; f++)
+				pred += (P.get(u, f) + sum_ys[f]) * Q.get(j, f);
+			double euj = ratings[r] - pred;
 
-				double bj = itemBias.get(j);
-				sgd = euj - regB * bj;
-				itemBias.add(j, lRate * sgd);
+			loss += euj * euj;
 
-				loss += regB * bj * bj;
+			double bu = userBias.get(u);
+			double sgd = euj - regB * bu;
+			userBias.add(u, lRate * sgd);
 
-				double[] sum_ys = new double[numFactors];
-				for (int f = 0; f < numFactors; f++) {
-					double sum_f = 0;
-					for (int k : items)
-						sum_f += Y.get(k, f);
+			loss += regB * bu * bu;
 
-					sum_ys[f] = w > 0 ? sum_f / w : sum_f;
-				}
+			double bj = itemBias.get(j);
+			sgd = euj - regB * bj;
+			itemBias.add(j, lRate * sgd);
 
-				for (int f = 0; f < numFactors; f++) {
-					double puf = P.get(u, f);
-					double qjf = Q.get(j, f);
+			loss += regB * bj * bj;
 
-					double sgd_u = euj * qjf - regU * puf;
-					double sgd_j = euj * (puf + sum_ys[f]) - regI * qjf;
+			for (int f = 0; f < numFactors; f++) {
+				double puf = P.get(u, f);
+				double qjf = Q.get(j, f);
 
-					P.add(u, f, lRate * sgd_u);
-					Q.add(j, f, lRate * sgd_j);
+				double sgd_u = euj * qjf - regU * puf;
+				double sgd_j = euj * (puf + sum_ys[f]) - regI * qjf;
 
-					loss += regU * puf * puf + regI * qjf * qjf;
+				P.add(u, f, lRate * sgd_u);
+				Q.add(j, f, lRate * sgd_j);
 
-					for (int k : items) {
-						double ykf = Y.get(k, f);
-						double delta_y = euj * qjf / w - regU * ykf;
-						Y.add(k, f, lRate * delta_y);
+				loss += regU * puf * puf + regI * qjf * qjf;
 
-						loss += regU * ykf * ykf;
-					}
-				}
+				sum_grads[f] += euj * qjf / w;
+			}
+		}
 
+		// in the DSGD mode, the implicit factors of items of other blocks are updated after the stratum
+		DenseMatrix updatesY = blockUpdates != null ? blockUpdates[userBlock(u)] : Y;
+
+		for (int p = 0; p < items.size(); p++) {
+			int k = items.get(p);
+			for (int f = 0; f < numFactors; f++) {
+				double ykf = Y.get(k, f);
+				double delta_y = sum_grads[f] - count * regU * ykf;
+				updatesY.add(k, f, lRate * delta_y);
+
+				loss += count * regU * ykf * ykf;
 			}
+		}
+
+		return loss;
+	}
+
+	@Override
+	protected double updateRating(int u, int j, double ruj) throws Exception {
+		double loss = 0;
+
+		double pred = predict(u, j);
+		double euj = ruj - pred;
+
+		loss += euj * euj;
 
-			loss *= 0.5;
+		IndexView items = trainMatrix.rowView(u);
+		double w = Math.sqrt(items.size());
+
+		// update factors
+		double bu = userBias.get(u);
+		double sgd = euj - regB * bu;
+		userBias.add(u, lRate * sgd);
+
+		loss += regB * bu * bu;
+
+		double bj = itemBias.get(j);
+		sgd = euj - regB * bj;
+		itemBias.add(j, lRate * sgd);
+
+		loss += regB * bj * bj;
+
+		// in the DSGD mode, the implicit factors of items of other blocks are updated after the stratum
+		DenseMatrix updatesY = blockUpdates != null ? blockUpdates[userBlock(u)] : Y;
+
+		double[] sum_ys = implicitFeedback(items);
+
+		for (int f = 0; f < numFactors; f++) {
+			double puf = P.get(u, f);
+			double qjf = Q.get(j, f);
+
+			double sgd_u = euj * qjf - regU * puf;
+			double sgd_j = euj * (puf + sum_ys[f]) - regI * qjf;
+
+			P.add(u, f, lRate * sgd_u);
+			Q.add(j, f, lRate * sgd_j);
+
+			loss += regU * puf * puf + regI * qjf * qjf;
 
-			if (isConverged(iter))
-				break;
+			for (int p = 0; p < items.size(); p++) {
+				int k = items.get(p);
+				double ykf = Y.get(k, f);
+				double delta_y = euj * qjf / w - regU * ykf;
+				updatesY.add(k, f, lRate * delta_y);
 
-		}// end of training
+				loss += regU * ykf * ykf;
+			}
+		}
+
+		return loss;
+	}
 
+	@Override
+	protected boolean isBlockLocal() {
+		// the updates of the implicit factors are kept for the user block until the end of the stratum
+		return true;
+	}
+
+	@Override
+	protected void finishStratum() {
+		for (DenseMatrix updates : blockUpdates) {
+			for (int k = 0; k < numItems; k++) {
+				for (int f = 0; f < numFactors; f++) {
+					Y.add(k, f, updates.get(k, f));
+					updates.set(k, f, 0);
+				}
+			}
+		}
 	}
 
 	@Override
 	protected double predict(int u, int j) throws Exception {
-		Logs.info("numUsers={}, numItems={}, u={}, j={}", numUsers, numItems, u, j);
 		double pred = globalMean + userBias.get(u) + itemBias.get(j) + DenseMatrix.rowMult(P, u, Q, j);
 
-		List<Integer> items = userItemsCache.get(u);
+		if (userImplicit != null)
+			return pred + DenseMatrix.rowMult(userImplicit, u, Q, j);
+
+		IndexView items = trainMatrix.rowView(u);
 		double w = Math.sqrt(items.size());
-		for (int k : items)
+		for (int p = 0; p < items.size(); p++) {
+			int k = items.get(p);
 			pred += DenseMatrix.rowMult(Y, k, Q, j) / w;
+		}
 
 		return pred;
 	}
@@ -25,6 +25,7 @@ import i5.las2peer.services.recommender.librec.data.AddConfiguration;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.intf.SocialRecommender;
 
 /**
@@ -42,8 +43,8 @@ public class SoRec extends SocialRecommender {
 
 	private Map<Integer, Integer> inDegrees, outDegrees;
 
-	public SoRec(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public SoRec(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		initByNorm = false;
 	}
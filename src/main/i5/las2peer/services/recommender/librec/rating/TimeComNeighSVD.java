@@ -18,16 +18,11 @@
 package i5.las2peer.services.recommender.librec.rating;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import com.google.common.collect.Table.Cell;
@@ -38,16 +33,20 @@ import i5.las2peer.services.recommender.graphs.GraphBuilder;
 import i5.las2peer.services.recommender.graphs.GraphBuilder.GraphConstructionMethod;
 import i5.las2peer.services.recommender.graphs.GraphBuilder.SimilarityMeasure;
 import i5.las2peer.services.recommender.librec.data.Configuration;
+import i5.las2peer.services.recommender.librec.data.DayParameters;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.TimeFeatures;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener.Phase;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Communities;
 import i5.las2peer.services.recommender.librec.util.Logs;
-import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -73,6 +72,9 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	// {user, mean date}
 	private DenseVector userMeanDate;
 
+	// day, day of week, bins and time deviation of each training rating
+	private TimeFeatures ratingTimes;
+
 	// time decay factor
 	private float beta;
 
@@ -88,8 +90,8 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	// {item, period(t)} bias matrix (period: day of week)
 	private DenseMatrix Bipt;
 
-	// {user, day, bias} table
-	private Table<Integer, Integer, Double> But;
+	// {user, day, bias} day-specific user biases
+	private DayParameters But;
 
 	// {user, period(t)} bias matrix (period: day of week)
 	private DenseMatrix Bupt;
@@ -100,8 +102,8 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	// {user, feature} alpha matrix
 	private DenseMatrix Auk;
 
-	// {user, {feature, day, value} } map
-	private Map<Integer, Table<Integer, Integer, Double>> Pukt;
+	// {user, day, feature} day-specific user factors, with the same days as But
+	private DayParameters Pukt;
 
 	// {user, user scaling stable part}
 	private DenseVector Cu;
@@ -168,16 +170,13 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	// Average ratings given by each user's communities (numUsers x numItems) for each bin
 	private SparseMatrix[] userCommunitiesTimeMatrix;
 	
-	// User/item communities caches for each bin
-	private List<LoadingCache<Integer, List<Integer>>> userCommunitiesCache, itemCommunitiesCache, userCommunitiesItemsCache;
-	
 	// ---Community-related model parameters---
 	
 	// time-independent user community bias
 	private DenseVector[] BCu;
 	
 	// time-specific user community bias
-	private List<Table<Integer, Integer, Double>> BCut;
+	private DayParameters[] BCut;
 	
 	// User community bias linear drift
 	private DenseVector AlphaC;
@@ -194,8 +193,8 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	// user community factor matrix
 	private DenseMatrix[] OCu;
 
-	// {user community, {feature, day, value} } map for time-dependent user community features
-	private List<Map<Integer, Table<Integer, Integer, Double>>> OCut;
+	// {user community, day, feature} time-dependent user community features, with the same days as BCut
+	private DayParameters[] OCut;
 	
 	// {user community, feature} alpha matrix  
 	private DenseMatrix ACu;
@@ -208,15 +207,14 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	
 	// decay parameter psi
 	private DenseVector Psi;
+
+	// terms of the predictions that depend on neither the item nor the day, materialized after learning for each
+	// community time bin: the community offsets and implicit feedback of the user factors, and the item factors
+	// including their community offsets
+	private DenseMatrix[] userOffsets, itemFactors;
 	
-	// --- others ---
-	
-	// Calendar object used to retrieve the period (day of week) represented by a timestamp
-	Calendar cal;
-	
-	
-	public TimeComNeighSVD(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public TimeComNeighSVD(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		setAlgoName("timeComNeighSVD++");
 		
@@ -263,8 +261,6 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		}
 		wtSteps = cf.getInt("cd.walktrap.steps", 2);
 		maxOC = cf.getInt("cd.max.oc", 10);
-		
-		cal = Calendar.getInstance(TimeZone.getTimeZone("UTC-06:00"));
 	}
 
 	@Override
@@ -274,7 +270,7 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		minTrainTimestamp = Long.MAX_VALUE;
 		maxTrainTimestamp = Long.MIN_VALUE;
 		for (MatrixEntry e : trainMatrix){
-			long t = (long) timeMatrix.get(e.row(), e.column());
+			long t = (long) timeMatrix.get(e);
 			if (t < minTrainTimestamp)
 				minTrainTimestamp = t;
 			if (t > maxTrainTimestamp)
@@ -283,132 +279,105 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		numDays = days(maxTrainTimestamp, minTrainTimestamp) + 1;
 		
 		userBias = new DenseVector(numUsers);
-		userBias.init(initMean, initStd);
+		userBias.init(initMean, initStd, initRandom);
 
 		itemBias = new DenseVector(numItems);
-		itemBias.init(initMean, initStd);
+		itemBias.init(initMean, initStd, initRandom);
 
 		Alpha = new DenseVector(numUsers);
-		Alpha.init(initMean, initStd);
+		Alpha.init(initMean, initStd, initRandom);
 
 		Bit = new DenseMatrix(numItems, numBins);
-		Bit.init(initMean, initStd);
+		Bit.init(initMean, initStd, initRandom);
 
 		Bipt = new DenseMatrix(numItems, 7);
-		Bipt.init(initMean, initStd);
+		Bipt.init(initMean, initStd, initRandom);
 
 		Y = new DenseMatrix(numItems, numFactors);
-		Y.init(initMean, initStd);
+		Y.init(initMean, initStd, initRandom);
 
 		Auk = new DenseMatrix(numUsers, numFactors);
-		Auk.init(initMean, initStd);
+		Auk.init(initMean, initStd, initRandom);
 
-		But = HashBasedTable.create();
-		
 		Bupt = new DenseMatrix(numUsers, 7);
-		Bupt.init(initMean, initStd);
-
-		Pukt = new HashMap<>();
+		Bupt.init(initMean, initStd, initRandom);
 
 		Cu = new DenseVector(numUsers);
-		Cu.init(initMean, initStd);
+		Cu.init(initMean, initStd, initRandom);
 
 		Cut = new DenseMatrix(numUsers, numDays);
-		Cut.init(initMean, initStd);
+		Cut.init(initMean, initStd, initRandom);
 		
 		W = new DenseMatrix(numItems, numItems);
-		W.init(initMean, initStd);
+		W.init(initMean, initStd, initRandom);
 		
 		C = new DenseMatrix(numItems, numItems);
-		C.init(initMean, initStd);
+		C.init(initMean, initStd, initRandom);
 		
 		Phi = new DenseVector(numUsers);
-		Phi.init(0.01);
-
-		// cache
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-
-		// global average date
-		double sum = 0;
-		int cnt = 0;
-		for (MatrixEntry me : trainMatrix) {
-			int u = me.row();
-			int i = me.column();
-			double rui = me.get();
-
-			if (rui <= 0)
-				continue;
-
-			sum += days((long) timeMatrix.get(u, i), minTrainTimestamp);
-			cnt++;
-		}
-		globalMeanDate = sum / cnt;
+		Phi.init(0.01, initRandom);
 
-		// compute users' mean rating timestamps
-		userMeanDate = new DenseVector(numUsers);
-		List<Integer> Ru = null;
-		for (int u = 0; u < numUsers; u++) {
-
-			sum = 0;
-			Ru = userItemsCache.get(u);
-			for (int i : Ru) {
-				sum += days((long) timeMatrix.get(u, i), minTrainTimestamp);
-			}
+		// global average date and users' mean rating timestamps
+		ratingTimes = new TimeFeatures(trainMatrix, timeMatrix, minTrainTimestamp);
+		globalMeanDate = ratingTimes.meanDay();
+		userMeanDate = ratingTimes.userMeanDays(globalMeanDate);
 
-			double mean = (Ru.size() > 0) ? (sum + 0.0) / Ru.size() : globalMeanDate;
-			userMeanDate.set(u, mean);
-		}
+		ratingTimes.computeBins(this::bin);
+		ratingTimes.computeCBins(this::cbin);
+		ratingTimes.computeDevs(this::dev);
 		
 		// build user and item graphs
+		reportPhase(Phase.GRAPH);
 		Logs.info("{}{} build user and item graphs ...", new Object[] { algoName, foldInfo });
-		SparseMatrix[] userMatrix = new SparseMatrix[numCBins + 1];
-		SparseMatrix[] itemMatrix = new SparseMatrix[numCBins + 1];
-		GraphBuilder gb = new GraphBuilder();
-		gb.setMethod(graphMethod);
-		gb.setK(knn);
-		gb.setSimilarityMeasure(sim);
-		
-		gb.setTaggingData(userTagTable, itemTagTable);
-		gb.setRatingData(trainMatrix);
-		gb.buildGraphs();
-		userMatrix[0] = gb.getUserAdjacencyMatrix();
-		itemMatrix[0] = gb.getItemAdjacencyMatrix();
-		
-		if (numCBins > 1){
-			SparseMatrix[] trainMatrixCBin = trainDataCBins();
-			List<Table<Integer, Integer, Set<Long>>> userTagTableCBin = null;
-			List<Table<Integer, Integer, Set<Long>>> itemTagTableCBin = null;
-			if (graphMethod == GraphConstructionMethod.TAGS){
-				userTagTableCBin = tagDataCBins(userTagTable);
-				itemTagTableCBin = tagDataCBins(itemTagTable);
-			}
+		// graphs of the whole training data [0] and of each community time bin [1..numCBins]
+		SparseMatrix[][] graphs = getSharedResult(trainMatrix,
+				"graphs " + graphMethod + " " + sim + " " + knn + " cbins=" + numCBins, () -> {
+			SparseMatrix[] userMatrix = new SparseMatrix[numCBins + 1];
+			SparseMatrix[] itemMatrix = new SparseMatrix[numCBins + 1];
+			GraphBuilder gb = new GraphBuilder();
+			gb.setMethod(graphMethod);
+			gb.setK(knn);
+			gb.setSimilarityMeasure(sim);
 			
-			for (int cbin = 1; cbin <= numCBins; cbin++){
+			gb.setTaggingData(userTagTable, itemTagTable);
+			gb.setRatingData(trainMatrix);
+			gb.buildGraphs();
+			userMatrix[0] = gb.getUserAdjacencyMatrix();
+			itemMatrix[0] = gb.getItemAdjacencyMatrix();
+			
+			if (numCBins > 1){
+				SparseMatrix[] trainMatrixCBin = trainDataCBins();
+				List<Table<Integer, Integer, Set<Long>>> userTagTableCBin = null;
+				List<Table<Integer, Integer, Set<Long>>> itemTagTableCBin = null;
 				if (graphMethod == GraphConstructionMethod.TAGS){
-					gb.setTaggingData(userTagTableCBin.get(cbin - 1), itemTagTableCBin.get(cbin -1));
+					userTagTableCBin = tagDataCBins(userTagTable);
+					itemTagTableCBin = tagDataCBins(itemTagTable);
 				}
-				else{
-					gb.setRatingData(trainMatrixCBin[cbin - 1]);
+				
+				for (int cbin = 1; cbin <= numCBins; cbin++){
+					if (graphMethod == GraphConstructionMethod.TAGS){
+						gb.setTaggingData(userTagTableCBin.get(cbin - 1), itemTagTableCBin.get(cbin -1));
+					}
+					else{
+						gb.setRatingData(trainMatrixCBin[cbin - 1]);
+					}
+					gb.buildGraphs();
+					userMatrix[cbin] = gb.getUserAdjacencyMatrix();
+					itemMatrix[cbin] = gb.getItemAdjacencyMatrix();
 				}
-				gb.buildGraphs();
-				userMatrix[cbin] = gb.getUserAdjacencyMatrix();
-				itemMatrix[cbin] = gb.getItemAdjacencyMatrix();
 			}
-		}
-		gb = null;
+			return new SparseMatrix[][] { userMatrix, itemMatrix };
+		});
+		SparseMatrix[] userMatrix = graphs[0];
+		SparseMatrix[] itemMatrix = graphs[1];
 		
 		// detect communities
+		reportPhase(Phase.COMMUNITIES);
 		Logs.info("{}{} detect communities ...", new Object[] { algoName, foldInfo });
 		userMemberships = new SparseMatrix[numCBins + 1];
 		itemMemberships = new SparseMatrix[numCBins + 1];
-		userCommunitiesCache = new ArrayList<LoadingCache<Integer, List<Integer>>>(numCBins + 1);
-		itemCommunitiesCache = new ArrayList<LoadingCache<Integer, List<Integer>>>(numCBins + 1);
 		numUserCommunities = new int[numCBins + 1];
 		numItemCommunities = new int[numCBins + 1];
-		CommunityDetector cd = new CommunityDetector();
-		cd.setAlgorithm(cdAlgo);
-		if (cdAlgo == CommunityDetectionAlgorithm.WALKTRAP)
-			cd.setWalktrapParameters(wtSteps);
 		for (int cbin = 0; cbin <= numCBins; cbin++){
 			if (numCBins == 1 && cbin == 1){
 				// if we use only one bin no need to detect communities again
@@ -416,26 +385,17 @@ public class TimeComNeighSVD extends IterativeRecommender {
 				itemMemberships[cbin] = itemMemberships[0];
 			}
 			else{
-				cd.setGraph(userMatrix[cbin]);
-				cd.detectCommunities();
-				userMemberships[cbin] = cd.getMemberships();
-				cd.setGraph(itemMatrix[cbin]);
-				cd.detectCommunities();
-				itemMemberships[cbin] = cd.getMemberships();
+				userMemberships[cbin] = detectCommunities(userMatrix[cbin]).getMemberships();
+				itemMemberships[cbin] = detectCommunities(itemMatrix[cbin]).getMemberships();
 			}
 			if (maxOC > 0){
 				Logs.info("{}{} reduce community memberships to max. {} communities per user/item ...", new Object[] { algoName, foldInfo, maxOC });
 				userMemberships[cbin] = Communities.limitOverlappingCommunities(userMemberships[cbin], maxOC);
 				itemMemberships[cbin] = Communities.limitOverlappingCommunities(itemMemberships[cbin], maxOC);
 			}
-			userCommunitiesCache.add(cbin, userMemberships[cbin].rowColumnsCache(cacheSpec));
 			numUserCommunities[cbin] = userMemberships[cbin].numColumns();
-			itemCommunitiesCache.add(cbin, itemMemberships[cbin].rowColumnsCache(cacheSpec));
 			numItemCommunities[cbin] = itemMemberships[cbin].numColumns(); 
 		}
-		userMatrix = null;
-		itemMatrix = null;
-		cd = null;
 		
 		logCommunityInfo();
 
@@ -454,9 +414,11 @@ public class TimeComNeighSVD extends IterativeRecommender {
 				HashSet<Integer> items = new HashSet<Integer> ();
 				for (VectorEntry e : communityUsersVector){
 					int user = e.index();
-					List<Integer> userItems = userItemsCache.get(user);
-					for (int item : userItems)
+					IndexView userItems = trainMatrix.rowView(user);
+					for (int p = 0; p < userItems.size(); p++) {
+						int item = userItems.get(p);
 						items.add(item);
+					}
 				}
 				// to compute mean rating times for each community keep track of time and number of ratings given
 				double communityTimeSum = 0;
@@ -501,13 +463,12 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		// compute each user's communities' average rating for each item
 		userCommunitiesRatingsMatrix = new SparseMatrix[numCBins + 1];
 		userCommunitiesTimeMatrix = new SparseMatrix[numCBins + 1];
-		userCommunitiesItemsCache = new ArrayList<LoadingCache<Integer, List<Integer>>>(numCBins + 1);
 		for (int cbin = 0; cbin <= numCBins; cbin++){
 		    Table<Integer, Integer, Double> userCommunitiesRatingsTable = HashBasedTable.create();
 		    Table<Integer, Integer, Double> userCommunitiesTimeTable = HashBasedTable.create();
 			for (int user = 0; user < numUsers; user++){
-				List<Integer> userCommunities;
-				userCommunities = userCommunitiesCache.get(cbin).get(user);
+				IndexView userCommunities;
+				userCommunities = userMemberships[cbin].rowView(user);
 				
 				int[] topKItems = new int[communitiesItemsK];
 				double[] topKItemsMemberships = new double[communitiesItemsK];
@@ -525,10 +486,11 @@ public class TimeComNeighSVD extends IterativeRecommender {
 					double ratingsSum = 0;
 					double timeSum = 0;
 					double membershipsSum = 0;
-					for (int community : userCommunities){
+					for (int p = 0; p < userCommunities.size(); p++) {
+						int community = userCommunities.get(p);
 						double communityRating = communityRatingsMatrix[cbin].get(community, item);
 						double communityTime = communityTimeMatrix[cbin].get(community, item);
-						double userMembership = userMemberships[cbin].get(user, community);
+						double userMembership = userCommunities.value(p);
 						ratingsSum += communityRating * userMembership;
 						timeSum += communityTime * userMembership;
 						membershipsSum += userMembership;
@@ -561,7 +523,6 @@ public class TimeComNeighSVD extends IterativeRecommender {
 			}
 			userCommunitiesRatingsMatrix[cbin] = new SparseMatrix(numUsers, numItems, userCommunitiesRatingsTable);
 			userCommunitiesTimeMatrix[cbin] = new SparseMatrix(numUsers, numItems, userCommunitiesTimeTable);
-			userCommunitiesItemsCache.add(cbin, userCommunitiesRatingsMatrix[cbin].rowColumnsCache(cacheSpec));
 			int numRatingsPerUser = userCommunitiesRatingsMatrix[cbin].size() / userCommunitiesRatingsMatrix[cbin].numRows();
 			Logs.info("{}{} User Communities Ratings: Number of users: {}, Avg. number of community ratings per user: {}",
 					algoName, foldInfo, userCommunitiesRatingsMatrix[cbin].numRows(), numRatingsPerUser);
@@ -569,439 +530,618 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		
 		// initialize community-related model parameters
 		AlphaC = new DenseVector(numUserCommunities[0]);
-		AlphaC.init(initMean, initStd);
+		AlphaC.init(initMean, initStd, initRandom);
 		D = new DenseMatrix(numItems, numItems);
-		D.init(initMean, initStd);
+		D.init(initMean, initStd, initRandom);
 		Psi = new DenseVector(numUsers);
-		Psi.init(0.01);
+		Psi.init(0.01, initRandom);
 		
 		BCu = new DenseVector[numCBins + 1];
-		BCut = new ArrayList<Table<Integer, Integer, Double>>(numCBins + 1);
 		BCi = new DenseVector[numCBins + 1];
 		BCit = new DenseMatrix[numCBins + 1];
 		OCi = new DenseMatrix[numCBins + 1];
 		OCu = new DenseMatrix[numCBins + 1];
-		OCut = new ArrayList<Map<Integer, Table<Integer, Integer, Double>>>(numCBins + 1);
 		ACu = new DenseMatrix(numUserCommunities[0], numFactors);
-		ACu.init(initMean, initStd);
+		ACu.init(initMean, initStd, initRandom);
 		Z = new DenseMatrix(numItems, numFactors);
-		Z.init(initMean, initStd);
+		Z.init(initMean, initStd, initRandom);
 		for (int cbin = 0; cbin <= numCBins; cbin++){
 			BCu[cbin] = new DenseVector(numUserCommunities[cbin]);
-			BCu[cbin].init(initMean, initStd);
-			BCut.add(cbin, HashBasedTable.create());
+			BCu[cbin].init(initMean, initStd, initRandom);
 			BCi[cbin] = new DenseVector(numItemCommunities[cbin]);
-			BCi[cbin].init(initMean, initStd);
+			BCi[cbin].init(initMean, initStd, initRandom);
 			BCit[cbin] = new DenseMatrix(numItemCommunities[cbin], numBins);
-			BCit[cbin].init(initMean, initStd);
+			BCit[cbin].init(initMean, initStd, initRandom);
 			OCi[cbin] = new DenseMatrix(numItemCommunities[cbin], numFactors);
-			OCi[cbin].init(initMean, initStd);
+			OCi[cbin].init(initMean, initStd, initRandom);
 			OCu[cbin] = new DenseMatrix(numUserCommunities[cbin], numFactors);
-			OCu[cbin].init(initMean, initStd);
-			OCut.add(cbin, new HashMap<>());
+			OCu[cbin].init(initMean, initStd, initRandom);
 		}
 	}
 	
+	/**
+	 * detect the communities of a user or item graph, sharing the result with other runs using the same graph
+	 */
+	private CommunityDetector detectCommunities(SparseMatrix graph) throws Exception {
+		return getSharedResult(graph, "communities " + cdAlgo + " " + wtSteps + " overlapping=true", () -> {
+			CommunityDetector cd = new CommunityDetector();
+			cd.setAlgorithm(cdAlgo);
+			if (cdAlgo == CommunityDetectionAlgorithm.WALKTRAP)
+				cd.setWalktrapParameters(wtSteps);
+			cd.setGraph(graph);
+			cd.detectCommunities();
+			return cd;
+		});
+	}
+
 	@Override
 	protected void buildModel() throws Exception {
 		Logs.info("{}{} learn model parameters ...", new Object[] { algoName, foldInfo });
-		for (int iter = 1; iter <= numIters; iter++) {
-			loss = 0;
-
-			for (MatrixEntry me : trainMatrix) {
-				int u = me.row();
-				int i = me.column();
-				double rui = me.get();
-
-				long timestamp = (long) timeMatrix.get(u, i);
-				// day t
-				int t = days(timestamp, minTrainTimestamp);
-				int period = period(timestamp);
-				int bin = bin(t);
-				double dev_ut = dev(u, t);
-				
-				// set non community-related variables
-				List<Integer> Iu = userItemsCache.get(u);
-				double wi = Iu.size() > 0 ? Math.pow(Iu.size(), -0.5) : 0;
-				
-				// set community-related variables
-				int cbin = cbin(t);
-				List<Integer> itemCommunities = itemCommunitiesCache.get(cbin).get(i);
-				List<Integer> userCommunities = userCommunitiesCache.get(cbin).get(u);
-				List<Integer> userStaticCommunities = userCommunitiesCache.get(0).get(u);
-				List<Integer> Icu = userCommunitiesItemsCache.get(cbin).get(u);
-				double wc = Icu.size() > 0 ? Math.pow(Icu.size(), -0.5) : 0;
-				
-				// lazy initialization
-				if (!But.contains(u, t))
-					But.put(u, t, Randoms.gaussian(initMean, initStd));
-				if (!Pukt.containsKey(u))
-					Pukt.put(u, HashBasedTable.create());
-				for (int k = 0; k < numFactors; k++)
-					if (!Pukt.get(u).contains(k, t))
-						Pukt.get(u).put(k, t, Randoms.gaussian(initMean, initStd));
-				for (int c : userCommunities){
-					if (!BCut.get(cbin).contains(c, t))
-						BCut.get(cbin).put(c, t, Randoms.gaussian(initMean, initStd));
-					if (!OCut.get(cbin).containsKey(c))
-						OCut.get(cbin).put(c, HashBasedTable.create());
-					for (int k = 0; k < numFactors; k++)
-						if (!OCut.get(cbin).get(c).contains(k, t))
-							OCut.get(cbin).get(c).put(k, t, Randoms.gaussian(initMean, initStd));
-				}
-				
-				double pui = predict(u, i);
-				
-				double eui = pui - rui;
-				loss += eui * eui;
-				
-				// Update baseline parameters
-				// ==========================
-				
-				double bi = itemBias.get(i);
-				double cu = Cu.get(u);
-				double cut = Cut.get(u, t);
-				double bit = Bit.get(i, bin);
-				double bipt = Bipt.get(i, period);
-				double bu = userBias.get(u);
-				double but = But.get(u, t);
-				double bupt = Bupt.get(u, period);
-				double au = Alpha.get(u);
-
-				// update bi
-				double sgd = eui * (cu + cut) + regB * bi;
-				itemBias.add(i, -lRate * sgd);
-				loss += regB * bi * bi;
-
-				// update bi,bin(t)
-				sgd = eui * (cu + cut) + regB * bit;
-				Bit.add(i, bin, -lRate * sgd);
-				loss += regB * bit * bit;
-
-				// update bi,period(t)
-				sgd = eui * (cu + cut) + regB * bipt;
-				Bipt.add(i, period, -lRate * sgd);
-				loss += regB * bipt * bipt;
-
-				// update cu
-				sgd = eui * (bi + bit + bipt) + regB * cu;
-				Cu.add(u, -lRate * sgd);
-				loss += regB * cu * cu;
-
-				// update cut
-				sgd = eui * (bi + bit + bipt) + regB * cut;
-				Cut.add(u, t, -lRate * sgd);
-				loss += regB * cut * cut;
-
-				// update bu
-				sgd = eui + regB * bu;
-				userBias.add(u, -lRate * sgd);
-				loss += regB * bu * bu;
-
-				// update au
-				sgd = eui * dev_ut + regB * au;
-				Alpha.add(u, -lRate * sgd);
-				loss += regB * au * au;
-
-				// update but
-				sgd = eui + regB * but;
-				But.put(u, t, but - lRate * sgd);
-				loss += regB * but * but;
-				
-				// update bu,period(t)
-				sgd = eui + regB * bupt;
-				Bupt.add(u, period, -lRate * sgd);
-				loss += regB * bupt * bupt;
-				
-				// update bcu, bcut
-				for (int c : userCommunities){
-					double bcu = BCu[cbin].get(c);
-					double bcut = BCut.get(cbin).get(c, t);
-					double muc = userMemberships[cbin].get(u, c);
-					
-					sgd = eui * muc + regC * bcu;
-					BCu[cbin].add(c, -lRateC * sgd);
-					loss += regC * bcu * bcu;
-					
-					sgd = eui * muc + regC * bcut;
-					BCut.get(cbin).put(c, t, bcut - lRateC * sgd);
-					loss += regC * bcut * bcut;
-				}
-				
-				// update alpha_c
-				for (int c : userStaticCommunities){
-					double alphac = AlphaC.get(c);
-					double devct = devc(c, t);
-					double muc = userMemberships[0].get(u, c);
-					
-					sgd = eui * devct * muc + regC * alphac;
-					AlphaC.add(c, -lRateC * sgd);
-					loss += regC * alphac * alphac;
+		userOffsets = null;
+		itemFactors = null;
+
+		initDayParameters();
+		learnSGD(this::updateRating);
+
+		materializePredictionTerms();
+	}
+
+	/**
+	 * Materializes the terms of the predictions that no longer change after learning, so that a prediction only
+	 * computes the terms that depend on its day once per user and day, and the terms that depend on its item
+	 */
+	private void materializePredictionTerms() {
+		DenseMatrix[] userOffsets = new DenseMatrix[numCBins + 1];
+		DenseMatrix[] itemFactors = new DenseMatrix[numCBins + 1];
+		for (int cbin = 1; cbin <= numCBins; cbin++) {
+			userOffsets[cbin] = new DenseMatrix(numUsers, numFactors);
+			itemFactors[cbin] = new DenseMatrix(numItems, numFactors);
+		}
+
+		double[] sum_ys = new double[numFactors];
+		for (int u = 0; u < numUsers; u++) {
+			// implicit feedback of the rated items
+			IndexView Iu = trainMatrix.rowView(u);
+			for (int k = 0; k < numFactors; k++) {
+				double sum_y = 0;
+				for (int p = 0; p < Iu.size(); p++)
+					sum_y += Y.get(Iu.get(p), k);
+				sum_ys[k] = sum_y;
+			}
+
+			for (int cbin = 1; cbin <= numCBins; cbin++) {
+				IndexView userCommunities = userMemberships[cbin].rowView(u);
+				IndexView Icu = userCommunitiesRatingsMatrix[cbin].rowView(u);
+				for (int k = 0; k < numFactors; k++) {
+					double offset = sum_ys[k];
+					for (int p = 0; p < Icu.size(); p++)
+						offset += Z.get(Icu.get(p), k);
+					for (int p = 0; p < userCommunities.size(); p++)
+						offset += OCu[cbin].get(userCommunities.get(p), k) * userCommunities.value(p);
+					userOffsets[cbin].set(u, k, offset);
 				}
-				
-				// update bci, bcit
-				for (int c: itemCommunities){
-					double bci = BCi[cbin].get(c);
-					double bcit = BCit[cbin].get(c, bin);
-					double mic = itemMemberships[cbin].get(i, c);
-					
-					sgd = eui * mic + regC * bci;
-					BCi[cbin].add(c, -lRateC * sgd);
-					loss += regC * bci * bci;
-					
-					sgd = eui * mic + regC * bcit;
-					BCit[cbin].add(c, bin, -lRateC * sgd);
-					loss += regC * bcit * bcit;
+			}
+		}
+
+		for (int i = 0; i < numItems; i++) {
+			for (int cbin = 1; cbin <= numCBins; cbin++) {
+				IndexView itemCommunities = itemMemberships[cbin].rowView(i);
+				for (int k = 0; k < numFactors; k++) {
+					double itemFactor = Q.get(i, k);
+					for (int p = 0; p < itemCommunities.size(); p++)
+						itemFactor += OCi[cbin].get(itemCommunities.get(p), k) * itemCommunities.value(p);
+					itemFactors[cbin].set(i, k, itemFactor);
 				}
+			}
+		}
 
-				// Update SVD model parameters
-				// ===========================
-				
-				Table<Integer, Integer, Double> Pkt = Pukt.get(u);
+		this.userOffsets = userOffsets;
+		this.itemFactors = itemFactors;
+	}
 
-				for (int k = 0; k < numFactors; k++) {
-					double qik = Q.get(i, k);
-					double puk = P.get(u, k);
-					double auk = Auk.get(u, k);
-					double pkt = Pkt.get(k, t);
-					double pukt = puk + auk * dev_ut + pkt;
-
-					double sum_yk = 0;
-					for (int j : Iu)
-						sum_yk += Y.get(j, k);
-					
-					double sum_zk = 0;
-					for (int j : Icu)
-						sum_zk += Z.get(j, k);
-					
-					double sum_ocuk = 0;
-					double sum_ocukt = 0;
-					for (int c : userCommunities){
-						double muc = userMemberships[cbin].get(u, c);
-						sum_ocuk += OCu[cbin].get(c, k) * muc;
-						sum_ocukt += OCut.get(cbin).get(c).get(k, t) * muc;
-					}
-					
-					double sum_acuk = 0;
-					for (int c : userStaticCommunities){
-						double muc = userMemberships[0].get(u, c);
-						sum_acuk += ACu.get(c, k) * devc(c, t) * muc;
-					}
-					
-					double sum_ocik = 0;
-					for (int c : itemCommunities){
-						double mic = itemMemberships[cbin].get(i, c);
-						sum_ocik += OCi[cbin].get(c, k) * mic;
-					}
-					
-					// update qik
-					sgd = eui * (pukt + sum_ocuk + sum_ocukt + sum_acuk + wi * sum_yk + wc * sum_zk) + regI * qik;
-					Q.add(i, k, -lRateF * sgd);
-					loss += regI * qik * qik;
-					
-					// update puk
-					sgd = eui * (qik + sum_ocik) + regU * puk;
-					P.add(u, k, -lRateF * sgd);
-					loss += regU * puk * puk;
-
-					// update auk
-					sgd = eui * (qik + sum_ocik) * dev_ut + regU * auk;
-					Auk.add(u, k, -lRateF * sgd);
-					loss += regU * auk * auk;
-
-					// update pkt
-					sgd = eui * (qik + sum_ocik) + regU * pkt;
-					Pkt.put(k, t, pkt - lRateF * sgd);
-					loss += regU * pkt * pkt;
-					
-					// update yjk
-					for (int j : Iu) {
-						double yjk = Y.get(j, k);
-						sgd = eui * wi * (qik + sum_ocik) + regI * yjk;
-						Y.add(j, k, -lRateF * sgd);
-						loss += regI * yjk * yjk;
-					}
-					
-					// update oci
-					for (int c : itemCommunities){
-						double ocik = OCi[cbin].get(c, k);
-						double mic = itemMemberships[cbin].get(i, c);
-						sgd = eui * mic * (pukt + sum_ocuk + sum_ocukt + sum_acuk + wi * sum_yk + wc * sum_zk) + regCF * ocik;
-						OCi[cbin].add(c, k, -lRateCF * sgd);
-						loss += regCF * ocik * ocik;
-					}
-					
-					// update ocu and ocut
-					for (int c : userCommunities){
-						double ocuk = OCu[cbin].get(c, k);
-						double ocukt = OCut.get(cbin).get(c).get(k, t);
-						double muc = userMemberships[cbin].get(u, c);
-						
-						sgd = eui * muc * (qik + sum_ocik) + regCF * ocuk;
-						OCu[cbin].add(c, k, -lRateCF * sgd);
-						loss += regCF * ocuk * ocuk;
-						
-						sgd = eui * muc * (qik + sum_ocik) + regCF * ocukt;
-						OCut.get(cbin).get(c).put(k, t, ocukt - lRateCF * sgd);
-						loss += regCF * ocukt * ocukt;
-					}
-					
-					// update acu
-					for (int c : userStaticCommunities){
-						double acuk = ACu.get(c, k);
-						double muc = userMemberships[0].get(u, c);
-						double devcut = devc(c, t);
-						
-						sgd = eui * devcut * muc * (qik + sum_ocik) + regCF * acuk;
-						ACu.add(c, k, -lRateCF * sgd);
-						loss += regCF * acuk * acuk;
-					}
-					
-					// update zjk
-					for (int j : Icu) {
-						double zjk = Z.get(j, k);
-						sgd = eui * wc * (qik + sum_ocik) + regCF * zjk;
-						Z.add(j, k, -lRateCF * sgd);
-						loss += regCF * zjk * zjk;
-					}
+	/**
+	 * Initializes the day-specific parameters bu,t, pu,t, bc,t and oc,t of the days of the training ratings in the
+	 * order of the training matrix, so that no parameters are inserted while learning, possibly on several threads
+	 */
+	private void initDayParameters() throws Exception {
+		But = ratingTimes.userDayParameters(1);
+		Pukt = new DayParameters(But, numFactors);
+
+		// {user community, day} pairs of the training ratings of each community time bin
+		int[] numPairs = new int[numCBins + 1];
+		for (int u = 0; u < numUsers; u++) {
+			IndexView Ru = trainMatrix.rowView(u);
+			for (int q = 0; q < Ru.size(); q++) {
+				int cbin = ratingTimes.cbin(Ru.position(q));
+				numPairs[cbin] += userMemberships[cbin].rowView(u).size();
+			}
+		}
+		int[][] communities = new int[numCBins + 1][], days = new int[numCBins + 1][];
+		for (int cbin = 0; cbin <= numCBins; cbin++) {
+			communities[cbin] = new int[numPairs[cbin]];
+			days[cbin] = new int[numPairs[cbin]];
+			numPairs[cbin] = 0;
+		}
+		for (int u = 0; u < numUsers; u++) {
+			IndexView Ru = trainMatrix.rowView(u);
+			for (int q = 0; q < Ru.size(); q++) {
+				int t = ratingTimes.day(Ru.position(q));
+				int cbin = ratingTimes.cbin(Ru.position(q));
+				IndexView userCommunities = userMemberships[cbin].rowView(u);
+				for (int p = 0; p < userCommunities.size(); p++) {
+					communities[cbin][numPairs[cbin]] = userCommunities.get(p);
+					days[cbin][numPairs[cbin]++] = t;
 				}
-				
-				// Update neighborhood model parameters
-				// ====================================
-				
-				// update w, c and phi
-				double sgd_phi = 0;
-				for (int j : Iu){
-					double e = decay(u, j, t);
-					double ruj = trainMatrix.get(u, j);
-					double buj = buj(u, j, timestamp);
-					buj += userBias.get(u) + Alpha.get(u) * dev_ut;
-					buj += But.contains(u, t) ? But.get(u, t) : 0;
-					
-					// update w
-					double wij = W.get(i, j);
-					sgd = eui * wi * e * (ruj - buj) + regN * wij;
-					W.add(i, j, -lRateN * sgd);
-					loss += regI * wij * wij;
-					
-					// update c
-					double cij = C.get(i, j);
-					sgd = eui * wi * e + regN * cij;
-					C.add(i, j, -lRateN * sgd);
-					loss += regI * cij * cij;
-					
-					// update phi
-					int diff = Math.abs(t - days((long) timeMatrix.get(u, j), minTrainTimestamp));
-					sgd_phi = eui * wi * (-1 * diff) * e * ((ruj - buj) * wij + cij);
+			}
+		}
+		BCut = new DayParameters[numCBins + 1];
+		OCut = new DayParameters[numCBins + 1];
+		for (int cbin = 0; cbin <= numCBins; cbin++) {
+			BCut[cbin] = new DayParameters(numUserCommunities[cbin], 1, communities[cbin], days[cbin], numPairs[cbin]);
+			OCut[cbin] = new DayParameters(BCut[cbin], numFactors);
+		}
+
+		boolean[] isUserDayInitialized = new boolean[But.size()];
+		boolean[][] isCommunityDayInitialized = new boolean[numCBins + 1][];
+		for (int cbin = 0; cbin <= numCBins; cbin++)
+			isCommunityDayInitialized[cbin] = new boolean[BCut[cbin].size()];
+		for (int u = 0; u < numUsers; u++) {
+			IndexView Ru = trainMatrix.rowView(u);
+			for (int q = 0; q < Ru.size(); q++) {
+				int t = ratingTimes.day(Ru.position(q));
+				int cbin = ratingTimes.cbin(Ru.position(q));
+				IndexView userCommunities = userMemberships[cbin].rowView(u);
+
+				int d = But.index(u, t);
+				if (!isUserDayInitialized[d]) {
+					isUserDayInitialized[d] = true;
+					But.set(d, 0, initGaussian(initMean, initStd));
+					for (int k = 0; k < numFactors; k++)
+						Pukt.set(d, k, initGaussian(initMean, initStd));
 				}
-				double phi = Phi.get(u);
-				sgd_phi += regN * phi;
-				Phi.add(u, -lRateMu * sgd_phi);
-				loss += regI * phi * phi;
-				
-				// update d and psi
-				double sgd_psi = 0;
-				for (int j : Icu){
-					double dij = D.get(i, j);
-					double e = cdecay(u, j, t, cbin);
-					sgd = eui * wc + e + regCN * dij;
-					D.add(i, j, -lRateCN * sgd);
-					loss += regCN * dij * dij;
-					
-					int tj = days((long) timeMatrix.get(u, j), minTrainTimestamp);
-					int diff = Math.abs(t - tj);
-					sgd_psi += eui * wc * (-1 * diff) * e * dij;
+				for (int p = 0; p < userCommunities.size(); p++) {
+					int dc = BCut[cbin].index(userCommunities.get(p), t);
+					if (isCommunityDayInitialized[cbin][dc])
+						continue;
+					isCommunityDayInitialized[cbin][dc] = true;
+					BCut[cbin].set(dc, 0, initGaussian(initMean, initStd));
+					for (int k = 0; k < numFactors; k++)
+						OCut[cbin].set(dc, k, initGaussian(initMean, initStd));
 				}
-				double psi = Psi.get(u);
-				sgd_psi += regCN * psi;
-				// do not let psi become negative
-				double delta_psi = (lRateMu * sgd_psi > psi) ? (psi / 2.0) : (lRateMu * sgd_psi);
-				Psi.add(u, -delta_psi);
-				loss += regCN * psi * psi;
 			}
+		}
+	}
 
-			loss *= 0.5;
+	/**
+	 * Updates the model parameters for one training rating
+	 * 
+	 * @return loss of the rating
+	 */
+	protected double updateRating(int u, int i, double rui, int pos) throws Exception {
+		double loss = 0;
+
+		// day t
+		int t = ratingTimes.day(pos);
+		int period = ratingTimes.period(pos);
+		int bin = ratingTimes.bin(pos);
+		double dev_ut = ratingTimes.dev(pos);
+		
+		// set non community-related variables
+		IndexView Iu = trainMatrix.rowView(u);
+		double wi = Iu.size() > 0 ? Math.pow(Iu.size(), -0.5) : 0;
+		
+		// set community-related variables
+		int cbin = ratingTimes.cbin(pos);
+		IndexView itemCommunities = itemMemberships[cbin].rowView(i);
+		IndexView userCommunities = userMemberships[cbin].rowView(u);
+		IndexView userStaticCommunities = userMemberships[0].rowView(u);
+		IndexView Icu = userCommunitiesRatingsMatrix[cbin].rowView(u);
+		double wc = Icu.size() > 0 ? Math.pow(Icu.size(), -0.5) : 0;
+		
+		double pui = predict(u, i, t, period, bin, cbin, dev_ut);
+		
+		double eui = pui - rui;
+		loss += eui * eui;
+		
+		// Update baseline parameters
+		// ==========================
+		
+		double bi = itemBias.get(i);
+		double cu = Cu.get(u);
+		double cut = Cut.get(u, t);
+		double bit = Bit.get(i, bin);
+		double bipt = Bipt.get(i, period);
+		double bu = userBias.get(u);
+		int d = But.index(u, t);
+		double but = But.get(d, 0);
+		double bupt = Bupt.get(u, period);
+		double au = Alpha.get(u);
+
+		// update bi
+		double sgd = eui * (cu + cut) + regB * bi;
+		itemBias.add(i, -lRate * sgd);
+		loss += regB * bi * bi;
+
+		// update bi,bin(t)
+		sgd = eui * (cu + cut) + regB * bit;
+		Bit.add(i, bin, -lRate * sgd);
+		loss += regB * bit * bit;
+
+		// update bi,period(t)
+		sgd = eui * (cu + cut) + regB * bipt;
+		Bipt.add(i, period, -lRate * sgd);
+		loss += regB * bipt * bipt;
+
+		// update cu
+		sgd = eui * (bi + bit + bipt) + regB * cu;
+		Cu.add(u, -lRate * sgd);
+		loss += regB * cu * cu;
+
+		// update cut
+		sgd = eui * (bi + bit + bipt) + regB * cut;
+		Cut.add(u, t, -lRate * sgd);
+		loss += regB * cut * cut;
+
+		// update bu
+		sgd = eui + regB * bu;
+		userBias.add(u, -lRate * sgd);
+		loss += regB * bu * bu;
+
+		// update au
+		sgd = eui * dev_ut + regB * au;
+		Alpha.add(u, -lRate * sgd);
+		loss += regB * au * au;
+
+		// update but
+		sgd = eui + regB * but;
+		But.set(d, 0, but - lRate * sgd);
+		loss += regB * but * but;
+		
+		// update bu,period(t)
+		sgd = eui + regB * bupt;
+		Bupt.add(u, period, -lRate * sgd);
+		loss += regB * bupt * bupt;
+		
+		// update bcu, bcut
+		for (int p = 0; p < userCommunities.size(); p++) {
+			int c = userCommunities.get(p);
+			double bcu = BCu[cbin].get(c);
+			int dc = BCut[cbin].index(c, t);
+			double bcut = BCut[cbin].get(dc, 0);
+			double muc = userCommunities.value(p);
+			
+			sgd = eui * muc + regC * bcu;
+			BCu[cbin].add(c, -lRateC * sgd);
+			loss += regC * bcu * bcu;
+			
+			sgd = eui * muc + regC * bcut;
+			BCut[cbin].set(dc, 0, bcut - lRateC * sgd);
+			loss += regC * bcut * bcut;
+		}
+		
+		// update alpha_c
+		for (int p = 0; p < userStaticCommunities.size(); p++) {
+			int c = userStaticCommunities.get(p);
+			double alphac = AlphaC.get(c);
+			double devct = devc(c, t);
+			double muc = userStaticCommunities.value(p);
+			
+			sgd = eui * devct * muc + regC * alphac;
+			AlphaC.add(c, -lRateC * sgd);
+			loss += regC * alphac * alphac;
+		}
+		
+		// update bci, bcit
+		for (int p = 0; p < itemCommunities.size(); p++) {
+			int c = itemCommunities.get(p);
+			double bci = BCi[cbin].get(c);
+			double bcit = BCit[cbin].get(c, bin);
+			double mic = itemCommunities.value(p);
+			
+			sgd = eui * mic + regC * bci;
+			BCi[cbin].add(c, -lRateC * sgd);
+			loss += regC * bci * bci;
+			
+			sgd = eui * mic + regC * bcit;
+			BCit[cbin].add(c, bin, -lRateC * sgd);
+			loss += regC * bcit * bcit;
+		}
 
-			if (isConverged(iter))
-				break;
+		// Update SVD model parameters
+		// ===========================
+		
+		for (int k = 0; k < numFactors; k++) {
+			double qik = Q.get(i, k);
+			double puk = P.get(u, k);
+			double auk = Auk.get(u, k);
+			double pkt = Pukt.get(d, k);
+			double pukt = puk + auk * dev_ut + pkt;
+
+			double sum_yk = 0;
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
+				sum_yk += Y.get(j, k);
+			}
+			
+			double sum_zk = 0;
+			for (int p = 0; p < Icu.size(); p++) {
+				int j = Icu.get(p);
+				sum_zk += Z.get(j, k);
+			}
+			
+			double sum_ocuk = 0;
+			double sum_ocukt = 0;
+			for (int p = 0; p < userCommunities.size(); p++) {
+				int c = userCommunities.get(p);
+				double muc = userCommunities.value(p);
+				sum_ocuk += OCu[cbin].get(c, k) * muc;
+				sum_ocukt += OCut[cbin].get(OCut[cbin].index(c, t), k) * muc;
+			}
+			
+			double sum_acuk = 0;
+			for (int p = 0; p < userStaticCommunities.size(); p++) {
+				int c = userStaticCommunities.get(p);
+				double muc = userStaticCommunities.value(p);
+				sum_acuk += ACu.get(c, k) * devc(c, t) * muc;
+			}
+			
+			double sum_ocik = 0;
+			for (int p = 0; p < itemCommunities.size(); p++) {
+				int c = itemCommunities.get(p);
+				double mic = itemCommunities.value(p);
+				sum_ocik += OCi[cbin].get(c, k) * mic;
+			}
+			
+			// update qik
+			sgd = eui * (pukt + sum_ocuk + sum_ocukt + sum_acuk + wi * sum_yk + wc * sum_zk) + regI * qik;
+			Q.add(i, k, -lRateF * sgd);
+			loss += regI * qik * qik;
+			
+			// update puk
+			sgd = eui * (qik + sum_ocik) + regU * puk;
+			P.add(u, k, -lRateF * sgd);
+			loss += regU * puk * puk;
+
+			// update auk
+			sgd = eui * (qik + sum_ocik) * dev_ut + regU * auk;
+			Auk.add(u, k, -lRateF * sgd);
+			loss += regU * auk * auk;
+
+			// update pkt
+			sgd = eui * (qik + sum_ocik) + regU * pkt;
+			Pukt.set(d, k, pkt - lRateF * sgd);
+			loss += regU * pkt * pkt;
+			
+			// update yjk
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
+				double yjk = Y.get(j, k);
+				sgd = eui * wi * (qik + sum_ocik) + regI * yjk;
+				Y.add(j, k, -lRateF * sgd);
+				loss += regI * yjk * yjk;
+			}
+			
+			// update oci
+			for (int p = 0; p < itemCommunities.size(); p++) {
+				int c = itemCommunities.get(p);
+				double ocik = OCi[cbin].get(c, k);
+				double mic = itemCommunities.value(p);
+				sgd = eui * mic * (pukt + sum_ocuk + sum_ocukt + sum_acuk + wi * sum_yk + wc * sum_zk) + regCF * ocik;
+				OCi[cbin].add(c, k, -lRateCF * sgd);
+				loss += regCF * ocik * ocik;
+			}
+			
+			// update ocu and ocut
+			for (int p = 0; p < userCommunities.size(); p++) {
+				int c = userCommunities.get(p);
+				int dc = OCut[cbin].index(c, t);
+				double ocuk = OCu[cbin].get(c, k);
+				double ocukt = OCut[cbin].get(dc, k);
+				double muc = userCommunities.value(p);
+				
+				sgd = eui * muc * (qik + sum_ocik) + regCF * ocuk;
+				OCu[cbin].add(c, k, -lRateCF * sgd);
+				loss += regCF * ocuk * ocuk;
+				
+				sgd = eui * muc * (qik + sum_ocik) + regCF * ocukt;
+				OCut[cbin].set(dc, k, ocukt - lRateCF * sgd);
+				loss += regCF * ocukt * ocukt;
+			}
+			
+			// update acu
+			for (int p = 0; p < userStaticCommunities.size(); p++) {
+				int c = userStaticCommunities.get(p);
+				double acuk = ACu.get(c, k);
+				double muc = userStaticCommunities.value(p);
+				double devcut = devc(c, t);
+				
+				sgd = eui * devcut * muc * (qik + sum_ocik) + regCF * acuk;
+				ACu.add(c, k, -lRateCF * sgd);
+				loss += regCF * acuk * acuk;
+			}
+			
+			// update zjk
+			for (int p = 0; p < Icu.size(); p++) {
+				int j = Icu.get(p);
+				double zjk = Z.get(j, k);
+				sgd = eui * wc * (qik + sum_ocik) + regCF * zjk;
+				Z.add(j, k, -lRateCF * sgd);
+				loss += regCF * zjk * zjk;
+			}
+		}
+		
+		// Update neighborhood model parameters
+		// ====================================
+		
+		// update w, c and phi
+		double sgd_phi = 0;
+		for (int p = 0; p < Iu.size(); p++) {
+			int j = Iu.get(p);
+			int tj = ratingTimes.day(Iu.position(p));
+			double e = decay(u, tj, t);
+			double ruj = Iu.value(p);
+			double buj = buj(u, j, t, period, bin, dev_ut);
+			buj += userBias.get(u) + Alpha.get(u) * dev_ut;
+			buj += But.get(d, 0);
+			
+			// update w
+			double wij = W.get(i, j);
+			sgd = eui * wi * e * (ruj - buj) + regN * wij;
+			W.add(i, j, -lRateN * sgd);
+			loss += regI * wij * wij;
+			
+			// update c
+			double cij = C.get(i, j);
+			sgd = eui * wi * e + regN * cij;
+			C.add(i, j, -lRateN * sgd);
+			loss += regI * cij * cij;
+			
+			// update phi
+			int diff = Math.abs(t - tj);
+			sgd_phi = eui * wi * (-1 * diff) * e * ((ruj - buj) * wij + cij);
 		}
+		double phi = Phi.get(u);
+		sgd_phi += regN * phi;
+		Phi.add(u, -lRateMu * sgd_phi);
+		loss += regI * phi * phi;
+		
+		// update d and psi
+		double sgd_psi = 0;
+		for (int p = 0; p < Icu.size(); p++) {
+			int j = Icu.get(p);
+			double dij = D.get(i, j);
+			double e = cdecay(u, j, t, cbin);
+			sgd = eui * wc + e + regCN * dij;
+			D.add(i, j, -lRateCN * sgd);
+			loss += regCN * dij * dij;
+			
+			int tj = days((long) timeMatrix.get(u, j), minTrainTimestamp);
+			int diff = Math.abs(t - tj);
+			sgd_psi += eui * wc * (-1 * diff) * e * dij;
+		}
+		double psi = Psi.get(u);
+		sgd_psi += regCN * psi;
+		// do not let psi become negative
+		double delta_psi = (lRateMu * sgd_psi > psi) ? (psi / 2.0) : (lRateMu * sgd_psi);
+		Psi.add(u, -delta_psi);
+		loss += regCN * psi * psi;
+
+		return loss;
 	}
 
 	@Override
 	protected double predict(int u, int i) throws Exception {
+		// while learning, e.g. for early stopping, the terms are not materialized
+		if (itemFactors == null) {
+			long timestamp = (long) timeMatrix.get(u, i);
+			int t = days(timestamp, minTrainTimestamp);
+			return predict(u, i, t, TimeFeatures.dayOfWeek(timestamp), bin(t), cbin(t), dev(u, t));
+		}
+
+		return predict(u, i, new UserDayTerms(this));
+	}
+
+	@Override
+	public void getPredictions(int u, double[] predictions) throws Exception {
+		if (itemFactors == null) {
+			super.getPredictions(u, predictions);
+			return;
+		}
+
+		// consecutive items on the same day, e.g. the unrated items, reuse the terms of the user and day
+		UserDayTerms terms = new UserDayTerms(this);
+		for (int i = 0; i < numItems; i++)
+			predictions[i] = predict(u, i, terms);
+	}
+
+	/**
+	 * Return the prediction of a rating from the materialized terms, updating the terms to the user and the day of
+	 * the rating
+	 */
+	private double predict(int u, int i, UserDayTerms terms) {
 		// retrieve the test rating timestamp
 		long timestamp = (long) timeMatrix.get(u, i);
 		int t = days(timestamp, minTrainTimestamp);
-		double dev_ut = dev(u, t);
-		
-		List<Integer> Iu = userItemsCache.get(u);
+		terms.update(u, t, TimeFeatures.dayOfWeek(timestamp));
+		return terms.predict(i);
+	}
+
+	/**
+	 * Return the prediction of a rating given the time features of its day t
+	 */
+	private double predict(int u, int i, int t, int period, int bin, int cbin, double dev_ut) throws Exception {
+		IndexView Iu = trainMatrix.rowView(u);
 		double wi = Iu.size() > 0 ? Math.pow(Iu.size(), -0.5) : 0;
 
 		// set community-related variables
-		int cbin = cbin(t);
-		List<Integer> itemCommunities = itemCommunitiesCache.get(cbin).get(i);
-		List<Integer> userCommunities = userCommunitiesCache.get(cbin).get(u);
-		List<Integer> userStaticCommunities = userCommunitiesCache.get(0).get(u);
-		List<Integer> Icu = userCommunitiesItemsCache.get(cbin).get(u);
+		IndexView itemCommunities = itemMemberships[cbin].rowView(i);
+		IndexView userCommunities = userMemberships[cbin].rowView(u);
+		IndexView userStaticCommunities = userMemberships[0].rowView(u);
+		IndexView Icu = userCommunitiesRatingsMatrix[cbin].rowView(u);
 		double wc = Icu.size() > 0 ? Math.pow(Icu.size(), -0.5) : 0;
 
 		// baseline / bias
-		double pred = bias(u, i, timestamp, userStaticCommunities, userCommunities, itemCommunities);
+		double pred = bias(u, i, t, period, bin, cbin, dev_ut, userStaticCommunities, userCommunities, itemCommunities);
 		
 		// qi * pu(t)
+		int d = But.index(u, t);
 		for (int k = 0; k < numFactors; k++) {
 			double itemFactor = Q.get(i, k);
 			
-			for (int c : itemCommunities)
-				itemFactor += OCi[cbin].get(c, k) * itemMemberships[cbin].get(i, c);
+			for (int p = 0; p < itemCommunities.size(); p++) {
+				int c = itemCommunities.get(p);
+				itemFactor += OCi[cbin].get(c, k) * itemCommunities.value(p);
+			}
 			
 			double userFactor = P.get(u, k) + Auk.get(u, k) * dev_ut;
-			if (Pukt.containsKey(u)) {
-				Table<Integer, Integer, Double> pkt = Pukt.get(u);
-				if (pkt != null) {
-					// eq. (13)
-					userFactor += (pkt.contains(k, t) ? pkt.get(k, t) : 0);
-				}
-			}
-			for (int c : userCommunities){
+			// eq. (13)
+			if (d >= 0)
+				userFactor += Pukt.get(d, k);
+			for (int p = 0; p < userCommunities.size(); p++) {
+				int c = userCommunities.get(p);
 				double ocuk = OCu[cbin].get(c, k);
-				double muc = userMemberships[cbin].get(u,c);
+				double muc = userCommunities.value(p);
 				
 				userFactor += ocuk * muc;
 				
-				if (OCut.get(cbin).containsKey(c)){
-					Table<Integer, Integer, Double> ocuTable = OCut.get(cbin).get(c);
-					double ocukt = ocuTable.contains(k, t) ? ocuTable.get(k, t) : 0;
-					userFactor += ocukt * muc;
-				}
+				int dc = OCut[cbin].index(c, t);
+				if (dc >= 0)
+					userFactor += OCut[cbin].get(dc, k) * muc;
 			}
-			for (int c : userStaticCommunities){
+			for (int p = 0; p < userStaticCommunities.size(); p++) {
+				int c = userStaticCommunities.get(p);
 				double acuk = ACu.get(c, k);
 				double devcut = devc(c, t);
-				double muc = userMemberships[0].get(u, c);
+				double muc = userStaticCommunities.value(p);
 				
 				userFactor += acuk * devcut * muc;
 			}
-			for (int j : Iu)
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
 				userFactor += Y.get(j, k);
-			for (int j : Icu)
+			}
+			for (int p = 0; p < Icu.size(); p++) {
+				int j = Icu.get(p);
 				userFactor += Z.get(j,k);
+			}
 
 			pred += userFactor * itemFactor;
 		}
 		
 		// e^(-beta_u * |t-tj|)(ruj - buj) * wij + cij): eq. (16)
 		// we use phi instead of beta since beta is already used for the time deviation in the baseline model
-		for (int j : Iu){
-			double e = decay(u, j, t);
+		for (int p = 0; p < Iu.size(); p++) {
+			int j = Iu.get(p);
+			double e = decay(u, ratingTimes.day(Iu.position(p)), t);
 			double ruj = rateMatrix.get(u, j);
-			double buj = buj(u, j, timestamp);
+			double buj = buj(u, j, t, period, bin, dev_ut);
 
 			pred += e * ((ruj - buj) * W.get(i, j) + C.get(i, j)) * wi;
 		}
 		
 		// e^(-psi_u * |t-tj|)(rCuj - buj) * dij)
-		for (int j : Icu){
+		for (int p = 0; p < Icu.size(); p++) {
+			int j = Icu.get(p);
 			double e = cdecay(u, j, t, cbin);
 			double dij = D.get(i,j);
 			
@@ -1011,6 +1151,117 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		return pred;
 	}
 
+	/**
+	 * Terms of the predictions of a user on a day that do not depend on the item, i.e. the user factors pu(t) and the
+	 * decays and residuals of the neighborhood terms, computed from the materialized terms after learning. The
+	 * neighborhood terms still sum over the rated items and community items of the user, since their weights wij,
+	 * cij and dij depend on the item. The terms are owned by the caller of a prediction, which reuses them for the
+	 * items of one user, so that the model does not keep state of the threads predicting with it.
+	 */
+	private static class UserDayTerms {
+
+		private final TimeComNeighSVD model;
+
+		private int u = -1, t, period, bin, cbin;
+		private double dev_ut, wi, wc;
+		private IndexView Iu, Icu, userCommunities, userStaticCommunities;
+
+		// user factors pu(t)
+		private final double[] factors;
+		// decays and residuals ruj - buj of the rated items, and decays of the community items
+		private double[] decays = new double[0], residuals = new double[0], communityDecays = new double[0];
+
+		private UserDayTerms(TimeComNeighSVD model) {
+			this.model = model;
+			factors = new double[model.numFactors];
+		}
+
+		/**
+		 * Computes the terms of a user on a day, unless they have been computed for the last prediction
+		 */
+		private void update(int u, int t, int period) {
+			if (u == this.u && t == this.t && period == this.period)
+				return;
+
+			TimeComNeighSVD m = model;
+			this.u = u;
+			this.t = t;
+			this.period = period;
+			bin = m.bin(t);
+			cbin = m.cbin(t);
+			dev_ut = m.dev(u, t);
+
+			userCommunities = m.userMemberships[cbin].rowView(u);
+			userStaticCommunities = m.userMemberships[0].rowView(u);
+
+			// qi * pu(t): eq. (13)
+			int d = m.But.index(u, t);
+			for (int k = 0; k < m.numFactors; k++) {
+				factors[k] = m.P.get(u, k) + m.Auk.get(u, k) * dev_ut + m.userOffsets[cbin].get(u, k);
+				if (d >= 0)
+					factors[k] += m.Pukt.get(d, k);
+			}
+			for (int p = 0; p < userCommunities.size(); p++) {
+				int dc = m.OCut[cbin].index(userCommunities.get(p), t);
+				double muc = userCommunities.value(p);
+				if (dc >= 0)
+					for (int k = 0; k < m.numFactors; k++)
+						factors[k] += m.OCut[cbin].get(dc, k) * muc;
+			}
+			for (int p = 0; p < userStaticCommunities.size(); p++) {
+				int c = userStaticCommunities.get(p);
+				double devcut = m.devc(c, t);
+				double muc = userStaticCommunities.value(p);
+				for (int k = 0; k < m.numFactors; k++)
+					factors[k] += m.ACu.get(c, k) * devcut * muc;
+			}
+
+			// e^(-beta_u * |t-tj|) and ruj - buj: eq. (16)
+			Iu = m.trainMatrix.rowView(u);
+			wi = Iu.size() > 0 ? Math.pow(Iu.size(), -0.5) : 0;
+			if (decays.length < Iu.size()) {
+				decays = new double[Iu.size()];
+				residuals = new double[Iu.size()];
+			}
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
+				decays[p] = m.decay(u, m.ratingTimes.day(Iu.position(p)), t);
+				residuals[p] = m.rateMatrix.get(u, j) - m.buj(u, j, t, period, bin, dev_ut);
+			}
+
+			// e^(-psi_u * |t-tj|)
+			Icu = m.userCommunitiesRatingsMatrix[cbin].rowView(u);
+			wc = Icu.size() > 0 ? Math.pow(Icu.size(), -0.5) : 0;
+			if (communityDecays.length < Icu.size())
+				communityDecays = new double[Icu.size()];
+			for (int p = 0; p < Icu.size(); p++)
+				communityDecays[p] = m.cdecay(u, Icu.get(p), t, cbin);
+		}
+
+		/**
+		 * @return prediction of the rating of the user for an item on the day
+		 */
+		private double predict(int i) {
+			TimeComNeighSVD m = model;
+			IndexView itemCommunities = m.itemMemberships[cbin].rowView(i);
+			double pred = m.bias(u, i, t, period, bin, cbin, dev_ut, userStaticCommunities, userCommunities,
+					itemCommunities);
+
+			for (int k = 0; k < m.numFactors; k++)
+				pred += factors[k] * m.itemFactors[cbin].get(i, k);
+
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
+				pred += decays[p] * (residuals[p] * m.W.get(i, j) + m.C.get(i, j)) * wi;
+			}
+
+			for (int p = 0; p < Icu.size(); p++)
+				pred += communityDecays[p] * m.D.get(i, Icu.get(p)) * wc;
+
+			return pred;
+		}
+	}
+
 	@Override
 	public String toString() {
 		return Strings.toString(new Object[] { numFactors, initLRate, initLRateN, initLRateF, initLRateC, initLRateCN, initLRateCF, 
@@ -1039,13 +1290,11 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	 * i.e. e^(-beta_u * |t-tj|) from eq. (16)
 	 * 
 	 * @param u user
-	 * @param j item
+	 * @param tj time (day) of the rating of user u for item j
 	 * @param t time (day)
 	 * @return rating decay
 	 */
-	protected double decay(int u, int j, int t) {
-		int tj = days((long) timeMatrix.get(u, j), minTrainTimestamp);
-
+	protected double decay(int u, int tj, int t) {
 		// date difference in days
 		int diff = Math.abs(t - tj);
 
@@ -1068,17 +1317,6 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		return bin;
 	}
 
-	/**
-	 * Return the period (day of week) for a specific day
-	 * @param timestamp timestamp 
-	 * @return period
-	 */
-	protected int period(long timestamp) {
-		cal.setTimeInMillis(timestamp);
-		
-		return cal.get(Calendar.DAY_OF_WEEK) % 7;
-	}
-
 	/**
 	 * Return the number of days for a given time difference
 	 * @param diff difference between two timestamps
@@ -1104,15 +1342,14 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	 * Return user and item bias for given user and item
 	 * @param u user
 	 * @param j item
-	 * @param timestamp timestamp
+	 * @param t time (day)
+	 * @param period period (day of week) of day t
+	 * @param bin bin of day t
+	 * @param dev_ut time deviation of day t for user u
 	 * @return bias
 	 */
-	private double buj(int u, int j, long timestamp){
+	private double buj(int u, int j, int t, int period, int bin, double dev_ut){
 		double buj = globalMean;
-		int t = days(timestamp, minTrainTimestamp);
-		int period = period(timestamp);
-		int bin = bin(t);
-		double dev_ut = dev(u, t);
 
 		// bi(t): eq. (12)
 		double bi = itemBias.get(j);
@@ -1125,7 +1362,8 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		// bu(t): eq. (9)
 		double bu = userBias.get(u);
 		double aut = Alpha.get(u) * dev_ut;
-		double but = But.contains(u, t) ? But.get(u, t) : 0;
+		int d = But.index(u, t);
+		double but = d >= 0 ? But.get(d, 0) : 0;
 		double bupt = Bupt.get(u, period);
 		buj += bu + aut + but + bupt;
 		
@@ -1136,19 +1374,19 @@ public class TimeComNeighSVD extends IterativeRecommender {
 	 * Return user, item and community bias for given user and item
 	 * @param u user
 	 * @param i item
-	 * @param timestamp timestamp
+	 * @param t time (day)
+	 * @param period period (day of week) of day t
+	 * @param bin bin of day t
+	 * @param cbin community bin of day t
+	 * @param dev_ut time deviation of day t for user u
 	 * @param userStaticCommunities list of static communities that the user is a member of
-	 * @param userCommunities list of communities that the user is a member of at the time represented by the timestamp 
-	 * @param itemCommunities list of communities that the item is a member of at the time represented by the timestamp
+	 * @param userCommunities list of communities that the user is a member of at day t
+	 * @param itemCommunities list of communities that the item is a member of at day t
 	 * @return bias
 	 */
-	private double bias(int u, int i, long timestamp, List<Integer> userStaticCommunities, List<Integer> userCommunities, List<Integer> itemCommunities){
+	private double bias(int u, int i, int t, int period, int bin, int cbin, double dev_ut, IndexView userStaticCommunities,
+			IndexView userCommunities, IndexView itemCommunities){
 		double bias = globalMean;
-		int t = days(timestamp, minTrainTimestamp);
-		int period = period(timestamp);
-		int bin = bin(t);
-		double dev_ut = dev(u, t);
-		int cbin = cbin(t);
 
 		// bi(t): eq. (12)
 		double bi = itemBias.get(i);
@@ -1161,27 +1399,32 @@ public class TimeComNeighSVD extends IterativeRecommender {
 		// bu(t): eq. (9)
 		double bu = userBias.get(u);
 		double aut = Alpha.get(u) * dev_ut;
-		double but = But.contains(u, t) ? But.get(u, t) : 0;
+		int d = But.index(u, t);
+		double but = d >= 0 ? But.get(d, 0) : 0;
 		double bupt = Bupt.get(u, period);
 		bias += bu + aut + but + bupt;
 
 		// bci(t)
-		for (int c : itemCommunities){
-			double mic = itemMemberships[cbin].get(i, c);
+		for (int p = 0; p < itemCommunities.size(); p++) {
+			int c = itemCommunities.get(p);
+			double mic = itemCommunities.value(p);
 			double bci = BCi[cbin].get(c);
 			double bcit = BCit[cbin].get(c, bin);
 			bias += (bci + bcit) * mic;
 		}
 		
 		// bcu(t)
-		for (int c : userCommunities){
-			double muc = userMemberships[cbin].get(u, c);
+		for (int p = 0; p < userCommunities.size(); p++) {
+			int c = userCommunities.get(p);
+			double muc = userCommunities.value(p);
 			double bcu = BCu[cbin].get(c);
-			double bcut = BCut.get(cbin).contains(c, t) ? BCut.get(cbin).get(c, t) : 0;
+			int dc = BCut[cbin].index(c, t);
+			double bcut = dc >= 0 ? BCut[cbin].get(dc, 0) : 0;
 			bias += (bcu + bcut) * muc;
 		}
-		for (int c : userStaticCommunities){
-			double muc = userMemberships[0].get(u, c);
+		for (int p = 0; p < userStaticCommunities.size(); p++) {
+			int c = userStaticCommunities.get(p);
+			double muc = userStaticCommunities.value(p);
 			double alpha = AlphaC.get(c);
 			double dev = devc(c, t);
 			bias += alpha * dev * muc;
@@ -1213,7 +1456,7 @@ public class TimeComNeighSVD extends IterativeRecommender {
 			int user = e.row();
 			int item = e.column();
 			double rating = e.get();
-			long time = (long) timeMatrix.get(user, item);
+			long time = (long) timeMatrix.get(e);
 			int days = days(time, minTrainTimestamp);
 			
 			int cbin = cbin(days);
@@ -17,10 +17,7 @@
 //
 package i5.las2peer.services.recommender.librec.rating;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.HashBasedTable;
@@ -32,15 +29,19 @@ import i5.las2peer.services.recommender.graphs.GraphBuilder;
 import i5.las2peer.services.recommender.graphs.GraphBuilder.GraphConstructionMethod;
 import i5.las2peer.services.recommender.graphs.GraphBuilder.SimilarityMeasure;
 import i5.las2peer.services.recommender.librec.data.Configuration;
+import i5.las2peer.services.recommender.librec.data.DayParameters;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.TimeFeatures;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener.Phase;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Logs;
-import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -66,6 +67,9 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 	// {user, mean date}
 	private DenseVector userMeanDate;
 
+	// day and bin of each training rating
+	private TimeFeatures ratingTimes;
+
 	// time decay factor
 	private float beta;
 
@@ -113,7 +117,7 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 	private DenseVector BCu;
 	
 	// time-specific user community bias
-	private Table<Integer, Integer, Double> BCut;
+	private DayParameters BCut;
 	
 	// User community bias linear drift
 	private DenseVector AlphaC;
@@ -130,8 +134,8 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 	// user community factor matrix
 	private DenseMatrix OCu;
 
-	// {user community, {feature, day, value} } map for time-dependent user community features
-	private Map<Integer, Table<Integer, Integer, Double>> OCut;
+	// {user community, day, feature} time-dependent user community features, with the same days as BCut
+	private DayParameters OCut;
 	
 	// {user community, feature} alpha matrix  
 	private DenseMatrix ACu;
@@ -149,8 +153,8 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 	private DenseVector Phi;
 	
 
-	public TimeComNeighSVDFast(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public TimeComNeighSVDFast(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		setAlgoName("timeComNeighSVD++Fast");
 		
@@ -203,7 +207,7 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 		minTrainTimestamp = Long.MAX_VALUE;
 		maxTrainTimestamp = Long.MIN_VALUE;
 		for (MatrixEntry e : trainMatrix){
-			long t = (long) timeMatrix.get(e.row(), e.column());
+			long t = (long) timeMatrix.get(e);
 			if (t < minTrainTimestamp)
 				minTrainTimestamp = t;
 			if (t > maxTrainTimestamp)
@@ -211,80 +215,40 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 		}
 		numDays = days(maxTrainTimestamp, minTrainTimestamp) + 1;
 		
-		// cache
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-
-		// global average date
-		double sum = 0;
-		int cnt = 0;
-		for (MatrixEntry me : trainMatrix) {
-			int u = me.row();
-			int i = me.column();
-			double rui = me.get();
-
-			if (rui <= 0)
-				continue;
-
-			sum += days((long) timeMatrix.get(u, i), minTrainTimestamp);
-			cnt++;
-		}
-		globalMeanDate = sum / cnt;
+		// global average date and users' mean rating timestamps
+		ratingTimes = new TimeFeatures(trainMatrix, timeMatrix, minTrainTimestamp);
+		globalMeanDate = ratingTimes.meanDay();
+		userMeanDate = ratingTimes.userMeanDays(globalMeanDate);
 
-		// compute users' mean rating timestamps
-		userMeanDate = new DenseVector(numUsers);
-		List<Integer> Ru = null;
-		for (int u = 0; u < numUsers; u++) {
-
-			sum = 0;
-			Ru = userItemsCache.get(u);
-			for (int i : Ru) {
-				sum += days((long) timeMatrix.get(u, i), minTrainTimestamp);
-			}
-
-			double mean = (Ru.size() > 0) ? (sum + 0.0) / Ru.size() : globalMeanDate;
-			userMeanDate.set(u, mean);
-		}
+		ratingTimes.computeBins(this::bin);
 		
 		// build user and item graphs
+		reportPhase(Phase.GRAPH);
 		Logs.info("{}{} build user and item graphs ...", new Object[] { algoName, foldInfo });
-		GraphBuilder gb = new GraphBuilder();
-		gb.setMethod(graphMethod);
-		gb.setK(knn);
-		gb.setSimilarityMeasure(sim);
-		gb.setRatingData(trainMatrix);
-		gb.setTaggingData(userTagTable, itemTagTable);
-		gb.buildGraphs();
-		SparseMatrix userMatrix = gb.getUserAdjacencyMatrix();
-		SparseMatrix itemMatrix = gb.getItemAdjacencyMatrix();
-		gb.buildGraphs();
-		userMatrix = gb.getUserAdjacencyMatrix();
-		itemMatrix = gb.getItemAdjacencyMatrix();
-		gb = null;
+		SparseMatrix[] graphs = getSharedResult(trainMatrix, "graphs " + graphMethod + " " + sim + " " + knn, () -> {
+			GraphBuilder gb = new GraphBuilder();
+			gb.setMethod(graphMethod);
+			gb.setK(knn);
+			gb.setSimilarityMeasure(sim);
+			gb.setRatingData(trainMatrix);
+			gb.setTaggingData(userTagTable, itemTagTable);
+			gb.buildGraphs();
+			return new SparseMatrix[] { gb.getUserAdjacencyMatrix(), gb.getItemAdjacencyMatrix() };
+		});
 		
 		// detect communities
+		reportPhase(Phase.COMMUNITIES);
 		Logs.info("{}{} detect communities ...", new Object[] { algoName, foldInfo });
-		CommunityDetector cd = new CommunityDetector();
-		cd.setAlgorithm(cdAlgo);
-		cd.setOverlapping(false);
-		if (cdAlgo == CommunityDetectionAlgorithm.WALKTRAP)
-			cd.setWalktrapParameters(wtSteps);
-		
-		cd.setGraph(userMatrix);
-		cd.detectCommunities();
+		CommunityDetector cd = detectCommunities(graphs[0]);
 		userMembershipsMatrix = cd.getMemberships();
 		userMembershipsVector = cd.getMembershipsVector();
 		numUserCommunities = cd.getNumCommunities();
 		
-		cd.setGraph(itemMatrix);
-		cd.detectCommunities();
+		cd = detectCommunities(graphs[1]);
 		itemMembershipsMatrix = cd.getMemberships();
-        itemMembershipsVector = cd.getMembershipsVector();
+		itemMembershipsVector = cd.getMembershipsVector();
 		numItemCommunities = cd.getNumCommunities();
 		
-		userMatrix = null;
-		itemMatrix = null;
-		cd = null;
-		
 		logCommunityInfo();
 
 		// compute user communities' mean rating times overall and per item
@@ -298,9 +262,11 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 			HashSet<Integer> items = new HashSet<Integer> ();
 			for (VectorEntry e : communityUsersVector){
 				int user = e.index();
-				List<Integer> userItems = userItemsCache.get(user);
-				for (int item : userItems)
+				IndexView userItems = trainMatrix.rowView(user);
+				for (int p = 0; p < userItems.size(); p++) {
+					int item = userItems.get(p);
 					items.add(item);
+				}
 			}
 			// to compute communities' overall mean rating times keep track of time and number of ratings given
 			double communityTimeSum = 0;
@@ -333,217 +299,266 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 		
 		// initialize community-related model parameters
 		BCu = new DenseVector(numUserCommunities);
-		BCu.init(initMean, initStd);
+		BCu.init(initMean, initStd, initRandom);
 		AlphaC = new DenseVector(numUserCommunities);
-		AlphaC.init(initMean, initStd);
-		BCut = HashBasedTable.create();
+		AlphaC.init(initMean, initStd, initRandom);
 		BCi = new DenseVector(numItemCommunities);
-		BCi.init(initMean, initStd);
+		BCi.init(initMean, initStd, initRandom);
 		BCit = new DenseMatrix(numItemCommunities, numBins);
-		BCit.init(initMean, initStd);
+		BCit.init(initMean, initStd, initRandom);
 		
 		OCi = new DenseMatrix(numItemCommunities, numFactors);
-		OCi.init(initMean, initStd);
+		OCi.init(initMean, initStd, initRandom);
 		OCu = new DenseMatrix(numUserCommunities, numFactors);
-		OCu.init(initMean, initStd);
-		OCut = new HashMap<>();
+		OCu.init(initMean, initStd, initRandom);
 		ACu = new DenseMatrix(numUserCommunities, numFactors);
-		ACu.init(initMean, initStd);
+		ACu.init(initMean, initStd, initRandom);
 		Y = new DenseMatrix(numItemCommunities, numFactors);
-		Y.init(initMean, initStd);
+		Y.init(initMean, initStd, initRandom);
 		
 		Phi = new DenseVector(numUserCommunities);
-		Phi.init(0.01);
+		Phi.init(0.01, initRandom);
 		W = new DenseMatrix(numItems, numItemCommunities);
-		W.init(initMean, initStd);
+		W.init(initMean, initStd, initRandom);
 		C = new DenseMatrix(numItems, numItemCommunities);
-		C.init(initMean, initStd);
+		C.init(initMean, initStd, initRandom);
 	}
 	
+	/**
+	 * detect the communities of a user or item graph, sharing the result with other runs using the same graph
+	 */
+	private CommunityDetector detectCommunities(SparseMatrix graph) throws Exception {
+		return getSharedResult(graph, "communities " + cdAlgo + " " + wtSteps + " overlapping=false", () -> {
+			CommunityDetector cd = new CommunityDetector();
+			cd.setAlgorithm(cdAlgo);
+			cd.setOverlapping(false);
+			if (cdAlgo == CommunityDetectionAlgorithm.WALKTRAP)
+				cd.setWalktrapParameters(wtSteps);
+			cd.setGraph(graph);
+			cd.detectCommunities();
+			return cd;
+		});
+	}
+
 	@Override
 	protected void buildModel() throws Exception {
 		Logs.info("{}{} learn model parameters ...", new Object[] { algoName, foldInfo });
-		for (int iter = 1; iter <= numIters; iter++) {
-			loss = 0;
-			for (MatrixEntry me : trainMatrix) {
-				int u = me.row();
-				int i = me.column();
-				double rui = me.get();
-
-				int cu = (int) userMembershipsVector.get(u);
-				int ci = (int) itemMembershipsVector.get(i);
-				long timestamp = (long) timeMatrix.get(u, i);
-				// day t
-				int t = days(timestamp, minTrainTimestamp);
-				int bin = bin(t);
-				
-				// set non community-related variables
-				List<Integer> Iu = userItemsCache.get(u);
-				double wi = Iu.size() > 0 ? Math.pow(Iu.size(), -0.5) : 0;
-				
-				// lazy initialization
-				if (!BCut.contains(cu, t))
-					BCut.put(cu, t, Randoms.gaussian(initMean, initStd));
-				if (!OCut.containsKey(cu))
-					OCut.put(cu, HashBasedTable.create());
-				for (int k = 0; k < numFactors; k++)
-					if (!OCut.get(cu).contains(k, t))
-						OCut.get(cu).put(k, t, Randoms.gaussian(initMean, initStd));
-				
-				double pui = predict(u, i);
-				
-				double eui = pui - rui;
-				loss += eui * eui;
-				
-				// Update baseline parameters
-				// ==========================
-				
-				double sgd;
-				
-				// update bcu, bcut
-				double bcu = BCu.get(cu);
-				double bcut = BCut.get(cu, t);
-				
-				sgd = eui + regC * bcu;
-				BCu.add(cu, -lRateC * sgd);
-				loss += regC * bcu * bcu;
-				
-				sgd = eui + regC * bcut;
-				BCut.put(cu, t, bcut - lRateC * sgd);
-				loss += regC * bcut * bcut;
-				
-				// update alpha_c
-				double alphac = AlphaC.get(cu);
-				double devct = devc(cu, t);
-				
-				sgd = eui * devct - regC * alphac;
-				AlphaC.add(cu, -lRateC * sgd);
-				loss += regC * alphac * alphac;
-				
-				// update bci, bcit
-				double bci = BCi.get(ci);
-				double bcit = BCit.get(ci, bin);
-				
-				sgd = eui + regC * bci;
-				BCi.add(ci, -lRateC * sgd);
-				loss += regC * bci * bci;
-				
-				sgd = eui + regC * bcit;
-				BCit.add(ci, bin, -lRateC * sgd);
-				loss += regC * bcit * bcit;
-
-				// Update SVD model parameters
-				// ===========================
-				
-				for (int k = 0; k < numFactors; k++) {
-					double sum_yck = 0;
-					for (int j : Iu){
-						int cj = (int) itemMembershipsVector.get(j);
-						double yck = Y.get(cj, k);
-						sum_yck += yck;
-					}
-					
-					double ocuk = OCu.get(cu, k);
-					double ocukt = OCut.get(cu).get(k, t);
-					double acuk = ACu.get(cu, k);
-					double devcut = devc(cu, t);
-					double ocik = OCi.get(ci, k);
-					
-					// update oci
-					sgd = eui * (ocuk + acuk * devcut + ocukt + wi * sum_yck) + regCF * ocik;
-					OCi.add(ci, k, -lRateCF * sgd);
-					loss += regCF * ocik * ocik;
-					
-					// update ocu, acu and ocut
-					sgd = eui * ocik + regCF * ocuk;
-					OCu.add(cu, k, -lRateCF * sgd);
-					loss += regCF * ocuk * ocuk;
-					
-					sgd = eui * devcut * ocik + regCF * acuk;
-					ACu.add(cu, k, -lRateCF * sgd);
-					loss += regCF * acuk * acuk;
-					
-					sgd = eui * ocik + regCF * ocukt;
-					OCut.get(cu).put(k, t, ocukt - lRateCF * sgd);
-					loss += regCF * ocukt * ocukt;
-					
-					for (int j : Iu) {
-						int cj = (int) itemMembershipsVector.get(j);
-						double ycjk = Y.get(cj, k);
-						sgd = eui * wi * ocik + regCF * ycjk;
-						Y.add(cj, k, -lRateCF * sgd);
-						loss += regCF * ycjk * ycjk;
-					}
-				}
-				
-				// Update neighborhood model parameters
-				// ====================================
-				
-				// update w, c and phi
-				double sgd_phi = 0;
-				for (int j : Iu){
-					double ruj = trainMatrix.get(u, j);
-					double buj = bias(u, j, t);
-					int cj = (int) itemMembershipsVector.get(j);
-					double e = cdecay(cu, j, t);
-					
-					// update w
-					double wic = W.get(i, cj);
-					sgd = eui * wi * e * (ruj - buj) + regCN * wic;
-					W.add(i, cj, -lRateCN * sgd);
-					loss += regCN * wic * wic;
-					
-					// update c
-					double cic = C.get(i, cj);
-					sgd = eui * wi * e + regCN * cic;
-					C.add(i, cj, -lRateCN * sgd);
-					loss += regCN * cic * cic;
-					
-					// update phi
-					int tj = days((long) communityTimeMatrix.get(cu, j), minTrainTimestamp);
-					int diff = Math.abs(t - tj);
-					sgd_phi = eui * wi * (-1 * diff) * e * ((ruj - buj) * wic + cic);
-				}
-				double phi = Phi.get(cu);
-				sgd_phi += regCN * phi;
-				// do not let phi become negative
-				double delta_phi = (lRateMu * sgd_phi > phi) ? (phi / 2.0) : (lRateMu * sgd_phi);
-				Phi.add(cu, -delta_phi);
-				loss += regCN * phi * phi;
+		initDayParameters();
+		learnSGD(this::updateRating);
+	}
+
+	/**
+	 * Initializes the day-specific parameters bc,t and oc,t of the days of the training ratings in the order of the
+	 * training matrix, so that no parameters are inserted while learning, possibly on several threads
+	 */
+	private void initDayParameters() {
+		// {user community, day} pairs of the training ratings
+		int size = trainMatrix.getData().length;
+		int[] communities = new int[size], days = new int[size];
+		for (int u = 0; u < numUsers; u++) {
+			IndexView Ru = trainMatrix.rowView(u);
+			for (int p = 0; p < Ru.size(); p++) {
+				int pos = Ru.position(p);
+				communities[pos] = (int) userMembershipsVector.get(u);
+				days[pos] = ratingTimes.day(pos);
 			}
+		}
+		BCut = new DayParameters(numUserCommunities, 1, communities, days, size);
+		OCut = new DayParameters(BCut, numFactors);
 
-			loss *= 0.5;
+		boolean[] isInitialized = new boolean[BCut.size()];
+		for (int pos = 0; pos < size; pos++) {
+			int d = BCut.index(communities[pos], days[pos]);
+			if (isInitialized[d])
+				continue;
+			isInitialized[d] = true;
 
-			if (isConverged(iter))
-				break;
+			BCut.set(d, 0, initGaussian(initMean, initStd));
+			for (int k = 0; k < numFactors; k++)
+				OCut.set(d, k, initGaussian(initMean, initStd));
 		}
 	}
 
-	@Override
-	protected double predict(int u, int i) throws Exception {
+	/**
+	 * Updates the model parameters for one training rating
+	 * 
+	 * @return loss of the rating
+	 */
+	protected double updateRating(int u, int i, double rui, int pos) throws Exception {
+		double loss = 0;
+
 		int cu = (int) userMembershipsVector.get(u);
 		int ci = (int) itemMembershipsVector.get(i);
+		// day t
+		int t = ratingTimes.day(pos);
+		int bin = ratingTimes.bin(pos);
+		
+		// set non community-related variables
+		IndexView Iu = trainMatrix.rowView(u);
+		double wi = Iu.size() > 0 ? Math.pow(Iu.size(), -0.5) : 0;
+		
+		double pui = predict(u, i, t);
+		
+		double eui = pui - rui;
+		loss += eui * eui;
+		
+		// Update baseline parameters
+		// ==========================
+		
+		double sgd;
+		
+		// update bcu, bcut
+		int d = BCut.index(cu, t);
+		double bcu = BCu.get(cu);
+		double bcut = BCut.get(d, 0);
+		
+		sgd = eui + regC * bcu;
+		BCu.add(cu, -lRateC * sgd);
+		loss += regC * bcu * bcu;
+		
+		sgd = eui + regC * bcut;
+		BCut.set(d, 0, bcut - lRateC * sgd);
+		loss += regC * bcut * bcut;
+		
+		// update alpha_c
+		double alphac = AlphaC.get(cu);
+		double devct = devc(cu, t);
+		
+		sgd = eui * devct - regC * alphac;
+		AlphaC.add(cu, -lRateC * sgd);
+		loss += regC * alphac * alphac;
+		
+		// update bci, bcit
+		double bci = BCi.get(ci);
+		double bcit = BCit.get(ci, bin);
+		
+		sgd = eui + regC * bci;
+		BCi.add(ci, -lRateC * sgd);
+		loss += regC * bci * bci;
+		
+		sgd = eui + regC * bcit;
+		BCit.add(ci, bin, -lRateC * sgd);
+		loss += regC * bcit * bcit;
+
+		// Update SVD model parameters
+		// ===========================
+		
+		for (int k = 0; k < numFactors; k++) {
+			double sum_yck = 0;
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
+				int cj = (int) itemMembershipsVector.get(j);
+				double yck = Y.get(cj, k);
+				sum_yck += yck;
+			}
+			
+			double ocuk = OCu.get(cu, k);
+			double ocukt = OCut.get(d, k);
+			double acuk = ACu.get(cu, k);
+			double devcut = devc(cu, t);
+			double ocik = OCi.get(ci, k);
+			
+			// update oci
+			sgd = eui * (ocuk + acuk * devcut + ocukt + wi * sum_yck) + regCF * ocik;
+			OCi.add(ci, k, -lRateCF * sgd);
+			loss += regCF * ocik * ocik;
+			
+			// update ocu, acu and ocut
+			sgd = eui * ocik + regCF * ocuk;
+			OCu.add(cu, k, -lRateCF * sgd);
+			loss += regCF * ocuk * ocuk;
+			
+			sgd = eui * devcut * ocik + regCF * acuk;
+			ACu.add(cu, k, -lRateCF * sgd);
+			loss += regCF * acuk * acuk;
+			
+			sgd = eui * ocik + regCF * ocukt;
+			OCut.set(d, k, ocukt - lRateCF * sgd);
+			loss += regCF * ocukt * ocukt;
+			
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
+				int cj = (int) itemMembershipsVector.get(j);
+				double ycjk = Y.get(cj, k);
+				sgd = eui * wi * ocik + regCF * ycjk;
+				Y.add(cj, k, -lRateCF * sgd);
+				loss += regCF * ycjk * ycjk;
+			}
+		}
+		
+		// Update neighborhood model parameters
+		// ====================================
+		
+		// update w, c and phi
+		double sgd_phi = 0;
+		for (int p = 0; p < Iu.size(); p++) {
+			int j = Iu.get(p);
+			double ruj = Iu.value(p);
+			double buj = bias(u, j, t);
+			int cj = (int) itemMembershipsVector.get(j);
+			double e = cdecay(cu, j, t);
+			
+			// update w
+			double wic = W.get(i, cj);
+			sgd = eui * wi * e * (ruj - buj) + regCN * wic;
+			W.add(i, cj, -lRateCN * sgd);
+			loss += regCN * wic * wic;
+			
+			// update c
+			double cic = C.get(i, cj);
+			sgd = eui * wi * e + regCN * cic;
+			C.add(i, cj, -lRateCN * sgd);
+			loss += regCN * cic * cic;
+			
+			// update phi
+			int tj = days((long) communityTimeMatrix.get(cu, j), minTrainTimestamp);
+			int diff = Math.abs(t - tj);
+			sgd_phi = eui * wi * (-1 * diff) * e * ((ruj - buj) * wic + cic);
+		}
+		double phi = Phi.get(cu);
+		sgd_phi += regCN * phi;
+		// do not let phi become negative
+		double delta_phi = (lRateMu * sgd_phi > phi) ? (phi / 2.0) : (lRateMu * sgd_phi);
+		Phi.add(cu, -delta_phi);
+		loss += regCN * phi * phi;
+
+		return loss;
+	}
+
+	@Override
+	protected double predict(int u, int i) throws Exception {
 		// retrieve the test rating timestamp
 		long timestamp = (long) timeMatrix.get(u, i);
-		int t = days(timestamp, minTrainTimestamp);
+
+		return predict(u, i, days(timestamp, minTrainTimestamp));
+	}
+
+	/**
+	 * Return the prediction of a rating of day t
+	 */
+	private double predict(int u, int i, int t) throws Exception {
+		int cu = (int) userMembershipsVector.get(u);
+		int ci = (int) itemMembershipsVector.get(i);
 		
-		List<Integer> Iu = userItemsCache.get(u);
+		IndexView Iu = trainMatrix.rowView(u);
 		double wi = Iu.size() > 0 ? Math.pow(Iu.size(), -0.5) : 0;
 
 		// baseline / bias
 		double pred = bias(u, i, t);
 		
 		// qi * pu(t)
+		int d = OCut.index(cu, t);
 		for (int k = 0; k < numFactors; k++) {
 			double ocik = OCi.get(ci, k);
 			
 			double ocuk = OCu.get(cu, k);
 			double acuk = AlphaC.get(cu);
 			double devcut = devc(cu, t);
-			double ocukt = (OCut.containsKey(cu) && OCut.get(cu).contains(k, t)) ? OCut.get(cu).get(k, t) : 0;
+			double ocukt = d >= 0 ? OCut.get(d, k) : 0;
 			
 			double sum_yck = 0;
-			for (int j : Iu){
+			for (int p = 0; p < Iu.size(); p++) {
+				int j = Iu.get(p);
 				int cj = (int) itemMembershipsVector.get(j);
 				double yck = Y.get(cj, k);
 				sum_yck += yck;
@@ -554,7 +569,8 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 		
 		// e^(-beta_u * |t-tj|)(ruj - buj) * wij + cij): eq. (16)
 		// we use phi instead of beta since beta is already used for the time deviation in the baseline model
-		for (int j : Iu){
+		for (int p = 0; p < Iu.size(); p++) {
+			int j = Iu.get(p);
 			double ruj = rateMatrix.get(u, j);
 			double buj = bias(u, j, t);
 			int cj = (int) itemMembershipsVector.get(j);
@@ -633,7 +649,8 @@ public class TimeComNeighSVDFast extends IterativeRecommender {
 		
 		// bcu(t)
 		double bcu = BCu.get(cu);
-		double bcut = BCut.contains(cu, t) ? BCut.get(cu, t) : 0;
+		int d = BCut.index(cu, t);
+		double bcut = d >= 0 ? BCut.get(d, 0) : 0;
 		double alpha = AlphaC.get(cu);
 		double dev = devc(cu, t);
 		bias += bcu + alpha * dev + bcut;
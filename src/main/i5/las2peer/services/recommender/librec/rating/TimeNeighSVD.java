@@ -17,22 +17,18 @@
 //
 package i5.las2peer.services.recommender.librec.rating;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
 import i5.las2peer.services.recommender.librec.data.Configuration;
+import i5.las2peer.services.recommender.librec.data.DayParameters;
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
-import i5.las2peer.services.recommender.librec.data.MatrixEntry;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.TimeFeatures;
 import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.util.Logs;
-import i5.las2peer.services.recommender.librec.util.Randoms;
 import i5.las2peer.services.recommender.librec.util.Strings;
 
 /**
@@ -45,11 +41,14 @@ import i5.las2peer.services.recommender.librec.util.Strings;
 public class TimeNeighSVD extends IterativeRecommender {
 
 	// the span of days of rating timestamps
-	private static int numDays;
+	private int numDays;
 
 	// {user, mean date}
 	private DenseVector userMeanDate;
 
+	// day, bin and time deviation of each training rating
+	private TimeFeatures ratingTimes;
+
 	// time decay factor
 	private float beta;
 
@@ -62,8 +61,8 @@ public class TimeNeighSVD extends IterativeRecommender {
 	// {item, bin(t)} bias matrix
 	private DenseMatrix Bit;
 
-	// {user, day, bias} table
-	private Table<Integer, Integer, Double> But;
+	// {user, day, bias} day-specific user biases
+	private DayParameters But;
 
 	// user bias weight parameters
 	private DenseVector Alpha;
@@ -71,8 +70,8 @@ public class TimeNeighSVD extends IterativeRecommender {
 	// {user, feature} alpha matrix
 	private DenseMatrix Auk;
 
-	// {user, {feature, day, value} } map
-	private Map<Integer, Table<Integer, Integer, Double>> Pukt;
+	// {user, day, feature} day-specific user factors, with the same days as But
+	private DayParameters Pukt;
 
 	// {user, user scaling stable part}
 	private DenseVector Cu;
@@ -89,8 +88,8 @@ public class TimeNeighSVD extends IterativeRecommender {
 	// decay parameter phi (beta in Koren paper)
 	private DenseVector Phi;
 
-	public TimeNeighSVD(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public TimeNeighSVD(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 
 		setAlgoName("timeNeighSVD++");
 		
@@ -105,265 +104,253 @@ public class TimeNeighSVD extends IterativeRecommender {
 		numDays = days(maxTimestamp, minTimestamp) + 1;
 
 		userBias = new DenseVector(numUsers);
-		userBias.init(initMean, initStd);
+		userBias.init(initMean, initStd, initRandom);
 
 		itemBias = new DenseVector(numItems);
-		itemBias.init(initMean, initStd);
+		itemBias.init(initMean, initStd, initRandom);
 
 		Alpha = new DenseVector(numUsers);
-		Alpha.init(initMean, initStd);
+		Alpha.init(initMean, initStd, initRandom);
 
 		Bit = new DenseMatrix(numItems, numBins);
-		Bit.init(initMean, initStd);
+		Bit.init(initMean, initStd, initRandom);
 
 		Y = new DenseMatrix(numItems, numFactors);
-		Y.init(initMean, initStd);
+		Y.init(initMean, initStd, initRandom);
 
 		Auk = new DenseMatrix(numUsers, numFactors);
-		Auk.init(initMean, initStd);
-
-		But = HashBasedTable.create();
-		Pukt = new HashMap<>();
+		Auk.init(initMean, initStd, initRandom);
 
 		Cu = new DenseVector(numUsers);
-		Cu.init(initMean, initStd);
+		Cu.init(initMean, initStd, initRandom);
 
 		Cut = new DenseMatrix(numUsers, numDays);
-		Cut.init(initMean, initStd);
+		Cut.init(initMean, initStd, initRandom);
 		
 		W = new DenseMatrix(numItems, numItems);
-		W.init(initMean, initStd);
+		W.init(initMean, initStd, initRandom);
 		
 		C = new DenseMatrix(numItems, numItems);
-		C.init(initMean, initStd);
+		C.init(initMean, initStd, initRandom);
 		
 		Phi = new DenseVector(numUsers);
-		Phi.init(0.01);
+		Phi.init(0.01, initRandom);
 
-		// cache
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
+		// compute user's mean of rating timestamps, or the global average date for users without ratings
+		ratingTimes = new TimeFeatures(trainMatrix, timeMatrix, minTimestamp);
+		userMeanDate = ratingTimes.userMeanDays(ratingTimes.meanDay());
 
-		// global average date
-		double sum = 0;
-		int cnt = 0;
-		for (MatrixEntry me : trainMatrix) {
-			int u = me.row();
-			int i = me.column();
-			double rui = me.get();
+		ratingTimes.computeBins(this::bin);
+		ratingTimes.computeDevs(this::dev);
+	}
 
-			if (rui <= 0)
-				continue;
+	@Override
+	protected void buildModel() throws Exception {
+		initDayParameters();
+		Logs.info("{}{} learn model parameters ...", new Object[] { algoName, foldInfo });
+		learnSGD(this::updateRating);
+	}
 
-			sum += days((long) timeMatrix.get(u, i), minTimestamp);
-			cnt++;
-		}
-		double globalMeanDate = sum / cnt;
+	/**
+	 * Initializes the day-specific parameters bu,t and pu,t of the days of the training ratings in the order of the
+	 * training matrix, so that no parameters are inserted while learning, possibly on several threads
+	 */
+	private void initDayParameters() {
+		But = ratingTimes.userDayParameters(1);
+		Pukt = new DayParameters(But, numFactors);
 
-		// compute user's mean of rating timestamps
-		userMeanDate = new DenseVector(numUsers);
-		List<Integer> Ru = null;
+		boolean[] isInitialized = new boolean[But.size()];
 		for (int u = 0; u < numUsers; u++) {
-
-			sum = 0;
-			Ru = userItemsCache.get(u);
-			for (int i : Ru) {
-				sum += days((long) timeMatrix.get(u, i), minTimestamp);
+			IndexView Ru = trainMatrix.rowView(u);
+			for (int p = 0; p < Ru.size(); p++) {
+				int d = But.index(u, ratingTimes.day(Ru.position(p)));
+				if (isInitialized[d])
+					continue;
+				isInitialized[d] = true;
+
+				But.set(d, 0, initUniform());
+				for (int k = 0; k < numFactors; k++)
+					Pukt.set(d, k, initUniform());
 			}
-
-			double mean = (Ru.size() > 0) ? (sum + 0.0) / Ru.size() : globalMeanDate;
-			userMeanDate.set(u, mean);
 		}
 	}
 
-	@Override
-	protected void buildModel() throws Exception {
-		Logs.info("{}{} learn model parameters ...", new Object[] { algoName, foldInfo });
-		for (int iter = 1; iter <= numIters; iter++) {
-			loss = 0;
-			
-			for (MatrixEntry me : trainMatrix) {
-				int u = me.row();
-				int i = me.column();
-				double rui = me.get();
-
-				long timestamp = (long) timeMatrix.get(u, i);
-				// day t
-				int t = days(timestamp, minTimestamp);
-				int bin = bin(t);
-				double dev_ut = dev(u, t);
-
-				double bi = itemBias.get(i);
-				double bit = Bit.get(i, bin);
-				double bu = userBias.get(u);
-
-				double cu = Cu.get(u);
-				double cut = Cut.get(u, t);
-
-				// lazy initialization
-				if (!But.contains(u, t))
-					But.put(u, t, Randoms.random());
-				double but = But.get(u, t);
-
-				double au = Alpha.get(u); // alpha_u
-
-				double pui = globalMean + (bi + bit) * (cu + cut); // mu + bi(t)
-				pui += bu + au * dev_ut + but; // bu(t)
-
-				// qi * yj
-				List<Integer> Ru = userItemsCache.get(u);
-				double sum_y = 0;
-				for (int j : Ru) {
-					sum_y += DenseMatrix.rowMult(Y, j, Q, i);
-				}
-				double wi = Ru.size() > 0 ? Math.pow(Ru.size(), -0.5) : 0;
-				pui += sum_y * wi;
-
-				// qi * pu(t)
-				if (!Pukt.containsKey(u)) {
-					Table<Integer, Integer, Double> data = HashBasedTable.create();
-					Pukt.put(u, data);
-				}
-
-				Table<Integer, Integer, Double> Pkt = Pukt.get(u);
-				for (int k = 0; k < numFactors; k++) {
-					double qik = Q.get(i, k);
-
-					// lazy initialization
-					if (!Pkt.contains(k, t))
-						Pkt.put(k, t, Randoms.random());
-
-					double puk = P.get(u, k) + Auk.get(u, k) * dev_ut + Pkt.get(k, t);
-
-					pui += puk * qik;
-				}
-				
-				for (int j : Ru){
-					double e = decay(u, j, t);
-					double ruj = trainMatrix.get(u, j);
-					double buj = (itemBias.get(i) + Bit.get(i, bin)) * (Cu.get(u) + Cut.get(u, t));
-					buj += userBias.get(u) + Alpha.get(u) * dev_ut;
-					buj += But.contains(u, t) ? But.get(u, t) : 0;
-
-					pui += e * ((ruj - buj) * W.get(i, j) + C.get(i, j)) * wi;
-				}
-
-				double eui = pui - rui;
-				loss += eui * eui;
-
-				// update bi
-				double sgd = eui * (cu + cut) + regB * bi;
-				itemBias.add(i, -lRate * sgd);
-				loss += regB * bi * bi;
-
-				// update bi,bin(t)
-				sgd = eui * (cu + cut) + regB * bit;
-				Bit.add(i, bin, -lRate * sgd);
-				loss += regB * bit * bit;
-
-				// update cu
-				sgd = eui * (bi + bit) + regB * cu;
-				Cu.add(u, -lRate * sgd);
-				loss += regB * cu * cu;
-
-				// update cut
-				sgd = eui * (bi + bit) + regB * cut;
-				Cut.add(u, t, -lRate * sgd);
-				loss += regB * cut * cut;
-
-				// update bu
-				sgd = eui + regB * bu;
-				userBias.add(u, -lRate * sgd);
-				loss += regB * bu * bu;
-
-				// update au
-				sgd = eui * dev_ut + regB * au;
-				Alpha.add(u, -lRate * sgd);
-				loss += regB * au * au;
-
-				// update but
-				sgd = eui + regB * but;
-				double delta = but - lRate * sgd;
-				But.put(u, t, delta);
-				loss += regB * but * but;
-
-				for (int k = 0; k < numFactors; k++) {
-					double qik = Q.get(i, k);
-					double puk = P.get(u, k);
-					double auk = Auk.get(u, k);
-					double pkt = Pkt.get(k, t);
-
-					// update qik
-					double pukt = puk + auk * dev_ut + pkt;
-
-					double sum_yk = 0;
-					for (int j : Ru)
-						sum_yk += Y.get(j, k);
-
-					sgd = eui * (pukt + wi * sum_yk) + regI * qik;
-					Q.add(i, k, -lRate * sgd);
-					loss += regI * qik * qik;
-
-					// update puk
-					sgd = eui * qik + regU * puk;
-					P.add(u, k, -lRate * sgd);
-					loss += regU * puk * puk;
-
-					// update auk
-					sgd = eui * qik * dev_ut + regU * auk;
-					Auk.add(u, k, -lRate * sgd);
-					loss += regU * auk * auk;
-
-					// update pkt
-					sgd = eui * qik + regU * pkt;
-					delta = pkt - lRate * sgd;
-					Pkt.put(k, t, delta);
-					loss += regU * pkt * pkt;
-
-					// update yjk
-					for (int j : Ru) {
-						double yjk = Y.get(j, k);
-						sgd = eui * wi * qik + regI * yjk;
-						Y.add(j, k, -lRate * sgd);
-						loss += regI * yjk * yjk;
-					}
-				}
-				
-				// update w, c and mu
-				// e^(-beta_u * |t-tj|)(ruj - buj) * wij + cij): eq. (16)
-				// we use mu instead of beta since beta is already used for the time deviation in the baseline model
-				for (int j : Ru){
-					double e = decay(u, j, t);
-					double ruj = trainMatrix.get(u, j);
-					double buj = (itemBias.get(i) + Bit.get(i, bin)) * (Cu.get(u) + Cut.get(u, t));
-					buj += userBias.get(u) + Alpha.get(u) * dev_ut;
-					buj += But.contains(u, t) ? But.get(u, t) : 0;
-					
-					// update w
-					double wij = W.get(i, j);
-					sgd = eui * wi * e * (ruj - buj) + regN * wij;
-					W.add(i, j, -lRateN * sgd);
-					loss += regI * wij * wij;
-					
-					// update c
-					double cij = C.get(i, j);
-					sgd = eui * wi * e + regN * cij;
-					C.add(i, j, -lRateN * sgd);
-					loss += regI * cij * cij;
-					
-					// update phi
-					double phi = Phi.get(u);
-					int diff = Math.abs(t - days((long) timeMatrix.get(u, j), minTimestamp));
-					sgd = eui * wi * (-1 * diff) * e * ((ruj - buj) * wij + cij) + regN * phi;
-					Phi.add(u, -lRateMu * sgd);
-					loss += regI * phi * phi;
-				}
-			}
+	/**
+	 * Updates the model parameters for one training rating
+	 * 
+	 * @return loss of the rating
+	 */
+	protected double updateRating(int u, int i, double rui, int pos) throws Exception {
+		double loss = 0;
 
-			loss *= 0.5;
+		// day t
+		int t = ratingTimes.day(pos);
+		int bin = ratingTimes.bin(pos);
+		double dev_ut = ratingTimes.dev(pos);
+
+		double bi = itemBias.get(i);
+		double bit = Bit.get(i, bin);
+		double bu = userBias.get(u);
+
+		double cu = Cu.get(u);
+		double cut = Cut.get(u, t);
 
-			if (isConverged(iter))
-				break;
+		int d = But.index(u, t);
+		double but = But.get(d, 0);
+
+		double au = Alpha.get(u); // alpha_u
+
+		double pui = globalMean + (bi + bit) * (cu + cut); // mu + bi(t)
+		pui += bu + au * dev_ut + but; // bu(t)
+
+		// qi * yj
+		IndexView Ru = trainMatrix.rowView(u);
+		double sum_y = 0;
+		for (int p = 0; p < Ru.size(); p++) {
+			int j = Ru.get(p);
+			sum_y += DenseMatrix.rowMult(Y, j, Q, i);
 		}
+		double wi = Ru.size() > 0 ? Math.pow(Ru.size(), -0.5) : 0;
+		pui += sum_y * wi;
+
+		// qi * pu(t)
+		for (int k = 0; k < numFactors; k++) {
+			double qik = Q.get(i, k);
+
+			double puk = P.get(u, k) + Auk.get(u, k) * dev_ut + Pukt.get(d, k);
+
+			pui += puk * qik;
+		}
+		
+		for (int p = 0; p < Ru.size(); p++) {
+			int j = Ru.get(p);
+			int tj = ratingTimes.day(Ru.position(p));
+			double e = decay(u, tj, t);
+			double ruj = Ru.value(p);
+			double buj = (itemBias.get(i) + Bit.get(i, bin)) * (Cu.get(u) + Cut.get(u, t));
+			buj += userBias.get(u) + Alpha.get(u) * dev_ut;
+			buj += But.get(d, 0);
+
+			pui += e * ((ruj - buj) * W.get(i, j) + C.get(i, j)) * wi;
+		}
+
+		double eui = pui - rui;
+		loss += eui * eui;
+
+		// update bi
+		double sgd = eui * (cu + cut) + regB * bi;
+		itemBias.add(i, -lRate * sgd);
+		loss += regB * bi * bi;
+
+		// update bi,bin(t)
+		sgd = eui * (cu + cut) + regB * bit;
+		Bit.add(i, bin, -lRate * sgd);
+		loss += regB * bit * bit;
+
+		// update cu
+		sgd = eui * (bi + bit) + regB * cu;
+		Cu.add(u, -lRate * sgd);
+		loss += regB * cu * cu;
+
+		// update cut
+		sgd = eui * (bi + bit) + regB * cut;
+		Cut.add(u, t, -lRate * sgd);
+		loss += regB * cut * cut;
+
+		// update bu
+		sgd = eui + regB * bu;
+		userBias.add(u, -lRate * sgd);
+		loss += regB * bu * bu;
+
+		// update au
+		sgd = eui * dev_ut + regB * au;
+		Alpha.add(u, -lRate * sgd);
+		loss += regB * au * au;
+
+		// update but
+		sgd = eui + regB * but;
+		double delta = but - lRate * sgd;
+		But.set(d, 0, delta);
+		loss += regB * but * but;
+
+		for (int k = 0; k < numFactors; k++) {
+			double qik = Q.get(i, k);
+			double puk = P.get(u, k);
+			double auk = Auk.get(u, k);
+			double pkt = Pukt.get(d, k);
+
+			// update qik
+			double pukt = puk + auk * dev_ut + pkt;
+
+			double sum_yk = 0;
+			for (int p = 0; p < Ru.size(); p++) {
+				int j = Ru.get(p);
+				sum_yk += Y.get(j, k);
+			}
+
+			sgd = eui * (pukt + wi * sum_yk) + regI * qik;
+			Q.add(i, k, -lRate * sgd);
+			loss += regI * qik * qik;
+
+			// update puk
+			sgd = eui * qik + regU * puk;
+			P.add(u, k, -lRate * sgd);
+			loss += regU * puk * puk;
+
+			// update auk
+			sgd = eui * qik * dev_ut + regU * auk;
+			Auk.add(u, k, -lRate * sgd);
+			loss += regU * auk * auk;
+
+			// update pkt
+			sgd = eui * qik + regU * pkt;
+			delta = pkt - lRate * sgd;
+			Pukt.set(d, k, delta);
+			loss += regU * pkt * pkt;
+
+			// update yjk
+			for (int p = 0; p < Ru.size(); p++) {
+				int j = Ru.get(p);
+				double yjk = Y.get(j, k);
+				sgd = eui * wi * qik + regI * yjk;
+				Y.add(j, k, -lRate * sgd);
+				loss += regI * yjk * yjk;
+			}
+		}
+		
+		// update w, c and mu
+		// e^(-beta_u * |t-tj|)(ruj - buj) * wij + cij): eq. (16)
+		// we use mu instead of beta since beta is already used for the time deviation in the baseline model
+		for (int p = 0; p < Ru.size(); p++) {
+			int j = Ru.get(p);
+			int tj = ratingTimes.day(Ru.position(p));
+			double e = decay(u, tj, t);
+			double ruj = Ru.value(p);
+			double buj = (itemBias.get(i) + Bit.get(i, bin)) * (Cu.get(u) + Cut.get(u, t));
+			buj += userBias.get(u) + Alpha.get(u) * dev_ut;
+			buj += But.get(d, 0);
+			
+			// update w
+			double wij = W.get(i, j);
+			sgd = eui * wi * e * (ruj - buj) + regN * wij;
+			W.add(i, j, -lRateN * sgd);
+			loss += regI * wij * wij;
+			
+			// update c
+			double cij = C.get(i, j);
+			sgd = eui * wi * e + regN * cij;
+			C.add(i, j, -lRateN * sgd);
+			loss += regI * cij * cij;
+			
+			// update phi
+			double phi = Phi.get(u);
+			int diff = Math.abs(t - tj);
+			sgd = eui * wi * (-1 * diff) * e * ((ruj - buj) * wij + cij) + regN * phi;
+			Phi.add(u, -lRateMu * sgd);
+			loss += regI * phi * phi;
+		}
+
+		return loss;
 	}
 
 	@Override
@@ -399,14 +386,17 @@ public class TimeNeighSVD extends IterativeRecommender {
 		// bu(t): eq. (9)
 		double bu = userBias.get(u);
 		double au = Alpha.get(u);
-		double but = But.contains(u, t) ? But.get(u, t) : 0;
+		int d = But.index(u, t);
+		double but = d >= 0 ? But.get(d, 0) : 0;
 		pred += bu + au * dev_ut + but;
 
 		// qi * yj
-		List<Integer> Ru = userItemsCache.get(u);
+		IndexView Ru = trainMatrix.rowView(u);
 		double sum_y = 0;
-		for (int j : Ru)
+		for (int p = 0; p < Ru.size(); p++) {
+			int j = Ru.get(p);
 			sum_y += DenseMatrix.rowMult(Y, j, Q, i);
+		}
 
 		double wi = Ru.size() > 0 ? Math.pow(Ru.size(), -0.5) : 0;
 		pred += sum_y * wi;
@@ -416,26 +406,22 @@ public class TimeNeighSVD extends IterativeRecommender {
 			double qik = Q.get(i, k);
 			// eq. (13)
 			double puk = P.get(u, k) + Auk.get(u, k) * dev_ut;
-
-			if (Pukt.containsKey(u)) {
-				Table<Integer, Integer, Double> pkt = Pukt.get(u);
-				if (pkt != null) {
-					// eq. (13)
-					puk += (pkt.contains(k, t) ? pkt.get(k, t) : 0);
-				}
-			}
+			if (d >= 0)
+				puk += Pukt.get(d, k);
 
 			pred += puk * qik;
 		}
 		
 		// e^(-beta_u * |t-tj|)(ruj - buj) * wij + cij): eq. (16)
 		// we use phi instead of beta since beta is already used for the time deviation in the baseline model
-		for (int j : Ru){
-			double e = decay(u, j, t);
-			double ruj = trainMatrix.get(u, j);
+		for (int p = 0; p < Ru.size(); p++) {
+			int j = Ru.get(p);
+			int tj = ratingTimes.day(Ru.position(p));
+			double e = decay(u, tj, t);
+			double ruj = Ru.value(p);
 			double buj = (itemBias.get(i) + Bit.get(i, bin)) * (Cu.get(u) + Cut.get(u, t));
 			buj += userBias.get(u) + Alpha.get(u) * dev_ut;
-			buj += But.contains(u, t) ? But.get(u, t) : 0;
+			buj += but;
 
 			pred += e * ((ruj - buj) * W.get(i, j) + C.get(i, j)) * wi;
 		}
@@ -470,13 +456,11 @@ public class TimeNeighSVD extends IterativeRecommender {
 	 * i.e. e^(-beta_u * |t-tj|) from eq. (16)
 	 * 
 	 * @param u user
-	 * @param j item
+	 * @param tj time (day) of the rating of user u for item j
 	 * @param t time (day)
 	 * @return rating decay
 	 */
-	protected double decay(int u, int j, int t) {
-		int tj = days((long) timeMatrix.get(u, j), minTimestamp);
-
+	protected double decay(int u, int tj, int t) {
 		// date difference in days
 		int diff = Math.abs(t - tj);
 
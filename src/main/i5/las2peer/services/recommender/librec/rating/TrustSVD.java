@@ -18,12 +18,12 @@
 
 package i5.las2peer.services.recommender.librec.rating;
 
-import java.util.List;
-
 import i5.las2peer.services.recommender.librec.data.DenseMatrix;
 import i5.las2peer.services.recommender.librec.data.DenseVector;
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.MatrixEntry;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.intf.RecommenderContext;
 import i5.las2peer.services.recommender.librec.intf.SocialRecommender;
 
 /**
@@ -38,8 +38,8 @@ public class TrustSVD extends SocialRecommender {
 	private DenseMatrix W, Y;
 	private DenseVector wlr_j, wlr_tc, wlr_tr;
 
-	public TrustSVD(SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
-		super(trainMatrix, testMatrix, fold);
+	public TrustSVD(RecommenderContext context, SparseMatrix trainMatrix, SparseMatrix testMatrix, int fold) {
+		super(context, trainMatrix, testMatrix, fold);
 	}
 
 	@Override
@@ -68,9 +68,6 @@ public class TrustSVD extends SocialRecommender {
 		wlr_tr = new DenseVector(numUsers);
 		wlr_j = new DenseVector(numItems);
 
-		userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-		userFriendsCache = socialMatrix.rowColumnsCache(cacheSpec);
-
 		for (int u = 0; u < numUsers; u++) {
 			int count = socialMatrix.columnSize(u);
 			wlr_tc.set(u, count > 0 ? 1.0 / Math.sqrt(count) : 1.0);
@@ -104,21 +101,25 @@ public class TrustSVD extends SocialRecommender {
 				double pred = globalMean + bu + bj + DenseMatrix.rowMult(P, u, Q, j);
 
 				// Y
-				List<Integer> nu = userItemsCache.get(u);
+				IndexView nu = trainMatrix.rowView(u);
 				if (nu.size() > 0) {
 					double sum = 0;
-					for (int i : nu)
+					for (int p = 0; p < nu.size(); p++) {
+						int i = nu.get(p);
 						sum += DenseMatrix.rowMult(Y, i, Q, j);
+					}
 
 					pred += sum / Math.sqrt(nu.size());
 				}
 
 				// W
-				List<Integer> tu = userFriendsCache.get(u);
+				IndexView tu = socialMatrix.rowView(u);
 				if (tu.size() > 0) {
 					double sum = 0.0;
-					for (int v : tu)
+					for (int p = 0; p < tu.size(); p++) {
+						int v = tu.get(p);
 						sum += DenseMatrix.rowMult(W, v, Q, j);
+					}
 
 					pred += sum / Math.sqrt(tu.size());
 				}
@@ -146,8 +147,10 @@ public class TrustSVD extends SocialRecommender {
 				double[] sum_ys = new double[numFactors]; 
 				for (int f = 0; f < numFactors; f++) {
 					double sum = 0;
-					for (int i : nu)
+					for (int p = 0; p < nu.size(); p++) {
+						int i = nu.get(p);
 						sum += Y.get(i, f);
+					}
 
 					sum_ys[f] = w_nu > 0 ? sum / w_nu : sum;
 				}
@@ -155,8 +158,10 @@ public class TrustSVD extends SocialRecommender {
 				double[] sum_ts = new double[numFactors];
 				for (int f = 0; f < numFactors; f++) {
 					double sum = 0;
-					for (int v : tu)
+					for (int p = 0; p < tu.size(); p++) {
+						int v = tu.get(p);
 						sum += W.get(v, f);
+					}
 
 					sum_ts[f] = w_tu > 0 ? sum / w_tu : sum;
 				}
@@ -173,7 +178,8 @@ public class TrustSVD extends SocialRecommender {
 
 					loss += regU * reg_u * puf * puf + regI * reg_j * qjf * qjf;
 
-					for (int i : nu) {
+					for (int p = 0; p < nu.size(); p++) {
+						int i = nu.get(p);
 						double yif = Y.get(i, f);
 
 						double reg_yi = wlr_j.get(i);
@@ -184,7 +190,8 @@ public class TrustSVD extends SocialRecommender {
 					}
 
 					// update wvf
-					for (int v : tu) {
+					for (int p = 0; p < tu.size(); p++) {
+						int v = tu.get(p);
 						double wvf = W.get(v, f);
 
 						double reg_v = wlr_tc.get(v);
@@ -238,21 +245,25 @@ public class TrustSVD extends SocialRecommender {
 		double pred = globalMean + userBias.get(u) + itemBias.get(j) + DenseMatrix.rowMult(P, u, Q, j);
 
 		// Y
-		List<Integer> nu = userItemsCache.get(u);
+		IndexView nu = trainMatrix.rowView(u);
 		if (nu.size() > 0) {
 			double sum = 0;
-			for (int i : nu)
+			for (int p = 0; p < nu.size(); p++) {
+				int i = nu.get(p);
 				sum += DenseMatrix.rowMult(Y, i, Q, j);
+			}
 
 			pred += sum / Math.sqrt(nu.size());
 		}
 
 		// W
-		List<Integer> tu = userFriendsCache.get(u);
+		IndexView tu = socialMatrix.rowView(u);
 		if (tu.size() > 0) {
 			double sum = 0.0;
-			for (int v : tu)
+			for (int p = 0; p < tu.size(); p++) {
+				int v = tu.get(p);
 				sum += DenseMatrix.rowMult(W, v, Q, j);
+			}
 
 			pred += sum / Math.sqrt(tu.size());
 		}
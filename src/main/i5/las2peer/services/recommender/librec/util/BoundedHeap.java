@@ -0,0 +1,167 @@
+package i5.las2peer.services.recommender.librec.util;
+
+/**
+ * Bounded min-heap on primitive (id, score) pairs that keeps the k entries with the largest scores.
+ *
+ * Ties are broken by the id: among entries with equal scores, the ones with smaller ids are kept and
+ * ranked first. A heap is meant to be reused, e.g. once per user, by calling {@link #clear()}.
+ */
+public class BoundedHeap {
+
+	private final int capacity;
+	private final int[] ids;
+	private final double[] scores;
+	private int size;
+
+	/**
+	 * @param capacity
+	 *            maximum number of entries kept
+	 */
+	public BoundedHeap(int capacity) {
+		this.capacity = capacity;
+		this.ids = new int[capacity];
+		this.scores = new double[capacity];
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return number of entries currently kept
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return maximum number of entries kept
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Offers an entry to the heap.
+	 *
+	 * @param id
+	 *            entry id
+	 * @param score
+	 *            entry score
+	 * @return true if the entry is kept
+	 */
+	public boolean offer(int id, double score) {
+		if (capacity == 0 || Double.isNaN(score))
+			return false;
+
+		if (size < capacity) {
+			int pos = size++;
+			// sift up
+			while (pos > 0) {
+				int parent = (pos - 1) >>> 1;
+				if (!less(score, id, scores[parent], ids[parent]))
+					break;
+				ids[pos] = ids[parent];
+				scores[pos] = scores[parent];
+				pos = parent;
+			}
+			ids[pos] = id;
+			scores[pos] = score;
+			return true;
+		}
+
+		if (!less(scores[0], ids[0], score, id))
+			return false;
+
+		siftDown(id, score, size);
+		return true;
+	}
+
+	/**
+	 * Writes the kept entries in descending order of score to the given arrays and clears the heap.
+	 *
+	 * @param outIds
+	 *            destination of the ids
+	 * @param outScores
+	 *            destination of the scores
+	 * @param offset
+	 *            position of the first entry in the destination arrays
+	 * @return number of entries written
+	 */
+	public int drain(int[] outIds, float[] outScores, int offset) {
+		int n = sort();
+		for (int i = 0; i < n; i++) {
+			outIds[offset + i] = ids[i];
+			outScores[offset + i] = (float) scores[i];
+		}
+		return n;
+	}
+
+	/**
+	 * Writes the kept entries in descending order of score to the given arrays and clears the heap.
+	 *
+	 * @param outIds
+	 *            destination of the ids
+	 * @param outScores
+	 *            destination of the scores
+	 * @param offset
+	 *            position of the first entry in the destination arrays
+	 * @return number of entries written
+	 */
+	public int drain(int[] outIds, double[] outScores, int offset) {
+		int n = sort();
+		System.arraycopy(ids, 0, outIds, offset, n);
+		System.arraycopy(scores, 0, outScores, offset, n);
+		return n;
+	}
+
+	/**
+	 * Sorts the kept entries in descending order of score and clears the heap.
+	 * @return number of sorted entries
+	 */
+	private int sort() {
+		int n = size;
+		// repeatedly move the minimum to the end of the heap array
+		for (int end = n - 1; end > 0; end--) {
+			int minId = ids[0];
+			double minScore = scores[0];
+			siftDown(ids[end], scores[end], end);
+			ids[end] = minId;
+			scores[end] = minScore;
+		}
+		size = 0;
+		return n;
+	}
+
+	/**
+	 * Replaces the root by the given entry and restores the heap property on the first n positions.
+	 */
+	private void siftDown(int id, double score, int n) {
+		int pos = 0;
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= n)
+				break;
+			if (child + 1 < n && less(scores[child + 1], ids[child + 1], scores[child], ids[child]))
+				child++;
+			if (!less(scores[child], ids[child], score, id))
+				break;
+			ids[pos] = ids[child];
+			scores[pos] = scores[child];
+			pos = child;
+		}
+		ids[pos] = id;
+		scores[pos] = score;
+	}
+
+	/**
+	 * @return true if entry a ranks below entry b
+	 */
+	private static boolean less(double scoreA, int idA, double scoreB, int idB) {
+		return scoreA < scoreB || (scoreA == scoreB && idA > idB);
+	}
+
+}
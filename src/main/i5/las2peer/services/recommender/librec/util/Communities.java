@@ -1,27 +1,20 @@
 package i5.las2peer.services.recommender.librec.util;
 
 import java.util.HashSet;
-import java.util.List;
 
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
+import i5.las2peer.services.recommender.librec.data.IndexView;
 import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.SparseMatrixBuilder;
 import i5.las2peer.services.recommender.librec.data.SparseVector;
 import i5.las2peer.services.recommender.librec.data.VectorEntry;
 
 public class Communities {
-	private static String cacheSpec = "maximumSize=200,expireAfterAccess=2m";
-
 	public static SparseMatrix limitOverlappingCommunities(SparseMatrix membershipsMatrix, int k){
 		int numNodes = membershipsMatrix.numRows();
 		int numCommunities = membershipsMatrix.numColumns();
 		
-		Table<Integer, Integer, Double> membershipsTable = HashBasedTable.create();
-		Multimap<Integer, Integer> membershipsColMap = HashMultimap.create();
+		SparseMatrixBuilder memberships = new SparseMatrixBuilder(numNodes * k);
 		
 		for (int node = 0; node < numNodes; node++){
 			// get vector containing the node's community membership levels (vector size: numCommunities)
@@ -57,19 +50,18 @@ public class Communities {
 				}
 			}
 			
-			// fill the memberships table with only the node's top n communities
+			// fill the memberships with only the node's top n communities
 			for (int i = 0; i < k; i++){
 				if (topNCommunities[i] >= 0){
 					int community = topNCommunities[i];
 					double level = membershipsMatrix.get(node, community);
-					membershipsTable.put(node, community, level);
-					membershipsColMap.put(community, node);
+					memberships.add(node, community, level);
 				}
 			}
 		}
 		
-		// build new memberships matrix from the memberships table
-		return new SparseMatrix(numNodes, numCommunities, membershipsTable, membershipsColMap);
+		// build new memberships matrix from the memberships
+		return memberships.build(numNodes, numCommunities);
 	}
 	
 	public static SparseMatrix userCommunitiesRatings(SparseMatrix userMemberships, SparseMatrix trainMatrix, int k) throws Exception {
@@ -77,11 +69,8 @@ public class Communities {
 		int numItems = trainMatrix.numColumns();
 		int numUserCommunities = userMemberships.numColumns();
 		
-		LoadingCache<Integer, List<Integer>> userItemsCache = trainMatrix.rowColumnsCache(cacheSpec);
-		LoadingCache<Integer, List<Integer>> userCommunitiesCache = userMemberships.rowColumnsCache(cacheSpec);
-		
 		// Get the average community ratings for each item
-		Table<Integer, Integer, Double> communityRatingsTable = HashBasedTable.create();
+		SparseMatrixBuilder communityRatings = new SparseMatrixBuilder();
 		for (int community = 0; community < numUserCommunities; community++){
 			// each user's membership level for the community
 			SparseVector communityUsersVector = userMemberships.column(community);
@@ -89,9 +78,9 @@ public class Communities {
 			HashSet<Integer> items = new HashSet<Integer> ();
 			for (VectorEntry e : communityUsersVector){
 				int user = e.index();
-				List<Integer> userItems = userItemsCache.get(user);
-				for (int item : userItems)
-					items.add(item);
+				IndexView userItems = trainMatrix.rowView(user);
+				for (int p = 0; p < userItems.size(); p++)
+					items.add(userItems.get(p));
 			}
 			for (int item : items){
 				// Sum of ratings given by users of the community to item, weighted by the users community membership levels
@@ -111,19 +100,19 @@ public class Communities {
 				}
 				if (membershipsSum > 0){
 					double communityRating = ratingsSum / membershipsSum;
-					communityRatingsTable.put(community, item, communityRating);
+					communityRatings.add(community, item, communityRating);
 				}
 			}
 		}
-		SparseMatrix communityRatingsMatrix = new SparseMatrix(numUserCommunities, numItems, communityRatingsTable);
+		SparseMatrix communityRatingsMatrix = communityRatings.build(numUserCommunities, numItems);
 		
 		// Get each user's community ratings, i.e. the weighted average rating of the user's communities for each item
 		// The resulting matrix has dimensions numUsers x numItems
 		
-	    Table<Integer, Integer, Double> userCommunitiesRatingsTable = HashBasedTable.create();
+		SparseMatrixBuilder userCommunitiesRatings = new SparseMatrixBuilder(numUsers * k);
 		
 		for (int user = 0; user < numUsers; user++){
-			List<Integer> userCommunities = userCommunitiesCache.get(user);
+			IndexView userCommunities = userMemberships.rowView(user);
 			int[] topKItems = new int[k];
 			double[] topKItemsMemberships = new double[k];
 			double[] topKItemsRatings = new double[k];
@@ -137,10 +126,11 @@ public class Communities {
 			for (int item = 0; item < numItems; item++){
 				double ratingsSum = 0;
 				double membershipsSum = 0;
-				for (int community : userCommunities){
+				for (int p = 0; p < userCommunities.size(); p++){
+					int community = userCommunities.get(p);
 					double communityRating = communityRatingsMatrix.get(community, item);
 					if (communityRating > 0){
-						double userMembership = userMemberships.get(user, community);
+						double userMembership = userCommunities.value(p);
 						ratingsSum += communityRating * userMembership;
 						membershipsSum += userMembership;
 					}
@@ -159,16 +149,16 @@ public class Communities {
 					}
 				}
 			}
-			// fill top-k items into table
+			// fill top-k items into the user's community ratings
 			for (int i = 0; i < k; i++){
 				if (topKItems[i] >= 0){
 					int item = topKItems[i];
 					double userCommunitiesRating = topKItemsRatings[i] / topKItemsMemberships[i];
-					userCommunitiesRatingsTable.put(user, item, userCommunitiesRating);
+					userCommunitiesRatings.add(user, item, userCommunitiesRating);
 				}
 			}
 		}
 		
-		return new SparseMatrix(numUsers, numItems, userCommunitiesRatingsTable);
+		return userCommunitiesRatings.build(numUsers, numItems);
 	}
 }
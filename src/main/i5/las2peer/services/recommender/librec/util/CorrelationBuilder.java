@@ -0,0 +1,322 @@
+package i5.las2peer.services.recommender.librec.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import i5.las2peer.services.recommender.librec.data.SparseMatrix;
+import i5.las2peer.services.recommender.librec.data.SymmMatrix;
+
+/**
+ * Builds the user-user or item-item correlation matrix of a rating matrix in parallel.
+ *
+ * The rows (users or items) are divided into small ranges that are processed on a fork/join pool. Within a range,
+ * the pairs are computed tile by tile, so that the vectors of one tile of the other users/items stay in the cache
+ * while they are compared with all vectors of the range. Alternatively, only pairs with at least one co-rating are
+ * computed, found by walking the inverted index, i.e. the transposed structure of the rating matrix.
+ *
+ * By default, all correlations are kept, and the resulting matrix is the same as computed pair by pair. Optionally,
+ * only the k largest correlations of each row are kept. A pair is kept if it is among the k nearest neighbors of
+ * either of its users/items, so that each row contains at least its k nearest neighbors.
+ */
+public class CorrelationBuilder {
+
+	/**
+	 * Correlation between two users/items
+	 */
+	public interface Correlation {
+		/**
+		 * @param kernel kernel computing similarities, used by the calling thread only
+		 * @param i user/item i
+		 * @param j user/item j
+		 * @return correlation between i and j, NaN if it is not computable
+		 */
+		double correlation(SimilarityKernel kernel, int i, int j);
+	}
+
+	// number of rows of a task that is not split any further
+	private static final int ROWS_PER_TASK = 16;
+	// number of users/items of a tile
+	private static final int TILE_SIZE = 512;
+
+	private final int count;
+	// pointers, indices and values of the vectors, and the inverted index
+	private final int[] ptr, idx, invPtr, invIdx;
+	private final double[] val;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private int neighbors = 0;
+	private boolean isIndexed = true;
+
+	/**
+	 * @param matrix rating matrix
+	 * @param isUser whether to build the user-user or item-item correlations
+	 * @param count number of users/items
+	 */
+	public CorrelationBuilder(SparseMatrix matrix, boolean isUser, int count) {
+		this.count = count;
+		ptr = isUser ? matrix.getRowPointers() : matrix.getColumnPointers();
+		idx = isUser ? matrix.getColumnIndices() : matrix.getRowIndices();
+		val = isUser ? matrix.getData() : matrix.getColumnData();
+		invPtr = isUser ? matrix.getColumnPointers() : matrix.getRowPointers();
+		invIdx = isUser ? matrix.getRowIndices() : matrix.getColumnIndices();
+	}
+
+	/**
+	 * @param numThreads number of threads
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * @param neighbors number of correlations kept per row, 0 to keep all correlations
+	 */
+	public void setNeighbors(int neighbors) {
+		this.neighbors = Math.max(0, neighbors);
+	}
+
+	/**
+	 * @param isIndexed whether to compute only pairs with co-ratings; pairs without co-ratings have no correlation
+	 *            or a correlation of 0, which is not stored by a {@link SymmMatrix}
+	 */
+	public void setIndexed(boolean isIndexed) {
+		this.isIndexed = isIndexed;
+	}
+
+	/**
+	 * Builds the correlation matrix. Correlations that are NaN or 0 are not stored.
+	 *
+	 * @param kernels creates the similarity kernel of each thread
+	 * @param correlation computes the correlation of a pair
+	 * @return a symmetric matrix with the correlations
+	 */
+	public SymmMatrix build(Supplier<SimilarityKernel> kernels, Correlation correlation) {
+		int[][] nbrs = new int[count][];
+		double[][] sims = new double[count][];
+
+		ThreadLocal<Worker> workers = ThreadLocal.withInitial(() -> new Worker(kernels.get()));
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			pool.invoke(new RowTask(0, count, workers, correlation, nbrs, sims));
+		} finally {
+			pool.shutdown();
+		}
+
+		SymmMatrix corrs = new SymmMatrix(count);
+		for (int i = 0; i < count; i++) {
+			for (int k = 0; k < nbrs[i].length; k++)
+				corrs.set(i, nbrs[i][k], sims[i][k]);
+			// release the correlations of the row once they are stored
+			nbrs[i] = null;
+			sims[i] = null;
+		}
+		corrs.trimToSize();
+		return corrs;
+	}
+
+	/**
+	 * @return true if vector i has at least one non-zero rating
+	 */
+	private boolean hasRatings(int i) {
+		if (i >= ptr.length - 1)
+			return false;
+		for (int k = ptr[i]; k < ptr[i + 1]; k++) {
+			if (val[k] != 0.0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Buffers of one thread
+	 */
+	private class Worker {
+		final SimilarityKernel kernel;
+		// correlations of the current row
+		int[] rowNbrs = new int[16];
+		double[] rowSims = new double[16];
+		int rowSize;
+		// candidates of the current row, marked by the row they were found for
+		final int[] marks;
+		int[] candidates;
+		final BoundedHeap heap;
+
+		Worker(SimilarityKernel kernel) {
+			this.kernel = kernel;
+			marks = isIndexed ? new int[count] : null;
+			if (marks != null)
+				Arrays.fill(marks, -1);
+			candidates = isIndexed ? new int[16] : null;
+			heap = neighbors > 0 ? new BoundedHeap(neighbors) : null;
+		}
+
+		void add(int j, double sim) {
+			if (Double.isNaN(sim) || sim == 0)
+				return;
+			if (heap != null) {
+				heap.offer(j, sim);
+				return;
+			}
+			if (rowSize == rowNbrs.length) {
+				rowNbrs = Arrays.copyOf(rowNbrs, rowSize * 2);
+				rowSims = Arrays.copyOf(rowSims, rowSize * 2);
+			}
+			rowNbrs[rowSize] = j;
+			rowSims[rowSize] = sim;
+			rowSize++;
+		}
+
+		void finishRow(int i, int[][] nbrs, double[][] sims) {
+			if (heap != null) {
+				if (rowNbrs.length < heap.size()) {
+					rowNbrs = new int[heap.capacity()];
+					rowSims = new double[heap.capacity()];
+				}
+				rowSize = heap.drain(rowNbrs, rowSims, 0);
+			}
+			nbrs[i] = Arrays.copyOf(rowNbrs, rowSize);
+			sims[i] = Arrays.copyOf(rowSims, rowSize);
+			rowSize = 0;
+		}
+
+		/**
+		 * Collects the users/items sharing at least one rating with vector i
+		 * @return number of candidates, sorted in ascending order
+		 */
+		int findCandidates(int i, int from) {
+			int n = 0;
+			for (int k = ptr[i]; k < ptr[i + 1]; k++) {
+				int c = idx[k];
+				if (c >= invPtr.length - 1)
+					continue;
+				for (int l = invPtr[c]; l < invPtr[c + 1]; l++) {
+					int j = invIdx[l];
+					if (j < from || j == i || j >= count || marks[j] == i)
+						continue;
+					marks[j] = i;
+					if (n == candidates.length)
+						candidates = Arrays.copyOf(candidates, n * 2);
+					candidates[n++] = j;
+				}
+			}
+			Arrays.sort(candidates, 0, n);
+			return n;
+		}
+	}
+
+	/**
+	 * Computes the correlations of a range of rows
+	 */
+	private class RowTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int lo, hi;
+		private final ThreadLocal<Worker> workers;
+		private final Correlation correlation;
+		private final int[][] nbrs;
+		private final double[][] sims;
+
+		RowTask(int lo, int hi, ThreadLocal<Worker> workers, Correlation correlation, int[][] nbrs, double[][] sims) {
+			this.lo = lo;
+			this.hi = hi;
+			this.workers = workers;
+			this.correlation = correlation;
+			this.nbrs = nbrs;
+			this.sims = sims;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > ROWS_PER_TASK) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new RowTask(lo, mid, workers, correlation, nbrs, sims),
+						new RowTask(mid, hi, workers, correlation, nbrs, sims));
+				return;
+			}
+
+			Worker worker = workers.get();
+			if (isIndexed)
+				computeIndexed(worker);
+			else
+				computeTiled(worker);
+		}
+
+		private void computeIndexed(Worker worker) {
+			for (int i = lo; i < hi; i++) {
+				if (hasRatings(i)) {
+					// without pruning, each pair is computed once for the smaller user/item
+					int n = worker.findCandidates(i, neighbors > 0 ? 0 : i + 1);
+					for (int c = 0; c < n; c++) {
+						int j = worker.candidates[c];
+						worker.add(j, correlation.correlation(worker.kernel, i, j));
+					}
+				}
+				worker.finishRow(i, nbrs, sims);
+			}
+		}
+
+		private void computeTiled(Worker worker) {
+			int start = neighbors > 0 ? 0 : lo + 1;
+			boolean[] active = new boolean[hi - lo];
+			for (int i = lo; i < hi; i++)
+				active[i - lo] = hasRatings(i);
+
+			// correlations of each row of the range, kept until all tiles have been processed
+			int[][] rowNbrs = new int[hi - lo][];
+			double[][] rowSims = new double[hi - lo][];
+			int[] rowSizes = new int[hi - lo];
+			boolean isPruned = worker.heap != null;
+			BoundedHeap[] heaps = isPruned ? new BoundedHeap[hi - lo] : null;
+
+			for (int tile = start; tile < count; tile += TILE_SIZE) {
+				int tileEnd = Math.min(count, tile + TILE_SIZE);
+				for (int i = lo; i < hi; i++) {
+					if (!active[i - lo])
+						continue;
+					int from = neighbors > 0 ? tile : Math.max(tile, i + 1);
+					for (int j = from; j < tileEnd; j++) {
+						if (j == i)
+							continue;
+						double sim = correlation.correlation(worker.kernel, i, j);
+						if (Double.isNaN(sim) || sim == 0)
+							continue;
+						int r = i - lo;
+						if (isPruned) {
+							if (heaps[r] == null)
+								heaps[r] = new BoundedHeap(neighbors);
+							heaps[r].offer(j, sim);
+						} else {
+							if (rowNbrs[r] == null) {
+								rowNbrs[r] = new int[16];
+								rowSims[r] = new double[16];
+							} else if (rowSizes[r] == rowNbrs[r].length) {
+								rowNbrs[r] = Arrays.copyOf(rowNbrs[r], rowSizes[r] * 2);
+								rowSims[r] = Arrays.copyOf(rowSims[r], rowSizes[r] * 2);
+							}
+							rowNbrs[r][rowSizes[r]] = j;
+							rowSims[r][rowSizes[r]] = sim;
+							rowSizes[r]++;
+						}
+					}
+				}
+			}
+
+			for (int i = lo; i < hi; i++) {
+				int r = i - lo;
+				if (isPruned && heaps[r] != null) {
+					int n = heaps[r].size();
+					nbrs[i] = new int[n];
+					sims[i] = new double[n];
+					heaps[r].drain(nbrs[i], sims[i], 0);
+				} else {
+					nbrs[i] = rowNbrs[r] != null ? Arrays.copyOf(rowNbrs[r], rowSizes[r]) : new int[0];
+					sims[i] = rowSims[r] != null ? Arrays.copyOf(rowSims[r], rowSizes[r]) : new double[0];
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package i5.las2peer.services.recommender.librec.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import i5.las2peer.services.recommender.librec.data.DenseMatrix;
+
+/**
+ * Helpers for computations split into tasks on an executor, e.g. the alternating least squares steps of WRMF and
+ * eALS, which solve the rows of the factor matrices in place and sum partial Gram matrices of fixed ranges of rows.
+ */
+public class Parallel {
+
+	// rows summed by one task of gram(), fixed so that the result does not depend on the number of threads
+	private static final int ROWS_PER_TASK = 256;
+
+	/**
+	 * Computes the Gram matrix Mt W M of the rows of a matrix, summing partial matrices of fixed ranges of rows in
+	 * parallel
+	 *
+	 * @param m
+	 *            rows of a matrix with k columns
+	 * @param weights
+	 *            weight of each row, null for weights of 1
+	 * @param k
+	 *            number of columns
+	 * @param executor
+	 *            executor running the partial sums
+	 * @return the matrix Mt W M as a dense k x k array
+	 * @throws Exception
+	 *             if a task fails or the thread is interrupted
+	 */
+	public static double[] gram(double[][] m, double[] weights, int k, ExecutorService executor) throws Exception {
+		List<Future<double[]>> tasks = new ArrayList<>();
+		for (int start = 0; start < m.length; start += ROWS_PER_TASK) {
+			final int from = start;
+			final int to = Math.min(m.length, start + ROWS_PER_TASK);
+			tasks.add(executor.submit(() -> {
+				double[] partial = new double[k * k];
+				for (int i = from; i < to; i++) {
+					double[] y = m[i];
+					double c = weights != null ? weights[i] : 1;
+					if (c == 0)
+						continue;
+					for (int r = 0; r < k; r++) {
+						double yr = c * y[r];
+						for (int s = 0; s <= r; s++)
+							partial[r * k + s] += yr * y[s];
+					}
+				}
+				return partial;
+			}));
+		}
+
+		double[] gram = new double[k * k];
+		for (Future<double[]> task : tasks) {
+			double[] partial = get(task);
+			for (int r = 0; r < k; r++) {
+				for (int s = 0; s <= r; s++)
+					gram[r * k + s] += partial[r * k + s];
+			}
+		}
+		for (int r = 0; r < k; r++) {
+			for (int s = 0; s < r; s++)
+				gram[s * k + r] = gram[r * k + s];
+		}
+		return gram;
+	}
+
+	/**
+	 * Waits for all tasks to finish
+	 *
+	 * @param tasks
+	 *            tasks
+	 * @throws Exception
+	 *             the exception of the first failed task, or if the thread is interrupted
+	 */
+	public static void await(List<? extends Future<?>> tasks) throws Exception {
+		for (Future<?> task : tasks)
+			get(task);
+	}
+
+	/**
+	 * Waits for a task to finish
+	 *
+	 * @param task
+	 *            task
+	 * @return result of the task
+	 * @throws Exception
+	 *             the exception the task has failed with, or if the thread is interrupted
+	 */
+	public static <T> T get(Future<T> task) throws Exception {
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof Exception ? (Exception) cause : new Exception(cause);
+		}
+	}
+
+	/**
+	 * @param m
+	 *            dense matrix
+	 * @return the row arrays of the matrix, sharing its data, e.g. for tasks updating rows in place
+	 */
+	public static double[][] rows(DenseMatrix m) {
+		double[][] rows = new double[m.numRows()][];
+		for (int r = 0; r < rows.length; r++)
+			rows[r] = m.row(r, false).getData();
+		return rows;
+	}
+
+}
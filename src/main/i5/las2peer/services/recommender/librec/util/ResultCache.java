@@ -0,0 +1,85 @@
+package i5.las2peer.services.recommender.librec.util;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cache for intermediate results that are expensive to compute and depend only on the training data and a few
+ * settings, e.g. the user and item graphs and their community structures. Recommenders trained on the same data
+ * with different learning parameters can share these results instead of computing them again.
+ *
+ * Results are cached per data object (compared by identity) and key; the key must contain every setting the
+ * result depends on. A result is computed only once, threads requesting a result that is being computed wait for
+ * it. Results of data objects that are no longer used are released.
+ */
+public class ResultCache {
+
+	/**
+	 * Computation of a cached result
+	 */
+	public interface Computation<T> {
+		T compute() throws Exception;
+	}
+
+	private final Map<Object, Map<String, FutureTask<Object>>> results = new WeakHashMap<>();
+
+	/**
+	 * Returns the result for the given data and key, computing it if it has not been computed yet.
+	 *
+	 * @param data data the result is computed from
+	 * @param key settings the result depends on
+	 * @param computation computes the result
+	 * @return the cached result
+	 * @throws Exception on errors computing the result
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object data, String key, Computation<T> computation) throws Exception {
+		Map<String, FutureTask<Object>> dataResults;
+		synchronized (results) {
+			dataResults = results.get(data);
+			if (dataResults == null) {
+				dataResults = new ConcurrentHashMap<>();
+				results.put(data, dataResults);
+			}
+		}
+
+		while (true) {
+			FutureTask<Object> task = new FutureTask<>(() -> computation.compute());
+			FutureTask<Object> existing = dataResults.putIfAbsent(key, task);
+			boolean computed = existing == null;
+			if (computed) {
+				task.run();
+			} else {
+				task = existing;
+			}
+
+			try {
+				return (T) task.get();
+			} catch (ExecutionException e) {
+				// do not keep failed or interrupted computations
+				dataResults.remove(key, task);
+				Throwable cause = e.getCause();
+				// the thread computing the result has been interrupted, compute the result in this thread
+				if (!computed && cause instanceof InterruptedException)
+					continue;
+				throw cause instanceof Exception ? (Exception) cause : new Exception(cause);
+			}
+		}
+	}
+
+	/**
+	 * @return number of cached results
+	 */
+	public int size() {
+		int size = 0;
+		synchronized (results) {
+			for (Map<String, FutureTask<Object>> dataResults : results.values())
+				size += dataResults.size();
+		}
+		return size;
+	}
+
+}
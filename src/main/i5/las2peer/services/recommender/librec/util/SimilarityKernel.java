@@ -0,0 +1,209 @@
+package i5.las2peer.services.recommender.librec.util;
+
+import java.util.Arrays;
+
+/**
+ * Computes the similarity of two sparse vectors given as ranges of sorted index and value arrays, e.g. two rows
+ * of the CRS structure or two columns of the CCS structure of a sparse matrix.
+ *
+ * The overlapping entries are found by merging the sorted indices, galloping over long runs of indices of one
+ * vector that do not occur in the other, and are collected in buffers that are reused for all pairs. Entries with
+ * value 0 are treated as missing, as by {@code SparseMatrix.row()} and {@code SparseMatrix.column()}. The
+ * similarity is computed by the measures of {@link Sims} and is the same as computed from lists of the
+ * overlapping ratings.
+ *
+ * A kernel is not thread-safe, threads computing similarities at the same time each need their own kernel.
+ */
+public class SimilarityKernel {
+
+	/**
+	 * Similarity measures supported by the configuration key "similarity"
+	 */
+	public enum Method {
+		PCC, COS, COS_BINARY, MSD, CPC, EXJACCARD;
+
+		/**
+		 * @param method name of the similarity measure, case-insensitive
+		 * @return the similarity measure, PCC for unknown names
+		 */
+		public static Method parse(String method) {
+			switch (method.toLowerCase()) {
+			case "cos":
+				return COS;
+			case "cos-binary":
+				return COS_BINARY;
+			case "msd":
+				return MSD;
+			case "cpc":
+				return CPC;
+			case "exjaccard":
+				return EXJACCARD;
+			case "pcc":
+			default:
+				return PCC;
+			}
+		}
+	}
+
+	private final Method method;
+	private final double median;
+	private final int shrinkage;
+
+	// values of the overlapping entries
+	private double[] as = new double[16], bs = new double[16];
+
+	/**
+	 * @param method similarity measure
+	 * @param median median rating in the rating range, used by CPC
+	 * @param shrinkage shrinkage of similarities computed from few overlapping entries, 0 for no shrinkage
+	 */
+	public SimilarityKernel(Method method, double median, int shrinkage) {
+		this.method = method;
+		this.median = median;
+		this.shrinkage = shrinkage;
+	}
+
+	/**
+	 * Similarity of two vectors stored in the same compressed structure, e.g. two rows of a CRS structure
+	 *
+	 * @param ptr
+	 *            pointers to the start of each vector
+	 * @param idx
+	 *            indices of the entries
+	 * @param val
+	 *            values of the entries
+	 * @param i
+	 *            first vector
+	 * @param j
+	 *            second vector
+	 * @return similarity of the vectors; NaN if the similarity is not computable
+	 */
+	public double similarity(int[] ptr, int[] idx, double[] val, int i, int j) {
+		return similarity(idx, val, ptr[i], ptr[i + 1], idx, val, ptr[j], ptr[j + 1]);
+	}
+
+	/**
+	 * Similarity of two vectors given by ranges of index and value arrays, the indices of each range must be sorted
+	 *
+	 * @param aIdx
+	 *            indices of the first vector
+	 * @param aVal
+	 *            values of the first vector
+	 * @param aFrom
+	 *            start of the first vector (inclusive)
+	 * @param aTo
+	 *            end of the first vector (exclusive)
+	 * @param bIdx
+	 *            indices of the second vector
+	 * @param bVal
+	 *            values of the second vector
+	 * @param bFrom
+	 *            start of the second vector (inclusive)
+	 * @param bTo
+	 *            end of the second vector (exclusive)
+	 * @return similarity of the vectors; NaN if the similarity is not computable
+	 */
+	public double similarity(int[] aIdx, double[] aVal, int aFrom, int aTo, int[] bIdx, double[] bVal, int bFrom,
+			int bTo) {
+		int n = overlap(aIdx, aVal, aFrom, aTo, bIdx, bVal, bFrom, bTo);
+
+		double sim;
+		switch (method) {
+		case COS:
+			// for ratings along the overlappings
+			sim = Sims.cos(as, bs, n);
+			break;
+		case COS_BINARY:
+			// for ratings along all the vectors (including one-sided 0s)
+			double inner = 0;
+			for (int k = 0; k < n; k++)
+				inner += as[k] * bs[k];
+			sim = inner / (Math.sqrt(squares(aVal, aFrom, aTo)) * Math.sqrt(squares(bVal, bFrom, bTo)));
+			break;
+		case MSD:
+			sim = Sims.msd(as, bs, n);
+			break;
+		case CPC:
+			sim = Sims.cpc(as, bs, n, median);
+			break;
+		case EXJACCARD:
+			sim = Sims.exJaccard(as, bs, n);
+			break;
+		case PCC:
+		default:
+			sim = Sims.pcc(as, bs, n);
+			break;
+		}
+
+		// shrink to account for vector size
+		if (!Double.isNaN(sim) && shrinkage > 0)
+			sim *= n / (n + shrinkage + 0.0);
+
+		return sim;
+	}
+
+	/**
+	 * Collects the values of the overlapping entries in the buffers
+	 * @return number of overlapping entries
+	 */
+	private int overlap(int[] aIdx, double[] aVal, int aFrom, int aTo, int[] bIdx, double[] bVal, int bFrom,
+			int bTo) {
+		int capacity = Math.min(aTo - aFrom, bTo - bFrom);
+		if (capacity > as.length) {
+			as = new double[Math.max(capacity, as.length * 2)];
+			bs = new double[as.length];
+		}
+
+		int n = 0;
+		int p = aFrom, q = bFrom;
+		while (p < aTo && q < bTo) {
+			int a = aIdx[p], b = bIdx[q];
+			if (a == b) {
+				if (aVal[p] != 0 && bVal[q] != 0) {
+					as[n] = aVal[p];
+					bs[n] = bVal[q];
+					n++;
+				}
+				p++;
+				q++;
+			} else if (a < b) {
+				p = gallop(aIdx, p + 1, aTo, b);
+			} else {
+				q = gallop(bIdx, q + 1, bTo, a);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Finds the first position in a sorted range whose index is not less than the key, searching ranges of
+	 * exponentially growing size from the start of the range
+	 * @return position of the key or of the first larger index, to if there is none
+	 */
+	static int gallop(int[] idx, int from, int to, int key) {
+		if (from >= to || idx[from] >= key)
+			return from;
+
+		// idx[lo] < key
+		int lo = from, step = 1;
+		int hi = from + 1;
+		while (hi < to && idx[hi] < key) {
+			lo = hi;
+			step <<= 1;
+			hi = lo + step;
+		}
+		if (hi > to)
+			hi = to;
+
+		int pos = Arrays.binarySearch(idx, lo + 1, hi, key);
+		return pos >= 0 ? pos : -(pos + 1);
+	}
+
+	private static double squares(double[] val, int from, int to) {
+		double sum = 0;
+		for (int k = from; k < to; k++)
+			sum += val[k] * val[k];
+		return sum;
+	}
+
+}
@@ -40,9 +40,22 @@ public class Sims {
 		if (Lists.isEmpty(a) || Lists.isEmpty(b) || a.size() != b.size())
 			return Double.NaN;
 
+		return cos(toArray(a), toArray(b), a.size());
+	}
+
+	/**
+	 * @param a first user's ratings
+	 * @param b second user's ratings
+	 * @param n number of ratings, i.e. the first n entries of a and b are used
+	 * @return cosine similarity
+	 */
+	public static double cos(double[] a, double[] b, int n) {
+		if (n < 1)
+			return Double.NaN;
+
 		double sum = 0.0, sum_a = 0.0, sum_b = 0.0;
-		for (int i = 0; i < a.size(); i++) {
-			double ai = a.get(i), bi = b.get(i);
+		for (int i = 0; i < n; i++) {
+			double ai = a[i], bi = b[i];
 			sum += ai * bi;
 			sum_a += ai * ai;
 			sum_b += bi * bi;
@@ -69,10 +82,31 @@ public class Sims {
 		if (Lists.isEmpty(u) || Lists.isEmpty(v))
 			return Double.NaN;
 
+		return cpc(toArray(u), toArray(v), u.size(), median);
+	}
+
+	/**
+	 * Calculate Constrained Pearson Correlation (CPC)
+	 * 
+	 * @param u
+	 *            user u's ratings
+	 * @param v
+	 *            user v's ratings
+	 * @param n
+	 *            number of ratings, i.e. the first n entries of u and v are used
+	 * @param median
+	 *            median rating in a rating range
+	 * 
+	 * @return Constrained PCC Correlation (CPC)
+	 */
+	public static double cpc(double[] u, double[] v, int n, double median) {
+		if (n < 1)
+			return Double.NaN;
+
 		double sumNum = 0.0, sumDen1 = 0.0, sumDen2 = 0.0;
-		for (int i = 0; i < u.size(); i++) {
-			double ui = u.get(i) - median;
-			double vi = v.get(i) - median;
+		for (int i = 0; i < n; i++) {
+			double ui = u[i] - median;
+			double vi = v[i] - median;
 
 			sumNum += ui * vi;
 			sumDen1 += Math.pow(ui, 2);
@@ -93,16 +127,31 @@ public class Sims {
 	 * @return MSD similarity
 	 */
 	public static double msd(List<Double> u, List<Double> v) {
+		return msd(toArray(u), toArray(v), u.size());
+	}
+
+	/**
+	 * Calculate Mean Squared Difference (MSD) similarity
+	 * 
+	 * @param u
+	 *            user u's ratings
+	 * @param v
+	 *            user v's ratings
+	 * @param n
+	 *            number of ratings, i.e. the first n entries of u and v are used
+	 * @return MSD similarity
+	 */
+	public static double msd(double[] u, double[] v, int n) {
 		double sum = 0.0;
 
-		for (int i = 0; i < u.size(); i++) {
-			double ui = u.get(i);
-			double vi = v.get(i);
+		for (int i = 0; i < n; i++) {
+			double ui = u[i];
+			double vi = v[i];
 
 			sum += Math.pow(ui - vi, 2);
 		}
 
-		double sim = u.size() / sum;
+		double sim = n / sum;
 		if (Double.isInfinite(sim))
 			sim = 1.0;
 
@@ -123,13 +172,32 @@ public class Sims {
 		if (a == null || b == null || a.size() < 2 || b.size() < 2 || a.size() != b.size())
 			return Double.NaN;
 
-		double mu_a = Stats.mean(a);
-		double mu_b = Stats.mean(b);
+		return pcc(toArray(a), toArray(b), a.size());
+	}
+
+	/**
+	 * calculate Pearson Correlation Coefficient (PCC) between two vectors of ratings
+	 * 
+	 * @param a
+	 *            first vector of ratings
+	 * @param b
+	 *            second vector of ratings
+	 * @param n
+	 *            number of ratings, i.e. the first n entries of a and b are used
+	 * @return Pearson Correlation Coefficient (PCC) value. <br>
+	 *         If n is less than 2, Double.NaN is returned.
+	 */
+	public static double pcc(double[] a, double[] b, int n) {
+		if (n < 2)
+			return Double.NaN;
+
+		double mu_a = mean(a, n);
+		double mu_b = mean(b, n);
 
 		double num = 0.0, den_a = 0.0, den_b = 0.0;
-		for (int i = 0; i < a.size(); i++) {
-			double ai = a.get(i).doubleValue() - mu_a;
-			double bi = b.get(i).doubleValue() - mu_b;
+		for (int i = 0; i < n; i++) {
+			double ai = a[i] - mu_a;
+			double bi = b[i] - mu_b;
 
 			num += ai * bi;
 			den_a += ai * ai;
@@ -146,10 +214,21 @@ public class Sims {
 	 * @return extended Jaccard coefficient
 	 */
 	public static double exJaccard(List<Double> a, List<Double> b) {
+		return exJaccard(toArray(a), toArray(b), a.size());
+	}
+
+	/**
+	 * calculate extend Jaccard Coefficient between two vectors of ratings
+	 * @param a first user's ratings
+	 * @param b second user's ratings
+	 * @param n number of ratings, i.e. the first n entries of a and b are used
+	 * @return extended Jaccard coefficient
+	 */
+	public static double exJaccard(double[] a, double[] b, int n) {
 		double num = 0.0, den_a = 0.0, den_b = 0.0;
-		for (int i = 0; i < a.size(); i++) {
-			double ai = a.get(i);
-			double bi = b.get(i);
+		for (int i = 0; i < n; i++) {
+			double ai = a[i];
+			double bi = b[i];
 
 			num += ai * bi;
 			den_a += ai * ai;
@@ -166,10 +245,21 @@ public class Sims {
 	 * @return Dice coefficient
 	 */
 	public static double dice(List<Double> a, List<Double> b) {
+		return dice(toArray(a), toArray(b), a.size());
+	}
+
+	/**
+	 * calculate Dice Coefficient between two vectors of ratings
+	 * @param a first user's ratings
+	 * @param b second user's ratings
+	 * @param n number of ratings, i.e. the first n entries of a and b are used
+	 * @return Dice coefficient
+	 */
+	public static double dice(double[] a, double[] b, int n) {
 		double num = 0.0, den_a = 0.0, den_b = 0.0;
-		for (int i = 0; i < a.size(); i++) {
-			double ai = a.get(i);
-			double bi = b.get(i);
+		for (int i = 0; i < n; i++) {
+			double ai = a[i];
+			double bi = b[i];
 
 			num += 2 * ai * bi;
 			den_a += ai * ai;
@@ -237,4 +327,28 @@ public class Sims {
 
 	}
 
+	/**
+	 * mean of the first n entries, ignoring NaN values like {@link Stats#mean(java.util.Collection)}
+	 */
+	private static double mean(double[] data, int n) {
+		double sum = 0.0;
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			if (!Double.isNaN(data[i])) {
+				sum += data[i];
+				count++;
+			}
+		}
+
+		return sum / count;
+	}
+
+	private static double[] toArray(List<? extends Number> data) {
+		double[] array = new double[data.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = data.get(i).doubleValue();
+
+		return array;
+	}
+
 }
@@ -93,6 +93,7 @@ public class DataImporter {
 		}
 		finally{
 			DbUtils.closeQuietly(conn);
+			dbm.markDataChanged();
 		}
 	}
 	
@@ -149,6 +150,7 @@ public class DataImporter {
 		}
 		finally{
 			DbUtils.closeQuietly(conn);
+			dbm.markDataChanged();
 		}
 	}
 	
@@ -204,6 +206,7 @@ public class DataImporter {
 		}
 		finally{
 			DbUtils.closeQuietly(conn);
+			dbm.markDataChanged();
 		}
 	}
 	
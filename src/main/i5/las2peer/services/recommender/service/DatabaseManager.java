@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -25,6 +26,8 @@ public class DatabaseManager extends Configurable{
 //	private String jdbcUrl;
 //	private String jdbcSchema;
 	private static BasicDataSource dataSource;
+	// whether the DataVersion table is known to exist
+	private static volatile boolean dataVersionTable;
 
 //	public DatabaseManager() {
 //		setFieldValues();
@@ -51,6 +54,8 @@ public class DatabaseManager extends Configurable{
 		dataSource.setValidationQuery("SELECT 1");
 		dataSource.setDefaultQueryTimeout(1000);
 		dataSource.setMaxConnLifetimeMillis(100000);
+		// let the MySQL driver send batched inserts as multi-row statements
+		dataSource.addConnectionProperty("rewriteBatchedStatements", "true");
 	}
 
 	public Connection getConnection() throws SQLException {
@@ -61,6 +66,7 @@ public class DatabaseManager extends Configurable{
 		List<String> tableList;
 		if (force){
 			queryDropAllTables();
+			dataVersionTable = false;
 		}
 		
 		// Get list of existing tables
@@ -82,6 +88,7 @@ public class DatabaseManager extends Configurable{
 		if (!tableList.contains("Prediction")){
 			createPredictionTable();
 		}
+		ensureDataVersionTable();
 	}
 	
 	private void queryDropAllTables() throws SQLException{
@@ -90,7 +97,7 @@ public class DatabaseManager extends Configurable{
 		
 		try{
 			conn = getConnection();
-			stmnt = conn.prepareStatement("DROP TABLE IF EXISTS Prediction,Rating,Tag,Item,User");
+			stmnt = conn.prepareStatement("DROP TABLE IF EXISTS Prediction,PredictionStaging,PredictionOld,Rating,Tag,Item,User,DataVersion");
 			stmnt.executeUpdate();
 		}
 		finally{
@@ -231,6 +238,143 @@ public class DatabaseManager extends Configurable{
 		}
 	}
 
+	/**
+	 * Creates an empty staging table PredictionStaging with the same layout as the Prediction table,
+	 * replacing a staging table left over by an interrupted run.
+	 * The foreign keys are not named explicitly, so that MySQL renames them together with the table.
+	 * @throws SQLException on database errors
+	 */
+	public void createPredictionStagingTable() throws SQLException{
+		Connection conn = null;
+		Statement stmnt = null;
+		
+		try{
+			conn = getConnection();
+			stmnt = conn.createStatement();
+			stmnt.executeUpdate("DROP TABLE IF EXISTS PredictionStaging");
+			stmnt.executeUpdate("CREATE TABLE PredictionStaging("
+					+ "UserId int NOT NULL,"
+					+ "ItemId int NOT NULL,"
+					+ "Prediction decimal(6,5) NOT NULL,"
+					+ "PRIMARY KEY (UserId,ItemId),"
+					+ "KEY FK_RatingItem (ItemId),"
+					+ "KEY FK_RatingUser (UserId),"
+					+ "FOREIGN KEY (ItemId) "
+						+ "REFERENCES Item (ItemId) "
+						+ "ON DELETE NO ACTION "
+						+ "ON UPDATE NO ACTION,"
+					+ "FOREIGN KEY (UserId) "
+						+ "REFERENCES User (UserId) "
+						+ "ON DELETE NO ACTION "
+						+ "ON UPDATE NO ACTION"
+					+ ")");
+		}
+		finally{
+			DbUtils.closeQuietly(conn);
+			DbUtils.closeQuietly(stmnt);
+		}
+	}
+	
+	/**
+	 * Replaces the Prediction table by the staging table. Both tables are renamed in a single
+	 * RENAME TABLE statement, so readers see either the old or the new predictions.
+	 * @throws SQLException on database errors
+	 */
+	public void swapPredictionTable() throws SQLException{
+		Connection conn = null;
+		Statement stmnt = null;
+		
+		try{
+			conn = getConnection();
+			stmnt = conn.createStatement();
+			stmnt.executeUpdate("DROP TABLE IF EXISTS PredictionOld");
+			stmnt.executeUpdate("RENAME TABLE Prediction TO PredictionOld, PredictionStaging TO Prediction");
+			stmnt.executeUpdate("DROP TABLE PredictionOld");
+		}
+		finally{
+			DbUtils.closeQuietly(conn);
+			DbUtils.closeQuietly(stmnt);
+		}
+	}
+
+	/**
+	 * Marks the contents of the User, Item, Rating and Tag tables as changed by incrementing the version in the
+	 * DataVersion table. Every method writing to these tables calls this after its statements ran, also if they
+	 * failed, so that a reader never tags data read before a change with the version after it. Changes made to the
+	 * tables outside of this service are not tracked.
+	 * @throws SQLException on database errors
+	 */
+	public void markDataChanged() throws SQLException{
+		ensureDataVersionTable();
+		Connection conn = null;
+		Statement stmnt = null;
+		
+		try{
+			conn = getConnection();
+			stmnt = conn.createStatement();
+			stmnt.executeUpdate("UPDATE DataVersion SET Version=Version+1");
+		}
+		finally{
+			DbUtils.closeQuietly(conn);
+			DbUtils.closeQuietly(stmnt);
+		}
+	}
+	
+	/**
+	 * Returns the version of the contents of the User, Item, Rating and Tag tables, which changes on every
+	 * markDataChanged(). Reading the version is a single row lookup, independent of the size of the tables.
+	 * @return data version
+	 * @throws SQLException on database errors
+	 */
+	public long getDataVersion() throws SQLException{
+		ensureDataVersionTable();
+		Connection conn = null;
+		Statement stmnt = null;
+		ResultSet rs = null;
+		
+		try{
+			conn = getConnection();
+			stmnt = conn.createStatement();
+			rs = stmnt.executeQuery("SELECT Version FROM DataVersion");
+			if (!rs.next()){
+				throw new SQLException("DataVersion table is empty");
+			}
+			return rs.getLong(1);
+		}
+		finally{
+			DbUtils.closeQuietly(conn,stmnt,rs);
+		}
+	}
+	
+	/**
+	 * Creates the single row DataVersion table if it does not exist, e.g. in a database created before the table
+	 * was introduced. The version starts at the current time in milliseconds, so that a recreated table does not
+	 * repeat the versions of a dropped one.
+	 */
+	private void ensureDataVersionTable() throws SQLException{
+		if (dataVersionTable){
+			return;
+		}
+		Connection conn = null;
+		Statement stmnt = null;
+		
+		try{
+			conn = getConnection();
+			stmnt = conn.createStatement();
+			stmnt.executeUpdate("CREATE TABLE IF NOT EXISTS DataVersion ("
+					+ "Id tinyint NOT NULL,"
+					+ "Version bigint NOT NULL,"
+					+ "PRIMARY KEY (Id)"
+					+ ")");
+			stmnt.executeUpdate("INSERT IGNORE INTO DataVersion VALUES (0, " + System.currentTimeMillis() + ")");
+			dataVersionTable = true;
+		}
+		finally{
+			DbUtils.closeQuietly(conn);
+			DbUtils.closeQuietly(stmnt);
+		}
+	}
+
 	private void createTagTable() throws SQLException{
 		Connection conn = null;
 		PreparedStatement stmnt = null;
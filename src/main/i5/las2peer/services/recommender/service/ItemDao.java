@@ -35,6 +35,7 @@ public class ItemDao {
 		finally{
 			DbUtils.closeQuietly(conn);
 			DbUtils.closeQuietly(stmnt);
+			dbm.markDataChanged();
 		}
 		
 		if (id < 0){
@@ -70,6 +71,7 @@ public class ItemDao {
 			DbUtils.closeQuietly(deleteRatingsStmnt);
 			DbUtils.closeQuietly(deleteTagsStmnt);
 			DbUtils.closeQuietly(deleteItemStmnt);
+			dbm.markDataChanged();
 		}
 		return;
 	}
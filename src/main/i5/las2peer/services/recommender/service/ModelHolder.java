@@ -0,0 +1,79 @@
+package i5.las2peer.services.recommender.service;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import i5.las2peer.services.recommender.librec.main.LibRec;
+
+/**
+ * Holds the recommender model that is currently used to answer requests.
+ *
+ * A recommender run builds its model and recommendation index separately and publishes both together when it
+ * has completed, replacing the previous model in a single step. Until then, and if the run fails or is
+ * cancelled, requests are answered by the previous model. Readers never block and never see a model that is
+ * still being built.
+ *
+ */
+public class ModelHolder {
+
+	/**
+	 * A trained recommender together with the recommendation index computed from it
+	 */
+	public static class Model {
+
+		private final LibRec recommender;
+		private final RecommendationIndex index;
+		private final int jobId;
+		private final long publishTime;
+
+		private Model(LibRec recommender, RecommendationIndex index, int jobId) {
+			this.recommender = recommender;
+			this.index = index;
+			this.jobId = jobId;
+			this.publishTime = System.currentTimeMillis();
+		}
+
+		public LibRec getRecommender() {
+			return recommender;
+		}
+
+		public RecommendationIndex getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return identifier of the job that built the model
+		 */
+		public int getJobId() {
+			return jobId;
+		}
+
+		/**
+		 * @return time the model was published in milliseconds since the epoch
+		 */
+		public long getPublishTime() {
+			return publishTime;
+		}
+
+	}
+
+	private final AtomicReference<Model> current = new AtomicReference<>();
+
+	/**
+	 * @return the current model, null if no model has been published
+	 */
+	public Model get() {
+		return current.get();
+	}
+
+	/**
+	 * Replaces the current model by a new one. The recommender must not be modified after it has been published.
+	 *
+	 * @param recommender trained recommender
+	 * @param index recommendation index computed from the recommender
+	 * @param jobId identifier of the job that built the model
+	 */
+	public void publish(LibRec recommender, RecommendationIndex index, int jobId) {
+		current.set(new Model(recommender, index, jobId));
+	}
+
+}
@@ -0,0 +1,108 @@
+package i5.las2peer.services.recommender.service;
+
+import java.util.Arrays;
+
+import i5.las2peer.services.recommender.librec.data.TopNPredictions;
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+/**
+ * In-memory index of the top-N recommendations of every user, built at the end of a recommender run.
+ *
+ * The recommendation lists are stored in compressed row form in primitive arrays: the list of the user
+ * userIds[u] is found at positions userPtr[u] to userPtr[u+1]-1 of the items and predictions arrays,
+ * ordered by descending prediction. Items the user has rated at the time of the run are excluded.
+ *
+ */
+public class RecommendationIndex {
+
+	// default number of recommendations kept per user
+	public static final int DEFAULT_DEPTH = 100;
+
+	// maximum number of recommendations kept per user
+	private final int depth;
+
+	// outer user ids in ascending order
+	private final int[] userIds;
+	// start position of each user's list, userIds.length + 1 entries
+	private final int[] userPtr;
+
+	// recommended outer item ids and their predictions
+	private final int[] items;
+	private final float[] predictions;
+
+	private RecommendationIndex(int depth, int[] userIds, int[] userPtr, int[] items, float[] predictions) {
+		this.depth = depth;
+		this.userIds = userIds;
+		this.userPtr = userPtr;
+		this.items = items;
+		this.predictions = predictions;
+	}
+
+	/**
+	 * Builds the index from the top-N predictions of a recommender run.
+	 *
+	 * @param predictions top-N predictions of unrated items using outer user and item identifiers
+	 * @return recommendation index
+	 */
+	public static RecommendationIndex build(TopNPredictions predictions) {
+		return new RecommendationIndex(predictions.getN(), predictions.getUsers(), predictions.getPointers(),
+				predictions.getItems(), predictions.getPredictions());
+	}
+
+	/**
+	 * Checks if a recommendation list of the given length can be answered from the index.
+	 * This is not the case for unknown users and for lists that are longer than the part of the
+	 * user's list that has been kept.
+	 *
+	 * @param userId outer user identifier
+	 * @param count length of the recommendation list
+	 * @return true if the index contains the complete answer
+	 */
+	public boolean canServe(int userId, int count) {
+		int u = Arrays.binarySearch(userIds, userId);
+		if (u < 0)
+			return false;
+		int size = userPtr[u + 1] - userPtr[u];
+		return count <= size || size < depth;
+	}
+
+	/**
+	 * Returns the recommendation list of a user in the same form as {@link UserDao#getRecommendations(int, int)}.
+	 *
+	 * @param userId outer user identifier
+	 * @param count maximum number of items
+	 * @return recommendation list, empty if the user is unknown
+	 */
+	public JSONArray getRecommendations(int userId, int count) {
+		JSONArray recommendationsArray = new JSONArray();
+		int u = Arrays.binarySearch(userIds, userId);
+		if (u < 0)
+			return recommendationsArray;
+
+		int end = Math.min(userPtr[u + 1], userPtr[u] + count);
+		for (int pos = userPtr[u]; pos < end; pos++) {
+			JSONObject predictionObj = new JSONObject();
+			predictionObj.put("rank", pos - userPtr[u] + 1);
+			predictionObj.put("itemId", items[pos]);
+			predictionObj.put("prediction", (double) predictions[pos]);
+			recommendationsArray.add(predictionObj);
+		}
+		return recommendationsArray;
+	}
+
+	/**
+	 * @return number of users in the index
+	 */
+	public int numUsers() {
+		return userIds.length;
+	}
+
+	/**
+	 * @return maximum number of recommendations kept per user
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+}
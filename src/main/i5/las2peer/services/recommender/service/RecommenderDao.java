@@ -2,31 +2,53 @@ package i5.las2peer.services.recommender.service;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.Statement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.dbutils.DbUtils;
 
-import com.google.common.collect.Table;
-
 import i5.las2peer.services.recommender.entities.Rating;
 import i5.las2peer.services.recommender.entities.Tagging;
+import i5.las2peer.services.recommender.librec.data.TopNPredictions;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener;
+import i5.las2peer.services.recommender.librec.intf.ProgressListener.Phase;
 import i5.las2peer.services.recommender.librec.main.LibRec;
-import net.minidev.json.JSONObject;
+import i5.las2peer.services.recommender.librec.util.Dates;
+import i5.las2peer.services.recommender.librec.util.Logs;
+import i5.las2peer.services.recommender.librec.util.Parallel;
 
 public class RecommenderDao {
 
+	// number of connections and batch size used to store predictions
+	private static final int NUM_WRITERS = 4;
+	private static final int BATCH_SIZE = 1000;
+
 	private DatabaseManager dbm;
 	
+	// snapshot of the rating and tag data, null if no snapshot is used
+	private String snapshotFile;
+	
 	public RecommenderDao(DatabaseManager dbm) {
+		this(dbm, null);
+	}
+	
+	/**
+	 * @param dbm database manager
+	 * @param snapshotFile location of a snapshot of the rating and tag data that is read instead of the database
+	 * tables while their contents are unchanged, null or empty to always read the tables
+	 */
+	public RecommenderDao(DatabaseManager dbm, String snapshotFile) {
 		this.dbm = dbm;
+		this.snapshotFile = snapshotFile != null && !snapshotFile.isEmpty() ? snapshotFile : null;
 	}
 
-	public void runRecommender(
+	public LibRec createRecommender(
 			String recAlgo,
 			String cdAlgo,
 			String cdWtSteps,
@@ -57,8 +79,8 @@ public class RecommenderDao {
 			String recKnnK
 			) throws Exception {
 		// Check if input is valid
-		List<String> recAlgos = Arrays.asList(new String[] {"itemavg","itemknn","wrmf","svd","nsvd","tsvd","tnsvd",
-				"cnsvd","cnsvdfast","tcnsvd","tcnsvdfast"});
+		List<String> recAlgos = Arrays.asList(new String[] {"itemavg","itemknn","wrmf","eals","svd","nsvd","tsvd",
+				"tnsvd","cnsvd","cnsvdfast","tcnsvd","tcnsvdfast"});
 		List<String> cdAlgos = Arrays.asList(new String[] {"wt","dmid","slpa"});
 		List<String> graphMethods = Arrays.asList(new String[] {"ratings","tags"});
 		List<String> graphKnnSims = Arrays.asList(new String[] {"cosine","pearson","jmsd"});
@@ -126,53 +148,70 @@ public class RecommenderDao {
 		librec.setParameter("reg.lambda", String.format("%s -n %s -f %s -c %s -cn %s -cf %s",
 				recLambda, recLambdaN, recLambdaF, recLambdaC, recLambdaCN, recLambdaCF));
 		librec.setParameter("timeSVD++", String.format("-beta %s -bins %s", recBeta, recBins));
-		librec.setParameter("WRMF", String.format("-alpha", recWrmfAlpha));
+		librec.setParameter("WRMF", String.format("-alpha %s", recWrmfAlpha));
 		librec.setParameter("similarity", recKnnSim);
 		librec.setParameter("num.neighbors", recKnnK);
 		librec.setParameter("evaluation.setup", "--early-stop loss");
 		
-		// Get rating data from database
-		List<Rating> ratings = getRatings();
-		List<Tagging> tags = getTaggings();
-		List<Integer> users = getUsers();
-		List<Integer> items = getItems();
+		return librec;
+	}
+	
+	public RecommendationIndex runRecommender(LibRec librec, ProgressListener progressListener) throws Exception {
+		librec.setProgressListener(progressListener);
+		progressListener.phaseStarted(Phase.LOAD);
 		
-		// Set rating and tagging data
-		librec.setRatings(ratings, users, items);
-		librec.setTaggings(tags);
+		// Read rating and tagging data from the snapshot if the tables have not changed since it was written, which
+		// the data version of the database tells without reading the tables.
+		// The snapshot is a cache of the tables, a snapshot that cannot be read or written is logged and skipped.
+		String dataVersion = null;
+		if (snapshotFile != null){
+			try {
+				dataVersion = "DataVersion=" + dbm.getDataVersion();
+			} catch (SQLException e) {
+				Logs.error("Error reading the data version, reading the tables instead: {}", e.getMessage());
+			}
+		}
+		boolean fromSnapshot = false;
+		if (dataVersion != null){
+			try {
+				fromSnapshot = librec.readSnapshot(snapshotFile, dataVersion);
+			} catch (Exception e) {
+				Logs.error("Error reading from snapshot file {}: {}", snapshotFile, e.getMessage());
+			}
+		}
+		if (!fromSnapshot){
+			// Get rating data from database
+			List<Rating> ratings = getRatings();
+			List<Tagging> tags = getTaggings();
+			List<Integer> users = getUsers();
+			List<Integer> items = getItems();
+			
+			// Set rating and tagging data
+			librec.setRatings(ratings, users, items);
+			librec.setTaggings(tags);
+			
+			if (dataVersion != null){
+				try {
+					librec.writeSnapshot(snapshotFile, dataVersion);
+				} catch (Exception e) {
+					Logs.error("Error writing to snapshot file {}: {}", snapshotFile, e.getMessage());
+				}
+			}
+		}
 		librec.printDatasetSpecifications();
 		
 		// Build model
 		librec.buildModel();
 		
-		// Predict ratings for all user-item pairs
-		Table <Integer,Integer,Double> predictions = librec.getAllPredictions();
+		// Predict ratings for the best unrated items of each user
+		TopNPredictions predictions = librec.getTopNPredictions(RecommendationIndex.DEFAULT_DEPTH);
 		
-		// Store ratings in database
+		// Store ratings in the staging table of the database, which replaces the predictions on publishPredictions()
+		progressListener.phaseStarted(Phase.PERSIST);
 		putPredictions(predictions);
 		
-		return;
-	}
-
-	public JSONObject getRecommenderStatus() throws SQLException{
-		Connection conn = null;
-		PreparedStatement stmnt = null;
-		
-		try{
-			conn = dbm.getConnection();
-			stmnt = conn.prepareStatement("INSERT INTO User VALUES ()", Statement.RETURN_GENERATED_KEYS);
-			stmnt.executeUpdate();
-			ResultSet rs = stmnt.getGeneratedKeys();
-			if (rs.next()){
-				
-			}
-		}
-		finally{
-			DbUtils.closeQuietly(conn);
-			DbUtils.closeQuietly(stmnt);
-		}
-		JSONObject json = new JSONObject();
-		return json;
+		// Build the in-memory index that serves recommendation requests
+		return RecommendationIndex.build(predictions);
 	}
 
 	private List<Rating> getRatings() throws SQLException {
@@ -277,31 +316,85 @@ public class RecommenderDao {
 		return items;
 	}
 
-	private void putPredictions(Table<Integer, Integer, Double> predictions) throws SQLException {
+	/**
+	 * Replaces the predictions in use by the predictions stored by the last runRecommender()
+	 * @throws SQLException on database errors
+	 */
+	public void publishPredictions() throws SQLException {
+		dbm.swapPredictionTable();
+	}
+
+	private void putPredictions(TopNPredictions predictions) throws Exception {
+		long start = System.currentTimeMillis();
+		dbm.createPredictionStagingTable();
+		
+		// split the users into ranges of about the same number of predictions, one per writer
+		int[] ptr = predictions.getPointers();
+		int numUsers = predictions.numUsers();
+		int[] bounds = new int[NUM_WRITERS + 1];
+		for (int w = 1, u = 0; w <= NUM_WRITERS; w++){
+			long target = (long) predictions.size() * w / NUM_WRITERS;
+			while (u < numUsers && ptr[u] < target)
+				u++;
+			bounds[w] = w == NUM_WRITERS ? numUsers : u;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(NUM_WRITERS);
+		try{
+			List<Future<?>> writers = new LinkedList<>();
+			for (int w = 0; w < NUM_WRITERS; w++){
+				final int from = bounds[w];
+				final int to = bounds[w + 1];
+				writers.add(executor.submit(() -> {
+					insertPredictions(predictions, from, to);
+					return null;
+				}));
+			}
+			Parallel.await(writers);
+		}
+		finally{
+			executor.shutdownNow();
+		}
+		
+		long time = Math.max(1, System.currentTimeMillis() - start);
+		Logs.info("Stored {} predictions in {} ({} rows/s)", predictions.size(), Dates.parse(time),
+				predictions.size() * 1000L / time);
+	}
+	
+	private void insertPredictions(TopNPredictions predictions, int fromUser, int toUser) throws SQLException {
 		Connection conn = null;
-		Statement deleteStmnt = null;
 		PreparedStatement insertStmnt = null;
 		
 		try{
 			conn = dbm.getConnection();
-			deleteStmnt = conn.createStatement();
-			deleteStmnt.executeUpdate("DELETE FROM Prediction");
+			conn.setAutoCommit(false);
 			
-			insertStmnt = conn.prepareStatement("INSERT INTO Prediction (UserId,ItemId,Prediction) VALUES (?,?,?)");
-			for (Table.Cell<Integer,Integer,Double> cell : predictions.cellSet()){
-				int user = cell.getRowKey();
-				int item = cell.getColumnKey();
-				double prediction = cell.getValue();
-				insertStmnt.setInt(1, user);
-				insertStmnt.setInt(2, item);
-				insertStmnt.setDouble(3, prediction);
-				insertStmnt.executeUpdate();
+			insertStmnt = conn.prepareStatement("INSERT INTO PredictionStaging (UserId,ItemId,Prediction) VALUES (?,?,?)");
+			int[] users = predictions.getUsers();
+			int[] ptr = predictions.getPointers();
+			int[] items = predictions.getItems();
+			float[] values = predictions.getPredictions();
+			int batchSize = 0;
+			for (int u = fromUser; u < toUser; u++){
+				for (int pos = ptr[u]; pos < ptr[u + 1]; pos++){
+					insertStmnt.setInt(1, users[u]);
+					insertStmnt.setInt(2, items[pos]);
+					insertStmnt.setDouble(3, values[pos]);
+					insertStmnt.addBatch();
+					if (++batchSize == BATCH_SIZE){
+						insertStmnt.executeBatch();
+						batchSize = 0;
+					}
+				}
 			}
+			if (batchSize > 0)
+				insertStmnt.executeBatch();
+			conn.commit();
 		}
 		finally{
+			// the pool rolls back uncommitted inserts and restores auto-commit when the connection is returned
 			DbUtils.closeQuietly(conn);
 			DbUtils.closeQuietly(insertStmnt);
-			DbUtils.closeQuietly(deleteStmnt);
 		}
 	}
 
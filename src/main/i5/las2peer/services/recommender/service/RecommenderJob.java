@@ -0,0 +1,193 @@
+package i5.las2peer.services.recommender.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import i5.las2peer.services.recommender.librec.intf.ProgressListener;
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+/**
+ * A recommender run executed in the background. Keeps track of the run's state, the current phase, the time
+ * spent in each phase and the training loss after each iteration.
+ *
+ */
+public class RecommenderJob implements ProgressListener {
+
+	public enum State { QUEUED, RUNNING, FINISHED, FAILED, CANCELLED }
+
+	/**
+	 * Final step of a job, e.g. publishing its results, that is done unless the job has been cancelled
+	 */
+	public interface Commit {
+		void run() throws Exception;
+	}
+
+	private final int id;
+	private final String recAlgo;
+
+	private State state = State.QUEUED;
+	private String error;
+	private boolean cancelRequested;
+	// whether the job has passed the point after which it can no longer be cancelled
+	private boolean committed;
+	private Future<?> future;
+
+	private final long submitTime = System.currentTimeMillis();
+	private long startTime;
+	private long endTime;
+
+	// current phase, its start time and the time spent in finished phases
+	private Phase phase;
+	private long phaseStartTime;
+	private final Map<Phase, Long> phaseTimes = new EnumMap<>(Phase.class);
+
+	// last finished training iteration and training loss after each iteration
+	private int iteration;
+	private int maxIterations;
+	private final List<Double> losses = new ArrayList<>();
+
+	public RecommenderJob(int id, String recAlgo) {
+		this.id = id;
+		this.recAlgo = recAlgo;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public synchronized boolean isDone() {
+		return state == State.FINISHED || state == State.FAILED || state == State.CANCELLED;
+	}
+
+	synchronized void setFuture(Future<?> future) {
+		this.future = future;
+	}
+
+	/**
+	 * Cancels the job. A queued job is removed from the queue, a running job is interrupted and stops at the
+	 * next interruption check, at the latest before its commit.
+	 * @return false if the job has already finished or committed
+	 */
+	public synchronized boolean cancel() {
+		if (isDone() || committed)
+			return false;
+		cancelRequested = true;
+		if (future != null)
+			future.cancel(true);
+		if (state == State.QUEUED)
+			end(State.CANCELLED, null);
+		return true;
+	}
+
+	synchronized boolean start() {
+		if (state != State.QUEUED)
+			return false;
+		state = State.RUNNING;
+		startTime = System.currentTimeMillis();
+		return true;
+	}
+
+	/**
+	 * Runs the final step of the job unless it has been cancelled. The job cannot be cancelled while and after the
+	 * step runs, so that a cancelled job never publishes its results.
+	 * @param commit final step
+	 * @throws InterruptedException if the job has been cancelled
+	 * @throws Exception on errors of the final step
+	 */
+	public synchronized void commit(Commit commit) throws Exception {
+		if (cancelRequested || Thread.interrupted())
+			throw new InterruptedException("Job " + id + " cancelled");
+		committed = true;
+		commit.run();
+	}
+
+	synchronized void finish() {
+		end(cancelRequested ? State.CANCELLED : State.FINISHED, null);
+	}
+
+	synchronized void fail(Exception e) {
+		if (cancelRequested || e instanceof InterruptedException)
+			end(State.CANCELLED, null);
+		else
+			end(State.FAILED, e.toString());
+	}
+
+	private void end(State state, String error) {
+		endPhase();
+		this.state = state;
+		this.error = error;
+		endTime = System.currentTimeMillis();
+	}
+
+	private void endPhase() {
+		if (phase != null) {
+			long time = System.currentTimeMillis() - phaseStartTime;
+			phaseTimes.put(phase, phaseTimes.containsKey(phase) ? phaseTimes.get(phase) + time : time);
+		}
+		phase = null;
+	}
+
+	@Override
+	public synchronized void phaseStarted(Phase phase) {
+		endPhase();
+		this.phase = phase;
+		phaseStartTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public synchronized void iterationFinished(int iter, int maxIters, double loss) {
+		iteration = iter;
+		maxIterations = maxIters;
+		if (!Double.isNaN(loss) && !Double.isInfinite(loss))
+			losses.add(loss);
+	}
+
+	/**
+	 * @return status of the job in JSON format
+	 */
+	public synchronized JSONObject toJSON() {
+		long now = System.currentTimeMillis();
+
+		JSONObject json = new JSONObject();
+		json.put("jobId", id);
+		json.put("recAlgo", recAlgo);
+		json.put("state", state.toString().toLowerCase());
+		if (phase != null)
+			json.put("phase", phase.toString().toLowerCase());
+		if (maxIterations > 0) {
+			json.put("iteration", iteration);
+			json.put("maxIterations", maxIterations);
+		}
+
+		// time in milliseconds spent in each phase, including the running one
+		JSONObject phaseTimesObj = new JSONObject();
+		for (Phase p : Phase.values()) {
+			long time = phaseTimes.containsKey(p) ? phaseTimes.get(p) : 0;
+			if (p == phase)
+				time += now - phaseStartTime;
+			if (time > 0 || p == phase)
+				phaseTimesObj.put(p.toString().toLowerCase(), time);
+		}
+		json.put("phaseTimes", phaseTimesObj);
+
+		JSONArray lossArray = new JSONArray();
+		lossArray.addAll(losses);
+		json.put("loss", lossArray);
+
+		json.put("queueTime", (startTime > 0 ? startTime : (endTime > 0 ? endTime : now)) - submitTime);
+		if (startTime > 0)
+			json.put("runTime", (endTime > 0 ? endTime : now) - startTime);
+		if (error != null)
+			json.put("error", error);
+		return json;
+	}
+
+}
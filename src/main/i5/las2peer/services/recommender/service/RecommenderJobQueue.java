@@ -0,0 +1,112 @@
+package i5.las2peer.services.recommender.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import i5.las2peer.services.recommender.utils.Logger;
+
+/**
+ * Executes recommender runs in the background. Runs are executed by a fixed number of worker threads; a bounded
+ * number of runs may wait in the queue, further runs are rejected. The status of the most recent jobs is kept
+ * so that it can be retrieved after the job has finished.
+ *
+ */
+public class RecommenderJobQueue {
+
+	/**
+	 * Work done by a job, reporting its progress to the job
+	 */
+	public interface Task {
+		void run(RecommenderJob job) throws Exception;
+	}
+
+	// number of finished jobs whose status is kept
+	private static final int MAX_FINISHED_JOBS = 50;
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicInteger nextJobId = new AtomicInteger(1);
+	private final ConcurrentSkipListMap<Integer, RecommenderJob> jobs = new ConcurrentSkipListMap<>();
+
+	/**
+	 * @param numWorkers number of jobs running at the same time
+	 * @param capacity number of jobs that may wait for execution
+	 */
+	public RecommenderJobQueue(int numWorkers, int capacity) {
+		executor = new ThreadPoolExecutor(numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(capacity), r -> {
+					Thread t = new Thread(r, "recommender-job");
+					t.setDaemon(true);
+					return t;
+				});
+	}
+
+	/**
+	 * Submits a job for execution.
+	 * @param recAlgo name of the recommender algorithm, for status reports
+	 * @param task work done by the job
+	 * @return the job
+	 * @throws RejectedExecutionException if the queue is full
+	 */
+	public RecommenderJob submit(String recAlgo, Task task) {
+		RecommenderJob job = new RecommenderJob(nextJobId.getAndIncrement(), recAlgo);
+		// the job is registered before it is submitted, so that its status is available when it starts
+		jobs.put(job.getId(), job);
+		try {
+			job.setFuture(executor.submit(() -> {
+				if (!job.start())
+					return;
+				try {
+					task.run(job);
+					job.finish();
+				} catch (Exception e) {
+					job.fail(e);
+					if (job.getState() == RecommenderJob.State.FAILED)
+						Logger.logError(this, e);
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			throw e;
+		}
+		removeFinishedJobs();
+		return job;
+	}
+
+	/**
+	 * @param jobId job identifier
+	 * @return the job, null if the job does not exist or its status is no longer kept
+	 */
+	public RecommenderJob getJob(int jobId) {
+		return jobs.get(jobId);
+	}
+
+	/**
+	 * @return the most recently submitted job, null if no job has been submitted
+	 */
+	public RecommenderJob getLastJob() {
+		Map.Entry<Integer, RecommenderJob> entry = jobs.lastEntry();
+		return entry != null ? entry.getValue() : null;
+	}
+
+	private void removeFinishedJobs() {
+		int numFinished = 0;
+		for (RecommenderJob job : jobs.values()) {
+			if (job.isDone())
+				numFinished++;
+		}
+		Iterator<RecommenderJob> it = jobs.values().iterator();
+		while (numFinished > MAX_FINISHED_JOBS && it.hasNext()) {
+			if (it.next().isDone()) {
+				it.remove();
+				numFinished--;
+			}
+		}
+	}
+
+}
@@ -39,6 +39,7 @@ public class UserDao {
 		finally{
 			DbUtils.closeQuietly(conn);
 			DbUtils.closeQuietly(stmnt);
+			dbm.markDataChanged();
 		}
 		
 		if (id < 0){
@@ -74,6 +75,7 @@ public class UserDao {
 			DbUtils.closeQuietly(deleteRatingsStmnt);
 			DbUtils.closeQuietly(deleteTagsStmnt);
 			DbUtils.closeQuietly(deleteUserStmnt);
+			dbm.markDataChanged();
 		}
 		return;
 	}
@@ -119,6 +121,7 @@ public class UserDao {
 		finally{
 			DbUtils.closeQuietly(conn);
 			DbUtils.closeQuietly(stmnt);
+			dbm.markDataChanged();
 		}
 		
 		return;
@@ -140,6 +143,7 @@ public class UserDao {
 		finally{
 			DbUtils.closeQuietly(conn);
 			DbUtils.closeQuietly(stmnt);
+			dbm.markDataChanged();
 		}
 		
 		return;
@@ -159,6 +163,7 @@ public class UserDao {
 		finally{
 			DbUtils.closeQuietly(conn);
 			DbUtils.closeQuietly(stmnt);
+			dbm.markDataChanged();
 		}
 		
 		return;
@@ -179,6 +184,7 @@ public class UserDao {
 		finally{
 			DbUtils.closeQuietly(conn);
 			DbUtils.closeQuietly(stmnt);
+			dbm.markDataChanged();
 		}
 		
 		return;
@@ -1,12 +1,16 @@
 package i5.las2peer.services.recommender.librec;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -17,8 +21,12 @@ import com.google.common.collect.Table;
 
 import i5.las2peer.services.recommender.entities.Rating;
 import i5.las2peer.services.recommender.entities.Tagging;
+import i5.las2peer.services.recommender.librec.data.DenseMatrix;
+import i5.las2peer.services.recommender.librec.data.TopNPredictions;
+import i5.las2peer.services.recommender.librec.intf.IterativeRecommender;
 import i5.las2peer.services.recommender.librec.intf.Recommender;
 import i5.las2peer.services.recommender.librec.main.LibRec;
+import i5.las2peer.services.recommender.librec.rating.TimeComNeighSVD;
 
 /**
  * Test the LibRec class:
@@ -82,7 +90,15 @@ public class LibRecTest {
 	public static void afterTesting() {
 	}
 	
-	
+
+	/**
+	 * Test the eALS model
+	 */
+	@Test
+	public void testEALS() throws Exception {
+		testModel("eals");
+	}
+
 	/**
 	 * Test the NSVD model
 	 */
@@ -127,6 +143,62 @@ public class LibRecTest {
 		testModel("tcnsvd");
 	}
 
+	/**
+	 * Test that the predictions of a learned TCNSVD model from the materialized terms equal the predictions of the
+	 * full computation used while learning, for the rated user-item pairs on their rating days and the unrated pairs,
+	 * both one by one and for all items of a user at once
+	 */
+	@Test
+	public void testTCNSVDMaterializedPredictions() throws Exception {
+		Random random = new Random(7);
+		List<Rating> tcnsvdRatings = new LinkedList<Rating>();
+		List<Integer> tcnsvdUsers = new LinkedList<Integer>(), tcnsvdItems = new LinkedList<Integer>();
+		for (int user = 0; user < 30; user++)
+			tcnsvdUsers.add(user);
+		for (int item = 0; item < 20; item++)
+			tcnsvdItems.add(item);
+		for (int user = 0; user < 30; user++){
+			for (int item = 0; item < 20; item++){
+				if (random.nextInt(4) == 0)
+					tcnsvdRatings.add(new Rating(user, item, 1199567220 + random.nextInt(100000000), 1 + random.nextInt(5)));
+			}
+		}
+		
+		// learn deterministically, using a community detection algorithm without native libraries
+		LibRec librec = new LibRec("tcnsvd");
+		librec.setParameter("learn.rate", "0.0001 -mu 0.0000001 -max -1 -bold-driver -sgd dsgd -blocks 2 -seed 1");
+		librec.setParameter("cd.algo", "slpa");
+		librec.setParameter("num.max.iter", "10");
+		librec.setRatings(tcnsvdRatings, tcnsvdUsers, tcnsvdItems);
+		librec.buildModel();
+		
+		Field modelField = LibRec.class.getDeclaredField("model");
+		modelField.setAccessible(true);
+		TimeComNeighSVD model = (TimeComNeighSVD) modelField.get(librec);
+		Method predict = TimeComNeighSVD.class.getDeclaredMethod("predict", int.class, int.class);
+		predict.setAccessible(true);
+		Field terms = TimeComNeighSVD.class.getDeclaredField("itemFactors");
+		terms.setAccessible(true);
+		Object materializedTerms = terms.get(model);
+		assertTrue("Prediction terms not materialized", materializedTerms != null);
+		
+		double[] userPredictions = new double[tcnsvdItems.size()];
+		for (int u = 0; u < tcnsvdUsers.size(); u++){
+			model.getPredictions(u, userPredictions);
+			for (int i = 0; i < tcnsvdItems.size(); i++){
+				double materialized = (Double) predict.invoke(model, u, i);
+				terms.set(model, null);
+				double full = (Double) predict.invoke(model, u, i);
+				terms.set(model, materializedTerms);
+				assertTrue("Prediction is not finite", !Double.isNaN(full) && !Double.isInfinite(full));
+				assertEquals(String.format("Prediction of user %d for item %d", u, i), full, materialized,
+						1e-12 * Math.max(1, Math.abs(full)));
+				assertEquals(String.format("Prediction of user %d for item %d among all items", u, i), materialized,
+						userPredictions[i], 0);
+			}
+		}
+	}
+
 	/**
 	 * Test the TCNSVD-Fast model
 	 */
@@ -178,6 +250,56 @@ public class LibRecTest {
 		testModel("cnsvd", config);
 	}
 
+	/**
+	 * Test that the DSGD mode learns the same model for a given seed, independent of the number of threads
+	 */
+	@Test
+	public void testDSGDReproducible() throws Exception {
+		// a larger random rating set, so that all blocks of the strata contain ratings
+		Random random = new Random(42);
+		List<Rating> dsgdRatings = new LinkedList<Rating>();
+		for (int user = 0; user < 60; user++){
+			for (int item = 0; item < 40; item++){
+				if (random.nextInt(3) == 0)
+					dsgdRatings.add(new Rating(user, item, 1199567220 + random.nextInt(100000000), 1 + random.nextInt(5)));
+			}
+		}
+		
+		IterativeRecommender single = buildDSGDModel(dsgdRatings, 1);
+		IterativeRecommender multi = buildDSGDModel(dsgdRatings, 4);
+		assertIdentical("P", getFactors(single, "P"), getFactors(multi, "P"));
+		assertIdentical("Q", getFactors(single, "Q"), getFactors(multi, "Q"));
+	}
+
+	private IterativeRecommender buildDSGDModel(List<Rating> dsgdRatings, int numThreads) throws Exception{
+		LibRec librec = new LibRec("svd");
+		librec.setParameter("learn.rate", "0.01 -max -1 -decay 0.95 -sgd dsgd -blocks 8 -seed 7");
+		librec.setParameter("evaluation.setup", "--test-view all --early-stop loss -cpu " + numThreads);
+		librec.setRatings(dsgdRatings);
+		librec.buildModel();
+		
+		Field model = LibRec.class.getDeclaredField("model");
+		model.setAccessible(true);
+		return (IterativeRecommender) model.get(librec);
+	}
+
+	private DenseMatrix getFactors(IterativeRecommender model, String name) throws Exception{
+		Field factors = IterativeRecommender.class.getDeclaredField(name);
+		factors.setAccessible(true);
+		return (DenseMatrix) factors.get(model);
+	}
+
+	private void assertIdentical(String name, DenseMatrix expected, DenseMatrix actual){
+		assertEquals(name + " rows", expected.numRows(), actual.numRows());
+		assertEquals(name + " columns", expected.numColumns(), actual.numColumns());
+		for (int i = 0; i < expected.numRows(); i++){
+			for (int j = 0; j < expected.numColumns(); j++){
+				assertEquals(String.format("%s[%d][%d]", name, i, j),
+						Double.doubleToLongBits(expected.get(i, j)), Double.doubleToLongBits(actual.get(i, j)));
+			}
+		}
+	}
+
 	private void testModel(String model) throws Exception{
 		// use an empty config map
 		Map<String,String> config = new HashMap<String,String>();
@@ -205,7 +327,24 @@ public class LibRecTest {
 		int numPredictions = predictions.size();
 		assertTrue(String.format("Number of predictions is %d, expected 24", numPredictions),
 				numPredictions == 24);
-		
+
+		// get the top-3 predictions of each user, excluding rated items, and compare with all predictions
+		TopNPredictions topN = librec.getTopNPredictions(3);
+		assertTrue(String.format("Number of top-N predictions is %d, expected 12", topN.size()),
+				topN.size() == 12);
+		for (int u = 0; u < topN.numUsers(); u++){
+			int user = topN.getUsers()[u];
+			for (int pos = topN.getPointers()[u]; pos < topN.getPointers()[u + 1]; pos++){
+				int item = topN.getItems()[pos];
+				assertTrue("Top-N prediction of a rated item", !isRated(user, item));
+				assertTrue("Top-N prediction differs from prediction table",
+						topN.getPredictions()[pos] == predictions.get(user, item).floatValue());
+				if (pos > topN.getPointers()[u])
+					assertTrue("Top-N predictions not in descending order",
+							topN.getPredictions()[pos - 1] >= topN.getPredictions()[pos]);
+			}
+		}
+
 		// get individual predictions for all user-item pairs
 		for (int user : users){
 			for (int item : items){
@@ -221,4 +360,12 @@ public class LibRecTest {
 		librec.getEvalResult(Recommender.Measure.Pre10);
 		librec.getEvalResult(Recommender.Measure.Rec10);
 	}
+	
+	private boolean isRated(int user, int item){
+		for (Rating rating : ratings){
+			if (rating.getUserId() == user && rating.getItemId() == item)
+				return true;
+		}
+		return false;
+	}
 }
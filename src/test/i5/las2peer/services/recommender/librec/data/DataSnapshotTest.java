@@ -0,0 +1,287 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+
+/**
+ * Test that a data snapshot reads back the data set it has been written from:
+ * - a time matrix sharing the index of the rating matrix, one with an index of its own and no time matrix
+ * - numeric and string id dictionaries
+ * - user and item tag tables
+ * - snapshots of another version of the format and truncated snapshots, which are rejected
+ */
+public class DataSnapshotTest {
+
+	private static final int[] TIME_COLS = { 0, 1, 2, 3 }, RATING_COLS = { 0, 1, 2 };
+
+	private static final String SOURCE = "ratings.csv 1476316800000 ü€";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test a data set with numeric ids and a time matrix sharing the index of the rating matrix
+	 */
+	@Test
+	public void testSharedTimeMatrix() throws Exception {
+		DataDAO dao = readDao(ratings(false), TIME_COLS);
+		assertTrue(dao.getUserIds() instanceof IntIdDictionary);
+		assertTrue(dao.getTimeMatrix().sharesIndex(dao.getRateMatrix()));
+
+		DataSnapshot snapshot = roundTrip(dao, null, null);
+		assertTrue(snapshot.getDao().getTimeMatrix().sharesIndex(snapshot.getDao().getRateMatrix()));
+	}
+
+	/**
+	 * Test a data set whose time matrix has an index of its own, as it lacks timestamps for some ratings
+	 */
+	@Test
+	public void testOwnTimeMatrix() throws Exception {
+		DataDAO dao = readDao(ratings(false), TIME_COLS);
+		SparseMatrixBuilder builder = new SparseMatrixBuilder();
+		int skipped = 0;
+		for (MatrixEntry entry : dao.getTimeMatrix()) {
+			if (skipped++ % 3 != 0)
+				builder.add(entry.row(), entry.column(), entry.get());
+		}
+		dao.timeMatrix = builder.build(dao.getRateMatrix());
+		assertFalse(dao.getTimeMatrix().sharesIndex(dao.getRateMatrix()));
+
+		DataSnapshot snapshot = roundTrip(dao, null, null);
+		assertFalse(snapshot.getDao().getTimeMatrix().sharesIndex(snapshot.getDao().getRateMatrix()));
+	}
+
+	/**
+	 * Test a data set without timestamps
+	 */
+	@Test
+	public void testNoTimeMatrix() throws Exception {
+		DataDAO dao = readDao(ratings(false), RATING_COLS);
+		assertNull(dao.getTimeMatrix());
+
+		DataSnapshot snapshot = roundTrip(dao, null, null);
+		assertNull(snapshot.getDao().getTimeMatrix());
+	}
+
+	/**
+	 * Test a data set with ids that are not numeric, kept in string dictionaries
+	 */
+	@Test
+	public void testStringIds() throws Exception {
+		DataDAO dao = readDao(ratings(true), TIME_COLS);
+		assertTrue(dao.getUserIds() instanceof StringIdDictionary);
+		assertTrue(dao.getItemIds() instanceof StringIdDictionary);
+
+		DataSnapshot snapshot = roundTrip(dao, null, null);
+		assertTrue(snapshot.getDao().getUserIds() instanceof StringIdDictionary);
+	}
+
+	/**
+	 * Test a data set whose items are users, e.g. a social network, sharing one id dictionary
+	 */
+	@Test
+	public void testItemAsUser() throws Exception {
+		DataDAO dao = new DataDAO(write(ratings(false)), new IntIdDictionary());
+		dao.setHeadline(true);
+		dao.readData(TIME_COLS, -1);
+		assertTrue(dao.isItemAsUser());
+
+		DataSnapshot snapshot = roundTrip(dao, null, null);
+		assertSame(snapshot.getDao().getUserIds(), snapshot.getDao().getItemIds());
+	}
+
+	/**
+	 * Test user and item tag tables, with several timestamps in some cells
+	 */
+	@Test
+	public void testTagTables() throws Exception {
+		DataDAO dao = readDao(ratings(false), TIME_COLS);
+		Random random = new Random(3);
+		Table<Integer, Integer, Set<Long>> userTags = HashBasedTable.create(), itemTags = HashBasedTable.create();
+		for (int t = 0; t < 100; t++) {
+			int user = random.nextInt(dao.numUsers()), item = random.nextInt(dao.numItems()), tag = random.nextInt(20);
+			long timestamp = 1199567220L + random.nextInt(1000000);
+			if (!userTags.contains(user, tag))
+				userTags.put(user, tag, new HashSet<Long>());
+			userTags.get(user, tag).add(timestamp);
+			if (!itemTags.contains(item, tag))
+				itemTags.put(item, tag, new HashSet<Long>());
+			itemTags.get(item, tag).add(timestamp);
+		}
+
+		DataSnapshot snapshot = roundTrip(dao, userTags, itemTags);
+		assertEquals(userTags, snapshot.getUserTagTable());
+		assertEquals(itemTags, snapshot.getItemTagTable());
+	}
+
+	/**
+	 * Test that a snapshot replaces an existing snapshot, and that a snapshot of another version of the format is
+	 * neither matched by its source nor read
+	 */
+	@Test
+	public void testVersionMismatch() throws Exception {
+		DataDAO dao = readDao(ratings(false), TIME_COLS);
+		String path = new File(folder.getRoot(), "snapshot.bin").getPath();
+		DataSnapshot.write(path, "old source", dao, null, null);
+		DataSnapshot.write(path, SOURCE, dao, null, null);
+		assertEquals(SOURCE, DataSnapshot.readSource(path));
+
+		try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+			byte[] bytes = new byte[4];
+			file.seek(4);
+			file.readFully(bytes);
+			int version = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+			file.seek(4);
+			file.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(version + 1).array());
+		}
+		assertNull(DataSnapshot.readSource(path));
+		assertReadFails(path);
+	}
+
+	/**
+	 * Test that truncated snapshots are rejected rather than read as partial data sets
+	 */
+	@Test
+	public void testTruncated() throws Exception {
+		DataDAO dao = readDao(ratings(false), TIME_COLS);
+		Table<Integer, Integer, Set<Long>> tags = HashBasedTable.create();
+		tags.put(0, 0, new HashSet<>(Arrays.asList(1199567220L, 1199567221L)));
+		String path = new File(folder.getRoot(), "snapshot.bin").getPath();
+		DataSnapshot.write(path, SOURCE, dao, tags, tags);
+		byte[] bytes = Files.readAllBytes(new File(path).toPath());
+
+		for (int length : new int[] { 0, 6, 10, bytes.length / 2, bytes.length - 1 }) {
+			String truncated = new File(folder.getRoot(), "truncated" + length + ".bin").getPath();
+			Files.write(new File(truncated).toPath(), Arrays.copyOf(bytes, length));
+			assertReadFails(truncated);
+			if (length < 8)
+				assertNull(DataSnapshot.readSource(truncated));
+		}
+		assertNull(DataSnapshot.readSource(new File(folder.getRoot(), "missing.bin").getPath()));
+	}
+
+	/**
+	 * Writes and reads a snapshot, and asserts that it holds the data of the DAO and the tag tables
+	 */
+	private DataSnapshot roundTrip(DataDAO dao, Table<Integer, Integer, Set<Long>> userTags,
+			Table<Integer, Integer, Set<Long>> itemTags) throws Exception {
+		String path = new File(folder.getRoot(), "snapshot.bin").getPath();
+		DataSnapshot.write(path, SOURCE, dao, userTags, itemTags);
+		assertEquals(SOURCE, DataSnapshot.readSource(path));
+
+		DataSnapshot snapshot = DataSnapshot.read(path);
+		assertEquals(SOURCE, snapshot.getSource());
+		assertEquals(userTags, snapshot.getUserTagTable());
+		assertEquals(itemTags, snapshot.getItemTagTable());
+
+		DataDAO actual = snapshot.getDao();
+		assertEquals(dao.getDataPath(), actual.getDataPath());
+		assertEquals(dao.timeUnit, actual.timeUnit);
+		assertEquals(dao.getMinTimestamp(), actual.getMinTimestamp());
+		assertEquals(dao.getMaxTimestamp(), actual.getMaxTimestamp());
+		assertEquals(dao.numRatings(), actual.numRatings());
+		assertEquals(dao.getRatingScale(), actual.getRatingScale());
+		assertEquals(dao.scaleDist, actual.scaleDist);
+		assertEquals(dao.isItemAsUser(), actual.isItemAsUser());
+		assertIds(dao.getUserIds(), actual.getUserIds());
+		assertIds(dao.getItemIds(), actual.getItemIds());
+
+		assertIdentical(dao.getRateMatrix(), actual.getRateMatrix());
+		if (dao.getTimeMatrix() == null)
+			assertNull(actual.getTimeMatrix());
+		else
+			assertIdentical(dao.getTimeMatrix(), actual.getTimeMatrix());
+		return snapshot;
+	}
+
+	private DataDAO readDao(String content, int[] cols) throws Exception {
+		DataDAO dao = new DataDAO(write(content));
+		dao.setHeadline(true);
+		dao.setTimeUnit(TimeUnit.SECONDS);
+		dao.readData(cols, -1);
+		return dao;
+	}
+
+	private String write(String content) throws Exception {
+		File file = folder.newFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file.getPath();
+	}
+
+	private static void assertReadFails(String path) {
+		try {
+			DataSnapshot.read(path);
+			fail("Snapshot " + path + " read");
+		} catch (Exception e) {
+			// expected
+		}
+	}
+
+	private static void assertIds(IdDictionary expected, IdDictionary actual) {
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(expected.size(), actual.size());
+		for (int id = 0; id < expected.size(); id++) {
+			assertEquals(expected.getRawId(id), actual.getRawId(id));
+			assertEquals(id, actual.get(expected.getRawId(id)));
+		}
+	}
+
+	/**
+	 * Asserts that both matrices have the same dimensions and the same CRS and CCS arrays
+	 */
+	private static void assertIdentical(SparseMatrix expected, SparseMatrix actual) {
+		assertNotNull(actual);
+		assertEquals(expected.numRows(), actual.numRows());
+		assertEquals(expected.numColumns(), actual.numColumns());
+		assertArrayEquals(expected.getRowPointers(), actual.getRowPointers());
+		assertArrayEquals(expected.getColumnIndices(), actual.getColumnIndices());
+		assertArrayEquals(expected.getData(), actual.getData(), 0);
+		assertArrayEquals(expected.getColumnPointers(), actual.getColumnPointers());
+		assertArrayEquals(expected.getRowIndices(), actual.getRowIndices());
+		assertArrayEquals(expected.getColumnData(), actual.getColumnData(), 0);
+	}
+
+	/**
+	 * @return MovieLens ratings with a headline and timestamps in seconds, with numeric ids or ids with a prefix
+	 */
+	private static String ratings(boolean isStringIds) {
+		Random random = new Random(isStringIds ? 2 : 1);
+		StringBuilder sb = new StringBuilder("userId,movieId,rating,timestamp\n");
+		for (int l = 0; l < 200; l++) {
+			String user = Integer.toString(random.nextInt(40)), item = Integer.toString(1 + random.nextInt(30));
+			if (isStringIds) {
+				user = "u" + user;
+				item = "i" + item;
+			}
+			sb.append(user).append(',').append(item).append(',').append(0.5 * (1 + random.nextInt(10))).append(',')
+					.append(973234800 + 100 * random.nextInt(100000)).append('\n');
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,118 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Field;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that the folds selected from the rating matrix by their entries equal the folds built entry by entry:
+ * - k-fold cross validation of DataSplitter
+ * - time-aware folds of TimeDataSplitter
+ */
+public class DataSplitterTest {
+
+	private static final int NUM_USERS = 50, NUM_ITEMS = 30, NUM_FOLDS = 5;
+
+	private static SparseMatrix ratings, times;
+
+	/**
+	 * Called before the tests start.
+	 * Build a random rating matrix with a timestamp for each rating.
+	 */
+	@BeforeClass
+	public static void initData() {
+		Random random = new Random(42);
+		SparseMatrixBuilder rateBuilder = new SparseMatrixBuilder(), timeBuilder = new SparseMatrixBuilder();
+		for (int u = 0; u < NUM_USERS; u++) {
+			for (int j = 0; j < NUM_ITEMS; j++) {
+				if (random.nextInt(3) == 0) {
+					rateBuilder.add(u, j, 1 + random.nextInt(5));
+					timeBuilder.add(u, j, 1199567220000L + random.nextInt(1000000000));
+				}
+			}
+		}
+		ratings = rateBuilder.build(NUM_USERS, NUM_ITEMS);
+		times = timeBuilder.build(ratings);
+	}
+
+	/**
+	 * Test the folds of k-fold cross validation
+	 */
+	@Test
+	public void testKFold() throws Exception {
+		DataSplitter splitter = new DataSplitter(ratings, NUM_FOLDS);
+		int[] assignments = (int[]) getField(splitter, "assignments");
+
+		for (int k = 1; k <= NUM_FOLDS; k++) {
+			SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
+			for (int u = 0; u < NUM_USERS; u++) {
+				IndexView items = ratings.rowView(u);
+				for (int p = 0; p < items.size(); p++) {
+					if (assignments[items.position(p)] == k)
+						test.add(u, items.get(p), items.value(p));
+					else
+						train.add(u, items.get(p), items.value(p));
+				}
+			}
+			assertFold(k, train, test, splitter.getKthFoldEntries(k));
+		}
+		assertNull(splitter.getKthFoldEntries(NUM_FOLDS + 1));
+	}
+
+	/**
+	 * Test the folds of the time-aware evaluation protocol
+	 */
+	@Test
+	public void testTimeFolds() throws Exception {
+		TimeDataSplitter splitter = new TimeDataSplitter(ratings, times, NUM_FOLDS, 0.8, 0.2);
+		long[] startTimestamp = (long[]) getField(splitter, "startTimestamp");
+		long[] splitTimestamp = (long[]) getField(splitter, "splitTimestamp");
+		long[] endTimestamp = (long[]) getField(splitter, "endTimestamp");
+
+		for (int k = 1; k <= NUM_FOLDS; k++) {
+			SparseMatrixBuilder train = new SparseMatrixBuilder(), test = new SparseMatrixBuilder();
+			for (MatrixEntry entry : ratings) {
+				long ratingTime = (long) times.get(entry.row(), entry.column());
+				if (ratingTime >= startTimestamp[k - 1] && ratingTime <= splitTimestamp[k - 1])
+					train.add(entry.row(), entry.column(), entry.get());
+				if (ratingTime > splitTimestamp[k - 1] && ratingTime <= endTimestamp[k - 1])
+					test.add(entry.row(), entry.column(), entry.get());
+			}
+			assertFold(k, train, test, splitter.getKthFoldEntries(k));
+		}
+		assertNull(splitter.getKthFoldEntries(NUM_FOLDS + 1));
+	}
+
+	private static Object getField(Object splitter, String name) throws Exception {
+		Field field = splitter.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(splitter);
+	}
+
+	private static void assertFold(int k, SparseMatrixBuilder train, SparseMatrixBuilder test, BitSet[] entries) {
+		assertIdentical("train " + k, train.build(NUM_USERS, NUM_ITEMS), ratings.select(entries[0]));
+		assertIdentical("test " + k, test.build(NUM_USERS, NUM_ITEMS), ratings.select(entries[1]));
+	}
+
+	/**
+	 * Asserts that both matrices have the same dimensions and the same CRS and CCS arrays
+	 */
+	private static void assertIdentical(String name, SparseMatrix expected, SparseMatrix actual) {
+		assertEquals(name, expected.numRows(), actual.numRows());
+		assertEquals(name, expected.numColumns(), actual.numColumns());
+		assertArrayEquals(name, expected.getRowPointers(), actual.getRowPointers());
+		assertArrayEquals(name, expected.getColumnIndices(), actual.getColumnIndices());
+		assertArrayEquals(name, expected.getData(), actual.getData(), 0);
+		assertArrayEquals(name, expected.getColumnPointers(), actual.getColumnPointers());
+		assertArrayEquals(name, expected.getRowIndices(), actual.getRowIndices());
+		assertArrayEquals(name, expected.getColumnData(), actual.getColumnData(), 0);
+	}
+
+}
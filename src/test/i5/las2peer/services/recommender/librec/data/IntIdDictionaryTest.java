@@ -0,0 +1,182 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test that the dictionary of numeric raw ids numbers the raw ids as a dictionary of strings does:
+ * - growing over several rehashes, with negative ids and the smallest and largest ints
+ * - ids whose hashes collide in the hash table
+ * - lookups of raw ids that have not been added
+ * - rejecting raw ids that are not integers in canonical form, e.g. "007" and "+7"
+ * - the same inner ids and raw ids as a dictionary of strings
+ */
+public class IntIdDictionaryTest {
+
+	/**
+	 * Test adding more ids than fit into the initial table, such that the table is rehashed several times
+	 */
+	@Test
+	public void testRehash() throws Exception {
+		IntIdDictionary dict = new IntIdDictionary(8);
+		int initialSlots = ((int[]) getField(dict, "slots")).length;
+
+		Random random = new Random(1);
+		List<Integer> ids = new ArrayList<>();
+		for (int id : new int[] { 0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE })
+			ids.add(id);
+		while (ids.size() < 1000) {
+			int id = random.nextInt(200000) - 100000;
+			if (!ids.contains(id))
+				ids.add(id);
+		}
+
+		for (int k = 0; k < ids.size(); k++)
+			assertEquals(k, dict.add(ids.get(k)));
+		assertTrue("Fewer than two rehashes", ((int[]) getField(dict, "slots")).length >= 4 * initialSlots);
+		assertAllIds(dict, ids);
+
+		// adding an id again returns its inner id
+		for (int k = 0; k < ids.size(); k++)
+			assertEquals(k, dict.add(ids.get(k)));
+		assertEquals(ids.size(), dict.size());
+	}
+
+	/**
+	 * Test ids whose hashes fall into the same slot of a large table, such that they collide in the initial table
+	 * and after each rehash
+	 */
+	@Test
+	public void testCollisions() throws Exception {
+		Method hash = IntIdDictionary.class.getDeclaredMethod("hash", int.class);
+		hash.setAccessible(true);
+		int mask = (1 << 12) - 1;
+		int slot = (int) hash.invoke(null, 7) & mask;
+
+		List<Integer> ids = new ArrayList<>();
+		List<Integer> missing = new ArrayList<>();
+		for (int id = -1000000; ids.size() < 200 || missing.size() < 20; id++) {
+			if (((int) hash.invoke(null, id) & mask) == slot) {
+				if (ids.size() < 200)
+					ids.add(id);
+				else
+					missing.add(id);
+			}
+		}
+
+		IntIdDictionary dict = new IntIdDictionary();
+		for (int k = 0; k < ids.size(); k++)
+			assertEquals(k, dict.add(ids.get(k)));
+		assertAllIds(dict, ids);
+		for (int id : missing) {
+			assertEquals(-1, dict.get(id));
+			assertEquals(-1, dict.get(Integer.toString(id)));
+		}
+	}
+
+	/**
+	 * Test lookups of raw ids and inner ids that have not been added
+	 */
+	@Test
+	public void testMissing() {
+		IntIdDictionary dict = new IntIdDictionary();
+		assertEquals(-1, dict.get(7));
+		assertEquals(-1, dict.get("7"));
+
+		dict.add(7);
+		dict.add(-7);
+		assertEquals(-1, dict.get(8));
+		assertEquals(-1, dict.get("8"));
+		for (String rawId : new String[] { "007", "+7", "-07", "-0", "", "-", "7a", "2147483648", "-2147483649" })
+			assertEquals(rawId, -1, dict.get(rawId));
+
+		assertNull(dict.getRawId(-1));
+		assertNull(dict.getRawId(2));
+		try {
+			dict.getNumericRawId(2);
+			fail("Inner id 2 is out of range");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Test that raw ids that are not integers in canonical form are rejected, as a dictionary of strings would
+	 * number them apart from the integers they denote
+	 */
+	@Test
+	public void testNonCanonical() {
+		IntIdDictionary dict = new IntIdDictionary();
+		dict.add("7");
+		for (String rawId : new String[] { "007", "+7", "-0", "", "1e3", " 7", "2147483648" }) {
+			try {
+				dict.add(rawId);
+				fail("Raw id \"" + rawId + "\" added");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		assertEquals(1, dict.size());
+		assertEquals(0, dict.add("7"));
+	}
+
+	/**
+	 * Test that raw ids in canonical form are numbered as by a dictionary of strings, and are returned by getRawId
+	 * and getNumericRawId as that dictionary returns them
+	 */
+	@Test
+	public void testSameAsStringIds() {
+		IdDictionary intIds = new IntIdDictionary(), stringIds = new StringIdDictionary();
+		Random random = new Random(2);
+		for (int k = 0; k < 5000; k++) {
+			int id = random.nextBoolean() ? random.nextInt(1000) - 500 : random.nextInt();
+			String rawId = Integer.toString(id);
+			if (random.nextBoolean())
+				assertEquals(rawId, stringIds.add(rawId), intIds.add(rawId));
+			else
+				assertEquals(rawId, stringIds.add(id), intIds.add(id));
+		}
+		for (String rawId : new String[] { "0", "-2147483648", "2147483647" })
+			assertEquals(rawId, stringIds.add(rawId), intIds.add(rawId));
+
+		assertEquals(stringIds.size(), intIds.size());
+		for (int innerId = 0; innerId < stringIds.size(); innerId++) {
+			String rawId = stringIds.getRawId(innerId);
+			assertEquals(rawId, intIds.getRawId(innerId));
+			assertEquals(stringIds.getNumericRawId(innerId), intIds.getNumericRawId(innerId));
+			assertEquals(innerId, intIds.get(rawId));
+			assertEquals(innerId, intIds.get(Integer.parseInt(rawId)));
+		}
+	}
+
+	/**
+	 * Asserts that the dictionary holds exactly the given ids, numbered in the order of the list
+	 */
+	private static void assertAllIds(IdDictionary dict, List<Integer> ids) {
+		assertEquals(ids.size(), dict.size());
+		for (int k = 0; k < ids.size(); k++) {
+			int id = ids.get(k);
+			assertEquals(k, dict.get(id));
+			assertEquals(k, dict.get(Integer.toString(id)));
+			assertEquals(Integer.toString(id), dict.getRawId(k));
+			assertEquals(id, dict.getNumericRawId(k));
+		}
+	}
+
+	private static Object getField(Object object, String name) throws Exception {
+		Field field = object.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(object);
+	}
+
+}
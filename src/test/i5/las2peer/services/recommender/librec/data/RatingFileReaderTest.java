@@ -0,0 +1,216 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
+/**
+ * Test that the rating file reader reads the same data as reading the file line by line:
+ * - FilmTrust, MovieLens and Netflix layouts, each in one chunk and split into several chunks
+ * - CRLF line ends, a missing line end at the end of the file and timestamps in exponent notation
+ * - files with ids that are not in canonical form, which are left to the line reader
+ */
+public class RatingFileReaderTest {
+
+	private static final int[] FILMTRUST_COLS = { 0, 1, 2 }, TIME_COLS = { 0, 1, 2, 3 };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test a FilmTrust file, with space separated columns and leading and trailing spaces
+	 */
+	@Test
+	public void testFilmTrust() throws Exception {
+		assertSameData(filmTrust("\n", true), FILMTRUST_COLS, false, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Test a FilmTrust file without a line end after the last line
+	 */
+	@Test
+	public void testMissingLastLineEnd() throws Exception {
+		assertSameData(filmTrust("\n", false), FILMTRUST_COLS, false, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Test a MovieLens file, with comma separated columns, a headline and timestamps in seconds
+	 */
+	@Test
+	public void testMovieLens() throws Exception {
+		assertSameData(movieLens("\n", false), TIME_COLS, true, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Test a MovieLens file with CRLF line ends
+	 */
+	@Test
+	public void testCRLF() throws Exception {
+		assertSameData(movieLens("\r\n", false), TIME_COLS, true, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Test a MovieLens file with timestamps in exponent notation, e.g. 9.7323480e+008
+	 */
+	@Test
+	public void testExponentTimestamps() throws Exception {
+		String data = movieLens("\n", true);
+		assertTrue(data.contains("e+008"));
+		assertSameData(data, TIME_COLS, true, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Test a Netflix file, with tab separated columns, a headline and timestamps in milliseconds
+	 */
+	@Test
+	public void testNetflix() throws Exception {
+		assertSameData(netflix(), TIME_COLS, true, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Test a file with an id that is not in canonical form, which the reader leaves to the line reader
+	 */
+	@Test
+	public void testNonCanonicalId() throws Exception {
+		String path = write(movieLens("\n", false) + "007,12,4.0,973234800\n");
+
+		DataDAO dao = new DataDAO(path);
+		for (long minChunkSize : new long[] { 1 << 20, 16 }) {
+			RatingFileReader reader = new RatingFileReader(path, TIME_COLS, -1, TimeUnit.SECONDS);
+			reader.setMinChunkSize(minChunkSize);
+			assertNull(reader.read(true, dao.userIds, dao.itemIds, dao.scaleDist));
+			assertEquals(0, dao.userIds.size());
+			assertEquals(0, dao.itemIds.size());
+			assertEquals(0, dao.scaleDist.size());
+		}
+
+		dao.setHeadline(true);
+		SparseMatrix[] data = dao.readData(TIME_COLS, -1);
+		assertEquals(4.0, data[0].get(dao.getUserIds().get("007"), dao.getItemIds().get("12")), 0);
+		assertTrue(dao.getUserIds().get("7") < 0);
+	}
+
+	/**
+	 * Asserts that the file reader, reading the data in one chunk and in several chunks, and the line reader read the
+	 * same ids, ratings, rating distribution and timestamps
+	 */
+	private void assertSameData(String content, int[] cols, boolean headline, TimeUnit timeUnit) throws Exception {
+		String path = write(content);
+
+		DataDAO lineDao = new DataDAO(path);
+		lineDao.setHeadline(headline);
+		lineDao.setTimeUnit(timeUnit);
+		lineDao.minTimestamp = Long.MAX_VALUE;
+		lineDao.maxTimestamp = Long.MIN_VALUE;
+		Method readLines = DataDAO.class.getDeclaredMethod("readLines", int[].class, double.class);
+		readLines.setAccessible(true);
+		SparseMatrixBuilder[] expected = (SparseMatrixBuilder[]) readLines.invoke(lineDao, cols, -1.0);
+
+		// a file of more than 32 bytes is split into several chunks of at least 16 bytes
+		assertTrue(content.length() > 32);
+		for (long minChunkSize : new long[] { 1 << 20, 16 }) {
+			IdDictionary userIds = new IntIdDictionary(), itemIds = new IntIdDictionary();
+			Multiset<Double> scaleDist = HashMultiset.create();
+			RatingFileReader reader = new RatingFileReader(path, cols, -1, timeUnit);
+			reader.setMinChunkSize(minChunkSize);
+			SparseMatrixBuilder[] actual = reader.read(headline, userIds, itemIds, scaleDist);
+			assertNotNull(actual);
+
+			assertIds(lineDao.userIds, userIds);
+			assertIds(lineDao.itemIds, itemIds);
+			assertEquals(lineDao.scaleDist, scaleDist);
+
+			int numRows = userIds.size(), numColumns = itemIds.size();
+			assertIdentical(expected[0].build(numRows, numColumns), actual[0].build(numRows, numColumns));
+			if (expected[1] == null) {
+				assertNull(actual[1]);
+			} else {
+				assertIdentical(expected[1].build(numRows, numColumns), actual[1].build(numRows, numColumns));
+			}
+			assertEquals(lineDao.minTimestamp, reader.getMinTimestamp());
+			assertEquals(lineDao.maxTimestamp, reader.getMaxTimestamp());
+		}
+	}
+
+	private String write(String content) throws Exception {
+		File file = folder.newFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file.getPath();
+	}
+
+	private static void assertIds(IdDictionary expected, IdDictionary actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int id = 0; id < expected.size(); id++)
+			assertEquals(expected.getRawId(id), actual.getRawId(id));
+	}
+
+	private static void assertIdentical(SparseMatrix expected, SparseMatrix actual) {
+		assertArrayEquals(expected.getRowPointers(), actual.getRowPointers());
+		assertArrayEquals(expected.getColumnIndices(), actual.getColumnIndices());
+		assertArrayEquals(expected.getData(), actual.getData(), 0);
+	}
+
+	/**
+	 * @return FilmTrust ratings, with ratings in half steps and repeated ratings of the same items
+	 */
+	private static String filmTrust(String lineEnd, boolean isLastLineEnd) {
+		Random random = new Random(1);
+		StringBuilder sb = new StringBuilder();
+		for (int l = 0; l < 40; l++) {
+			if (l > 0)
+				sb.append(lineEnd);
+			sb.append(' ').append(random.nextInt(30)).append(' ').append(random.nextInt(20)).append(' ')
+					.append(0.5 * (1 + random.nextInt(8))).append(' ');
+		}
+		if (isLastLineEnd)
+			sb.append(lineEnd);
+		return sb.toString();
+	}
+
+	/**
+	 * @return MovieLens ratings with a headline, and timestamps in seconds in plain or exponent notation
+	 */
+	private static String movieLens(String lineEnd, boolean isExponent) {
+		Random random = new Random(2);
+		StringBuilder sb = new StringBuilder("userId,movieId,rating,timestamp").append(lineEnd);
+		for (int l = 0; l < 40; l++) {
+			long time = 973234800 + 100 * random.nextInt(100000);
+			String timestamp = isExponent ? String.format(Locale.ROOT, "%.7fe+008", time / 1e8) : Long.toString(time);
+			sb.append(random.nextInt(30)).append(',').append(random.nextInt(20)).append(',')
+					.append(0.5 * (1 + random.nextInt(10))).append(',').append(timestamp).append(lineEnd);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return Netflix ratings with a headline, integer ratings and timestamps in milliseconds
+	 */
+	private static String netflix() {
+		Random random = new Random(3);
+		StringBuilder sb = new StringBuilder("user\titem\trating\ttime\n");
+		for (int l = 0; l < 40; l++) {
+			sb.append(random.nextInt(30)).append('\t').append(random.nextInt(20)).append('\t')
+					.append(random.nextInt(6)).append('\t').append(942989214000L + 1000L * random.nextInt(1000000))
+					.append('\n');
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,136 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test building a sparse matrix on the index structure of another matrix, e.g. the timestamps of a rating matrix,
+ * and reading its values at the entries of the other matrix:
+ * - matrices with the same cells share the index
+ * - matrices with other cells get an index of their own
+ * - values read at entries and row views equal the values searched for by row and column
+ */
+public class SparseMatrixBuilderTest {
+
+	// u\i  0   1   2   3
+	//  0  3.0     1.0
+	//  1      2.0     4.0
+	//  2
+	//  3  5.0 1.5     2.5
+	private static final int[][] CELLS = { { 0, 0 }, { 0, 2 }, { 1, 1 }, { 1, 3 }, { 3, 0 }, { 3, 1 }, { 3, 3 } };
+	private static final double[] RATINGS = { 3.0, 1.0, 2.0, 4.0, 5.0, 1.5, 2.5 };
+
+	private static SparseMatrix ratings;
+
+	/**
+	 * Called before the tests start.
+	 * Build the rating matrix whose index is shared.
+	 */
+	@BeforeClass
+	public static void initData() {
+		SparseMatrixBuilder builder = new SparseMatrixBuilder();
+		for (int e = 0; e < CELLS.length; e++)
+			builder.add(CELLS[e][0], CELLS[e][1], RATINGS[e]);
+		ratings = builder.build(4, 4);
+	}
+
+	/**
+	 * Test a timestamp matrix with the cells of the rating matrix, added in another order and with an overwritten
+	 * cell
+	 */
+	@Test
+	public void testSharedIndex() {
+		SparseMatrixBuilder builder = new SparseMatrixBuilder();
+		builder.add(3, 3, 0);
+		for (int e = CELLS.length - 1; e >= 0; e--)
+			builder.add(CELLS[e][0], CELLS[e][1], timestamp(CELLS[e][0], CELLS[e][1]));
+		SparseMatrix times = builder.build(ratings);
+
+		assertTrue("Index not shared", times.sharesIndex(ratings));
+		assertEquals(ratings.size(), times.size());
+		assertValues(times, CELLS.length);
+	}
+
+	/**
+	 * Test a timestamp matrix with timestamps for only some of the ratings
+	 */
+	@Test
+	public void testPartialIndex() {
+		SparseMatrixBuilder builder = new SparseMatrixBuilder();
+		for (int e = 0; e < CELLS.length; e++) {
+			if (e != 3)
+				builder.add(CELLS[e][0], CELLS[e][1], timestamp(CELLS[e][0], CELLS[e][1]));
+		}
+		SparseMatrix times = builder.build(ratings);
+
+		assertFalse("Index shared", times.sharesIndex(ratings));
+		assertEquals(4, times.numRows());
+		assertEquals(4, times.numColumns());
+		assertValues(times, CELLS.length - 1);
+		assertEquals(0, times.get(1, 3), 0);
+	}
+
+	/**
+	 * Test a timestamp matrix with a cell that is not rated
+	 */
+	@Test
+	public void testExtraCell() {
+		SparseMatrixBuilder builder = new SparseMatrixBuilder();
+		for (int e = 0; e < CELLS.length; e++)
+			builder.add(CELLS[e][0], CELLS[e][1], timestamp(CELLS[e][0], CELLS[e][1]));
+		builder.add(2, 2, timestamp(2, 2));
+		SparseMatrix times = builder.build(ratings);
+
+		assertFalse("Index shared", times.sharesIndex(ratings));
+		assertEquals(CELLS.length + 1, times.size());
+		assertValues(times, CELLS.length + 1);
+		assertEquals(timestamp(2, 2), times.get(2, 2), 0);
+	}
+
+	/**
+	 * Test reading with the view of another row of a matrix sharing the index, which must not use the positions of
+	 * the view
+	 */
+	@Test
+	public void testViewOfOtherRow() {
+		SparseMatrixBuilder builder = new SparseMatrixBuilder();
+		for (int e = 0; e < CELLS.length; e++)
+			builder.add(CELLS[e][0], CELLS[e][1], timestamp(CELLS[e][0], CELLS[e][1]));
+		SparseMatrix times = builder.build(ratings);
+
+		IndexView view = ratings.rowView(3);
+		for (int k = 0; k < view.size(); k++)
+			assertEquals(times.get(0, view.get(k)), times.get(0, view, k), 0);
+	}
+
+	private static double timestamp(int row, int column) {
+		return 1199567220 + 1000 * row + column;
+	}
+
+	/**
+	 * Asserts that the values read at the entries and row views of the rating matrix are the timestamps of the rated
+	 * cells, and that the matrix has the given number of timestamps
+	 */
+	private static void assertValues(SparseMatrix times, int numTimes) {
+		for (MatrixEntry entry : ratings) {
+			double expected = times.get(entry.row(), entry.column());
+			assertEquals(expected, times.get(entry), 0);
+			if (expected != 0)
+				assertEquals(timestamp(entry.row(), entry.column()), expected, 0);
+		}
+		for (MatrixEntry entry : times)
+			assertEquals(timestamp(entry.row(), entry.column()), entry.get(), 0);
+		assertEquals(numTimes, times.size());
+
+		for (int u = 0; u < ratings.numRows(); u++) {
+			IndexView view = ratings.rowView(u);
+			for (int k = 0; k < view.size(); k++)
+				assertEquals(times.get(u, view.get(k)), times.get(u, view, k), 0);
+		}
+	}
+
+}
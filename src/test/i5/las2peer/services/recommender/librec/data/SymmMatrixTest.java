@@ -0,0 +1,171 @@
+package i5.las2peer.services.recommender.librec.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test that the symmetric matrix holds the same values as a dense symmetric matrix:
+ * - values set at (row, col) are read at (col, row), values on the diagonal are stored once
+ * - overwriting and adding to values, in random order of the columns
+ * - rows, which leave out values set to 0
+ * - copies, which are independent of the matrix they are copied from
+ * - trimming the arrays of the rows to the number of their entries
+ */
+public class SymmMatrixTest {
+
+	private static final int DIM = 40;
+
+	/**
+	 * Test setting values in both orders of the indices and on the diagonal
+	 */
+	@Test
+	public void testSymmetry() {
+		SymmMatrix matrix = new SymmMatrix(5);
+		matrix.set(1, 3, 0.5);
+		matrix.set(4, 2, -0.25);
+		matrix.set(2, 2, 1.0);
+
+		assertEquals(0.5, matrix.get(1, 3), 0);
+		assertEquals(0.5, matrix.get(3, 1), 0);
+		assertEquals(-0.25, matrix.get(2, 4), 0);
+		assertEquals(-0.25, matrix.get(4, 2), 0);
+		assertEquals(1.0, matrix.get(2, 2), 0);
+		assertEquals(0, matrix.get(0, 0), 0);
+		assertEquals(0, matrix.get(1, 4), 0);
+
+		assertEquals(1, matrix.row(1).getCount());
+		assertEquals(2, matrix.row(2).getCount());
+		assertEquals("Dimension: 5 x 5\n{2={2=1.0}, 3={1=0.5}, 4={2=-0.25}}", matrix.toString());
+	}
+
+	/**
+	 * Test overwriting and adding to values
+	 */
+	@Test
+	public void testOverwrite() {
+		SymmMatrix matrix = new SymmMatrix(5);
+		matrix.set(0, 4, 0.5);
+		matrix.set(4, 0, 0.75);
+		assertEquals(0.75, matrix.get(0, 4), 0);
+		assertEquals(1, matrix.row(0).getCount());
+		assertEquals(1, matrix.row(4).getCount());
+
+		matrix.add(0, 4, 0.25);
+		matrix.add(3, 1, 2.0);
+		assertEquals(1.0, matrix.get(4, 0), 0);
+		assertEquals(2.0, matrix.get(1, 3), 0);
+	}
+
+	/**
+	 * Test random values set, overwritten and set to 0 in random order against a dense matrix, before and after
+	 * trimming the rows
+	 */
+	@Test
+	public void testRandom() throws Exception {
+		Random random = new Random(1);
+		SymmMatrix matrix = new SymmMatrix(DIM);
+		double[][] dense = new double[DIM][DIM];
+		for (int k = 0; k < 2000; k++) {
+			int row = random.nextInt(DIM), col = random.nextInt(DIM);
+			double val = random.nextInt(10) == 0 ? 0 : random.nextDouble() - 0.5;
+			if (random.nextBoolean()) {
+				matrix.set(row, col, val);
+				dense[row][col] = dense[col][row] = val;
+			} else {
+				matrix.add(row, col, val);
+				dense[row][col] += val;
+				dense[col][row] = dense[row][col];
+			}
+		}
+		assertSame(dense, matrix);
+
+		int[] sizes = (int[]) getField(matrix, "sizes");
+		int[][] cols = (int[][]) getField(matrix, "cols");
+		int oversized = 0;
+		for (int row = 0; row < DIM; row++) {
+			if (cols[row] != null && cols[row].length > sizes[row])
+				oversized++;
+		}
+		assertTrue("No row to trim", oversized > 0);
+
+		matrix.trimToSize();
+		cols = (int[][]) getField(matrix, "cols");
+		double[][] vals = (double[][]) getField(matrix, "vals");
+		for (int row = 0; row < DIM; row++) {
+			if (cols[row] != null) {
+				assertEquals(sizes[row], cols[row].length);
+				assertEquals(sizes[row], vals[row].length);
+			}
+		}
+		assertSame(dense, matrix);
+
+		// setting values after trimming grows the rows again
+		matrix.set(0, DIM - 1, 3.0);
+		dense[0][DIM - 1] = dense[DIM - 1][0] = 3.0;
+		assertSame(dense, matrix);
+	}
+
+	/**
+	 * Test that a copy holds the values of the matrix and does not change with it
+	 */
+	@Test
+	public void testCopy() {
+		SymmMatrix matrix = new SymmMatrix(DIM);
+		double[][] dense = new double[DIM][DIM];
+		for (int row = 0; row < DIM; row++) {
+			for (int col = 0; col <= row; col += 3) {
+				matrix.set(row, col, row + 0.01 * col);
+				dense[row][col] = dense[col][row] = row + 0.01 * col;
+			}
+		}
+
+		SymmMatrix copy = matrix.clone();
+		assertSame(dense, copy);
+		matrix.set(5, 2, -1.0);
+		matrix.set(DIM - 1, 1, -1.0);
+		assertSame(dense, copy);
+	}
+
+	/**
+	 * Asserts that the matrix holds the values of the dense matrix, read by entry and by row
+	 */
+	private static void assertSame(double[][] dense, SymmMatrix matrix) {
+		for (int row = 0; row < DIM; row++) {
+			int count = 0;
+			for (int col = 0; col < DIM; col++) {
+				assertEquals(row + "," + col, dense[row][col], matrix.get(row, col), 0);
+				if (dense[row][col] != 0)
+					count++;
+			}
+
+			SparseVector vector = matrix.row(row);
+			assertEquals(count, vector.getCount());
+			assertEquals(count, vector.size());
+			int[] index = vector.getIndex();
+			double[] data = vector.getData();
+			int[] expectedIndex = new int[count];
+			double[] expectedData = new double[count];
+			for (int col = 0, n = 0; col < DIM; col++) {
+				if (dense[row][col] != 0) {
+					expectedIndex[n] = col;
+					expectedData[n++] = dense[row][col];
+				}
+			}
+			assertArrayEquals(expectedIndex, index);
+			assertArrayEquals(expectedData, data, 0);
+		}
+	}
+
+	private static Object getField(Object object, String name) throws Exception {
+		Field field = object.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(object);
+	}
+
+}
@@ -0,0 +1,229 @@
+package i5.las2peer.services.recommender.librec.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Test the configurations created by a hyperparameter search and the decisions of successive halving:
+ * - all combinations of a grid search
+ * - distinct configurations of a random search, sampled from lists and ranges of values
+ * - ranges sampled on a logarithmic scale for positive numbers, ranges of integers, and invalid ranges
+ * - the rungs at which configurations are compared, and which configurations are promoted at a rung
+ */
+public class HyperparameterSearchTest {
+
+	/**
+	 * Test that a grid search creates every combination of the values once, in the order of the parameters
+	 */
+	@Test
+	public void testGrid() {
+		Map<String, List<String>> values = new LinkedHashMap<>();
+		values.put("num.factors", Arrays.asList("10", "20", "50"));
+		values.put("learn.rate", Arrays.asList("0.01", "0.001"));
+
+		List<Map<String, String>> configurations = HyperparameterSearch.grid(values);
+		assertEquals(6, configurations.size());
+		assertEquals(6, new HashSet<>(configurations).size());
+		assertEquals("{num.factors=10, learn.rate=0.01}", configurations.get(0).toString());
+		assertEquals("{num.factors=10, learn.rate=0.001}", configurations.get(1).toString());
+		assertEquals("{num.factors=50, learn.rate=0.001}", configurations.get(5).toString());
+
+		assertEquals(1, HyperparameterSearch.grid(new LinkedHashMap<String, List<String>>()).size());
+		values.put("reg.lambda", Arrays.<String> asList());
+		assertEquals(0, HyperparameterSearch.grid(values).size());
+	}
+
+	/**
+	 * Test that a random search creates distinct configurations, and no more than there are combinations
+	 */
+	@Test
+	public void testRandom() throws Exception {
+		Map<String, List<String>> values = new LinkedHashMap<>();
+		values.put("num.factors", Arrays.asList("10", "20"));
+		values.put("learn.rate", Arrays.asList("0.01", "0.001"));
+		List<Map<String, String>> configurations = HyperparameterSearch.random(values, 10, new Random(1));
+		assertEquals(4, configurations.size());
+		assertEquals(new HashSet<>(HyperparameterSearch.grid(values)), new HashSet<>(configurations));
+
+		values.put("reg.lambda", Arrays.asList("0.001:1"));
+		configurations = HyperparameterSearch.random(values, 50, new Random(2));
+		assertEquals(50, configurations.size());
+		assertEquals(50, new HashSet<>(configurations).size());
+		for (Map<String, String> configuration : configurations) {
+			double lambda = Double.parseDouble(configuration.get("reg.lambda"));
+			assertTrue(lambda >= 0.001 && lambda <= 1);
+		}
+
+		// the same seed gives the same configurations
+		assertEquals(configurations, HyperparameterSearch.random(values, 50, new Random(2)));
+	}
+
+	/**
+	 * Test that a range of positive numbers is sampled on a logarithmic scale, such that about as many values are
+	 * below as above the geometric mean of the bounds
+	 */
+	@Test
+	public void testLogScale() throws Exception {
+		Random random = new Random(3);
+		int below = 0, samples = 10000;
+		for (int s = 0; s < samples; s++) {
+			double value = Double.parseDouble(sample("0.0001:1", random));
+			assertTrue(value >= 0.0001 && value <= 1);
+			if (value < 0.01)
+				below++;
+		}
+		assertEquals(0.5, below / (double) samples, 0.03);
+
+		// ranges including 0 or negative numbers are sampled uniformly
+		int negative = 0;
+		for (int s = 0; s < samples; s++) {
+			double value = Double.parseDouble(sample("-1.0:3.0", random));
+			assertTrue(value >= -1 && value <= 3);
+			if (value < 0)
+				negative++;
+		}
+		assertEquals(0.25, negative / (double) samples, 0.03);
+	}
+
+	/**
+	 * Test that a range of integers yields integers within the range, including both bounds
+	 */
+	@Test
+	public void testIntegerRange() throws Exception {
+		Random random = new Random(4);
+		for (String range : new String[] { "1:100", "-5:5", "7:7" }) {
+			String[] bounds = range.split(":");
+			int min = Integer.parseInt(bounds[0]), max = Integer.parseInt(bounds[1]);
+			Set<Integer> sampled = new HashSet<>();
+			for (int s = 0; s < 10000; s++) {
+				int value = Integer.parseInt(sample(range, random));
+				assertTrue(range + ": " + value, value >= min && value <= max);
+				sampled.add(value);
+			}
+			assertTrue(range, sampled.contains(min));
+			assertTrue(range, sampled.contains(max));
+		}
+	}
+
+	/**
+	 * Test the values sampled at the ends of the random numbers, which must not leave the range
+	 */
+	@Test
+	public void testBounds() throws Exception {
+		for (final double r : new double[] { 0.0, Math.nextDown(1.0) }) {
+			Random random = new Random() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public double nextDouble() {
+					return r;
+				}
+			};
+			for (String range : new String[] { "3:17", "-4:9", "0.3:17.5", "-0.25:0.75", "1e-7:3e-3" }) {
+				String[] bounds = range.split(":");
+				double value = Double.parseDouble(sample(range, random));
+				assertTrue(range + ": " + value,
+						value >= Double.parseDouble(bounds[0]) && value <= Double.parseDouble(bounds[1]));
+			}
+			assertEquals(r == 0 ? "3" : "17", sample("3:17", random));
+		}
+	}
+
+	/**
+	 * Test that invalid ranges are rejected, and which values are ranges
+	 */
+	@Test
+	public void testInvalidRange() throws Exception {
+		for (String range : new String[] { "5:1", "1.0:1e", "1:--2" }) {
+			try {
+				sample(range, new Random(5));
+				fail("Range " + range + " sampled");
+			} catch (Exception e) {
+				// expected
+			}
+		}
+		assertTrue(HyperparameterSearch.isRange("0.001:1e-1"));
+		assertTrue(HyperparameterSearch.isRange("-5:+5"));
+		assertFalse(HyperparameterSearch.isRange("0.01"));
+		assertFalse(HyperparameterSearch.isRange("PCC"));
+		assertFalse(HyperparameterSearch.isRange("a:b"));
+	}
+
+	/**
+	 * Test the rungs minIters * eta^k of successive halving, and that it is disabled for minIters 0
+	 */
+	@Test
+	public void testIsRung() throws Exception {
+		HyperparameterSearch search = new HyperparameterSearch(null);
+		for (int iter = 0; iter <= 100; iter++)
+			assertFalse(isRung(search, iter));
+
+		search.setSuccessiveHalving(2, 3);
+		Set<Integer> rungs = new HashSet<>(Arrays.asList(2, 6, 18, 54, 162));
+		for (int iter = 0; iter <= 200; iter++)
+			assertEquals("iteration " + iter, rungs.contains(iter), isRung(search, iter));
+
+		search.setSuccessiveHalving(5, 2);
+		rungs = new HashSet<>(Arrays.asList(5, 10, 20, 40, 80, 160));
+		for (int iter = 0; iter <= 200; iter++)
+			assertEquals("iteration " + iter, rungs.contains(iter), isRung(search, iter));
+	}
+
+	/**
+	 * Test that a fold is promoted at a rung if its loss is among the best 1/eta of the losses of the same fold at
+	 * the same rung so far, and that folds and rungs are ranked separately
+	 */
+	@Test
+	public void testPromote() throws Exception {
+		HyperparameterSearch search = new HyperparameterSearch(null);
+		search.setSuccessiveHalving(2, 3);
+
+		// losses of fold 1 at rung 2 and whether they are promoted
+		double[] losses = { 1.0, 2.0, 0.5, 0.7, 1.5, 0.6, 0.4 };
+		boolean[] promoted = { true, false, true, true, false, true, true };
+		for (int k = 0; k < losses.length; k++)
+			assertEquals("loss " + losses[k], promoted[k], promote(search, 1, 2, losses[k]));
+
+		// the first loss of another fold or another rung is always promoted
+		assertTrue(promote(search, 2, 2, 10.0));
+		assertTrue(promote(search, 1, 6, 10.0));
+		assertFalse(promote(search, 1, 6, 20.0));
+	}
+
+	private static String sample(String range, Random random) throws Exception {
+		Method sample = HyperparameterSearch.class.getDeclaredMethod("sample", String.class, Random.class);
+		sample.setAccessible(true);
+		try {
+			return (String) sample.invoke(null, range, random);
+		} catch (InvocationTargetException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+
+	private static boolean isRung(HyperparameterSearch search, int iter) throws Exception {
+		Method isRung = HyperparameterSearch.class.getDeclaredMethod("isRung", int.class);
+		isRung.setAccessible(true);
+		return (boolean) isRung.invoke(search, iter);
+	}
+
+	private static boolean promote(HyperparameterSearch search, int fold, int rung, double loss) throws Exception {
+		Method promote = HyperparameterSearch.class.getDeclaredMethod("promote", int.class, int.class, double.class);
+		promote.setAccessible(true);
+		return (boolean) promote.invoke(search, fold, rung, loss);
+	}
+
+}
@@ -0,0 +1,246 @@
+package i5.las2peer.services.recommender.librec.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import i5.las2peer.services.recommender.librec.util.SimilarityKernel.Method;
+
+/**
+ * Test that the similarities computed by the kernel from sorted index and value arrays equal the similarities
+ * computed by the list-based measures of {@link Sims} from the overlapping ratings:
+ * - all measures (cos, cos-binary, msd, cpc, exjaccard, pcc), with and without shrinkage
+ * - disjoint vectors, identical vectors and vectors with a single overlapping entry
+ * - vectors of very different lengths, whose intersection gallops over the longer vector
+ * - vectors stored in the same compressed structure
+ */
+public class SimilarityKernelTest {
+
+	private static final double MEDIAN = 3.0;
+
+	/**
+	 * Test vectors without overlapping entries
+	 */
+	@Test
+	public void testDisjoint() {
+		Random random = new Random(1);
+		TreeMap<Integer, Double> a = new TreeMap<>(), b = new TreeMap<>();
+		for (int k = 0; k < 50; k++) {
+			a.put(2 * k, rating(random));
+			b.put(2 * k + 1, rating(random));
+		}
+		assertAllMethods(a, b);
+	}
+
+	/**
+	 * Test a vector with itself
+	 */
+	@Test
+	public void testIdentical() {
+		TreeMap<Integer, Double> a = vector(new Random(2), 40, 100);
+		assertAllMethods(a, new TreeMap<>(a));
+	}
+
+	/**
+	 * Test vectors with a single overlapping entry
+	 */
+	@Test
+	public void testSingleOverlap() {
+		Random random = new Random(3);
+		TreeMap<Integer, Double> a = new TreeMap<>(), b = new TreeMap<>();
+		for (int k = 0; k < 30; k++) {
+			a.put(3 * k, rating(random));
+			b.put(3 * k + 1, rating(random));
+		}
+		b.put(42, rating(random));
+		assertAllMethods(a, b);
+	}
+
+	/**
+	 * Test a short vector with a long vector, in both orders, such that the intersection gallops over long runs
+	 * of the long vector
+	 */
+	@Test
+	public void testSkewedLengths() {
+		Random random = new Random(4);
+		for (int r = 0; r < 20; r++) {
+			TreeMap<Integer, Double> longVector = vector(random, 2000, 10000);
+			TreeMap<Integer, Double> shortVector = vector(random, 1 + random.nextInt(5), 10000);
+			// overlap with the first, the last and a middle entry of the long vector
+			shortVector.put(longVector.firstKey(), rating(random));
+			shortVector.put(longVector.lastKey(), rating(random));
+			shortVector.put(longVector.ceilingKey(5000), rating(random));
+			assertAllMethods(shortVector, longVector);
+			assertAllMethods(longVector, shortVector);
+		}
+	}
+
+	/**
+	 * Test random vectors of different densities
+	 */
+	@Test
+	public void testRandom() {
+		Random random = new Random(5);
+		for (int r = 0; r < 200; r++) {
+			int size = 1 + random.nextInt(300);
+			assertAllMethods(vector(random, random.nextInt(size), size), vector(random, random.nextInt(size), size));
+		}
+	}
+
+	/**
+	 * Test vectors given as rows of the same compressed structure
+	 */
+	@Test
+	public void testCompressedRows() {
+		Random random = new Random(6);
+		List<TreeMap<Integer, Double>> rows = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			rows.add(vector(random, random.nextInt(60), 100));
+
+		int[] ptr = new int[rows.size() + 1];
+		for (int i = 0; i < rows.size(); i++)
+			ptr[i + 1] = ptr[i] + rows.get(i).size();
+		int[] idx = new int[ptr[rows.size()]];
+		double[] val = new double[idx.length];
+		for (int i = 0; i < rows.size(); i++) {
+			int pos = ptr[i];
+			for (int key : rows.get(i).keySet()) {
+				idx[pos] = key;
+				val[pos++] = rows.get(i).get(key);
+			}
+		}
+
+		for (Method method : Method.values()) {
+			SimilarityKernel kernel = new SimilarityKernel(method, MEDIAN, 0);
+			for (int i = 0; i < rows.size(); i++) {
+				for (int j = 0; j < rows.size(); j++) {
+					assertEquals(method + " " + i + "," + j, expected(method, rows.get(i), rows.get(j), 0),
+							kernel.similarity(ptr, idx, val, i, j), 1e-12);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that galloping finds the first position whose index is not less than the key
+	 */
+	@Test
+	public void testGallop() {
+		Random random = new Random(7);
+		for (int r = 0; r < 100; r++) {
+			int[] idx = new int[random.nextInt(200)];
+			for (int k = 0; k < idx.length; k++)
+				idx[k] = (k > 0 ? idx[k - 1] : 0) + 1 + random.nextInt(5);
+			int from = idx.length > 0 ? random.nextInt(idx.length) : 0;
+			for (int key = -1; key <= (idx.length > 0 ? idx[idx.length - 1] + 1 : 1); key++) {
+				int expected = from;
+				while (expected < idx.length && idx[expected] < key)
+					expected++;
+				assertEquals(expected, SimilarityKernel.gallop(idx, from, idx.length, key));
+			}
+		}
+	}
+
+	/**
+	 * Asserts that the kernel computes the similarities of the list-based measures for every method, without
+	 * shrinkage and with shrinkage, reusing each kernel for both
+	 */
+	private static void assertAllMethods(TreeMap<Integer, Double> a, TreeMap<Integer, Double> b) {
+		int[] aIdx = indices(a), bIdx = indices(b);
+		double[] aVal = values(a), bVal = values(b);
+		for (Method method : Method.values()) {
+			for (int shrinkage : new int[] { 0, 10 }) {
+				SimilarityKernel kernel = new SimilarityKernel(method, MEDIAN, shrinkage);
+				assertEquals(method + " shrinkage " + shrinkage, expected(method, a, b, shrinkage),
+						kernel.similarity(aIdx, aVal, 0, aIdx.length, bIdx, bVal, 0, bIdx.length), 1e-12);
+			}
+		}
+	}
+
+	/**
+	 * @return similarity computed from the lists of overlapping ratings, as before the kernel
+	 */
+	private static double expected(Method method, TreeMap<Integer, Double> a, TreeMap<Integer, Double> b,
+			int shrinkage) {
+		List<Double> as = new ArrayList<>(), bs = new ArrayList<>();
+		for (int key : b.keySet()) {
+			if (a.containsKey(key)) {
+				as.add(a.get(key));
+				bs.add(b.get(key));
+			}
+		}
+
+		double sim;
+		switch (method) {
+		case COS:
+			sim = Sims.cos(as, bs);
+			break;
+		case COS_BINARY:
+			double inner = 0;
+			for (int k = 0; k < as.size(); k++)
+				inner += as.get(k) * bs.get(k);
+			sim = inner / (Math.sqrt(squares(a)) * Math.sqrt(squares(b)));
+			break;
+		case MSD:
+			sim = Sims.msd(as, bs);
+			break;
+		case CPC:
+			sim = Sims.cpc(as, bs, MEDIAN);
+			break;
+		case EXJACCARD:
+			sim = Sims.exJaccard(as, bs);
+			break;
+		case PCC:
+		default:
+			sim = Sims.pcc(as, bs);
+			break;
+		}
+
+		if (!Double.isNaN(sim) && shrinkage > 0)
+			sim *= as.size() / (as.size() + shrinkage + 0.0);
+		return sim;
+	}
+
+	/**
+	 * @return vector with the given number of ratings at random indices below the given size
+	 */
+	private static TreeMap<Integer, Double> vector(Random random, int count, int size) {
+		TreeMap<Integer, Double> vector = new TreeMap<>();
+		while (vector.size() < Math.min(count, size))
+			vector.put(random.nextInt(size), rating(random));
+		return vector;
+	}
+
+	private static double rating(Random random) {
+		return 0.5 * (1 + random.nextInt(10));
+	}
+
+	private static int[] indices(TreeMap<Integer, Double> vector) {
+		int[] idx = new int[vector.size()];
+		int k = 0;
+		for (int key : vector.keySet())
+			idx[k++] = key;
+		return idx;
+	}
+
+	private static double[] values(TreeMap<Integer, Double> vector) {
+		double[] val = new double[vector.size()];
+		int k = 0;
+		for (double value : vector.values())
+			val[k++] = value;
+		return val;
+	}
+
+	private static double squares(TreeMap<Integer, Double> vector) {
+		double sum = 0;
+		for (double value : vector.values())
+			sum += value * value;
+		return sum;
+	}
+
+}